@@ -7,10 +7,12 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import java.util.Collections;
 
 @SpringBootApplication
+@EnableScheduling
 public class TiendaOnlineApplication {
 
 	public static void main(String[] args) {
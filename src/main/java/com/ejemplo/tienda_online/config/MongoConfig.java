@@ -0,0 +1,81 @@
+package com.ejemplo.tienda_online.config;
+
+import com.mongodb.MongoException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool de conexiones y transacciones de MongoDB.
+ *
+ * <p>Con hilos de plataforma, el pool de Tomcat (200 hilos por defecto) ya limita cuántas
+ * peticiones usan MongoDB a la vez. Con hilos virtuales ese límite desaparece y el pool de
+ * conexiones pasa a ser el que regula la concurrencia, por lo que se usa un tamaño mayor
+ * y una espera máxima corta: una petición que no consigue conexión falla rápido en vez de
+ * acumular miles de hilos virtuales esperando.</p>
+ *
+ * <p>El gestor de transacciones solo se crea con {@code pedidos.transacciones.habilitadas=true}
+ * y exige que MongoDB sea un replica set; véase {@code TransaccionesPedido}.</p>
+ *
+ * @author Sistema Tienda Online
+ * @version 1.0
+ */
+@Slf4j
+@Configuration
+public class MongoConfig {
+
+    private static final int INTENTOS_COMMIT = 3;
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer poolConexionesMongo(
+            @Value("${spring.threads.virtual.enabled:false}") boolean hilosVirtuales,
+            @Value("${mongo.pool.tamanio-maximo:100}") int tamanioPlataforma,
+            @Value("${mongo.pool.tamanio-maximo-virtual:300}") int tamanioVirtual,
+            @Value("${mongo.pool.espera-maxima:2s}") Duration esperaMaxima,
+            @Value("${mongo.pool.conexiones-simultaneas:4}") int conexionesSimultaneas) {
+        int tamanio = hilosVirtuales ? tamanioVirtual : tamanioPlataforma;
+        log.info("Pool de MongoDB: {} conexiones como máximo (hilos virtuales: {}), espera máxima {}",
+                 tamanio, hilosVirtuales, esperaMaxima);
+        return settings -> settings.applyToConnectionPoolSettings(pool -> pool
+                .maxSize(tamanio)
+                .maxConnecting(conexionesSimultaneas)
+                .maxWaitTime(esperaMaxima.toMillis(), TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Gestor de transacciones de MongoDB. El commit se reintenta si el resultado es
+     * desconocido ({@code UnknownTransactionCommitResult}), por ejemplo tras un cambio de
+     * primario; repetir el commit de una misma transacción es seguro.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "pedidos.transacciones.habilitadas", havingValue = "true")
+    public MongoTransactionManager transactionManager(MongoDatabaseFactory mongoDatabaseFactory) {
+        log.info("Transacciones de MongoDB habilitadas para los pedidos");
+        return new MongoTransactionManager(mongoDatabaseFactory) {
+            @Override
+            protected void doCommit(MongoTransactionObject transactionObject) throws Exception {
+                int intentosRestantes = INTENTOS_COMMIT;
+                while (true) {
+                    try {
+                        transactionObject.commitTransaction();
+                        return;
+                    } catch (MongoException e) {
+                        if (!e.hasErrorLabel(MongoException.UNKNOWN_TRANSACTION_COMMIT_RESULT_LABEL)
+                                || --intentosRestantes == 0) {
+                            throw e;
+                        }
+                        log.warn("Resultado del commit desconocido, reintentando: {}", e.getMessage());
+                    }
+                }
+            }
+        };
+    }
+}
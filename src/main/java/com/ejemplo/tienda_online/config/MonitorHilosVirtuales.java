@@ -0,0 +1,89 @@
+package com.ejemplo.tienda_online.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Diagnóstico de hilos virtuales fijados a su hilo portador ("pinning").
+ *
+ * <p>Un hilo virtual que se bloquea dentro de un bloque {@code synchronized} o de código
+ * nativo no libera su hilo portador, y con pocos portadores (uno por núcleo) unas pocas
+ * esperas así bastan para frenar toda la aplicación. Este componente escucha en proceso
+ * el evento JFR {@code jdk.VirtualThreadPinned} y, para cada bloqueo que supera el umbral,
+ * escribe un aviso con la pila y actualiza las métricas {@code hilos.virtuales.fijados}
+ * (contador) y {@code hilos.virtuales.fijados.duracion} (temporizador).</p>
+ *
+ * <p>Solo se activa con {@code spring.threads.virtual.enabled=true}.</p>
+ *
+ * @author Sistema Tienda Online
+ * @version 1.0
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class MonitorHilosVirtuales {
+
+    static final String EVENTO_PINNING = "jdk.VirtualThreadPinned";
+    private static final int MARCOS_EN_LOG = 8;
+
+    private final RecordingStream stream;
+    private final Counter fijados;
+    private final Timer duracion;
+
+    public MonitorHilosVirtuales(@Value("${hilos-virtuales.pinning.umbral:20ms}") Duration umbral,
+                                 MeterRegistry meterRegistry) {
+        this.fijados = Counter.builder("hilos.virtuales.fijados")
+                .description("Bloqueos de hilos virtuales fijados a su hilo portador")
+                .register(meterRegistry);
+        this.duracion = Timer.builder("hilos.virtuales.fijados.duracion")
+                .description("Duración de los bloqueos con el hilo portador fijado")
+                .register(meterRegistry);
+
+        this.stream = new RecordingStream();
+        stream.enable(EVENTO_PINNING).withThreshold(umbral).withStackTrace();
+        stream.onEvent(EVENTO_PINNING, this::registrar);
+        stream.startAsync();
+        log.info("Diagnóstico de pinning de hilos virtuales activo (umbral {})", umbral);
+    }
+
+    private void registrar(RecordedEvent evento) {
+        fijados.increment();
+        duracion.record(evento.getDuration());
+        if (log.isWarnEnabled()) {
+            log.warn("Hilo virtual fijado a su portador durante {} ms en {}:\n{}",
+                     evento.getDuration().toMillis(),
+                     evento.getThread() != null ? evento.getThread().getJavaName() : "?",
+                     pila(evento));
+        }
+    }
+
+    private static String pila(RecordedEvent evento) {
+        if (evento.getStackTrace() == null) {
+            return "    (sin pila)";
+        }
+        List<RecordedFrame> marcos = evento.getStackTrace().getFrames();
+        return marcos.stream()
+                .limit(MARCOS_EN_LOG)
+                .map(marco -> "    at " + marco.getMethod().getType().getName() + "." + marco.getMethod().getName()
+                        + "(línea " + marco.getLineNumber() + ")")
+                .collect(Collectors.joining("\n"));
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        stream.close();
+    }
+}
@@ -0,0 +1,45 @@
+package com.ejemplo.tienda_online.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Map;
+
+/**
+ * Codificador de contraseñas, común a la API servlet y a la reactiva.
+ *
+ * @author Sistema Tienda Online
+ * @version 1.0
+ */
+@Configuration
+public class PasswordConfig {
+
+    /**
+     * Codificador de contraseñas con algoritmo y coste configurables. Los hashes se guardan
+     * con el prefijo del algoritmo ({@code {bcrypt}}, {@code {argon2}}); los anteriores, sin
+     * prefijo, son bcrypt y se siguen aceptando hasta que se actualizan en el siguiente login.
+     */
+    @Bean
+    public PasswordEncoder passwordEncoder(
+            @Value("${seguridad.password.algoritmo:bcrypt}") String algoritmo,
+            @Value("${seguridad.password.bcrypt.coste:10}") int costeBcrypt,
+            @Value("${seguridad.password.argon2.memoria-kb:19456}") int memoriaArgon2,
+            @Value("${seguridad.password.argon2.iteraciones:2}") int iteracionesArgon2) {
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(costeBcrypt);
+        Map<String, PasswordEncoder> encoders = Map.of(
+                "bcrypt", bcrypt,
+                "argon2", new Argon2PasswordEncoder(16, 32, 1, memoriaArgon2, iteracionesArgon2));
+        if (!encoders.containsKey(algoritmo)) {
+            throw new IllegalStateException("Algoritmo de contraseñas no soportado: " + algoritmo
+                    + " (valores posibles: " + encoders.keySet() + ")");
+        }
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder(algoritmo, encoders);
+        encoder.setDefaultPasswordEncoderForMatches(bcrypt);
+        return encoder;
+    }
+}
@@ -0,0 +1,108 @@
+package com.ejemplo.tienda_online.config;
+
+import com.ejemplo.tienda_online.model.ClaveIdempotencia;
+import com.ejemplo.tienda_online.model.FraccionStock;
+import com.ejemplo.tienda_online.model.Pedido;
+import com.ejemplo.tienda_online.model.Producto;
+import com.ejemplo.tienda_online.model.Usuario;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Collation;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Plan de índices de MongoDB: la única declaración de los índices de todas las colecciones.
+ *
+ * <p>Las entidades no llevan anotaciones de índices y {@code auto-index-creation} está
+ * desactivado: {@code GestionIndicesService} crea los índices únicos durante el arranque,
+ * antes de atender peticiones, y el resto en segundo plano después; informa de los que
+ * faltan. Cada consulta de los repositorios y servicios
+ * debe poder resolverse con alguno de ellos; los tests de planes de ejecución fallan si
+ * alguna recorre la colección completa (COLLSCAN).</p>
+ *
+ * <p>Los nombres coinciden con los que generaban las anotaciones, de modo que en una base
+ * de datos existente los índices ya creados se reconocen y no se vuelven a construir.</p>
+ *
+ * @author Sistema Tienda Online
+ * @version 1.0
+ */
+public final class PlanIndices {
+
+    /**
+     * Índice declarado para la colección de una entidad.
+     */
+    public record IndiceDeclarado(Class<?> entidad, Index definicion) {
+
+        public String nombre() {
+            return (String) definicion.getIndexOptions().get("name");
+        }
+
+        public Document claves() {
+            return definicion.getIndexKeys();
+        }
+
+        /**
+         * Índice único: impide duplicados, así que se crea antes de atender peticiones.
+         */
+        public boolean unico() {
+            return Boolean.TRUE.equals(definicion.getIndexOptions().get("unique"));
+        }
+    }
+
+    private static final Collation ESPANOL_SIN_MAYUSCULAS = Collation.of("es").strength(2);
+
+    /**
+     * Índices de todas las colecciones.
+     */
+    public static final List<IndiceDeclarado> INDICES = List.of(
+        // Productos: nombre único, catálogo filtrado y ordenado (ProductoService.construirConsulta),
+        // consultas por stock y productos con stock fraccionado
+        indice(Producto.class, new Index().named("nombre").on("nombre", Sort.Direction.ASC).unique()),
+        indice(Producto.class, new Index().named("categoria_precio")
+                .on("categoria", Sort.Direction.ASC).on("precio", Sort.Direction.ASC).on("_id", Sort.Direction.ASC)),
+        indice(Producto.class, new Index().named("precio")
+                .on("precio", Sort.Direction.ASC).on("_id", Sort.Direction.ASC)),
+        indice(Producto.class, new Index().named("nombre_ci")
+                .on("nombre", Sort.Direction.ASC).on("_id", Sort.Direction.ASC).collation(ESPANOL_SIN_MAYUSCULAS)),
+        indice(Producto.class, new Index().named("stock").on("stock", Sort.Direction.ASC)),
+        indice(Producto.class, new Index().named("fraccionesStock").on("fraccionesStock", Sort.Direction.ASC).sparse()),
+
+        // Pedidos: "Mis pedidos" (los más recientes primero y paginado por ID) y pedidos por
+        // estado en orden de llegada
+        indice(Pedido.class, new Index().named("usuarioId_fecha")
+                .on("usuarioId", Sort.Direction.ASC).on("fecha", Sort.Direction.DESC)),
+        indice(Pedido.class, new Index().named("usuarioId_id")
+                .on("usuarioId", Sort.Direction.ASC).on("_id", Sort.Direction.ASC)),
+        indice(Pedido.class, new Index().named("estado_fecha")
+                .on("estado", Sort.Direction.ASC).on("fecha", Sort.Direction.ASC)),
+
+        // Usuarios: login, registro y búsqueda de administradores
+        indice(Usuario.class, new Index().named("username").on("username", Sort.Direction.ASC).unique()),
+        indice(Usuario.class, new Index().named("email").on("email", Sort.Direction.ASC).unique()),
+        indice(Usuario.class, new Index().named("roles").on("roles", Sort.Direction.ASC)),
+
+        // Fracciones de stock de cada producto
+        indice(FraccionStock.class, new Index().named("productoId").on("productoId", Sort.Direction.ASC)),
+
+        // Claves de idempotencia: MongoDB borra cada una al llegar a su caducidad
+        indice(ClaveIdempotencia.class, new Index().named("caducidad").on("caducaEn", Sort.Direction.ASC)
+                .expire(Duration.ZERO))
+    );
+
+    private PlanIndices() {
+    }
+
+    /**
+     * Índices declarados para la colección de una entidad.
+     */
+    public static List<IndiceDeclarado> de(Class<?> entidad) {
+        return INDICES.stream().filter(indice -> indice.entidad().equals(entidad)).toList();
+    }
+
+    private static IndiceDeclarado indice(Class<?> entidad, Index definicion) {
+        return new IndiceDeclarado(entidad, definicion);
+    }
+}
@@ -0,0 +1,114 @@
+package com.ejemplo.tienda_online.config;
+
+import com.ejemplo.tienda_online.security.JwtUtil;
+import com.ejemplo.tienda_online.security.JwtWebFilter;
+import com.ejemplo.tienda_online.security.PrincipalCache;
+import com.ejemplo.tienda_online.security.UserDetailsServiceImpl;
+import com.ejemplo.tienda_online.util.CursorPaginacion;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.config.annotation.method.configuration.EnableReactiveMethodSecurity;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.authentication.HttpStatusServerEntryPoint;
+import org.springframework.security.web.server.authorization.HttpStatusServerAccessDeniedHandler;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+import org.springframework.web.cors.CorsConfiguration;
+import org.springframework.web.cors.reactive.CorsConfigurationSource;
+import org.springframework.web.cors.reactive.UrlBasedCorsConfigurationSource;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Configuración de la API reactiva (WebFlux sobre Netty), activa con el perfil
+ * {@code reactivo}.
+ *
+ * <p>Con este perfil la aplicación arranca como aplicación reactiva y solo expone las
+ * consultas de productos y pedidos ({@code ProductoReactivoController},
+ * {@code PedidoReactivoController}); el resto de la API sigue en la aplicación servlet.
+ * Para comparar ambas pilas se arrancan dos instancias, una con el perfil y otra sin él,
+ * contra la misma base de datos.</p>
+ *
+ * <p>La seguridad replica las reglas de {@link SecurityConfig} para estas rutas, sin
+ * sesión y con los mismos tokens JWT.</p>
+ *
+ * @author Sistema Tienda Online
+ * @version 1.0
+ */
+@Configuration
+@Profile("reactivo")
+@EnableWebFluxSecurity
+@EnableReactiveMethodSecurity
+public class ReactivoConfig {
+
+    @Bean
+    public SecurityWebFilterChain cadenaSeguridadReactiva(ServerHttpSecurity http,
+            JwtUtil jwtUtil,
+            UserDetailsServiceImpl userDetailsService,
+            PrincipalCache principalCache,
+            @Value("${jwt.claims-de-confianza:false}") boolean claimsDeConfianza) {
+        JwtWebFilter jwtWebFilter = new JwtWebFilter(jwtUtil, userDetailsService, principalCache, claimsDeConfianza);
+        return http
+            .csrf(ServerHttpSecurity.CsrfSpec::disable)
+            .httpBasic(ServerHttpSecurity.HttpBasicSpec::disable)
+            .formLogin(ServerHttpSecurity.FormLoginSpec::disable)
+            .logout(ServerHttpSecurity.LogoutSpec::disable)
+            .cors(cors -> cors.configurationSource(corsConfigurationSource()))
+            .securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+            .authorizeExchange(auth -> auth
+                // Endpoints de productos
+                .pathMatchers(HttpMethod.GET, "/api/productos", "/api/productos/**").permitAll()
+                // Endpoints de pedidos
+                .pathMatchers(HttpMethod.GET, "/api/pedidos", "/api/pedidos/stream").hasRole("ADMIN")
+                .pathMatchers(HttpMethod.GET, "/api/pedidos/mios").hasRole("CLIENTE")
+                // Métricas de la aplicación
+                .pathMatchers("/actuator/health").permitAll()
+                .pathMatchers("/actuator/**").hasRole("ADMIN")
+                .anyExchange().authenticated()
+            )
+            .exceptionHandling(eh -> eh
+                .authenticationEntryPoint(new HttpStatusServerEntryPoint(HttpStatus.UNAUTHORIZED))
+                .accessDeniedHandler(new HttpStatusServerAccessDeniedHandler(HttpStatus.FORBIDDEN))
+            )
+            .addFilterAt(jwtWebFilter, SecurityWebFiltersOrder.AUTHENTICATION)
+            .build();
+    }
+
+    /**
+     * Adaptador reactivo del servicio de usuarios. La autenticación de la API es por JWT;
+     * este bean evita además que Spring Boot cree el usuario en memoria por defecto.
+     */
+    @Bean
+    public ReactiveUserDetailsService reactiveUserDetailsService(UserDetailsServiceImpl userDetailsService) {
+        return username -> Mono.fromCallable(() -> userDetailsService.loadUserByUsername(username))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Netty en lugar de Tomcat, que también está en el classpath por la API servlet.
+     */
+    @Bean
+    public NettyReactiveWebServerFactory servidorNetty() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    private static CorsConfigurationSource corsConfigurationSource() {
+        CorsConfiguration config = new CorsConfiguration();
+        config.addAllowedOriginPattern("*");
+        config.addAllowedHeader("*");
+        config.addAllowedMethod("*");
+        config.addExposedHeader(CursorPaginacion.CABECERA_SIGUIENTE);
+        config.setAllowCredentials(true);
+        UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
+        source.registerCorsConfiguration("/**", config);
+        return source;
+    }
+}
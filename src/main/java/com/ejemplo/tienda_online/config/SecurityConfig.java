@@ -1,17 +1,19 @@
 package com.ejemplo.tienda_online.config;
 
+import com.ejemplo.tienda_online.security.ClasificadorPeticiones;
 import com.ejemplo.tienda_online.security.JwtAuthFilter;
 import com.ejemplo.tienda_online.security.UserDetailsServiceImpl;
+import com.ejemplo.tienda_online.util.CursorPaginacion;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
@@ -19,9 +21,15 @@ import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import org.springframework.web.filter.CorsFilter;
 
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.http.HttpServletResponse;
 
+/**
+ * Seguridad de la API servlet (Spring MVC). Con el perfil {@code reactivo} la sustituye
+ * {@link ReactivoConfig}.
+ */
 @Configuration
+@Profile("!reactivo")
 @EnableMethodSecurity
 @RequiredArgsConstructor
 public class SecurityConfig {
@@ -30,33 +38,34 @@ public class SecurityConfig {
 
     @Bean
     @SuppressWarnings("deprecation")
-    public org.springframework.security.authentication.dao.DaoAuthenticationProvider daoAuthenticationProvider() {
+    public org.springframework.security.authentication.dao.DaoAuthenticationProvider daoAuthenticationProvider(
+            PasswordEncoder passwordEncoder) {
         var provider = new org.springframework.security.authentication.dao.DaoAuthenticationProvider();
         provider.setUserDetailsService(userDetailsService);
-        provider.setPasswordEncoder(passwordEncoder());
+        provider.setPasswordEncoder(passwordEncoder);
+        // Tras un login correcto, los hashes con otro algoritmo o menor coste se recalculan
+        provider.setUserDetailsPasswordService(userDetailsService);
         return provider;
     }
 
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {        http
+    public SecurityFilterChain securityFilterChain(HttpSecurity http,
+            org.springframework.security.authentication.dao.DaoAuthenticationProvider daoAuthenticationProvider) throws Exception {        http
             .csrf(csrf -> csrf
                 .ignoringRequestMatchers("/api/auth/**", "/auth/**")
                 .disable()
             )
             .sessionManagement(sm -> sm.sessionCreationPolicy(SessionCreationPolicy.STATELESS))            .authorizeHttpRequests(auth -> auth
-                .requestMatchers(
-                    "/api/auth/**", // Permitir endpoints de autenticación
-                    "/auth/**",
-                    "/setup/admin", // Permitir configuración inicial
-                    "/dev/diagnostico/**", // Endpoints de diagnóstico
-                    "/index.html", "/", "/login.html", "/register.html", "/error.html",
-                    "/documentacion.html", // Permitir acceso a documentación sin autenticación
-                    "/css/**", "/js/**", "/img/**", "/favicon.ico", "/favicon.svg",
-                    "/error",
-                    "/swagger-ui.html", "/swagger-ui/**", "/v3/api-docs/**" // Swagger UI y OpenAPI
-                ).permitAll()
+                // Las respuestas en streaming (exportación de pedidos) terminan en un despacho
+                // asíncrono sin autenticación: JwtAuthFilter no se repite y no hay sesión. La
+                // petición original ya se autorizó al llegar al controlador
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+                // Rutas públicas: las mismas que JwtAuthFilter atiende sin verificar el token
+                .requestMatchers(ClasificadorPeticiones.RECURSOS_ESTATICOS).permitAll()
+                .requestMatchers(ClasificadorPeticiones.RUTAS_AUTENTICACION).permitAll()
+                .requestMatchers(ClasificadorPeticiones.RUTAS_PUBLICAS).permitAll()
                 // Endpoints de productos
-                .requestMatchers(HttpMethod.GET, "/api/productos", "/api/productos/**").permitAll()
+                .requestMatchers(HttpMethod.GET, ClasificadorPeticiones.RUTAS_PUBLICAS_GET).permitAll()
                 .requestMatchers(HttpMethod.POST, "/api/productos").hasRole("ADMIN")
                 .requestMatchers(HttpMethod.PUT, "/api/productos/**").hasRole("ADMIN")
                 .requestMatchers(HttpMethod.DELETE, "/api/productos/**").hasRole("ADMIN")
@@ -65,9 +74,10 @@ public class SecurityConfig {
                 .requestMatchers(HttpMethod.GET, "/api/pedidos/mios").hasRole("CLIENTE") // Ver mis pedidos
                 .requestMatchers(HttpMethod.POST, "/api/pedidos").hasRole("CLIENTE") // Crear pedido
                 .requestMatchers(HttpMethod.PUT, "/api/pedidos/**").hasRole("ADMIN") // Cambiar estado
+                // Métricas de la aplicación
+                .requestMatchers("/actuator/**").hasRole("ADMIN")
                 // Páginas web
                 .requestMatchers("/admin.html", "/admin_db.html").hasRole("ADMIN")
-                .requestMatchers("/productos.html", "/pedidos.html", "/carrito.html").permitAll()
                 .anyRequest().authenticated()
             )
             .exceptionHandling(eh -> eh
@@ -94,16 +104,11 @@ public class SecurityConfig {
                     }
                 })
             )
-            .authenticationProvider(daoAuthenticationProvider())
+            .authenticationProvider(daoAuthenticationProvider)
             .addFilterAfter(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class);
         return http.build();
     }
 
-    @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
-    }
-
     @Bean
     public AuthenticationManager authenticationManager(AuthenticationConfiguration config) throws Exception {
         return config.getAuthenticationManager();
@@ -115,6 +120,7 @@ public class SecurityConfig {
         config.addAllowedOriginPattern("*");
         config.addAllowedHeader("*");
         config.addAllowedMethod("*");
+        config.addExposedHeader(CursorPaginacion.CABECERA_SIGUIENTE);
         config.setAllowCredentials(true);
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/**", config);
@@ -2,7 +2,12 @@ package com.ejemplo.tienda_online.controller;
 
 import com.ejemplo.tienda_online.model.Usuario;
 import com.ejemplo.tienda_online.repository.UsuarioRepository;
+import com.ejemplo.tienda_online.security.PrincipalCache;
+import com.ejemplo.tienda_online.util.CursorPaginacion;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -12,6 +17,7 @@ import java.util.Collections;
 import java.util.List;
 
 @RestController
+@Profile("!reactivo")
 @RequestMapping("/api/admin/users")
 @RequiredArgsConstructor
 @CrossOrigin(origins = "*", allowedHeaders = "*")
@@ -19,14 +25,20 @@ public class AdminController {
 
     private final UsuarioRepository usuarioRepository;
     private final PasswordEncoder passwordEncoder;
+    private final PrincipalCache principalCache;
 
     @GetMapping
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<List<Usuario>> getAllUsers() {
-        List<Usuario> usuarios = usuarioRepository.findAll();
+    public ResponseEntity<List<Usuario>> getAllUsers(@RequestParam(required = false) String cursor,
+                                                     @RequestParam(required = false) Integer limit) {
+        String ultimoId = CursorPaginacion.decodificar(cursor);
+        Pageable pagina = CursorPaginacion.pagina(CursorPaginacion.normalizarLimite(limit));
+        Slice<Usuario> usuarios = ultimoId == null
+            ? usuarioRepository.findAllBy(pagina)
+            : usuarioRepository.findByIdGreaterThan(ultimoId, pagina);
         // No devolver las contraseñas
         usuarios.forEach(u -> u.setPassword("***"));
-        return ResponseEntity.ok(usuarios);
+        return CursorPaginacion.respuesta(CursorPaginacion.desde(usuarios, Usuario::getId, u -> u));
     }
 
     @DeleteMapping("/cleanup")
@@ -39,6 +51,7 @@ public class AdminController {
         for (Usuario usuario : usuarios) {
             if (!"admin".equals(usuario.getUsername())) {
                 usuarioRepository.delete(usuario);
+                principalCache.invalidarUsuario(usuario.getUsername());
                 eliminados++;
             }
         }
@@ -60,6 +73,7 @@ public class AdminController {
             .roles(Collections.singletonList(Usuario.RolUsuario.ADMIN))
             .build();
         usuarioRepository.save(admin);
+        principalCache.invalidarUsuario("admin");
 
         return ResponseEntity.ok("Usuario admin restablecido con credenciales: admin/admin");
     }
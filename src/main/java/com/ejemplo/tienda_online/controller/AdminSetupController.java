@@ -4,6 +4,7 @@ import com.ejemplo.tienda_online.dto.AdminCreationRequest;
 import com.ejemplo.tienda_online.model.Usuario;
 import com.ejemplo.tienda_online.repository.UsuarioRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -13,6 +14,7 @@ import org.springframework.web.bind.annotation.RestController;
 import java.util.Collections;
 
 @RestController
+@Profile("!reactivo")
 @RequiredArgsConstructor
 public class AdminSetupController {
 
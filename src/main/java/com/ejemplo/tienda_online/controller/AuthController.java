@@ -4,28 +4,38 @@ import com.ejemplo.tienda_online.dto.LoginRequest;
 import com.ejemplo.tienda_online.dto.RegisterRequest;
 import com.ejemplo.tienda_online.dto.JwtResponse;
 import com.ejemplo.tienda_online.model.Usuario;
+import com.ejemplo.tienda_online.security.EjecutorContrasenas;
 import com.ejemplo.tienda_online.service.AuthService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Controlador REST para la autenticación y registro de usuarios.
  * Maneja las operaciones de login y registro del sistema.
  *
+ * <p>Ambas operaciones calculan hashes de contraseña, por lo que se ejecutan en el
+ * {@link EjecutorContrasenas} y liberan el hilo de Tomcat mientras tanto. Si el
+ * ejecutor está saturado se responde 429.</p>
+ *
  * @author Sistema Tienda Online
  * @version 2.0
  */
 @Slf4j
 @RestController
+@Profile("!reactivo")
 @RequestMapping("/api/auth")
 @RequiredArgsConstructor
 @CrossOrigin(origins = "*", allowedHeaders = "*")
 public class AuthController {
 
     private final AuthService authService;
+    private final EjecutorContrasenas ejecutorContrasenas;
 
     /**
      * Registra un nuevo usuario en el sistema.
@@ -34,15 +44,15 @@ public class AuthController {
      * @return El usuario registrado
      */
     @PostMapping("/register")
-    public ResponseEntity<Usuario> register(@RequestBody RegisterRequest request) {
+    public CompletableFuture<ResponseEntity<Usuario>> register(@RequestBody RegisterRequest request) {
         log.info("Solicitud de registro para usuario: {}", request.getUsername());
 
-        Usuario usuarioRegistrado = authService.register(request);
-
-        log.info("Usuario {} registrado exitosamente con roles {}",
-                 usuarioRegistrado.getUsername(), usuarioRegistrado.getRoles());
-
-        return ResponseEntity.status(HttpStatus.CREATED).body(usuarioRegistrado);
+        return ejecutorContrasenas.ejecutar(() -> authService.register(request))
+                .thenApply(usuarioRegistrado -> {
+                    log.info("Usuario {} registrado exitosamente con roles {}",
+                             usuarioRegistrado.getUsername(), usuarioRegistrado.getRoles());
+                    return ResponseEntity.status(HttpStatus.CREATED).body(usuarioRegistrado);
+                });
     }
 
     /**
@@ -52,14 +62,14 @@ public class AuthController {
      * @return Token JWT y datos del usuario
      */
     @PostMapping("/login")
-    public ResponseEntity<JwtResponse> login(@RequestBody LoginRequest request) {
+    public CompletableFuture<ResponseEntity<JwtResponse>> login(@RequestBody LoginRequest request) {
         log.info("Intento de login para usuario: {}", request.getUsername());
 
-        JwtResponse jwtResponse = authService.login(request);
-
-        log.info("Login exitoso para usuario: {} con rol {}",
-                 request.getUsername(), jwtResponse.getRole());
-
-        return ResponseEntity.ok(jwtResponse);
+        return ejecutorContrasenas.ejecutar(() -> authService.login(request))
+                .thenApply(jwtResponse -> {
+                    log.info("Login exitoso para usuario: {} con rol {}",
+                             request.getUsername(), jwtResponse.getRole());
+                    return ResponseEntity.ok(jwtResponse);
+                });
     }
 }
@@ -2,7 +2,10 @@ package com.ejemplo.tienda_online.controller;
 
 import com.ejemplo.tienda_online.model.Producto;
 import com.ejemplo.tienda_online.repository.ProductoRepository;
+import com.ejemplo.tienda_online.service.BusquedaProductosService;
+import com.ejemplo.tienda_online.service.CatalogoCache;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
@@ -11,12 +14,15 @@ import java.util.Arrays;
 import java.util.List;
 
 @RestController
+@Profile("!reactivo")
 @RequestMapping("/api/admin/init")
 @RequiredArgsConstructor
 @CrossOrigin(origins = "*", allowedHeaders = "*")
 public class DataInitController {
 
     private final ProductoRepository productoRepository;
+    private final CatalogoCache catalogoCache;
+    private final BusquedaProductosService busquedaProductosService;
 
     @PostMapping("/productos")
     @PreAuthorize("hasRole('ADMIN')")
@@ -58,6 +64,7 @@ public class DataInitController {
         );
 
         productoRepository.saveAll(productos);
+        productosModificados();
         return ResponseEntity.ok("Productos de prueba creados exitosamente: " + productos.size() + " productos");
     }
 
@@ -66,6 +73,15 @@ public class DataInitController {
     public ResponseEntity<String> clearProductos() {
         long count = productoRepository.count();
         productoRepository.deleteAll();
+        productosModificados();
         return ResponseEntity.ok("Eliminados " + count + " productos");
     }
+
+    /**
+     * Las cargas masivas no pasan por ProductoService: se refrescan la caché y el índice de búsqueda
+     */
+    private void productosModificados() {
+        catalogoCache.invalidarTodo();
+        busquedaProductosService.reconstruir();
+    }
 }
@@ -2,8 +2,10 @@ package com.ejemplo.tienda_online.controller;
 
 import com.ejemplo.tienda_online.model.Usuario;
 import com.ejemplo.tienda_online.repository.UsuarioRepository;
+import com.ejemplo.tienda_online.security.PrincipalCache;
 import com.ejemplo.tienda_online.security.UserDetailsServiceImpl;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -24,6 +26,7 @@ import java.util.Optional;
  * IMPORTANTE: Solo disponible en perfil de desarrollo
  */
 @RestController
+@Profile("!reactivo")
 @RequestMapping("/dev/diagnostico")
 @RequiredArgsConstructor
 public class DiagnosticoController {
@@ -31,6 +34,7 @@ public class DiagnosticoController {
     private final UsuarioRepository usuarioRepository;
     private final PasswordEncoder passwordEncoder;
     private final UserDetailsServiceImpl userDetailsService;
+    private final PrincipalCache principalCache;
 
     @GetMapping("/usuario/{username}")
     public ResponseEntity<?> verificarUsuario(@PathVariable String username) {
@@ -96,6 +100,7 @@ public class DiagnosticoController {
 
         // Borrar todos los usuarios
         usuarioRepository.deleteAll();
+        principalCache.invalidarTodo();
 
         Map<String, Object> response = new HashMap<>();
         response.put("mensaje", "Se han borrado todos los usuarios");
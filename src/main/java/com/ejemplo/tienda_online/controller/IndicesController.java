@@ -0,0 +1,49 @@
+package com.ejemplo.tienda_online.controller;
+
+import com.ejemplo.tienda_online.service.GestionIndicesService;
+import com.ejemplo.tienda_online.service.GestionIndicesService.EstadoIndice;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Estado de los índices de MongoDB declarados en {@code PlanIndices}.
+ * Solo disponible para administradores.
+ *
+ * @author Sistema Tienda Online
+ * @version 1.0
+ */
+@RestController
+@Profile("!reactivo")
+@RequestMapping("/api/admin/indices")
+@RequiredArgsConstructor
+public class IndicesController {
+
+    private final GestionIndicesService gestionIndicesService;
+
+    /**
+     * Informe de los índices declarados: creados, pendientes o con otra definición.
+     */
+    @GetMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<List<EstadoIndice>> informe() {
+        return ResponseEntity.ok(gestionIndicesService.informe());
+    }
+
+    /**
+     * Crea los índices pendientes (por ejemplo, tras eliminar los duplicados que impedían
+     * crear uno único) y devuelve el informe resultante.
+     */
+    @PostMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<List<EstadoIndice>> crear() {
+        return ResponseEntity.ok(gestionIndicesService.crearIndices());
+    }
+}
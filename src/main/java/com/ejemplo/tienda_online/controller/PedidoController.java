@@ -1,15 +1,30 @@
 package com.ejemplo.tienda_online.controller;
 
+import com.ejemplo.tienda_online.dto.PaginaResponse;
+import com.ejemplo.tienda_online.dto.PedidoRecibidoResponse;
 import com.ejemplo.tienda_online.dto.PedidoResponse;
+import com.ejemplo.tienda_online.exception.BusinessException;
 import com.ejemplo.tienda_online.model.Pedido;
+import com.ejemplo.tienda_online.service.ExportacionPedidosService;
+import com.ejemplo.tienda_online.service.IdempotenciaService;
 import com.ejemplo.tienda_online.service.PedidoService;
+import com.ejemplo.tienda_online.service.RecepcionPedidosService;
+import com.ejemplo.tienda_online.util.CursorPaginacion;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.security.Principal;
 import java.util.List;
 
 /**
@@ -21,45 +36,82 @@ import java.util.List;
  */
 @Slf4j
 @RestController
+@Profile("!reactivo")
 @RequestMapping("/api/pedidos")
 @RequiredArgsConstructor
 public class PedidoController {
 
+    static final String CABECERA_IDEMPOTENCIA = "Idempotency-Key";
+    static final String CABECERA_REPETIDA = "Idempotent-Replayed";
+
     private final PedidoService pedidoService;
+    private final ExportacionPedidosService exportacionPedidosService;
+    private final IdempotenciaService idempotenciaService;
+    private final RecepcionPedidosService recepcionPedidosService;
+    private final ObjectMapper objectMapper;
 
     /**
-     * Obtiene todos los pedidos del sistema.
+     * Obtiene una página de los pedidos del sistema.
      * Solo disponible para administradores.
+     * El cursor de la página siguiente se devuelve en la cabecera {@code X-Next-Cursor}.
      *
-     * @return Lista completa de pedidos
+     * @param cursor Cursor opaco de la página anterior (opcional)
+     * @param limit Tamaño máximo de la página (opcional)
+     * @return Página de pedidos
      */
     @GetMapping
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<List<PedidoResponse>> getAll() {
-        log.info("Administrador solicitando todos los pedidos");
-        List<PedidoResponse> pedidos = pedidoService.getAllWithUserInfo();
-        log.info("Devolviendo {} pedidos al administrador", pedidos.size());
-        return ResponseEntity.ok(pedidos);
+    public ResponseEntity<List<PedidoResponse>> getAll(@RequestParam(required = false) String cursor,
+                                                       @RequestParam(required = false) Integer limit) {
+        log.info("Administrador solicitando página de pedidos");
+        PaginaResponse<PedidoResponse> pagina = pedidoService.getAllWithUserInfo(cursor, limit);
+        log.info("Devolviendo {} pedidos al administrador", pagina.getContenido().size());
+        return CursorPaginacion.respuesta(pagina);
     }
 
     /**
-     * Obtiene los pedidos del usuario autenticado.
+     * Obtiene una página de los pedidos del usuario autenticado.
      * Solo disponible para clientes.
      *
-     * @return Lista de pedidos del usuario actual
+     * @param cursor Cursor opaco de la página anterior (opcional)
+     * @param limit Tamaño máximo de la página (opcional)
+     * @return Página de pedidos del usuario actual
      */
     @GetMapping("/mios")
     @PreAuthorize("hasRole('CLIENTE')")
-    public ResponseEntity<List<PedidoResponse>> getMisPedidos() {
+    public ResponseEntity<List<PedidoResponse>> getMisPedidos(@RequestParam(required = false) String cursor,
+                                                              @RequestParam(required = false) Integer limit) {
         log.info("Cliente solicitando sus pedidos");
-        List<PedidoResponse> pedidos = pedidoService.getPedidosUsuarioActualConFormato();
-        log.info("Cliente tiene {} pedidos", pedidos.size());
-        return ResponseEntity.ok(pedidos);
+        PaginaResponse<PedidoResponse> pagina = pedidoService.getPedidosUsuarioActualConFormato(cursor, limit);
+        log.info("Devolviendo {} pedidos al cliente", pagina.getContenido().size());
+        return CursorPaginacion.respuesta(pagina);
+    }
+
+    /**
+     * Exporta el histórico completo de pedidos en streaming (NDJSON o CSV).
+     * Solo disponible para administradores.
+     *
+     * @param formato Formato de exportación: ndjson (por defecto) o csv
+     * @return Cuerpo que se escribe a medida que se leen los pedidos
+     */
+    @GetMapping("/exportar")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportar(@RequestParam(defaultValue = "ndjson") String formato) {
+        ExportacionPedidosService.Formato formatoExportacion = ExportacionPedidosService.Formato.desde(formato);
+        log.info("Administrador exportando pedidos en formato {}", formatoExportacion);
+
+        StreamingResponseBody cuerpo = salida -> exportacionPedidosService.exportar(formatoExportacion, salida);
+        return ResponseEntity.ok()
+                .contentType(formatoExportacion.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"pedidos." + formatoExportacion.getExtension() + "\"")
+                .body(cuerpo);
     }
 
     /**
      * Busca un pedido específico por ID.
      * Administradores pueden ver cualquier pedido, clientes solo los suyos.
+     * Con la recepción asíncrona, también los pedidos que aún están en cola (RECIBIDO).
      *
      * @param id ID del pedido
      * @return El pedido encontrado
@@ -68,7 +120,8 @@ public class PedidoController {
     @PreAuthorize("hasRole('ADMIN') or hasRole('CLIENTE')")
     public ResponseEntity<Pedido> getPedidoById(@PathVariable String id) {
         log.info("Solicitando pedido con ID: {}", id);
-        Pedido pedido = pedidoService.buscarPorId(id);
+        Pedido pedido = recepcionPedidosService.buscarEnCurso(id)
+                .orElseGet(() -> pedidoService.buscarPorId(id));
         return ResponseEntity.ok(pedido);
     }
 
@@ -76,19 +129,82 @@ public class PedidoController {
      * Crea un nuevo pedido.
      * Solo disponible para clientes autenticados.
      *
-     * @param pedido Datos del pedido a crear
-     * @return El pedido creado
-     */    @PostMapping
+     * <p>Con la cabecera {@code Idempotency-Key}, las repeticiones de la misma petición
+     * devuelven la respuesta original (con {@code Idempotent-Replayed: true}) sin volver a
+     * crear el pedido ni descontar stock.</p>
+     *
+     * <p>Con la recepción asíncrona ({@code pedidos.recepcion.asincrona=true}) responde
+     * 202 con el ID del pedido en cola; el resultado se consulta en
+     * {@code GET /api/pedidos/{id}}.</p>
+     *
+     * @param cuerpo Datos del pedido a crear, en JSON
+     * @param claveIdempotencia Clave elegida por el cliente para sus reintentos (opcional)
+     * @return El pedido creado, o el pedido recibido si la recepción es asíncrona
+     */
+    @PostMapping
     @PreAuthorize("hasRole('CLIENTE')")
-    public ResponseEntity<Pedido> crearPedido(@RequestBody Pedido pedido) {
+    public ResponseEntity<String> crearPedido(@RequestBody byte[] cuerpo,
+                                              @RequestHeader(value = CABECERA_IDEMPOTENCIA, required = false) String claveIdempotencia,
+                                              Principal principal) {
+        if (claveIdempotencia == null) {
+            return responder(crearYSerializar(cuerpo, null));
+        }
+        IdempotenciaService.Respuesta respuesta = idempotenciaService.ejecutar(principal.getName(),
+                claveIdempotencia, IdempotenciaService.huella(cuerpo), idPedido -> crearYSerializar(cuerpo, idPedido));
+        if (respuesta.repetida()) {
+            log.info("Petición repetida con clave de idempotencia, se devuelve la respuesta original");
+        }
+        return responder(respuesta);
+    }
+
+    /**
+     * Crea el pedido y serializa la respuesta, que es lo que se guarda para las repeticiones.
+     * El cuerpo se lee aquí y no con {@code @RequestBody Pedido} para calcular la huella
+     * sobre los bytes recibidos.
+     *
+     * @param idPedido ID reservado por la clave de idempotencia, o null sin ella
+     */
+    private IdempotenciaService.Respuesta crearYSerializar(byte[] cuerpo, String idPedido) {
+        Pedido pedido;
+        try {
+            pedido = objectMapper.readValue(cuerpo, Pedido.class);
+        } catch (IOException e) {
+            throw new BusinessException("El cuerpo del pedido no es un JSON válido");
+        }
         log.info("Cliente creando nuevo pedido con {} productos",
                  pedido.getProductos() != null ? pedido.getProductos().size() : 0);
 
-        Pedido pedidoCreado = pedidoService.crearPedido(pedido);
+        if (recepcionPedidosService.isHabilitada()) {
+            Pedido pedidoRecibido = recepcionPedidosService.encolar(pedido, idPedido);
+            log.info("Pedido recibido con ID: {}", pedidoRecibido.getId());
+            return serializar(HttpStatus.ACCEPTED, pedidoRecibido.getId(), PedidoRecibidoResponse.builder()
+                    .id(pedidoRecibido.getId())
+                    .estado(pedidoRecibido.getEstado().name())
+                    .ubicacion("/api/pedidos/" + pedidoRecibido.getId())
+                    .build());
+        }
+
+        Pedido pedidoCreado = pedidoService.crearPedido(pedido, idPedido);
 
         log.info("Pedido creado exitosamente con ID: {}", pedidoCreado.getId());
+        return serializar(HttpStatus.CREATED, pedidoCreado.getId(), pedidoCreado);
+    }
+
+    private IdempotenciaService.Respuesta serializar(HttpStatus estado, String id, Object cuerpo) {
+        try {
+            return new IdempotenciaService.Respuesta(estado.value(), objectMapper.writeValueAsString(cuerpo), false);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar el pedido " + id, e);
+        }
+    }
 
-        return ResponseEntity.status(HttpStatus.CREATED).body(pedidoCreado);
+    private static ResponseEntity<String> responder(IdempotenciaService.Respuesta respuesta) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(respuesta.estadoHttp())
+                .contentType(MediaType.APPLICATION_JSON);
+        if (respuesta.repetida()) {
+            builder.header(CABECERA_REPETIDA, "true");
+        }
+        return builder.body(respuesta.cuerpo());
     }
 
     /**
@@ -119,6 +235,9 @@ public class PedidoController {
     @PreAuthorize("hasRole('ADMIN') or hasRole('CLIENTE')")
     public ResponseEntity<Pedido> cancelarPedido(@PathVariable String id) {
         log.info("Solicitud de cancelación para el pedido: {}", id);
+        if (recepcionPedidosService.buscarEnCurso(id).isPresent()) {
+            throw new BusinessException("El pedido todavía no está registrado y no se puede cancelar");
+        }
         Pedido pedidoCancelado = pedidoService.cancelarPedido(id);
         log.info("Pedido {} cancelado exitosamente", id);
         return ResponseEntity.ok(pedidoCancelado);
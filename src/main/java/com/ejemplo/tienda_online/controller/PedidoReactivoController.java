@@ -0,0 +1,81 @@
+package com.ejemplo.tienda_online.controller;
+
+import com.ejemplo.tienda_online.dto.PedidoResponse;
+import com.ejemplo.tienda_online.service.PedidoReactivoService;
+import com.ejemplo.tienda_online.util.CursorPaginacion;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Controlador reactivo de consulta de pedidos (perfil {@code reactivo}).
+ * Crear, cancelar y cambiar el estado de pedidos sigue solo en {@link PedidoController}.
+ *
+ * @author Sistema Tienda Online
+ * @version 1.0
+ */
+@Slf4j
+@RestController
+@Profile("reactivo")
+@RequestMapping("/api/pedidos")
+@RequiredArgsConstructor
+public class PedidoReactivoController {
+
+    private final PedidoReactivoService pedidoService;
+
+    /**
+     * Obtiene una página de los pedidos del sistema.
+     * Solo disponible para administradores.
+     *
+     * @param cursor Cursor opaco de la página anterior (opcional)
+     * @param limit Tamaño máximo de la página (opcional)
+     * @return Página de pedidos
+     */
+    @GetMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public Mono<ResponseEntity<List<PedidoResponse>>> getAll(@RequestParam(required = false) String cursor,
+                                                             @RequestParam(required = false) Integer limit) {
+        log.info("Administrador solicitando página de pedidos");
+        return pedidoService.getAllWithUserInfo(cursor, limit).map(CursorPaginacion::respuesta);
+    }
+
+    /**
+     * Obtiene una página de los pedidos del usuario autenticado.
+     *
+     * @param cursor Cursor opaco de la página anterior (opcional)
+     * @param limit Tamaño máximo de la página (opcional)
+     * @return Página de pedidos del usuario actual
+     */
+    @GetMapping("/mios")
+    @PreAuthorize("hasRole('CLIENTE')")
+    public Mono<ResponseEntity<List<PedidoResponse>>> getMisPedidos(@AuthenticationPrincipal UserDetails usuario,
+                                                                    @RequestParam(required = false) String cursor,
+                                                                    @RequestParam(required = false) Integer limit) {
+        log.info("Cliente solicitando sus pedidos");
+        return pedidoService.getPedidosUsuario(usuario, cursor, limit).map(CursorPaginacion::respuesta);
+    }
+
+    /**
+     * Emite todos los pedidos del sistema como NDJSON, con control de flujo: los pedidos
+     * se leen de MongoDB a medida que el cliente los consume.
+     * Solo disponible para administradores.
+     *
+     * @return Flujo de pedidos en orden de ID
+     */
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    public Flux<PedidoResponse> stream() {
+        log.info("Administrador solicitando el flujo de pedidos");
+        return pedidoService.getAllWithUserInfo();
+    }
+}
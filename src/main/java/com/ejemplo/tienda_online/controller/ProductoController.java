@@ -1,17 +1,25 @@
 package com.ejemplo.tienda_online.controller;
 
+import com.ejemplo.tienda_online.dto.FiltroProductos;
+import com.ejemplo.tienda_online.dto.PaginaResponse;
 import com.ejemplo.tienda_online.dto.ProductoResponse;
 import com.ejemplo.tienda_online.model.Producto;
+import com.ejemplo.tienda_online.service.BusquedaProductosService;
+import com.ejemplo.tienda_online.service.CatalogoSnapshot;
 import com.ejemplo.tienda_online.service.ProductoService;
+import com.ejemplo.tienda_online.util.CursorPaginacion;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Controlador REST para la gestión de productos.
@@ -22,54 +30,123 @@ import java.util.stream.Collectors;
  */
 @Slf4j
 @RestController
+@Profile("!reactivo")
 @RequestMapping("/api/productos")
 @RequiredArgsConstructor
 public class ProductoController {
 
     private final ProductoService productoService;
+    private final BusquedaProductosService busquedaProductosService;
 
     /**
-     * Obtiene todos los productos disponibles.
+     * Obtiene una página de los productos disponibles.
+     * El cursor de la página siguiente se devuelve en la cabecera {@code X-Next-Cursor}.
      *
-     * @return Lista de todos los productos
+     * <p>La página se sirve desde una copia ya serializada (y comprimida si el cliente
+     * acepta gzip) con un ETag fuerte para cada representación; si alguno coincide con
+     * {@code If-None-Match} se responde 304 sin cuerpo.</p>
+     *
+     * @param cursor Cursor opaco de la página anterior (opcional)
+     * @param limit Tamaño máximo de la página (opcional)
+     * @return Página de productos en JSON
      */
     @GetMapping
-    public ResponseEntity<List<ProductoResponse>> getAll() {
-        log.info("Solicitando lista de todos los productos");
-        List<Producto> productos = productoService.getAll();
-        log.info("Devolviendo {} productos", productos.size());
-        // Convertir a ProductoResponse y devolver precio formateado
-        List<ProductoResponse> response = productos.stream()
-            .map(p -> ProductoResponse.builder()
-                .id(p.getId())
-                .nombre(p.getNombre())
-                .descripcion(p.getDescripcion())
-                .precio(java.math.BigDecimal.valueOf(p.getPrecio()))
-                .stock(p.getStock())
-                .categoria(p.getCategoria())
-                .imagenUrl(p.getImagenUrl())
-                .fechaCreacion(p.getFechaCreacion())
-                .fechaActualizacion(p.getFechaActualizacion())
-                .disponible(p.estaDisponible())
-                .build())
-            .collect(Collectors.toList());
-        return ResponseEntity.ok(response);
+    public ResponseEntity<byte[]> getAll(@RequestParam(required = false) String cursor,
+                                         @RequestParam(required = false) Integer limit,
+                                         @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                         @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        log.debug("Solicitando página de productos");
+        CatalogoSnapshot snapshot = productoService.getPagina(cursor, limit);
+        PaginaResponse<ProductoResponse> pagina = snapshot.getPagina();
+
+        boolean gzip = CatalogoSnapshot.aceptaGzip(acceptEncoding);
+        boolean noModificado = snapshot.coincideCon(ifNoneMatch);
+        ResponseEntity.BodyBuilder builder = noModificado
+                ? ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                : ResponseEntity.ok();
+        builder.eTag(snapshot.getEtag(gzip))
+               .cacheControl(CacheControl.noCache())
+               .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (pagina.getSiguienteCursor() != null) {
+            builder.header(CursorPaginacion.CABECERA_SIGUIENTE, pagina.getSiguienteCursor());
+        }
+        if (noModificado) {
+            return builder.build();
+        }
+
+        builder.contentType(MediaType.APPLICATION_JSON);
+        if (gzip) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(snapshot.getGzip());
+        }
+        return builder.body(snapshot.getJson());
+    }
+
+    /**
+     * Consulta el catálogo con filtros combinables, orden y paginación por cursor.
+     * El cursor de la página siguiente se devuelve en la cabecera {@code X-Next-Cursor}.
+     *
+     * @param categoria Categoría exacta (opcional)
+     * @param precioMin Precio mínimo incluido (opcional)
+     * @param precioMax Precio máximo incluido (opcional)
+     * @param enStock Solo productos con stock disponible (opcional)
+     * @param nombre Prefijo del nombre, sin distinguir mayúsculas (opcional)
+     * @param orden id, precio, -precio, nombre o -nombre (opcional)
+     * @param cursor Cursor opaco de la página anterior (opcional)
+     * @param limit Tamaño máximo de la página (opcional)
+     * @return Página de productos que cumplen los filtros
+     */
+    @GetMapping("/consulta")
+    public ResponseEntity<List<ProductoResponse>> consultar(@RequestParam(required = false) String categoria,
+                                                            @RequestParam(required = false) Double precioMin,
+                                                            @RequestParam(required = false) Double precioMax,
+                                                            @RequestParam(required = false) Boolean enStock,
+                                                            @RequestParam(required = false) String nombre,
+                                                            @RequestParam(required = false) String orden,
+                                                            @RequestParam(required = false) String cursor,
+                                                            @RequestParam(required = false) Integer limit) {
+        FiltroProductos filtro = FiltroProductos.builder()
+                .categoria(categoria)
+                .precioMin(precioMin)
+                .precioMax(precioMax)
+                .enStock(enStock)
+                .nombre(nombre)
+                .orden(orden)
+                .build();
+        PaginaResponse<ProductoResponse> pagina = productoService.consultar(filtro, cursor, limit);
+        log.info("Consulta de productos: {} resultados", pagina.getContenido().size());
+        return CursorPaginacion.respuesta(pagina);
     }
 
     /**
-     * Busca productos por nombre.
+     * Busca productos por texto en nombre, categoría y descripción, ordenados por relevancia.
+     * No distingue mayúsculas ni tildes, y la última palabra se completa como prefijo.
      *
-     * @param nombre Nombre o parte del nombre a buscar
+     * @param nombre Texto a buscar
+     * @param limit Número máximo de resultados (opcional)
      * @return Lista de productos que coinciden con la búsqueda
      */
     @GetMapping("/buscar")
-    public ResponseEntity<List<Producto>> buscarPorNombre(@RequestParam String nombre) {
-        log.info("Buscando productos por nombre: {}", nombre);
-        List<Producto> productos = productoService.findByNombre(nombre);
+    public ResponseEntity<List<Producto>> buscarPorNombre(@RequestParam String nombre,
+                                                          @RequestParam(required = false) Integer limit) {
+        log.info("Buscando productos: {}", nombre);
+        List<Producto> productos = productoService.buscar(nombre, limit);
         log.info("Encontrados {} productos para la búsqueda: {}", productos.size(), nombre);
         return ResponseEntity.ok(productos);
     }
 
+    /**
+     * Sugerencias de nombres de producto para autocompletar la búsqueda.
+     *
+     * @param q Texto escrito hasta el momento
+     * @param limit Número máximo de sugerencias (opcional)
+     * @return Nombres de productos ordenados por relevancia
+     */
+    @GetMapping("/sugerencias")
+    public ResponseEntity<List<String>> sugerencias(@RequestParam String q,
+                                                    @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(busquedaProductosService.sugerir(q, limit));
+    }
+
     /**
      * Obtiene productos con stock disponible.
      *
@@ -116,13 +193,15 @@ public class ProductoController {
      * Solo disponible para administradores.
      *
      * @param id ID del producto a actualizar
-     * @param producto Nuevos datos del producto
+     * @param producto Nuevos datos del producto, con la versión leída para detectar otras ediciones
+     * @param stockLeido Stock del producto al leerlo; el stock enviado se aplica como diferencia
      * @return El producto actualizado
      */    @PutMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<Producto> update(@PathVariable String id, @RequestBody Producto producto) {
+    public ResponseEntity<Producto> update(@PathVariable String id, @RequestBody Producto producto,
+                                           @RequestParam(required = false) Integer stockLeido) {
         log.info("Actualizando producto con ID: {}", id);
-        Producto productoActualizado = productoService.update(id, producto);
+        Producto productoActualizado = productoService.update(id, producto, stockLeido);
         log.info("Producto {} actualizado exitosamente", id);
         return ResponseEntity.ok(productoActualizado);
     }
@@ -160,6 +239,36 @@ public class ProductoController {
         return ResponseEntity.ok(productoActualizado);
     }
 
+    /**
+     * Reparte el stock de un producto en fracciones para ventas flash: las compras
+     * simultáneas descuentan de fracciones distintas en lugar de competir por un
+     * único documento. Solo disponible para administradores.
+     *
+     * @param id ID del producto
+     * @param numero Número de fracciones
+     * @return El producto con el stock fraccionado
+     */
+    @PutMapping("/{id}/fracciones")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Producto> fraccionarStock(@PathVariable String id, @RequestParam Integer numero) {
+        log.info("Fraccionando el stock del producto {} en {} partes", id, numero);
+        return ResponseEntity.ok(productoService.fraccionarStock(id, numero));
+    }
+
+    /**
+     * Vuelve a guardar el stock de un producto fraccionado en su documento.
+     * Solo disponible para administradores.
+     *
+     * @param id ID del producto
+     * @return El producto con el stock unificado
+     */
+    @DeleteMapping("/{id}/fracciones")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Producto> unificarStock(@PathVariable String id) {
+        log.info("Unificando el stock del producto {}", id);
+        return ResponseEntity.ok(productoService.unificarStock(id));
+    }
+
     /**
      * Reduce el stock de un producto.
      * Endpoint interno para operaciones de pedidos.
@@ -0,0 +1,72 @@
+package com.ejemplo.tienda_online.controller;
+
+import com.ejemplo.tienda_online.dto.ProductoResponse;
+import com.ejemplo.tienda_online.model.Producto;
+import com.ejemplo.tienda_online.service.ProductoReactivoService;
+import com.ejemplo.tienda_online.util.CursorPaginacion;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Controlador reactivo de consulta de productos (perfil {@code reactivo}).
+ * Expone las mismas rutas de lectura que {@link ProductoController}; las operaciones de
+ * escritura siguen solo en la API servlet.
+ *
+ * @author Sistema Tienda Online
+ * @version 1.0
+ */
+@Slf4j
+@RestController
+@Profile("reactivo")
+@RequestMapping("/api/productos")
+@RequiredArgsConstructor
+public class ProductoReactivoController {
+
+    private final ProductoReactivoService productoService;
+
+    /**
+     * Obtiene una página de los productos disponibles.
+     * El cursor de la página siguiente se devuelve en la cabecera {@code X-Next-Cursor}.
+     *
+     * @param cursor Cursor opaco de la página anterior (opcional)
+     * @param limit Tamaño máximo de la página (opcional)
+     * @return Página de productos
+     */
+    @GetMapping
+    public Mono<ResponseEntity<List<ProductoResponse>>> getAll(@RequestParam(required = false) String cursor,
+                                                               @RequestParam(required = false) Integer limit) {
+        log.debug("Solicitando página de productos");
+        return productoService.getPagina(cursor, limit).map(CursorPaginacion::respuesta);
+    }
+
+    /**
+     * Emite el catálogo completo como NDJSON, un producto por línea. La lectura de MongoDB
+     * avanza al ritmo al que el cliente consume la respuesta.
+     *
+     * @return Flujo de productos en orden de ID
+     */
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<ProductoResponse> stream() {
+        return productoService.getCatalogo();
+    }
+
+    /**
+     * Obtiene un producto específico por su ID.
+     *
+     * @param id ID del producto
+     * @return El producto encontrado
+     */
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<Producto>> getById(@PathVariable String id) {
+        log.info("Solicitando producto con ID: {}", id);
+        return productoService.getById(id).map(ResponseEntity::ok);
+    }
+}
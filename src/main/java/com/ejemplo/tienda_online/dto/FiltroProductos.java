@@ -0,0 +1,50 @@
+package com.ejemplo.tienda_online.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO con los criterios de consulta del catálogo de productos.
+ * Todos los criterios son opcionales y se combinan entre sí.
+ *
+ * @author Sistema Tienda Online
+ * @version 1.0
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FiltroProductos {
+
+    /**
+     * Categoría exacta del producto.
+     */
+    private String categoria;
+
+    /**
+     * Precio mínimo (incluido).
+     */
+    private Double precioMin;
+
+    /**
+     * Precio máximo (incluido).
+     */
+    private Double precioMax;
+
+    /**
+     * Si es true, solo productos con stock disponible.
+     */
+    private Boolean enStock;
+
+    /**
+     * Prefijo del nombre, sin distinguir mayúsculas y minúsculas.
+     */
+    private String nombre;
+
+    /**
+     * Orden de los resultados: id (por defecto), precio, -precio, nombre o -nombre.
+     */
+    private String orden;
+}
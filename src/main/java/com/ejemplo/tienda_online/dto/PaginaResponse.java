@@ -0,0 +1,39 @@
+package com.ejemplo.tienda_online.dto;
+
+import lombok.Data;
+import lombok.Builder;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO para una página de resultados obtenida mediante paginación por cursor.
+ *
+ * <p>El cursor es opaco para el cliente: basta con reenviarlo en la siguiente
+ * petición para continuar justo después del último elemento recibido.</p>
+ *
+ * @author Sistema Tienda Online
+ * @version 1.0
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaginaResponse<T> {
+
+    /**
+     * Elementos de la página actual.
+     */
+    private List<T> contenido;
+
+    /**
+     * Cursor para solicitar la página siguiente, o null si no hay más resultados.
+     */
+    private String siguienteCursor;
+
+    /**
+     * Tamaño máximo de página aplicado.
+     */
+    private int limite;
+}
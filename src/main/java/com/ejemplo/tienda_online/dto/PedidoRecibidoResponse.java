@@ -0,0 +1,37 @@
+package com.ejemplo.tienda_online.dto;
+
+import lombok.Data;
+import lombok.Builder;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+/**
+ * DTO de respuesta de un pedido aceptado por la recepción asíncrona.
+ *
+ * <p>El pedido todavía no está guardado: el cliente consulta su estado con
+ * {@code GET /api/pedidos/{id}} hasta que pasa a PENDIENTE o RECHAZADO.</p>
+ *
+ * @author Sistema Tienda Online
+ * @version 1.0
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PedidoRecibidoResponse {
+
+    /**
+     * ID definitivo del pedido, para consultar su estado.
+     */
+    private String id;
+
+    /**
+     * Estado del pedido (RECIBIDO).
+     */
+    private String estado;
+
+    /**
+     * Ruta donde consultar el estado del pedido.
+     */
+    private String ubicacion;
+}
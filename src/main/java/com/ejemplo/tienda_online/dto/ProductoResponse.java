@@ -28,6 +28,11 @@ public class ProductoResponse {
      */
     private String id;
 
+    /**
+     * Versión del producto, para enviarla al editarlo.
+     */
+    private Long version;
+
     /**
      * Nombre del producto.
      */
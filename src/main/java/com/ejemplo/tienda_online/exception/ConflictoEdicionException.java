@@ -0,0 +1,23 @@
+package com.ejemplo.tienda_online.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Excepción para ediciones hechas sobre una versión que ya no es la actual: otra edición
+ * ha modificado el documento desde que el cliente lo leyó (409).
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class ConflictoEdicionException extends RuntimeException {
+
+    private final Long versionActual;
+
+    public ConflictoEdicionException(String message, Long versionActual) {
+        super(message);
+        this.versionActual = versionActual;
+    }
+
+    public Long getVersionActual() {
+        return versionActual;
+    }
+}
@@ -0,0 +1,23 @@
+package com.ejemplo.tienda_online.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Excepción para peticiones cuya clave de idempotencia no se puede usar: otra petición
+ * con la misma clave sigue en curso (409) o la clave ya se usó con un cuerpo distinto (422).
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class ConflictoIdempotenciaException extends RuntimeException {
+
+    private final HttpStatus estado;
+
+    public ConflictoIdempotenciaException(String message, HttpStatus estado) {
+        super(message);
+        this.estado = estado;
+    }
+
+    public HttpStatus getEstado() {
+        return estado;
+    }
+}
@@ -1,5 +1,7 @@
 package com.ejemplo.tienda_online.exception;
 
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
@@ -47,6 +49,59 @@ public class GlobalExceptionHandler {
         );
     }
 
+    @ExceptionHandler(ServicioSaturadoException.class)
+    public ResponseEntity<Map<String, Object>> handleServicioSaturado(ServicioSaturadoException ex) {
+        ResponseEntity<Map<String, Object>> respuesta = buildErrorResponse(
+                HttpStatus.TOO_MANY_REQUESTS,
+                "TOO_MANY_REQUESTS",
+                ex.getMessage()
+        );
+        return ResponseEntity.status(respuesta.getStatusCode())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getReintentarEn().toSeconds()))
+                .body(respuesta.getBody());
+    }
+
+    @ExceptionHandler(ConflictoIdempotenciaException.class)
+    public ResponseEntity<Map<String, Object>> handleConflictoIdempotencia(ConflictoIdempotenciaException ex) {
+        ResponseEntity<Map<String, Object>> respuesta = buildErrorResponse(
+                ex.getEstado(),
+                "IDEMPOTENCY_CONFLICT",
+                ex.getMessage()
+        );
+        if (ex.getEstado() != HttpStatus.CONFLICT) {
+            return respuesta;
+        }
+        // La petición original sigue en curso: el cliente puede reintentar en breve
+        return ResponseEntity.status(respuesta.getStatusCode())
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(respuesta.getBody());
+    }
+
+    @ExceptionHandler(ConflictoEdicionException.class)
+    public ResponseEntity<Map<String, Object>> handleConflictoEdicion(ConflictoEdicionException ex) {
+        ResponseEntity<Map<String, Object>> respuesta = buildErrorResponse(
+                HttpStatus.CONFLICT,
+                "EDIT_CONFLICT",
+                ex.getMessage()
+        );
+        // El cliente debe recargar el documento antes de volver a editarlo
+        respuesta.getBody().put("versionActual", ex.getVersionActual());
+        return respuesta;
+    }
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<Map<String, Object>> handleOptimisticLocking(OptimisticLockingFailureException ex) {
+        ResponseEntity<Map<String, Object>> respuesta = buildErrorResponse(
+                HttpStatus.CONFLICT,
+                "CONCURRENT_MODIFICATION",
+                "El recurso se está modificando de forma concurrente, inténtelo de nuevo"
+        );
+        // Se han agotado los reintentos del servidor: el cliente puede repetir en breve
+        return ResponseEntity.status(respuesta.getStatusCode())
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(respuesta.getBody());
+    }
+
     @ExceptionHandler(IllegalArgumentException.class)
     public ResponseEntity<Map<String, Object>> handleIllegalArgument(IllegalArgumentException ex) {
         return buildErrorResponse(
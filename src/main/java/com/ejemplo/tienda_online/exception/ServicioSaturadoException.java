@@ -0,0 +1,25 @@
+package com.ejemplo.tienda_online.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.time.Duration;
+
+/**
+ * Excepción para peticiones rechazadas porque un recurso limitado está saturado.
+ * Se responde con 429 y la cabecera Retry-After.
+ */
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class ServicioSaturadoException extends RuntimeException {
+
+    private final Duration reintentarEn;
+
+    public ServicioSaturadoException(String message, Duration reintentarEn) {
+        super(message);
+        this.reintentarEn = reintentarEn;
+    }
+
+    public Duration getReintentarEn() {
+        return reintentarEn;
+    }
+}
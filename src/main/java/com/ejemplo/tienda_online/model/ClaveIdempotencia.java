@@ -0,0 +1,71 @@
+package com.ejemplo.tienda_online.model;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Clave de idempotencia de una petición ({@code Idempotency-Key}) y la respuesta que
+ * se devolvió, para repetirla si el cliente reenvía la misma petición.
+ *
+ * <p>Cada documento caduca en {@link #caducaEn}: el índice TTL de {@code PlanIndices} tiene
+ * {@code expireAfterSeconds = 0}, por lo que MongoDB lo borra al llegar esa fecha.</p>
+ *
+ * @author Sistema Tienda Online
+ * @version 1.0
+ */
+@Document(collection = "claves_idempotencia")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ClaveIdempotencia {
+
+    /**
+     * Usuario y clave recibida, separados por ':'; la misma clave de dos usuarios no choca.
+     */
+    @Id
+    private String id;
+
+    /**
+     * Huella (SHA-256) del cuerpo de la petición original.
+     */
+    private String huella;
+
+    private EstadoClave estado;
+
+    /**
+     * Reserva que está procesando la petición; cambia si otra instancia la retoma al caducar.
+     */
+    private String propietario;
+
+    /**
+     * ID reservado para el recurso que crea la petición. Es el mismo en cada intento con
+     * esta clave, de modo que quien retome una reserva caducada encuentra el pedido ya
+     * creado en lugar de crear otro.
+     */
+    private String recursoId;
+
+    /**
+     * Código HTTP y cuerpo JSON de la respuesta, cuando la petición ha terminado.
+     */
+    private Integer estadoHttp;
+
+    private String cuerpo;
+
+    private Instant caducaEn;
+
+    public enum EstadoClave {
+        /**
+         * La petición se está procesando; quien la procesa renueva la caducidad mientras
+         * tanto, y si el proceso cae la entrada caduca pronto.
+         */
+        EN_CURSO,
+        /**
+         * La petición terminó y su respuesta está guardada.
+         */
+        COMPLETADA
+    }
+}
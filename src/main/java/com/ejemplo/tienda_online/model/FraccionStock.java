@@ -0,0 +1,49 @@
+package com.ejemplo.tienda_online.model;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Fracción del stock de un producto en modo fraccionado.
+ *
+ * <p>El stock de un producto muy demandado se reparte en varios documentos para que
+ * las compras simultáneas no compitan por el mismo documento. El campo
+ * {@code stock} del producto guarda la suma, que recalcula periódicamente
+ * {@code StockFraccionadoService}.</p>
+ *
+ * @author Sistema Tienda Online
+ * @version 1.0
+ */
+@Document(collection = "stock_fracciones")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class FraccionStock {
+
+    /**
+     * ID del producto y número de fracción, separados por ':'.
+     */
+    @Id
+    private String id;
+
+    /**
+     * ID del producto al que pertenece la fracción.
+     */
+    private String productoId;
+
+    /**
+     * Número de la fracción, de 0 a número de fracciones - 1.
+     */
+    private Integer indice;
+
+    /**
+     * Unidades disponibles en esta fracción.
+     */
+    private Integer stock;
+
+    public static String idDe(String productoId, int indice) {
+        return productoId + ":" + indice;
+    }
+}
@@ -2,10 +2,16 @@ package com.ejemplo.tienda_online.model;
 
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.time.Instant;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Entidad que representa un pedido en la tienda online.
@@ -29,6 +35,12 @@ public class Pedido {
     @Id
     private String id;
 
+    /**
+     * Versión para el control de concurrencia optimista; la incrementa cada cambio de estado.
+     */
+    @Version
+    private Long version;
+
     /**
      * ID del usuario que realizó el pedido.
      */
@@ -84,7 +96,7 @@ public class Pedido {
     private Instant fechaEntrega;
 
     /**
-     * Motivo de cancelación (si aplica).
+     * Motivo de cancelación o de rechazo (si aplica).
      */
     private String motivoCancelacion;
 
@@ -134,6 +146,17 @@ public class Pedido {
      * Enumeración que define los posibles estados de un pedido.
      */
     public enum EstadoPedido {
+        /**
+         * Pedido aceptado por la recepción asíncrona y en cola; todavía no está guardado
+         * ni tiene stock reservado.
+         */
+        RECIBIDO("Recibido, en cola de procesamiento"),
+
+        /**
+         * Pedido de la recepción asíncrona que no se pudo aceptar (por ejemplo, sin stock).
+         */
+        RECHAZADO("Rechazado"),
+
         /**
          * Pedido creado pero aún no procesado.
          */
@@ -184,7 +207,59 @@ public class Pedido {
          * @return true si el estado es final
          */
         public boolean esFinal() {
-            return this == ENTREGADO || this == CANCELADO;
+            return this == ENTREGADO || this == CANCELADO || this == RECHAZADO;
+        }
+
+        /**
+         * Tabla de transiciones: para cada estado destino, los estados desde los que se
+         * puede llegar a él. Se calcula una vez a partir de {@link #admiteTransicionA}.
+         */
+        private static final Map<EstadoPedido, Set<EstadoPedido>> ORIGENES = new EnumMap<>(EstadoPedido.class);
+
+        static {
+            for (EstadoPedido destino : values()) {
+                Set<EstadoPedido> origenes = EnumSet.noneOf(EstadoPedido.class);
+                for (EstadoPedido origen : values()) {
+                    if (origen.admiteTransicionA(destino)) {
+                        origenes.add(origen);
+                    }
+                }
+                ORIGENES.put(destino, Collections.unmodifiableSet(origenes));
+            }
+        }
+
+        /**
+         * Reglas de transición. Los estados finales no cambian; {@code RECIBIDO} y
+         * {@code RECHAZADO} solo los asigna la recepción de pedidos y un pedido
+         * {@code RECIBIDO} todavía no está guardado; un pedido confirmado o enviado no
+         * vuelve a pendiente.
+         */
+        private boolean admiteTransicionA(EstadoPedido destino) {
+            if (esFinal() || this == RECIBIDO || destino == RECIBIDO || destino == RECHAZADO) {
+                return false;
+            }
+            return destino != PENDIENTE || this == PENDIENTE;
+        }
+
+        /**
+         * Verifica si un pedido en este estado puede pasar al estado indicado.
+         *
+         * @param destino estado destino
+         * @return true si la transición está permitida
+         */
+        public boolean puedeCambiarA(EstadoPedido destino) {
+            return destino != null && ORIGENES.get(destino).contains(this);
+        }
+
+        /**
+         * Estados desde los que se puede pasar al estado indicado, para usarlos como
+         * condición de una actualización.
+         *
+         * @param destino estado destino
+         * @return conjunto inmutable, vacío si ningún estado lleva a él
+         */
+        public static Set<EstadoPedido> origenesDe(EstadoPedido destino) {
+            return ORIGENES.get(destino);
         }
     }
 
@@ -221,9 +296,8 @@ public class Pedido {
             throw new IllegalStateException("No se puede cambiar el estado de un pedido finalizado");
         }
 
-        // Validar transiciones específicas
-        if (estado == EstadoPedido.ENVIADO && nuevoEstado == EstadoPedido.PENDIENTE) {
-            throw new IllegalStateException("No se puede regresar un pedido enviado a pendiente");
+        if (estado != null && !estado.puedeCambiarA(nuevoEstado)) {
+            throw new IllegalStateException("No se puede cambiar un pedido " + estado + " a " + nuevoEstado);
         }
 
         this.estado = nuevoEstado;
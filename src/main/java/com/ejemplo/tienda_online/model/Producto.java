@@ -2,7 +2,7 @@ package com.ejemplo.tienda_online.model;
 
 import lombok.*;
 import org.springframework.data.annotation.Id;
-import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.Instant;
@@ -13,6 +13,11 @@ import java.time.Instant;
  * <p>Esta clase encapsula toda la información relacionada con un producto,
  * incluyendo su información básica, precio, stock y metadatos de gestión.</p>
  *
+ * <p>Los índices se declaran en {@code PlanIndices}. Los compuestos dan soporte a la
+ * consulta filtrada del catálogo: categoría y rango de precio, rango de precio solo, y
+ * prefijo del nombre sin distinguir mayúsculas (con colación). El ID final permite
+ * ordenar y paginar sin ordenar en memoria.</p>
+ *
  * @author Sistema Tienda Online
  * @version 1.0
  */
@@ -29,10 +34,17 @@ public class Producto {
     @Id
     private String id;
 
+    /**
+     * Versión para el control de concurrencia optimista. La incrementan las ediciones del
+     * producto; los movimientos de stock de compras y cancelaciones no, porque se aplican
+     * con {@code $inc} condicionales que no pisan otros cambios.
+     */
+    @Version
+    private Long version;
+
     /**
      * Nombre del producto. Debe ser único en el sistema.
      */
-    @Indexed(unique = true)
     private String nombre;
 
     /**
@@ -52,6 +64,13 @@ public class Producto {
     @Builder.Default
     private Integer stock = 0;
 
+    /**
+     * Número de fracciones en que se reparte el stock (ventas flash), o null si el
+     * stock se descuenta directamente en este documento. Con el stock fraccionado,
+     * {@link #stock} es la suma de las fracciones y se actualiza periódicamente.
+     */
+    private Integer fraccionesStock;
+
     /**
      * Categoría del producto para organización y filtrado.
      */
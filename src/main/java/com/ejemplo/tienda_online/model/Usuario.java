@@ -2,7 +2,6 @@ package com.ejemplo.tienda_online.model;
 
 import lombok.*;
 import org.springframework.data.annotation.Id;
-import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.Instant;
@@ -25,10 +24,8 @@ public class Usuario {
     @Id
     private String id;
 
-    @Indexed(unique = true)
     private String username;
 
-    @Indexed(unique = true)
     private String email;
 
     private String password;
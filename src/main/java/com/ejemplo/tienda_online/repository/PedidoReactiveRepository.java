@@ -0,0 +1,24 @@
+package com.ejemplo.tienda_online.repository;
+
+import com.ejemplo.tienda_online.model.Pedido;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+/**
+ * Repositorio reactivo de pedidos para la API del perfil {@code reactivo}.
+ */
+@Repository
+@Profile("reactivo")
+public interface PedidoReactiveRepository extends ReactiveMongoRepository<Pedido, String> {
+    Flux<Pedido> findAllBy(Sort sort);
+
+    Flux<Pedido> findAllBy(Pageable pageable);
+    Flux<Pedido> findByIdGreaterThan(String id, Pageable pageable);
+
+    Flux<Pedido> findByUsuarioId(String usuarioId, Pageable pageable);
+    Flux<Pedido> findByUsuarioIdAndIdGreaterThan(String usuarioId, String id, Pageable pageable);
+}
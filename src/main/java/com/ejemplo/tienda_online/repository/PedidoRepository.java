@@ -1,11 +1,19 @@
 package com.ejemplo.tienda_online.repository;
 
 import com.ejemplo.tienda_online.model.Pedido;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 
 @Repository
 public interface PedidoRepository extends MongoRepository<Pedido, String> {
-    List<Pedido> findByUsuarioId(String usuarioId);
+    List<Pedido> findByUsuarioIdOrderByFechaDesc(String usuarioId);
+
+    Slice<Pedido> findAllBy(Pageable pageable);
+    Slice<Pedido> findByIdGreaterThan(String id, Pageable pageable);
+
+    Slice<Pedido> findByUsuarioId(String usuarioId, Pageable pageable);
+    Slice<Pedido> findByUsuarioIdAndIdGreaterThan(String usuarioId, String id, Pageable pageable);
 }
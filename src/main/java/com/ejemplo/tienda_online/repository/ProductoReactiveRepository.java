@@ -0,0 +1,33 @@
+package com.ejemplo.tienda_online.repository;
+
+import com.ejemplo.tienda_online.model.Producto;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+/**
+ * Repositorio reactivo de productos para la API del perfil {@code reactivo}.
+ * Las consultas equivalen a las del catálogo de {@link ProductoRepository}.
+ */
+@Repository
+@Profile("reactivo")
+public interface ProductoReactiveRepository extends ReactiveMongoRepository<Producto, String> {
+
+    /**
+     * Catálogo completo (solo productos con precio y stock definidos), en el orden indicado
+     */
+    Flux<Producto> findByPrecioNotNullAndStockNotNull(Sort sort);
+
+    /**
+     * Primera página del catálogo
+     */
+    Flux<Producto> findByPrecioNotNullAndStockNotNull(Pageable pageable);
+
+    /**
+     * Página del catálogo a continuación del último ID recibido (paginación por cursor)
+     */
+    Flux<Producto> findByIdGreaterThanAndPrecioNotNullAndStockNotNull(String id, Pageable pageable);
+}
@@ -1,6 +1,8 @@
 package com.ejemplo.tienda_online.repository;
 
 import com.ejemplo.tienda_online.model.Producto;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -49,9 +51,24 @@ public interface ProductoRepository extends MongoRepository<Producto, String> {
      */
     List<Producto> findAllByOrderByNombreAsc();
 
+    /**
+     * Obtiene los productos con precio y stock definidos
+     */
+    List<Producto> findByPrecioNotNullAndStockNotNull();
+
+    /**
+     * Primera página del catálogo (solo productos con precio y stock definidos)
+     */
+    Slice<Producto> findByPrecioNotNullAndStockNotNull(Pageable pageable);
+
+    /**
+     * Página del catálogo a continuación del último ID recibido (paginación por cursor)
+     */
+    Slice<Producto> findByIdGreaterThanAndPrecioNotNullAndStockNotNull(String id, Pageable pageable);
+
     /**
      * Cuenta productos con stock mayor a cero
      */
-    @Query("{ 'stock' : { $gt : 0 } }")
+    @Query(value = "{ 'stock' : { $gt : 0 } }", count = true)
     long countProductosEnStock();
 }
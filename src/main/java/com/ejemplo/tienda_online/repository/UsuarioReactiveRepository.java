@@ -0,0 +1,16 @@
+package com.ejemplo.tienda_online.repository;
+
+import com.ejemplo.tienda_online.model.Usuario;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+/**
+ * Repositorio reactivo de usuarios para la API del perfil {@code reactivo}.
+ */
+@Repository
+@Profile("reactivo")
+public interface UsuarioReactiveRepository extends ReactiveMongoRepository<Usuario, String> {
+    Mono<Usuario> findByUsername(String username);
+}
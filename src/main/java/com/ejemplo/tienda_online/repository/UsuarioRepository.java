@@ -1,6 +1,8 @@
 package com.ejemplo.tienda_online.repository;
 
 import com.ejemplo.tienda_online.model.Usuario;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -12,6 +14,9 @@ public interface UsuarioRepository extends MongoRepository<Usuario, String> {
     Optional<Usuario> findByUsername(String username);
     Optional<Usuario> findByEmail(String email);
 
+    Slice<Usuario> findAllBy(Pageable pageable);
+    Slice<Usuario> findByIdGreaterThan(String id, Pageable pageable);
+
     @Query("{ 'roles' : ?0 }")
     List<Usuario> findByRoles(String role);
 
@@ -0,0 +1,127 @@
+package com.ejemplo.tienda_online.security;
+
+import org.springframework.http.HttpMethod;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Clasifica las peticiones según necesiten o no autenticación, para que
+ * {@link JwtAuthFilter} no verifique el token ni cargue el usuario en las que no lo
+ * necesitan (recursos estáticos, login, catálogo público).
+ *
+ * <p>Las rutas son las mismas que {@code SecurityConfig} declara con {@code permitAll()}:
+ * ambos usan estas constantes. Los patrones se compilan una vez en un mapa de rutas
+ * exactas y una lista corta de prefijos ({@code /**}). Si una ruta protegida se
+ * clasificara por error como pública, la petición llegaría como anónima y la
+ * autorización la rechazaría: el error nunca da más permisos.</p>
+ *
+ * @author Sistema Tienda Online
+ * @version 1.0
+ */
+public final class ClasificadorPeticiones {
+
+    /**
+     * Páginas, hojas de estilo, scripts, imágenes y documentación de la API.
+     */
+    public static final String[] RECURSOS_ESTATICOS = {
+        "/", "/index.html", "/login.html", "/register.html", "/error.html", "/documentacion.html",
+        "/productos.html", "/pedidos.html", "/carrito.html",
+        "/css/**", "/js/**", "/img/**", "/favicon.ico", "/favicon.svg",
+        "/swagger-ui.html", "/swagger-ui/**", "/v3/api-docs/**"
+    };
+
+    /**
+     * Login, registro y configuración inicial del administrador.
+     */
+    public static final String[] RUTAS_AUTENTICACION = {
+        "/api/auth/**", "/auth/**", "/setup/admin"
+    };
+
+    /**
+     * Otras rutas públicas para cualquier método.
+     */
+    public static final String[] RUTAS_PUBLICAS = {
+        "/dev/diagnostico/**", "/error", "/actuator/health"
+    };
+
+    /**
+     * Rutas públicas solo para GET (consulta del catálogo).
+     */
+    public static final String[] RUTAS_PUBLICAS_GET = {
+        "/api/productos", "/api/productos/**"
+    };
+
+    /**
+     * Tipo de petición, también usado como etiqueta de las métricas.
+     */
+    public enum Tipo {
+        ESTATICO, AUTENTICACION, PUBLICO, PROTEGIDO;
+
+        /**
+         * Indica si la petición se atiende sin verificar el token.
+         */
+        public boolean omiteAutenticacion() {
+            return this != PROTEGIDO;
+        }
+
+        public String etiqueta() {
+            return name().toLowerCase();
+        }
+    }
+
+    private record Prefijo(String prefijo, Tipo tipo, boolean soloGet) {
+    }
+
+    private final Map<String, Tipo> exactas = new HashMap<>();
+    private final Map<String, Tipo> exactasGet = new HashMap<>();
+    private final List<Prefijo> prefijos = new ArrayList<>();
+
+    public ClasificadorPeticiones() {
+        compilar(RECURSOS_ESTATICOS, Tipo.ESTATICO, false);
+        compilar(RUTAS_AUTENTICACION, Tipo.AUTENTICACION, false);
+        compilar(RUTAS_PUBLICAS, Tipo.PUBLICO, false);
+        compilar(RUTAS_PUBLICAS_GET, Tipo.PUBLICO, true);
+    }
+
+    /**
+     * Clasifica una petición.
+     *
+     * @param metodo método HTTP
+     * @param ruta ruta dentro de la aplicación ({@code getServletPath()})
+     */
+    public Tipo clasificar(String metodo, String ruta) {
+        boolean get = HttpMethod.GET.matches(metodo);
+        Tipo tipo = exactas.get(ruta);
+        if (tipo == null && get) {
+            tipo = exactasGet.get(ruta);
+        }
+        if (tipo != null) {
+            return tipo;
+        }
+        for (Prefijo prefijo : prefijos) {
+            if ((get || !prefijo.soloGet()) && ruta.startsWith(prefijo.prefijo())) {
+                return prefijo.tipo();
+            }
+        }
+        return Tipo.PROTEGIDO;
+    }
+
+    /**
+     * Un patrón {@code /ruta/**} equivale a la ruta exacta más el prefijo {@code /ruta/}.
+     */
+    private void compilar(String[] patrones, Tipo tipo, boolean soloGet) {
+        Map<String, Tipo> destino = soloGet ? exactasGet : exactas;
+        for (String patron : patrones) {
+            if (patron.endsWith("/**")) {
+                String base = patron.substring(0, patron.length() - 3);
+                destino.putIfAbsent(base, tipo);
+                prefijos.add(new Prefijo(base + "/", tipo, soloGet));
+            } else {
+                destino.putIfAbsent(patron, tipo);
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.ejemplo.tienda_online.security;
+
+import com.ejemplo.tienda_online.exception.ServicioSaturadoException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Ejecutor dedicado y acotado para las operaciones que calculan hashes de contraseñas
+ * (login, registro).
+ *
+ * <p>bcrypt y argon2 son deliberadamente costosos en CPU. Ejecutarlos aquí, y no en los
+ * hilos de Tomcat, evita que una ráfaga de logins deje sin hilos al resto de la API.
+ * Cuando todos los hilos están ocupados y la cola está llena, la operación se rechaza
+ * con {@link ServicioSaturadoException} (429) en lugar de acumular espera.</p>
+ *
+ * <p>Métricas: {@code executor.*} con la etiqueta {@code name=seguridad.hashing}
+ * (tamaño de la cola, hilos activos, tareas completadas) y el contador
+ * {@code seguridad.hashing.rechazadas}.</p>
+ *
+ * @author Sistema Tienda Online
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class EjecutorContrasenas {
+
+    private static final Duration REINTENTAR_EN = Duration.ofSeconds(1);
+
+    private final ThreadPoolExecutor executor;
+    private final Counter rechazadas;
+
+    public EjecutorContrasenas(@Value("${seguridad.password.hilos:0}") int hilos,
+                               @Value("${seguridad.password.cola:64}") int cola,
+                               MeterRegistry meterRegistry) {
+        int numHilos = hilos > 0 ? hilos : Runtime.getRuntime().availableProcessors();
+        this.executor = new ThreadPoolExecutor(numHilos, numHilos, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(cola), hilosConNombre(), new ThreadPoolExecutor.AbortPolicy());
+        this.rechazadas = Counter.builder("seguridad.hashing.rechazadas")
+                .description("Operaciones de contraseña rechazadas por saturación")
+                .register(meterRegistry);
+        new ExecutorServiceMetrics(executor, "seguridad.hashing", List.of()).bindTo(meterRegistry);
+        log.info("Ejecutor de contraseñas con {} hilos y cola de {}", numHilos, cola);
+    }
+
+    /**
+     * Ejecuta la operación en el ejecutor de contraseñas.
+     *
+     * @throws ServicioSaturadoException si el ejecutor y su cola están llenos
+     */
+    public <T> CompletableFuture<T> ejecutar(Supplier<T> operacion) {
+        try {
+            return CompletableFuture.supplyAsync(operacion, executor);
+        } catch (RejectedExecutionException e) {
+            rechazadas.increment();
+            throw new ServicioSaturadoException(
+                    "Demasiadas solicitudes de autenticación, inténtalo de nuevo en unos segundos", REINTENTAR_EN);
+        }
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        executor.shutdown();
+    }
+
+    private static ThreadFactory hilosConNombre() {
+        AtomicInteger contador = new AtomicInteger();
+        return tarea -> {
+            Thread hilo = new Thread(tarea, "hash-contrasenas-" + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        };
+    }
+}
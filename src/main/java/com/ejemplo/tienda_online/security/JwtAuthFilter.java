@@ -1,56 +1,85 @@
 package com.ejemplo.tienda_online.security;
 
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
 
+/**
+ * Autentica las peticiones con el token JWT de la cabecera Authorization o de la cookie
+ * {@code jwt}.
+ *
+ * <p>Las peticiones que no necesitan autenticación ({@link ClasificadorPeticiones}) pasan
+ * sin leer el token: un navegador con la cookie no paga la verificación ni la carga del
+ * usuario por cada hoja de estilo, script o consulta del catálogo.</p>
+ *
+ * <p>Métrica: {@code seguridad.jwt.peticiones} con las etiquetas {@code tipo}
+ * (estatico, autenticacion, publico, protegido) y {@code autenticacion} (omitida,
+ * sin_token, verificada).</p>
+ */
 @Component
-@RequiredArgsConstructor
 public class JwtAuthFilter extends OncePerRequestFilter {
     private final JwtUtil jwtUtil;
     private final UserDetailsServiceImpl userDetailsService;
+    private final PrincipalCache principalCache;
+    private final ClasificadorPeticiones clasificador = new ClasificadorPeticiones();
+    private final Map<ClasificadorPeticiones.Tipo, Counter> omitidas = new EnumMap<>(ClasificadorPeticiones.Tipo.class);
+    private final Counter sinToken;
+    private final Counter verificadas;
+
+    /**
+     * Si está activo, los permisos se construyen a partir del claim "role" del token sin
+     * consultar la base de datos. Los borrados y cambios de rol no se aplican hasta que
+     * caduca el token.
+     */
+    @Value("${jwt.claims-de-confianza:false}")
+    private boolean claimsDeConfianza;
+
+    public JwtAuthFilter(JwtUtil jwtUtil, UserDetailsServiceImpl userDetailsService, PrincipalCache principalCache,
+                         MeterRegistry meterRegistry) {
+        this.jwtUtil = jwtUtil;
+        this.userDetailsService = userDetailsService;
+        this.principalCache = principalCache;
+        for (ClasificadorPeticiones.Tipo tipo : ClasificadorPeticiones.Tipo.values()) {
+            if (tipo.omiteAutenticacion()) {
+                omitidas.put(tipo, contador(meterRegistry, tipo, "omitida"));
+            }
+        }
+        this.sinToken = contador(meterRegistry, ClasificadorPeticiones.Tipo.PROTEGIDO, "sin_token");
+        this.verificadas = contador(meterRegistry, ClasificadorPeticiones.Tipo.PROTEGIDO, "verificada");
+    }
 
     @Override
     protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response, @NonNull FilterChain filterChain)
             throws ServletException, IOException {
-        String path = request.getServletPath();
-        if (path.startsWith("/auth")) {
+        ClasificadorPeticiones.Tipo tipo = clasificador.clasificar(request.getMethod(), request.getServletPath());
+        if (tipo.omiteAutenticacion()) {
+            omitidas.get(tipo).increment();
             filterChain.doFilter(request, response);
             return;
         }
-        String authHeader = request.getHeader("Authorization");
-        String token = null;
-        String username = null;
-        // 1. Intentar obtener el token del header Authorization
-        if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            token = authHeader.substring(7);
-            username = jwtUtil.getUsernameFromToken(token);
-        }
-        // 2. Si no hay token en header, buscar en cookie 'jwt'
+        String token = extraerToken(request);
         if (token == null) {
-            if (request.getCookies() != null) {
-                for (var cookie : request.getCookies()) {
-                    if ("jwt".equals(cookie.getName())) {
-                        token = cookie.getValue();
-                        username = jwtUtil.getUsernameFromToken(token);
-                        break;
-                    }
-                }
-            }
-        }
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-            if (jwtUtil.validateToken(token)) {
+            sinToken.increment();
+        } else if (SecurityContextHolder.getContext().getAuthentication() == null) {
+            verificadas.increment();
+            UserDetails userDetails = resolverUsuario(token);
+            if (userDetails != null && userDetails.isEnabled()) {
                 UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                         userDetails, null, userDetails.getAuthorities());
                 authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
@@ -59,4 +88,58 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         }
         filterChain.doFilter(request, response);
     }
+
+    private static Counter contador(MeterRegistry meterRegistry, ClasificadorPeticiones.Tipo tipo, String autenticacion) {
+        return Counter.builder("seguridad.jwt.peticiones")
+                .description("Peticiones que pasan por el filtro JWT")
+                .tag("tipo", tipo.etiqueta())
+                .tag("autenticacion", autenticacion)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Obtiene el token del header Authorization o, si no viene, de la cookie 'jwt'.
+     */
+    private String extraerToken(HttpServletRequest request) {
+        String authHeader = request.getHeader("Authorization");
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            return authHeader.substring(7);
+        }
+        if (request.getCookies() != null) {
+            for (var cookie : request.getCookies()) {
+                if ("jwt".equals(cookie.getName())) {
+                    return cookie.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Verifica el token una sola vez y resuelve el usuario, desde la caché o desde los claims.
+     *
+     * @return el usuario, o null si el token no es válido o el usuario ya no existe
+     */
+    private UserDetails resolverUsuario(String token) {
+        TokenVerificado verificado;
+        try {
+            verificado = jwtUtil.verificar(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+        String username = verificado.username();
+        if (username == null) {
+            return null;
+        }
+        if (claimsDeConfianza) {
+            return verificado.comoUsuario();
+        }
+
+        try {
+            return principalCache.obtener(username, verificado.emitidoEnSegundos(),
+                    () -> userDetailsService.loadUserByUsername(username));
+        } catch (UsernameNotFoundException e) {
+            return null;
+        }
+    }
 }
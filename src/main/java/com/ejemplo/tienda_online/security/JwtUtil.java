@@ -1,58 +1,118 @@
 package com.ejemplo.tienda_online.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Date;
 
+/**
+ * Emisión y verificación de los JWT.
+ *
+ * <p>La clave HMAC y el parser se construyen una sola vez. Los tokens verificados se
+ * guardan en una caché LRU acotada, de modo que las peticiones siguientes con el mismo
+ * token no vuelven a calcular la firma; la caducidad se comprueba en cada acierto.</p>
+ */
 @Component
 public class JwtUtil {
-    @Value("${jwt.secret:secret}")
-    private String jwtSecret;
-    @Value("${jwt.expiration:86400000}")
-    private long jwtExpirationMs;
+    private final Key signingKey;
+    private final JwtParser parser;
+    private final long jwtExpirationMs;
+    private final Clock clock;
+    private final Cache<String, TokenVerificado> verificados;
 
-    private Key getSigningKey() {
-        return Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+    @Autowired
+    public JwtUtil(@Value("${jwt.secret:secret}") String jwtSecret,
+                   @Value("${jwt.expiration:86400000}") long jwtExpirationMs,
+                   @Value("${jwt.cache-tokens.tamanio-maximo:10000}") long tamanioCache,
+                   MeterRegistry meterRegistry) {
+        this(jwtSecret, jwtExpirationMs, tamanioCache, meterRegistry, Clock.systemUTC());
+    }
+
+    JwtUtil(String jwtSecret, long jwtExpirationMs, long tamanioCache, MeterRegistry meterRegistry, Clock clock) {
+        this.signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+        this.jwtExpirationMs = jwtExpirationMs;
+        this.clock = clock;
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .setClock(() -> Date.from(clock.instant()))
+                .build();
+        this.verificados = Caffeine.newBuilder()
+                .maximumSize(tamanioCache)
+                .expireAfterWrite(Duration.ofMillis(jwtExpirationMs))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verificados, "seguridad.tokens");
     }
 
     public String generateToken(String username, String role) {
+        long ahora = clock.millis();
         return Jwts.builder()
                 .setSubject(username)
                 .claim("role", role)
-                .setIssuedAt(new Date())
-                .setExpiration(new Date(System.currentTimeMillis() + jwtExpirationMs))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .setIssuedAt(new Date(ahora))
+                .setExpiration(new Date(ahora + jwtExpirationMs))
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
+    /**
+     * Verifica la firma y la caducidad del token y devuelve sus claims.
+     *
+     * @throws JwtException si el token no es válido o ha caducado
+     * @throws IllegalArgumentException si el token está vacío
+     */
+    public TokenVerificado verificar(String token) {
+        if (token == null || token.isBlank()) {
+            throw new IllegalArgumentException("El token está vacío");
+        }
+        TokenVerificado verificado = verificados.getIfPresent(token);
+        if (verificado != null) {
+            if (!verificado.caducado(clock.instant())) {
+                return verificado;
+            }
+            // Se vuelve a parsear para lanzar la misma ExpiredJwtException que un token no cacheado
+            verificados.invalidate(token);
+        }
+
+        Claims claims = parser.parseClaimsJws(token).getBody();
+        verificado = new TokenVerificado(
+                claims.getSubject(),
+                claims.get("role", String.class),
+                instante(claims.getIssuedAt()),
+                instante(claims.getExpiration()));
+        verificados.put(token, verificado);
+        return verificado;
+    }
+
     public String getUsernameFromToken(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
+        return verificar(token).username();
     }
 
     public String getRoleFromToken(String token) {
-        return (String) Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .get("role");
+        return verificar(token).role();
     }
 
     public boolean validateToken(String token) {
         try {
-            Jwts.parserBuilder().setSigningKey(getSigningKey()).build().parseClaimsJws(token);
+            verificar(token);
             return true;
         } catch (JwtException | IllegalArgumentException e) {
             return false;
         }
     }
+
+    private static Instant instante(Date fecha) {
+        return fecha == null ? null : fecha.toInstant();
+    }
 }
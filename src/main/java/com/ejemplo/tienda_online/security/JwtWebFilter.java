@@ -0,0 +1,100 @@
+package com.ejemplo.tienda_online.security;
+
+import io.jsonwebtoken.JwtException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpCookie;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.lang.NonNull;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Optional;
+
+/**
+ * Equivalente reactivo de {@link JwtAuthFilter} para la API del perfil {@code reactivo}.
+ *
+ * <p>Usa la misma verificación ({@link JwtUtil#verificar}) y la misma caché de usuarios.
+ * La verificación es solo CPU y, con la caché de tokens, de microsegundos, así que se hace
+ * en el propio hilo del event loop; la carga del usuario desde MongoDB es bloqueante y,
+ * cuando no está en la caché, se hace en {@link Schedulers#boundedElastic()}.</p>
+ *
+ * <p>No es un bean: WebFlux añadiría cualquier {@link WebFilter} del contexto a todas las
+ * peticiones, y este debe ejecutarse solo dentro de la cadena de seguridad.</p>
+ */
+@RequiredArgsConstructor
+public class JwtWebFilter implements WebFilter {
+    private final JwtUtil jwtUtil;
+    private final UserDetailsServiceImpl userDetailsService;
+    private final PrincipalCache principalCache;
+    private final boolean claimsDeConfianza;
+
+    @Override
+    @NonNull
+    public Mono<Void> filter(@NonNull ServerWebExchange exchange, @NonNull WebFilterChain chain) {
+        String token = extraerToken(exchange.getRequest());
+        if (token == null) {
+            return chain.filter(exchange);
+        }
+        // Optional para distinguir "sin usuario" del vacío de chain.filter, que no debe repetirse
+        return resolverUsuario(token)
+                .filter(UserDetails::isEnabled)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(usuario -> usuario
+                        .map(u -> chain.filter(exchange).contextWrite(ReactiveSecurityContextHolder.withAuthentication(
+                                new UsernamePasswordAuthenticationToken(u, null, u.getAuthorities()))))
+                        .orElseGet(() -> chain.filter(exchange)));
+    }
+
+    /**
+     * Obtiene el token del header Authorization o, si no viene, de la cookie 'jwt'.
+     */
+    private static String extraerToken(ServerHttpRequest request) {
+        String authHeader = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            return authHeader.substring(7);
+        }
+        HttpCookie cookie = request.getCookies().getFirst("jwt");
+        return cookie != null ? cookie.getValue() : null;
+    }
+
+    /**
+     * Verifica el token y resuelve el usuario, desde la caché, desde los claims o, en
+     * último caso, desde la base de datos fuera del event loop.
+     *
+     * @return el usuario, o vacío si el token no es válido o el usuario ya no existe
+     */
+    private Mono<UserDetails> resolverUsuario(String token) {
+        TokenVerificado verificado;
+        try {
+            verificado = jwtUtil.verificar(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            return Mono.empty();
+        }
+        String username = verificado.username();
+        if (username == null) {
+            return Mono.empty();
+        }
+        if (claimsDeConfianza) {
+            return Mono.just(verificado.comoUsuario());
+        }
+
+        long emitidoEn = verificado.emitidoEnSegundos();
+        UserDetails enCache = principalCache.buscar(username, emitidoEn);
+        if (enCache != null) {
+            return Mono.just(enCache);
+        }
+        return Mono.fromCallable(() -> principalCache.obtener(username, emitidoEn,
+                        () -> userDetailsService.loadUserByUsername(username)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(UsernameNotFoundException.class, e -> Mono.empty());
+    }
+}
@@ -0,0 +1,100 @@
+package com.ejemplo.tienda_online.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caché de los usuarios autenticados por {@link JwtAuthFilter} y {@link JwtWebFilter}.
+ *
+ * <p>La clave es el nombre de usuario junto con la fecha de emisión ({@code iat}) del
+ * token, de modo que un token nuevo siempre vuelve a cargar el usuario. Las entradas
+ * caducan en pocos segundos y se invalidan al borrar usuarios o cambiar sus roles.</p>
+ *
+ * @author Sistema Tienda Online
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class PrincipalCache {
+
+    private record Clave(String username, long emitidoEn) {
+    }
+
+    private final Cache<Clave, UserDetails> principales;
+
+    // Avanza con cada invalidación; una carga que coincide con una invalidación no se guarda
+    private final AtomicLong generacion = new AtomicLong();
+
+    public PrincipalCache(@Value("${jwt.cache-usuarios.tamanio-maximo:10000}") long tamanioMaximo,
+                          @Value("${jwt.cache-usuarios.ttl:60s}") Duration ttl,
+                          MeterRegistry meterRegistry) {
+        this.principales = Caffeine.newBuilder()
+                .maximumSize(tamanioMaximo)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, principales, "seguridad.principales");
+    }
+
+    /**
+     * Devuelve el usuario de la caché o lo carga si no está.
+     *
+     * @param username nombre de usuario del token
+     * @param emitidoEn fecha de emisión del token en segundos
+     * @param cargar carga del usuario desde la base de datos
+     */
+    public UserDetails obtener(String username, long emitidoEn, Supplier<UserDetails> cargar) {
+        Clave clave = new Clave(username, emitidoEn);
+        UserDetails usuario = principales.getIfPresent(clave);
+        if (usuario != null) {
+            return usuario;
+        }
+
+        long generacionInicial = generacion.get();
+        UserDetails cargado = cargar.get();
+        principales.asMap().compute(clave,
+                (k, actual) -> generacion.get() == generacionInicial ? cargado : actual);
+        // Una invalidación que avanza la generación justo tras la comprobación puede recorrer
+        // la caché antes de que la entrada esté visible: se vuelve a comprobar y se retira
+        if (generacion.get() != generacionInicial) {
+            principales.asMap().remove(clave, cargado);
+        }
+        return cargado;
+    }
+
+    /**
+     * Devuelve el usuario si ya está en la caché, sin cargarlo.
+     *
+     * @return el usuario, o null si no está
+     */
+    public UserDetails buscar(String username, long emitidoEn) {
+        return principales.getIfPresent(new Clave(username, emitidoEn));
+    }
+
+    /**
+     * Invalida todas las entradas de un usuario, sea cual sea el token con el que se cargó.
+     */
+    public void invalidarUsuario(String username) {
+        generacion.incrementAndGet();
+        principales.asMap().keySet().removeIf(clave -> clave.username().equals(username));
+        log.debug("Usuario {} eliminado de la caché de autenticación", username);
+    }
+
+    /**
+     * Vacía la caché por completo.
+     */
+    public void invalidarTodo() {
+        generacion.incrementAndGet();
+        principales.invalidateAll();
+    }
+}
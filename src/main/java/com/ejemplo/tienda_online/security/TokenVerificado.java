@@ -0,0 +1,44 @@
+package com.ejemplo.tienda_online.security;
+
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.time.Instant;
+
+/**
+ * Claims de un JWT cuya firma ya se ha verificado. Es inmutable, por lo que puede
+ * guardarse en caché y compartirse entre hilos.
+ *
+ * @param username sujeto del token
+ * @param role claim "role", o null si el token no lo lleva
+ * @param emitidoEn fecha de emisión ({@code iat}), o null si el token no la lleva
+ * @param expiraEn fecha de caducidad ({@code exp}), o null si el token no caduca
+ */
+public record TokenVerificado(String username, String role, Instant emitidoEn, Instant expiraEn) {
+
+    /**
+     * Indica si el token ha caducado en el instante indicado, con el mismo criterio que jjwt.
+     */
+    public boolean caducado(Instant ahora) {
+        return expiraEn != null && ahora.isAfter(expiraEn);
+    }
+
+    /**
+     * Fecha de emisión en segundos, o 0 si el token no la lleva. Forma parte de la clave
+     * de {@link PrincipalCache}.
+     */
+    public long emitidoEnSegundos() {
+        return emitidoEn == null ? 0 : emitidoEn.getEpochSecond();
+    }
+
+    /**
+     * Usuario construido solo a partir de los claims, sin consultar la base de datos
+     * (modo {@code jwt.claims-de-confianza}).
+     */
+    public UserDetails comoUsuario() {
+        return User.withUsername(username)
+                .password("")
+                .roles(role == null ? new String[0] : new String[] {role})
+                .build();
+    }
+}
@@ -3,15 +3,17 @@ package com.ejemplo.tienda_online.security;
 import com.ejemplo.tienda_online.model.Usuario;
 import com.ejemplo.tienda_online.repository.UsuarioRepository;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.userdetails.User;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
     private final UsuarioRepository usuarioRepository;
 
     @Override
@@ -25,31 +27,29 @@ public class UserDetailsServiceImpl implements UserDetailsService {
                 throw new UsernameNotFoundException("La contraseña del usuario no está configurada para: " + username);
             }
 
-            // Verificar que el usuario tiene roles
+            // Los usuarios sin roles reciben un rol predeterminado para evitar errores
             if (usuario.getRoles() == null || usuario.getRoles().isEmpty()) {
                 System.out.println("ADVERTENCIA: Usuario sin roles: " + username);
-                // Asignar un rol predeterminado para evitar errores
-                return User.builder()
-                        .username(usuario.getUsername())
-                        .password(usuario.getPassword())
-                        .roles("USER")
-                        .build();
             }
 
-            String[] roles = usuario.getRoles().stream()
-                    .map(Enum::name)
-                    .toArray(String[]::new);
-
-            System.out.println("Usuario cargado: " + username + " con roles: " + String.join(", ", roles));
-
-            return User.builder()
-                    .username(usuario.getUsername())
-                    .password(usuario.getPassword())
-                    .roles(roles)
-                    .build();
+            UsuarioAutenticado autenticado = UsuarioAutenticado.de(usuario);
+            System.out.println("Usuario cargado: " + username + " con roles: " + autenticado.getAuthorities());
+            return autenticado;
         } catch (Exception e) {
             System.out.println("Error al cargar usuario: " + e.getMessage());
             throw new UsernameNotFoundException("Error al cargar usuario: " + username, e);
         }
     }
+
+    /**
+     * Guarda el hash recalculado con el algoritmo y coste actuales tras un login correcto.
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        Usuario usuario = usuarioRepository.findByUsername(user.getUsername())
+                .orElseThrow(() -> new UsernameNotFoundException("Usuario no encontrado: " + user.getUsername()));
+        usuario.setPassword(newPassword);
+        log.info("Hash de contraseña actualizado para: {}", user.getUsername());
+        return UsuarioAutenticado.de(usuarioRepository.save(usuario));
+    }
 }
@@ -0,0 +1,72 @@
+package com.ejemplo.tienda_online.security;
+
+import com.ejemplo.tienda_online.model.Usuario;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.security.core.CredentialsContainer;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Usuario autenticado que guarda en el contexto de seguridad los datos del {@link Usuario}
+ * que necesitan los servicios (ID, email y roles), para no volver a consultarlo en cada
+ * operación.
+ *
+ * @author Sistema Tienda Online
+ * @version 1.0
+ */
+@Getter
+@ToString(exclude = "password")
+@EqualsAndHashCode(of = "username")
+public class UsuarioAutenticado implements UserDetails, CredentialsContainer {
+
+    // Rol que se asigna a los usuarios sin roles para que puedan autenticarse
+    private static final String ROL_PREDETERMINADO = "USER";
+
+    private final String id;
+    private final String username;
+    private final String email;
+    private String password;
+    private final List<Usuario.RolUsuario> roles;
+    private final boolean activo;
+    private final List<GrantedAuthority> authorities;
+
+    private UsuarioAutenticado(Usuario usuario) {
+        this.id = usuario.getId();
+        this.username = usuario.getUsername();
+        this.email = usuario.getEmail();
+        this.password = usuario.getPassword();
+        this.roles = usuario.getRoles() == null ? List.of() : List.copyOf(usuario.getRoles());
+        this.activo = usuario.isActivo();
+        this.authorities = roles.isEmpty()
+                ? List.of(new SimpleGrantedAuthority("ROLE_" + ROL_PREDETERMINADO))
+                : roles.stream().<GrantedAuthority>map(rol -> new SimpleGrantedAuthority("ROLE_" + rol.name())).toList();
+    }
+
+    /**
+     * Crea el usuario autenticado a partir del documento de la base de datos.
+     */
+    public static UsuarioAutenticado de(Usuario usuario) {
+        return new UsuarioAutenticado(usuario);
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return activo;
+    }
+
+    @Override
+    public void eraseCredentials() {
+        this.password = null;
+    }
+}
@@ -9,11 +9,10 @@ import com.ejemplo.tienda_online.repository.UsuarioRepository;
 import com.ejemplo.tienda_online.security.JwtUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
@@ -25,6 +24,7 @@ import java.util.Collections;
  * Proporciona funcionalidades seguras para la gestión de autenticación
  */
 @Service
+@Profile("!reactivo")
 @RequiredArgsConstructor
 @Slf4j
 public class AuthService {
@@ -136,13 +136,14 @@ public class AuthService {
 
     private void authenticateUser(LoginRequest request) {
         try {
-            Authentication authentication = authenticationManager.authenticate(
+            // La API es sin estado: el token JWT sustituye al contexto de seguridad, que
+            // además no debe quedar en los hilos reutilizados del ejecutor de contraseñas
+            authenticationManager.authenticate(
                     new UsernamePasswordAuthenticationToken(
                             request.getUsername().trim().toLowerCase(),
                             request.getPassword()
                     )
             );
-            SecurityContextHolder.getContext().setAuthentication(authentication);
         } catch (BadCredentialsException e) {
             log.warn("Intento de login fallido para usuario: {}", request.getUsername());
             throw new BadCredentialsException("Credenciales inválidas");
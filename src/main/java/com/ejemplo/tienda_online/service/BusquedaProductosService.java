@@ -0,0 +1,163 @@
+package com.ejemplo.tienda_online.service;
+
+import com.ejemplo.tienda_online.exception.BusinessException;
+import com.ejemplo.tienda_online.model.Producto;
+import com.ejemplo.tienda_online.repository.ProductoRepository;
+import com.ejemplo.tienda_online.util.IndiceInvertido;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Búsqueda de texto completo sobre el catálogo de productos.
+ *
+ * <p>Mantiene un {@link IndiceInvertido} en memoria sobre el nombre, la categoría y la
+ * descripción. Las operaciones de {@link ProductoService} lo actualizan al momento; además
+ * se reconstruye al arrancar y periódicamente, lo que descarta las entradas obsoletas y
+ * recoge los cambios hechos directamente en la base de datos. Las búsquedas solo van a
+ * MongoDB para cargar los productos de la página de resultados.</p>
+ *
+ * @author Sistema Tienda Online
+ * @version 1.0
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BusquedaProductosService {
+
+    public static final int LIMITE_POR_DEFECTO = 20;
+    public static final int LIMITE_MAXIMO = 100;
+
+    private final MongoTemplate mongoTemplate;
+    private final ProductoRepository productoRepository;
+
+    // Un ReentrantLock y no synchronized: la reconstrucción lee de MongoDB con el cerrojo
+    // tomado y un monitor fijaría el hilo virtual a su hilo portador durante toda la lectura
+    private final ReentrantLock reconstruccion = new ReentrantLock();
+    private volatile IndiceInvertido indice = new IndiceInvertido();
+
+    // Cambios recibidos mientras se reconstruye el índice, para aplicarlos también al nuevo
+    private List<Consumer<IndiceInvertido>> cambiosPendientes;
+
+    /**
+     * Busca productos por relevancia en nombre, categoría y descripción.
+     * No distingue mayúsculas ni tildes, y el último término se completa como prefijo.
+     *
+     * @param texto texto de búsqueda
+     * @param limite número máximo de resultados (opcional)
+     * @return productos ordenados de mayor a menor relevancia
+     */
+    public List<Producto> buscar(String texto, Integer limite) {
+        List<IndiceInvertido.Resultado> resultados = indice.buscar(texto, normalizarLimite(limite));
+        if (resultados.isEmpty()) {
+            return List.of();
+        }
+
+        Map<String, Producto> porId = new HashMap<>();
+        productoRepository.findAllById(resultados.stream().map(IndiceInvertido.Resultado::id).toList())
+                .forEach(p -> porId.put(p.getId(), p));
+        return resultados.stream()
+                .map(r -> porId.get(r.id()))
+                .filter(Objects::nonNull)
+                .filter(p -> p.getPrecio() != null && p.getStock() != null)
+                .toList();
+    }
+
+    /**
+     * Sugerencias de nombres de producto para autocompletar, sin consultar la base de datos.
+     *
+     * @param texto texto escrito hasta el momento
+     * @param limite número máximo de sugerencias (opcional)
+     */
+    public List<String> sugerir(String texto, Integer limite) {
+        return indice.buscar(texto, normalizarLimite(limite)).stream()
+                .map(IndiceInvertido.Resultado::nombre)
+                .toList();
+    }
+
+    /**
+     * Añade o actualiza un producto en el índice.
+     */
+    public void indexar(Producto producto) {
+        aplicar(i -> i.indexar(producto.getId(), producto.getNombre(), producto.getDescripcion(), producto.getCategoria()));
+    }
+
+    /**
+     * Elimina un producto del índice.
+     */
+    public void eliminar(String id) {
+        aplicar(i -> i.eliminar(id));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void alArrancar() {
+        reconstruir();
+    }
+
+    /**
+     * Reconstruye el índice completo a partir de la base de datos y lo sustituye de forma atómica.
+     */
+    @Scheduled(initialDelayString = "${busqueda.productos.reconstruccion:PT15M}",
+               fixedDelayString = "${busqueda.productos.reconstruccion:PT15M}")
+    public void reconstruir() {
+        reconstruccion.lock();
+        try {
+            long inicio = System.currentTimeMillis();
+            synchronized (this) {
+                cambiosPendientes = new ArrayList<>();
+            }
+            try {
+                IndiceInvertido nuevo = new IndiceInvertido();
+                Query consulta = new Query();
+                consulta.fields().include("nombre", "descripcion", "categoria");
+                try (Stream<Producto> productos = mongoTemplate.stream(consulta, Producto.class)) {
+                    productos.forEach(p -> nuevo.indexar(p.getId(), p.getNombre(), p.getDescripcion(), p.getCategoria()));
+                }
+
+                synchronized (this) {
+                    cambiosPendientes.forEach(cambio -> cambio.accept(nuevo));
+                    indice = nuevo;
+                }
+                log.info("Índice de búsqueda reconstruido: {} productos en {} ms",
+                         nuevo.tamanio(), System.currentTimeMillis() - inicio);
+            } finally {
+                synchronized (this) {
+                    cambiosPendientes = null;
+                }
+            }
+        } finally {
+            reconstruccion.unlock();
+        }
+    }
+
+    private synchronized void aplicar(Consumer<IndiceInvertido> cambio) {
+        cambio.accept(indice);
+        if (cambiosPendientes != null) {
+            cambiosPendientes.add(cambio);
+        }
+    }
+
+    private int normalizarLimite(Integer limite) {
+        if (limite == null) {
+            return LIMITE_POR_DEFECTO;
+        }
+        if (limite < 1) {
+            throw new BusinessException("El límite de resultados debe ser mayor a cero");
+        }
+        return Math.min(limite, LIMITE_MAXIMO);
+    }
+}
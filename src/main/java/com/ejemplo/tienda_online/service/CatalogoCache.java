@@ -0,0 +1,248 @@
+package com.ejemplo.tienda_online.service;
+
+import com.ejemplo.tienda_online.model.Producto;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caché en memoria del catálogo público de productos.
+ *
+ * <p>Guarda las páginas ya serializadas ({@link CatalogoSnapshot}) y los productos
+ * individuales, con tamaño máximo y caducidad. Cada página se indexa por los
+ * productos que contiene, de modo que una modificación solo invalida las páginas
+ * afectadas: con la paginación por cursor el resto de páginas no cambia.</p>
+ *
+ * <p>Cada clave se carga una sola vez aunque lleguen varias peticiones a la vez: las
+ * demás esperan a esa carga. La generación avanza con cada invalidación y cada producto
+ * invalidado guarda la generación en que lo fue; una carga no se guarda si alguno de sus
+ * productos (o, para las páginas finales, el catálogo) se invalidó después de empezarla.
+ * Una modificación de un producto no impide guardar las páginas que no lo contienen.</p>
+ *
+ * <p>Dentro de una transacción la invalidación se repite al terminarla: hasta el commit
+ * otra petición puede volver a cargar y guardar la versión anterior.</p>
+ *
+ * @author Sistema Tienda Online
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class CatalogoCache {
+
+    private final Cache<String, CatalogoSnapshot> paginas;
+    private final Cache<String, Producto> productos;
+
+    // Páginas en caché que contienen cada producto
+    private final Map<String, Set<String>> paginasPorProducto = new ConcurrentHashMap<>();
+
+    // Páginas en caché sin página siguiente: es donde aparecen los productos nuevos
+    private final Set<String> paginasFinales = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong generacion = new AtomicLong();
+
+    // Generación de la última invalidación de cada producto; basta con recordarla mientras
+    // pueda haber una carga en curso, y las cargas que duran más que la caducidad no se guardan
+    private final Cache<String, Long> invalidaciones;
+    private volatile long finalesInvalidadasEn = -1;
+    private volatile long todoInvalidadoEn = -1;
+    private final long ttlNanos;
+
+    public CatalogoCache(@Value("${catalogo.cache.tamanio-maximo:1000}") long tamanioMaximo,
+                         @Value("${catalogo.cache.ttl:60s}") Duration ttl,
+                         MeterRegistry meterRegistry) {
+        this.ttlNanos = ttl.toNanos();
+        this.invalidaciones = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .build();
+        this.paginas = Caffeine.newBuilder()
+                .maximumSize(tamanioMaximo)
+                .expireAfterWrite(ttl)
+                .executor(Runnable::run)
+                .removalListener(this::alEliminarPagina)
+                .recordStats()
+                .build();
+        this.productos = Caffeine.newBuilder()
+                .maximumSize(tamanioMaximo)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, paginas, "catalogo.paginas");
+        CaffeineCacheMetrics.monitor(meterRegistry, productos, "catalogo.productos");
+    }
+
+    /**
+     * Devuelve una página del catálogo desde la caché o la carga si no está.
+     *
+     * @param ultimoId ID tras el que empieza la página, o null para la primera
+     * @param limite tamaño de la página
+     * @param cargar consulta a la base de datos en caso de fallo
+     */
+    public CatalogoSnapshot getPagina(String ultimoId, int limite, Supplier<CatalogoSnapshot> cargar) {
+        String clave = (ultimoId == null ? "" : ultimoId) + ":" + limite;
+        CatalogoSnapshot[] obsoleta = new CatalogoSnapshot[1];
+        CatalogoSnapshot pagina = paginas.get(clave, k -> {
+            long generacionInicial = generacion.get();
+            long inicio = System.nanoTime();
+            CatalogoSnapshot cargada = cargar.get();
+            // Se indexa antes de comprobar: una invalidación posterior ya encuentra la clave
+            indexar(k, cargada);
+            if (obsoleta(cargada, generacionInicial, inicio)) {
+                desindexar(k, cargada);
+                obsoleta[0] = cargada;
+                return null;
+            }
+            return cargada;
+        });
+        return pagina != null ? pagina : obsoleta[0];
+    }
+
+    /**
+     * Devuelve un producto desde la caché o lo carga si no está.
+     *
+     * @param cargar consulta a la base de datos; puede devolver null si no existe
+     * @return el producto, o null si no existe
+     */
+    public Producto getProducto(String id, Supplier<Producto> cargar) {
+        Producto[] obsoleto = new Producto[1];
+        Producto producto = productos.get(id, k -> {
+            long generacionInicial = generacion.get();
+            long inicio = System.nanoTime();
+            Producto cargado = cargar.get();
+            if (cargado != null && invalidadoDesde(k, generacionInicial, inicio)) {
+                obsoleto[0] = cargado;
+                return null;
+            }
+            return cargado;
+        });
+        return producto != null ? producto : obsoleto[0];
+    }
+
+    /**
+     * Invalida un producto y las páginas que lo contienen.
+     */
+    public void invalidarProducto(String id) {
+        invalidar(id);
+        alTerminarTransaccion(() -> invalidar(id));
+    }
+
+    private void invalidar(String id) {
+        invalidaciones.put(id, generacion.incrementAndGet());
+        productos.invalidate(id);
+        Set<String> claves = paginasPorProducto.remove(id);
+        if (claves != null) {
+            paginas.invalidateAll(claves);
+        }
+    }
+
+    /**
+     * Invalida varios productos y las páginas que los contienen.
+     */
+    public void invalidarProductos(Collection<String> ids) {
+        ids.forEach(this::invalidarProducto);
+    }
+
+    /**
+     * Invalida las páginas finales del catálogo, donde aparecerá un producto nuevo.
+     */
+    public void productoCreado() {
+        invalidarPaginasFinales();
+        alTerminarTransaccion(this::invalidarPaginasFinales);
+    }
+
+    private void invalidarPaginasFinales() {
+        finalesInvalidadasEn = generacion.incrementAndGet();
+        paginas.invalidateAll(Set.copyOf(paginasFinales));
+    }
+
+    /**
+     * Vacía por completo la caché, para cambios que no se pueden localizar por producto.
+     */
+    public void invalidarTodo() {
+        todoInvalidadoEn = generacion.incrementAndGet();
+        productos.invalidateAll();
+        paginas.invalidateAll();
+        paginasPorProducto.clear();
+        paginasFinales.clear();
+    }
+
+    /**
+     * Generación actual de la caché; avanza con cualquier modificación del catálogo.
+     */
+    public long getGeneracion() {
+        return generacion.get();
+    }
+
+    /**
+     * Repite la invalidación cuando termine la transacción en curso, si la hay.
+     */
+    private static void alTerminarTransaccion(Runnable invalidacion) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int estado) {
+                invalidacion.run();
+            }
+        });
+    }
+
+    /**
+     * Indica si una página cargada desde la generación indicada ya no se puede guardar.
+     */
+    private boolean obsoleta(CatalogoSnapshot snapshot, long generacionInicial, long inicio) {
+        if (snapshot.getPagina().getSiguienteCursor() == null && finalesInvalidadasEn > generacionInicial) {
+            return true;
+        }
+        return snapshot.getPagina().getContenido().stream()
+                .anyMatch(p -> invalidadoDesde(p.getId(), generacionInicial, inicio));
+    }
+
+    private boolean invalidadoDesde(String id, long generacionInicial, long inicio) {
+        if (todoInvalidadoEn > generacionInicial || System.nanoTime() - inicio >= ttlNanos) {
+            return true;
+        }
+        Long invalidadoEn = invalidaciones.getIfPresent(id);
+        return invalidadoEn != null && invalidadoEn > generacionInicial;
+    }
+
+    private void indexar(String clave, CatalogoSnapshot snapshot) {
+        snapshot.getPagina().getContenido().forEach(p ->
+                paginasPorProducto.computeIfAbsent(p.getId(), id -> ConcurrentHashMap.newKeySet()).add(clave));
+        if (snapshot.getPagina().getSiguienteCursor() == null) {
+            paginasFinales.add(clave);
+        }
+    }
+
+    private void alEliminarPagina(String clave, CatalogoSnapshot snapshot, RemovalCause causa) {
+        if (clave == null || snapshot == null || paginas.asMap().containsKey(clave)) {
+            return;
+        }
+        desindexar(clave, snapshot);
+        log.trace("Página {} eliminada de la caché del catálogo ({})", clave, causa);
+    }
+
+    private void desindexar(String clave, CatalogoSnapshot snapshot) {
+        paginasFinales.remove(clave);
+        snapshot.getPagina().getContenido().forEach(p -> paginasPorProducto.computeIfPresent(p.getId(), (id, claves) -> {
+            claves.remove(clave);
+            return claves.isEmpty() ? null : claves;
+        }));
+    }
+}
@@ -0,0 +1,166 @@
+package com.ejemplo.tienda_online.service;
+
+import com.ejemplo.tienda_online.dto.PaginaResponse;
+import com.ejemplo.tienda_online.dto.ProductoResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Página del catálogo ya serializada a JSON y comprimida con gzip.
+ *
+ * <p>Se construye una sola vez al cargar la página desde la base de datos; a partir
+ * de ahí cada petición se sirve copiando los bytes, o con un 304 si el cliente ya
+ * tiene la misma versión. El ETag es fuerte y se calcula a partir del contenido,
+ * por lo que una página que no cambia conserva su ETag aunque se regenere. Las dos
+ * representaciones tienen bytes distintos, así que la comprimida lleva su propio ETag
+ * (con el sufijo {@code -gz}); {@code If-None-Match} acepta cualquiera de los dos.</p>
+ *
+ * @author Sistema Tienda Online
+ * @version 1.0
+ */
+public final class CatalogoSnapshot {
+
+    private final PaginaResponse<ProductoResponse> pagina;
+    private final long version;
+    private final String etag;
+    private final String etagGzip;
+    private final byte[] json;
+    private final byte[] gzip;
+
+    private CatalogoSnapshot(PaginaResponse<ProductoResponse> pagina, long version, byte[] json) {
+        this.pagina = pagina;
+        this.version = version;
+        this.json = json;
+        this.gzip = comprimir(json);
+        String resumen = resumen(json);
+        this.etag = '"' + resumen + '"';
+        this.etagGzip = '"' + resumen + "-gz\"";
+    }
+
+    /**
+     * Serializa el contenido de la página con el {@link ObjectMapper} de la aplicación.
+     *
+     * @param pagina página del catálogo
+     * @param version generación del catálogo con la que se construyó
+     */
+    public static CatalogoSnapshot de(PaginaResponse<ProductoResponse> pagina, long version,
+                                      ObjectMapper objectMapper) {
+        try {
+            return new CatalogoSnapshot(pagina, version, objectMapper.writeValueAsBytes(pagina.getContenido()));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar la página del catálogo", e);
+        }
+    }
+
+    public PaginaResponse<ProductoResponse> getPagina() {
+        return pagina;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * ETag de la representación que se envía: la comprimida o la JSON sin comprimir.
+     */
+    public String getEtag(boolean comprimida) {
+        return comprimida ? etagGzip : etag;
+    }
+
+    public byte[] getJson() {
+        return json;
+    }
+
+    public byte[] getGzip() {
+        return gzip;
+    }
+
+    /**
+     * Indica si la cabecera {@code If-None-Match} recibida incluye el ETag de esta página.
+     */
+    public boolean coincideCon(String ifNoneMatch) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String valor : ifNoneMatch.split(",")) {
+            String candidato = valor.trim();
+            if (candidato.startsWith("W/")) {
+                candidato = candidato.substring(2);
+            }
+            if (candidato.equals("*") || candidato.equals(etag) || candidato.equals(etagGzip)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Indica si la cabecera {@code Accept-Encoding} admite gzip, teniendo en cuenta los
+     * pesos: {@code gzip;q=0} lo rechaza, y {@code *} solo cuenta si gzip no aparece.
+     */
+    public static boolean aceptaGzip(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) {
+            return false;
+        }
+        Double gzip = null;
+        Double comodin = null;
+        for (String valor : acceptEncoding.split(",")) {
+            String[] partes = valor.split(";");
+            String codificacion = partes[0].trim().toLowerCase(Locale.ROOT);
+            double peso = peso(partes);
+            if (codificacion.equals("gzip") || codificacion.equals("x-gzip")) {
+                gzip = gzip == null ? peso : Math.max(gzip, peso);
+            } else if (codificacion.equals("*")) {
+                comodin = peso;
+            }
+        }
+        Double elegido = gzip != null ? gzip : comodin;
+        return elegido != null && elegido > 0;
+    }
+
+    private static double peso(String[] partes) {
+        for (int i = 1; i < partes.length; i++) {
+            String parametro = partes[i].trim();
+            if (parametro.length() > 2 && parametro.substring(0, 2).equalsIgnoreCase("q=")) {
+                try {
+                    return Double.parseDouble(parametro.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    private static byte[] comprimir(byte[] datos) {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream(Math.max(64, datos.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(salida)) {
+            gzip.write(datos);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return salida.toByteArray();
+    }
+
+    private static String resumen(byte[] datos) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(datos);
+            return HexFormat.of().formatHex(hash, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.ejemplo.tienda_online.service;
+
+import com.ejemplo.tienda_online.dto.PedidoResponse;
+import com.ejemplo.tienda_online.exception.BusinessException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Servicio de exportación del histórico completo de pedidos.
+ *
+ * <p>Los pedidos se leen de un cursor de MongoDB y se escriben en la salida a medida
+ * que llegan, con un búfer de tamaño fijo. Como la escritura en el flujo del servlet
+ * es bloqueante, un cliente lento frena la lectura del cursor y el consumo de memoria
+ * se mantiene constante sea cual sea el tamaño de la colección.</p>
+ *
+ * @author Sistema Tienda Online
+ * @version 1.0
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExportacionPedidosService {
+
+    private static final int TAMANIO_BUFER = 64 * 1024;
+    private static final int PEDIDOS_POR_VOLCADO = 500;
+
+    private static final String CABECERA_CSV = "id,usuarioId,nombreUsuario,emailUsuario,fecha,estado,"
+            + "items,total,direccionEnvio,numeroSeguimiento,fechaEntrega,motivoCancelacion";
+
+    private final PedidoService pedidoService;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Formatos de exportación soportados.
+     */
+    public enum Formato {
+        NDJSON(MediaType.parseMediaType("application/x-ndjson"), "ndjson"),
+        CSV(MediaType.parseMediaType("text/csv;charset=UTF-8"), "csv");
+
+        private final MediaType mediaType;
+        private final String extension;
+
+        Formato(MediaType mediaType, String extension) {
+            this.mediaType = mediaType;
+            this.extension = extension;
+        }
+
+        public MediaType getMediaType() {
+            return mediaType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        /**
+         * Convierte el parámetro recibido en un formato de exportación.
+         *
+         * @throws BusinessException si el formato no está soportado
+         */
+        public static Formato desde(String valor) {
+            for (Formato formato : values()) {
+                if (formato.extension.equalsIgnoreCase(valor)) {
+                    return formato;
+                }
+            }
+            throw new BusinessException("Formato de exportación no válido. Valores permitidos: ndjson, csv");
+        }
+    }
+
+    /**
+     * Escribe todos los pedidos en la salida indicada.
+     *
+     * @param formato formato de exportación
+     * @param salida flujo de salida de la respuesta
+     * @throws IOException si el cliente cierra la conexión o falla la escritura
+     */
+    public void exportar(Formato formato, OutputStream salida) throws IOException {
+        log.info("Iniciando exportación de pedidos en formato {}", formato);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8), TAMANIO_BUFER);
+        ObjectWriter jsonWriter = objectMapper.writer();
+
+        if (formato == Formato.CSV) {
+            writer.write(CABECERA_CSV);
+            writer.write('\n');
+        }
+
+        long[] escritos = {0};
+        try {
+            pedidoService.recorrerPedidosConUsuario(pedido -> {
+                try {
+                    if (formato == Formato.NDJSON) {
+                        writer.write(aJson(jsonWriter, pedido));
+                    } else {
+                        writer.write(aCsv(pedido));
+                    }
+                    writer.write('\n');
+                    if (++escritos[0] % PEDIDOS_POR_VOLCADO == 0) {
+                        writer.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            log.warn("Exportación de pedidos interrumpida tras {} pedidos: {}", escritos[0], e.getMessage());
+            throw e.getCause();
+        }
+
+        writer.flush();
+        log.info("Exportación de pedidos completada: {} pedidos", escritos[0]);
+    }
+
+    private String aJson(ObjectWriter jsonWriter, PedidoResponse pedido) {
+        try {
+            return jsonWriter.writeValueAsString(pedido);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar el pedido " + pedido.getId(), e);
+        }
+    }
+
+    private String aCsv(PedidoResponse pedido) {
+        double total = 0.0;
+        int items = 0;
+        if (pedido.getProductos() != null) {
+            for (PedidoResponse.ItemPedidoResponse item : pedido.getProductos()) {
+                if (item.getSubtotal() != null) total += item.getSubtotal();
+                if (item.getCantidad() != null) items += item.getCantidad();
+            }
+        }
+        return String.join(",",
+                campo(pedido.getId()),
+                campo(pedido.getUsuarioId()),
+                campo(pedido.getNombreUsuario()),
+                campo(pedido.getEmailUsuario()),
+                campo(pedido.getFecha()),
+                campo(pedido.getEstado()),
+                String.valueOf(items),
+                String.format(Locale.ROOT, "%.2f", total),
+                campo(pedido.getDireccionEnvio()),
+                campo(pedido.getNumeroSeguimiento()),
+                campo(pedido.getFechaEntrega()),
+                campo(pedido.getMotivoCancelacion()));
+    }
+
+    /**
+     * Escapa un valor CSV según RFC 4180.
+     */
+    private String campo(Object valor) {
+        if (valor == null) {
+            return "";
+        }
+        String texto = valor.toString();
+        if (texto.indexOf(',') >= 0 || texto.indexOf('"') >= 0 || texto.indexOf('\n') >= 0 || texto.indexOf('\r') >= 0) {
+            return '"' + texto.replace("\"", "\"\"") + '"';
+        }
+        return texto;
+    }
+}
@@ -0,0 +1,247 @@
+package com.ejemplo.tienda_online.service;
+
+import com.ejemplo.tienda_online.config.PlanIndices;
+import com.ejemplo.tienda_online.config.PlanIndices.IndiceDeclarado;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Crea los índices de {@link PlanIndices} y comprueba cuáles faltan.
+ *
+ * <p>Con {@code auto-index-creation}, Spring Data crea los índices al inicializar el
+ * contexto de mapeo, antes de que la aplicación arranque: en una colección grande el
+ * arranque espera a que termine cada construcción, y un índice que no se puede crear (por
+ * ejemplo, uno único con duplicados) impide arrancar. Aquí solo los índices únicos se
+ * crean durante el arranque, antes de atender peticiones, porque sin ellos se pueden
+ * registrar duplicados; el resto se crea en un hilo aparte cuando la aplicación ya atiende
+ * peticiones. Los errores se registran y el índice aparece como pendiente en el informe.
+ * Mientras falte un índice único la aplicación se declara no preparada
+ * ({@code REFUSING_TRAFFIC}) hasta que se cree.</p>
+ *
+ * <p>Un índice coincide con el declarado si tiene las mismas claves y las mismas opciones
+ * {@code unique}, {@code sparse}, {@code expireAfterSeconds} y {@code collation}.</p>
+ *
+ * <p>Métrica {@code mongo.indices.pendientes}: índices del plan que no existen o cuya
+ * definición no coincide, según la última comprobación.</p>
+ *
+ * @author Sistema Tienda Online
+ * @version 1.0
+ */
+@Slf4j
+@Service
+public class GestionIndicesService implements SmartInitializingSingleton {
+
+    /**
+     * Estado de un índice declarado en la base de datos.
+     */
+    public enum Estado {
+        /** Existe con las mismas claves. */
+        CREADO,
+        /** No existe ningún índice con ese nombre. */
+        FALTA,
+        /** Existe un índice con ese nombre pero con otras claves u opciones. */
+        DISTINTO
+    }
+
+    /**
+     * Entrada del informe de índices.
+     */
+    public record EstadoIndice(String coleccion, String nombre, Document claves, Estado estado) {
+    }
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean crearAlArrancar;
+    private final ApplicationEventPublisher eventos;
+    private final AtomicInteger pendientes = new AtomicInteger();
+    private volatile boolean faltanUnicos;
+
+    public GestionIndicesService(MongoTemplate mongoTemplate,
+                                 @Value("${mongo.indices.crear-al-arrancar:true}") boolean crearAlArrancar,
+                                 MeterRegistry meterRegistry,
+                                 ApplicationEventPublisher eventos) {
+        this.mongoTemplate = mongoTemplate;
+        this.crearAlArrancar = crearAlArrancar;
+        this.eventos = eventos;
+        Gauge.builder("mongo.indices.pendientes", pendientes, AtomicInteger::get)
+                .description("Índices del plan que no existen o no coinciden en MongoDB")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Crea los índices únicos antes de que el servidor web empiece a aceptar peticiones.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        try {
+            if (crearAlArrancar) {
+                crear(PlanIndices.INDICES.stream().filter(IndiceDeclarado::unico).toList());
+            }
+            informe();
+        } catch (DataAccessException e) {
+            log.error("No se han podido revisar los índices únicos de MongoDB: {}", e.getMessage());
+            faltanUnicos = true;
+        }
+    }
+
+    /**
+     * Spring declara la aplicación preparada al terminar de arrancar; si falta algún índice
+     * único se vuelve a declarar no preparada.
+     */
+    @EventListener
+    public void alCambiarDisponibilidad(AvailabilityChangeEvent<ReadinessState> evento) {
+        if (evento.getState() == ReadinessState.ACCEPTING_TRAFFIC && faltanUnicos) {
+            log.error("Faltan índices únicos de MongoDB: la aplicación no acepta tráfico hasta crearlos");
+            AvailabilityChangeEvent.publish(eventos, this, ReadinessState.REFUSING_TRAFFIC);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void alArrancar() {
+        // Sin creación al arrancar solo se comprueba: los índices se crean fuera de la aplicación
+        Runnable tarea = crearAlArrancar ? this::crearIndices : this::informe;
+        Thread.ofVirtual().name("indices-mongo").start(() -> {
+            try {
+                tarea.run();
+            } catch (DataAccessException e) {
+                log.error("No se han podido revisar los índices de MongoDB: {}", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Crea los índices del plan que no existen. Crear un índice que ya existe con la misma
+     * definición no hace nada, así que es seguro repetirlo.
+     *
+     * @return el informe de índices tras la creación
+     */
+    public List<EstadoIndice> crearIndices() {
+        long inicio = System.currentTimeMillis();
+        crear(PlanIndices.INDICES);
+        List<EstadoIndice> informe = informe();
+        log.info("Índices de MongoDB revisados en {} ms", System.currentTimeMillis() - inicio);
+        return informe;
+    }
+
+    private void crear(List<IndiceDeclarado> indices) {
+        for (IndiceDeclarado indice : indices) {
+            try {
+                mongoTemplate.indexOps(indice.entidad()).createIndex(indice.definicion());
+            } catch (DataAccessException e) {
+                log.error("No se ha podido crear el índice {} de {}: {}",
+                          indice.nombre(), mongoTemplate.getCollectionName(indice.entidad()), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Compara el plan con los índices de la base de datos, sin crear ninguno. Los índices
+     * que faltan o no coinciden se registran como aviso.
+     */
+    public List<EstadoIndice> informe() {
+        Map<String, Map<String, Document>> existentes = new HashMap<>();
+        List<EstadoIndice> informe = new ArrayList<>();
+        boolean unicosNoCreados = false;
+        for (IndiceDeclarado indice : PlanIndices.INDICES) {
+            String coleccion = mongoTemplate.getCollectionName(indice.entidad());
+            Document actual = existentes.computeIfAbsent(coleccion, this::indicesDe).get(indice.nombre());
+            Estado estado = actual == null ? Estado.FALTA
+                    : mismaDefinicion(indice, actual) ? Estado.CREADO
+                    : Estado.DISTINTO;
+            informe.add(new EstadoIndice(coleccion, indice.nombre(), indice.claves(), estado));
+            unicosNoCreados |= indice.unico() && estado != Estado.CREADO;
+        }
+
+        List<EstadoIndice> noCreados = informe.stream().filter(e -> e.estado() != Estado.CREADO).toList();
+        noCreados.forEach(e -> log.warn("Índice {} de {} {}: {}", e.nombre(), e.coleccion(),
+                e.estado() == Estado.FALTA ? "pendiente de crear" : "con otra definición", e.claves().toJson()));
+        pendientes.set(noCreados.size());
+        actualizarDisponibilidad(unicosNoCreados);
+        return informe;
+    }
+
+    private void actualizarDisponibilidad(boolean unicosNoCreados) {
+        boolean faltabanUnicos = faltanUnicos;
+        faltanUnicos = unicosNoCreados;
+        if (faltabanUnicos && !unicosNoCreados) {
+            log.info("Índices únicos de MongoDB creados: la aplicación vuelve a aceptar tráfico");
+            AvailabilityChangeEvent.publish(eventos, this, ReadinessState.ACCEPTING_TRAFFIC);
+        } else if (!faltabanUnicos && unicosNoCreados) {
+            AvailabilityChangeEvent.publish(eventos, this, ReadinessState.REFUSING_TRAFFIC);
+        }
+    }
+
+    private Map<String, Document> indicesDe(String coleccion) {
+        Map<String, Document> porNombre = new HashMap<>();
+        mongoTemplate.getCollection(coleccion).listIndexes()
+                .forEach(indice -> porNombre.put(indice.getString("name"), indice));
+        return porNombre;
+    }
+
+    /**
+     * Mismas claves y mismas opciones que cambian el comportamiento del índice. De la
+     * collation se comparan los campos declarados: el servidor devuelve también los que
+     * toman su valor por defecto.
+     */
+    static boolean mismaDefinicion(IndiceDeclarado indice, Document actual) {
+        if (!mismasClaves(indice.claves(), actual.get("key", Document.class))) {
+            return false;
+        }
+        Document opciones = indice.definicion().getIndexOptions();
+        if (opciones.getBoolean("unique", false) != actual.getBoolean("unique", false)
+                || opciones.getBoolean("sparse", false) != actual.getBoolean("sparse", false)) {
+            return false;
+        }
+        if (!mismoValor(opciones.get("expireAfterSeconds"), actual.get("expireAfterSeconds"))) {
+            return false;
+        }
+        Document collation = opciones.get("collation", Document.class);
+        Document collationActual = actual.get("collation", Document.class);
+        if (collation == null || collationActual == null) {
+            return collation == null && collationActual == null;
+        }
+        return collation.keySet().stream()
+                .allMatch(campo -> mismoValor(collation.get(campo), collationActual.get(campo)));
+    }
+
+    /**
+     * Mismos campos, en el mismo orden y con la misma dirección. El servidor puede devolver
+     * los números como enteros o como decimales.
+     */
+    static boolean mismasClaves(Document declaradas, Document actuales) {
+        if (actuales == null || !new ArrayList<>(declaradas.keySet()).equals(new ArrayList<>(actuales.keySet()))) {
+            return false;
+        }
+        for (String campo : declaradas.keySet()) {
+            if (!mismoValor(declaradas.get(campo), actuales.get(campo))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean mismoValor(Object declarado, Object actual) {
+        if (declarado instanceof Number d && actual instanceof Number a) {
+            return d.longValue() == a.longValue();
+        }
+        return Objects.equals(declarado, actual);
+    }
+}
@@ -0,0 +1,351 @@
+package com.ejemplo.tienda_online.service;
+
+import com.ejemplo.tienda_online.exception.BusinessException;
+import com.ejemplo.tienda_online.exception.ConflictoIdempotenciaException;
+import com.ejemplo.tienda_online.model.ClaveIdempotencia;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Ejecución idempotente de peticiones con cabecera {@code Idempotency-Key}.
+ *
+ * <p>La primera petición con una clave la reserva en la colección
+ * {@code claves_idempotencia}, se ejecuta y guarda su respuesta; las repeticiones
+ * devuelven esa respuesta sin volver a ejecutar nada. Hay tres niveles:</p>
+ * <ol>
+ *   <li>Caché en memoria de respuestas ya guardadas, sin consultar MongoDB.</li>
+ *   <li>Peticiones duplicadas simultáneas en la misma instancia: esperan a la primera
+ *   y reciben su misma respuesta (o su mismo error).</li>
+ *   <li>MongoDB, con {@code _id} único, para las repeticiones que llegan a otra instancia
+ *   o después de reiniciar.</li>
+ * </ol>
+ *
+ * <p>Solo se guardan las respuestas correctas: si la operación falla, la clave se libera
+ * y el cliente puede reintentar. Una clave reutilizada con otro cuerpo se rechaza con 422;
+ * si la petición original sigue en curso en otra instancia, con 409.</p>
+ *
+ * <p>La reserva lleva el ID del recurso que creará la operación, y quien la procesa
+ * renueva su caducidad mientras tanto. Solo se retoma una reserva cuya instancia ha
+ * caído, y se retoma con el mismo ID: la operación encuentra el pedido ya creado y lo
+ * devuelve en lugar de crear otro. En modo transaccional la respuesta se guarda en la
+ * misma transacción que el pedido; sin transacciones se guarda justo después, y si esa
+ * escritura falla la clave queda en curso hasta que otra petición la retome.</p>
+ *
+ * <p>Métricas: {@code pedidos.idempotencia} con la etiqueta {@code resultado}
+ * (ejecutada, repetida, agrupada) y la caché {@code pedidos.idempotencia.cache}.</p>
+ *
+ * @author Sistema Tienda Online
+ * @version 1.0
+ */
+@Slf4j
+@Service
+public class IdempotenciaService {
+
+    static final int LONGITUD_MAXIMA_CLAVE = 255;
+
+    /**
+     * Respuesta de una petición idempotente.
+     *
+     * @param estadoHttp código HTTP de la respuesta original
+     * @param cuerpo cuerpo JSON de la respuesta original
+     * @param repetida true si no se ha ejecutado ahora sino que se repite una respuesta guardada
+     */
+    public record Respuesta(int estadoHttp, String cuerpo, boolean repetida) {
+
+        Respuesta comoRepetida() {
+            return repetida ? this : new Respuesta(estadoHttp, cuerpo, true);
+        }
+    }
+
+    private record EnCurso(String huella, CompletableFuture<Respuesta> resultado) {
+    }
+
+    private record Guardada(String huella, Respuesta respuesta) {
+    }
+
+    private final MongoTemplate mongoTemplate;
+    private final TransaccionesPedido transacciones;
+    private final Duration ttl;
+    private final Duration bloqueo;
+    private final Cache<String, Guardada> respuestas;
+    private final Map<String, EnCurso> enCurso = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final ScheduledExecutorService renovaciones = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("idempotencia-renovacion").daemon().factory());
+
+    public IdempotenciaService(MongoTemplate mongoTemplate,
+                               TransaccionesPedido transacciones,
+                               @Value("${pedidos.idempotencia.ttl:24h}") Duration ttl,
+                               @Value("${pedidos.idempotencia.bloqueo:30s}") Duration bloqueo,
+                               @Value("${pedidos.idempotencia.cache.tamanio-maximo:10000}") long tamanioCache,
+                               MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.transacciones = transacciones;
+        this.ttl = ttl;
+        this.bloqueo = bloqueo;
+        this.meterRegistry = meterRegistry;
+        this.respuestas = Caffeine.newBuilder()
+                .maximumSize(tamanioCache)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, respuestas, "pedidos.idempotencia.cache");
+    }
+
+    /**
+     * Calcula la huella de un cuerpo de petición, para comparar repeticiones.
+     */
+    public static String huella(byte[] cuerpo) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(cuerpo));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    /**
+     * Ejecuta la operación una sola vez por usuario y clave.
+     *
+     * @param usuario usuario que hace la petición
+     * @param clave valor de la cabecera {@code Idempotency-Key}
+     * @param huella huella del cuerpo de la petición ({@link #huella(byte[])})
+     * @param operacion operación a ejecutar con el ID reservado para el recurso que crea;
+     *                  si ya existe un recurso con ese ID debe devolverlo en lugar de crear otro
+     * @return la respuesta nueva o la guardada
+     * @throws ConflictoIdempotenciaException si la clave está en uso o ya se usó con otro cuerpo
+     */
+    public Respuesta ejecutar(String usuario, String clave, String huella, Function<String, Respuesta> operacion) {
+        validarClave(clave);
+        String id = usuario + ":" + clave;
+
+        Guardada guardada = respuestas.getIfPresent(id);
+        if (guardada != null) {
+            return repetir(guardada.huella(), huella, guardada.respuesta());
+        }
+
+        EnCurso propia = new EnCurso(huella, new CompletableFuture<>());
+        EnCurso existente = enCurso.putIfAbsent(id, propia);
+        if (existente != null) {
+            comprobarHuella(existente.huella(), huella);
+            contar("agrupada");
+            return esperar(existente.resultado()).comoRepetida();
+        }
+
+        try {
+            Respuesta respuesta = ejecutarPrimera(id, huella, operacion);
+            propia.resultado().complete(respuesta);
+            return respuesta;
+        } catch (RuntimeException e) {
+            propia.resultado().completeExceptionally(e);
+            throw e;
+        } finally {
+            enCurso.remove(id, propia);
+        }
+    }
+
+    private Respuesta ejecutarPrimera(String id, String huella, Function<String, Respuesta> operacion) {
+        ClaveIdempotencia reserva = reservar(id, huella);
+        if (reserva.getEstado() == ClaveIdempotencia.EstadoClave.COMPLETADA) {
+            Respuesta respuesta = new Respuesta(reserva.getEstadoHttp(), reserva.getCuerpo(), true);
+            respuestas.put(id, new Guardada(reserva.getHuella(), respuesta));
+            return repetir(reserva.getHuella(), huella, respuesta);
+        }
+
+        Respuesta respuesta;
+        ScheduledFuture<?> renovacion = renovaciones.scheduleWithFixedDelay(() -> renovar(reserva),
+                bloqueo.toMillis() / 3, bloqueo.toMillis() / 3, TimeUnit.MILLISECONDS);
+        try {
+            respuesta = transacciones.ejecutar("idempotencia", () -> {
+                Respuesta resultado = operacion.apply(reserva.getRecursoId());
+                if (transacciones.isTransaccional()) {
+                    completar(reserva, resultado);
+                }
+                return resultado;
+            });
+        } catch (RuntimeException e) {
+            // Sin respuesta que guardar: se libera la clave para que el cliente pueda reintentar
+            mongoTemplate.remove(porPropietario(reserva), ClaveIdempotencia.class);
+            throw e;
+        } finally {
+            renovacion.cancel(false);
+        }
+
+        if (!transacciones.isTransaccional()) {
+            // El recurso ya existe: si esto falla, la clave no se libera y quien la retome lo encuentra
+            completar(reserva, respuesta);
+        }
+        respuestas.put(id, new Guardada(huella, respuesta));
+        contar("ejecutada");
+        return respuesta;
+    }
+
+    /**
+     * Guarda la respuesta en la clave, si la reserva sigue siendo nuestra.
+     *
+     * @throws ConflictoIdempotenciaException en modo transaccional, si otra instancia ha
+     *         retomado la clave: así se deshace también el pedido
+     */
+    private void completar(ClaveIdempotencia reserva, Respuesta respuesta) {
+        boolean completada = mongoTemplate.updateFirst(porPropietario(reserva),
+                new Update()
+                        .set("estado", ClaveIdempotencia.EstadoClave.COMPLETADA)
+                        .set("estadoHttp", respuesta.estadoHttp())
+                        .set("cuerpo", respuesta.cuerpo())
+                        .set("caducaEn", Instant.now().plus(ttl)),
+                ClaveIdempotencia.class).getMatchedCount() > 0;
+        if (completada) {
+            return;
+        }
+        if (transacciones.isTransaccional()) {
+            throw new ConflictoIdempotenciaException(
+                    "Hay otra petición en curso con la misma clave de idempotencia", HttpStatus.CONFLICT);
+        }
+        // Otra instancia la retomó con el mismo ID de recurso: devolverá este mismo pedido
+        log.warn("La clave de idempotencia {} se retomó en otra instancia antes de completarse", reserva.getId());
+    }
+
+    /**
+     * Alarga la caducidad de una reserva en curso, para que no se retome mientras se procesa.
+     */
+    private void renovar(ClaveIdempotencia reserva) {
+        try {
+            long renovadas = mongoTemplate.updateFirst(porPropietario(reserva),
+                    Update.update("caducaEn", Instant.now().plus(bloqueo)),
+                    ClaveIdempotencia.class).getMatchedCount();
+            if (renovadas == 0) {
+                log.warn("La reserva de la clave de idempotencia {} ya no es de esta petición", reserva.getId());
+            }
+        } catch (DataAccessException e) {
+            log.warn("No se ha podido renovar la clave de idempotencia {}: {}", reserva.getId(), e.getMessage());
+        }
+    }
+
+    private static Query porPropietario(ClaveIdempotencia reserva) {
+        return Query.query(Criteria.where("id").is(reserva.getId())
+                .and("estado").is(ClaveIdempotencia.EstadoClave.EN_CURSO)
+                .and("propietario").is(reserva.getPropietario()));
+    }
+
+    /**
+     * Reserva la clave en MongoDB.
+     *
+     * @return la reserva, en curso y nuestra, o la clave ya completada por otra petición
+     * @throws ConflictoIdempotenciaException si otra instancia la está procesando
+     */
+    private ClaveIdempotencia reservar(String id, String huella) {
+        Instant ahora = Instant.now();
+        String propietario = UUID.randomUUID().toString();
+        try {
+            return mongoTemplate.insert(ClaveIdempotencia.builder()
+                    .id(id)
+                    .huella(huella)
+                    .estado(ClaveIdempotencia.EstadoClave.EN_CURSO)
+                    .propietario(propietario)
+                    .recursoId(new ObjectId().toHexString())
+                    .caducaEn(ahora.plus(bloqueo))
+                    .build());
+        } catch (DuplicateKeyException e) {
+            log.debug("Clave de idempotencia {} ya registrada", id);
+        }
+
+        // Una reserva caducada (su instancia cayó) se puede tomar aunque el TTL aún no la haya
+        // borrado; conserva el ID de recurso, por si el pedido llegó a crearse
+        ClaveIdempotencia tomada = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("id").is(id)
+                        .and("estado").is(ClaveIdempotencia.EstadoClave.EN_CURSO)
+                        .and("caducaEn").lt(ahora)),
+                new Update().set("huella", huella).set("propietario", propietario).set("caducaEn", ahora.plus(bloqueo)),
+                FindAndModifyOptions.options().returnNew(true),
+                ClaveIdempotencia.class);
+        if (tomada != null) {
+            log.info("Clave de idempotencia {} retomada tras caducar su reserva", id);
+            return tomada;
+        }
+
+        ClaveIdempotencia existente = mongoTemplate.findById(id, ClaveIdempotencia.class);
+        if (existente != null && existente.getEstado() == ClaveIdempotencia.EstadoClave.COMPLETADA) {
+            return existente;
+        }
+        // Sigue en curso en otra instancia (o se liberó justo ahora tras un error)
+        throw new ConflictoIdempotenciaException(
+                "Hay otra petición en curso con la misma clave de idempotencia", HttpStatus.CONFLICT);
+    }
+
+    private Respuesta repetir(String huellaOriginal, String huella, Respuesta respuesta) {
+        comprobarHuella(huellaOriginal, huella);
+        contar("repetida");
+        return respuesta.comoRepetida();
+    }
+
+    private Respuesta esperar(CompletableFuture<Respuesta> resultado) {
+        try {
+            return resultado.get(bloqueo.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new ConflictoIdempotenciaException(
+                    "Hay otra petición en curso con la misma clave de idempotencia", HttpStatus.CONFLICT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrumpido esperando una petición con la misma clave", e);
+        }
+    }
+
+    private static void comprobarHuella(String huellaOriginal, String huella) {
+        if (!huellaOriginal.equals(huella)) {
+            throw new ConflictoIdempotenciaException(
+                    "La clave de idempotencia ya se usó con una petición distinta", HttpStatus.UNPROCESSABLE_ENTITY);
+        }
+    }
+
+    private static void validarClave(String clave) {
+        if (clave == null || clave.isBlank() || clave.length() > LONGITUD_MAXIMA_CLAVE) {
+            throw new BusinessException("La cabecera Idempotency-Key debe tener entre 1 y "
+                    + LONGITUD_MAXIMA_CLAVE + " caracteres");
+        }
+    }
+
+    private void contar(String resultado) {
+        meterRegistry.counter("pedidos.idempotencia", "resultado", resultado).increment();
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        renovaciones.shutdownNow();
+    }
+}
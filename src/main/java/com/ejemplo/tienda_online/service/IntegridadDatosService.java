@@ -0,0 +1,106 @@
+package com.ejemplo.tienda_online.service;
+
+import com.ejemplo.tienda_online.model.Pedido;
+import com.ejemplo.tienda_online.model.Producto;
+import com.ejemplo.tienda_online.util.ActualizacionParcial;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+
+/**
+ * Tarea en segundo plano que repara datos inconsistentes de los productos y pedidos.
+ *
+ * <p>Los productos con precio o stock nulos se corrigen directamente en la base de
+ * datos con una actualización masiva por campo, en lugar de hacerlo al leer el
+ * catálogo. Se ejecuta al arrancar la aplicación y después periódicamente.</p>
+ *
+ * @author Sistema Tienda Online
+ * @version 1.0
+ */
+@Slf4j
+@Service
+public class IntegridadDatosService {
+
+    private final MongoTemplate mongoTemplate;
+    private final CatalogoCache catalogoCache;
+    private final Counter preciosReparados;
+    private final Counter stocksReparados;
+
+    public IntegridadDatosService(MongoTemplate mongoTemplate, CatalogoCache catalogoCache,
+                                  MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.catalogoCache = catalogoCache;
+        this.preciosReparados = Counter.builder("integridad.productos.reparados")
+                .description("Productos corregidos por la tarea de integridad")
+                .tag("campo", "precio")
+                .register(meterRegistry);
+        this.stocksReparados = Counter.builder("integridad.productos.reparados")
+                .description("Productos corregidos por la tarea de integridad")
+                .tag("campo", "stock")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Asigna precio 0 y stock 0 a los productos que los tienen nulos o sin definir.
+     *
+     * @return número total de campos corregidos
+     */
+    @Scheduled(initialDelayString = "${integridad.productos.retardo-inicial:PT0S}",
+               fixedDelayString = "${integridad.productos.intervalo:PT1H}")
+    public long repararProductos() {
+        long precios = reparar("precio", 0.0);
+        long stocks = reparar("stock", 0);
+        preciosReparados.increment(precios);
+        stocksReparados.increment(stocks);
+
+        if (precios + stocks > 0) {
+            // Los productos reparados vuelven a aparecer en páginas que no los contenían
+            catalogoCache.invalidarTodo();
+            log.warn("Tarea de integridad: corregidos {} productos con precio nulo y {} con stock nulo",
+                     precios, stocks);
+        } else {
+            log.debug("Tarea de integridad: no hay productos que corregir");
+        }
+        return precios + stocks;
+    }
+
+    /**
+     * Asigna la versión 0 a los productos y pedidos guardados antes de tener
+     * {@code @Version}. Sin el campo, Spring Data trataría un {@code save} de esos
+     * documentos como una inserción, que fallaría por el {@code _id} repetido.
+     *
+     * @return número de documentos actualizados
+     */
+    @Scheduled(initialDelayString = "${integridad.productos.retardo-inicial:PT0S}",
+               fixedDelayString = "${integridad.productos.intervalo:PT1H}")
+    public long asignarVersiones() {
+        long asignadas = 0;
+        for (Class<?> tipo : List.of(Producto.class, Pedido.class)) {
+            // La actualización ya modifica la versión, así que MongoTemplate no la incrementa
+            asignadas += mongoTemplate.updateMulti(
+                    Query.query(Criteria.where(ActualizacionParcial.VERSION).exists(false)),
+                    new Update().set(ActualizacionParcial.VERSION, 0L),
+                    tipo).getModifiedCount();
+        }
+        if (asignadas > 0) {
+            log.info("Tarea de integridad: asignada la versión inicial a {} documentos", asignadas);
+        }
+        return asignadas;
+    }
+
+    private long reparar(String campo, Object valorPorDefecto) {
+        return mongoTemplate.updateMulti(
+                Query.query(Criteria.where(campo).is(null)),
+                ActualizacionParcial.cambios().set(campo, valorPorDefecto),
+                Producto.class).getModifiedCount();
+    }
+}
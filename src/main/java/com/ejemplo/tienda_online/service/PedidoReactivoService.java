@@ -0,0 +1,127 @@
+package com.ejemplo.tienda_online.service;
+
+import com.ejemplo.tienda_online.dto.PaginaResponse;
+import com.ejemplo.tienda_online.dto.PedidoResponse;
+import com.ejemplo.tienda_online.exception.ResourceNotFoundException;
+import com.ejemplo.tienda_online.model.Pedido;
+import com.ejemplo.tienda_online.model.Usuario;
+import com.ejemplo.tienda_online.repository.PedidoReactiveRepository;
+import com.ejemplo.tienda_online.repository.UsuarioReactiveRepository;
+import com.ejemplo.tienda_online.security.UsuarioAutenticado;
+import com.ejemplo.tienda_online.util.CursorPaginacion;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Consultas de pedidos para la API reactiva (perfil {@code reactivo}).
+ * Las respuestas son las mismas que las de {@link PedidoService}.
+ *
+ * @author Sistema Tienda Online
+ * @version 1.0
+ */
+@Slf4j
+@Service
+@Profile("reactivo")
+@RequiredArgsConstructor
+public class PedidoReactivoService {
+
+    private static final int LOTE_RECORRIDO = 500;
+
+    private final PedidoReactiveRepository pedidoRepository;
+    private final UsuarioReactiveRepository usuarioRepository;
+
+    /**
+     * Obtiene una página de los pedidos del sistema con información del usuario.
+     *
+     * @param cursor cursor opaco de la página anterior, o null para la primera
+     * @param limite tamaño máximo de la página
+     */
+    public Mono<PaginaResponse<PedidoResponse>> getAllWithUserInfo(String cursor, Integer limite) {
+        return Mono.defer(() -> {
+            String ultimoId = CursorPaginacion.decodificar(cursor);
+            int tamanio = CursorPaginacion.normalizarLimite(limite);
+            Pageable pagina = CursorPaginacion.pagina(tamanio + 1);
+            Flux<Pedido> pedidos = ultimoId == null
+                    ? pedidoRepository.findAllBy(pagina)
+                    : pedidoRepository.findByIdGreaterThan(ultimoId, pagina);
+            return pedidos.collectList().flatMap(lista -> resolverUsuarios(lista)
+                    .map(usuarios -> CursorPaginacion.desde(lista, tamanio, Pedido::getId,
+                            pedido -> PedidoService.toPedidoResponse(pedido, usuarios.get(pedido.getUsuarioId())))));
+        });
+    }
+
+    /**
+     * Obtiene una página de los pedidos del usuario autenticado.
+     *
+     * @param principal usuario autenticado
+     * @param cursor cursor opaco de la página anterior, o null para la primera
+     * @param limite tamaño máximo de la página
+     */
+    public Mono<PaginaResponse<PedidoResponse>> getPedidosUsuario(UserDetails principal, String cursor, Integer limite) {
+        return Mono.defer(() -> {
+            String ultimoId = CursorPaginacion.decodificar(cursor);
+            int tamanio = CursorPaginacion.normalizarLimite(limite);
+            Pageable pagina = CursorPaginacion.pagina(tamanio + 1);
+            return usuarioActual(principal).flatMap(usuario -> {
+                Flux<Pedido> pedidos = ultimoId == null
+                        ? pedidoRepository.findByUsuarioId(usuario.getId(), pagina)
+                        : pedidoRepository.findByUsuarioIdAndIdGreaterThan(usuario.getId(), ultimoId, pagina);
+                return pedidos.collectList().map(lista -> CursorPaginacion.desde(lista, tamanio, Pedido::getId,
+                        pedido -> PedidoService.toPedidoResponse(pedido, usuario.getUsername(), usuario.getEmail())));
+            });
+        });
+    }
+
+    /**
+     * Recorre todos los pedidos del sistema en orden de ID con información del usuario.
+     * Los usuarios se resuelven por lotes de {@value #LOTE_RECORRIDO} pedidos y cada lote
+     * se pide a MongoDB solo cuando el cliente ha consumido el anterior.
+     */
+    public Flux<PedidoResponse> getAllWithUserInfo() {
+        log.info("Emitiendo todos los pedidos del sistema en streaming");
+        return pedidoRepository.findAllBy(Sort.by(Sort.Direction.ASC, "id"))
+                .buffer(LOTE_RECORRIDO)
+                .concatMap(lote -> resolverUsuarios(lote).flatMapIterable(usuarios -> lote.stream()
+                        .map(pedido -> PedidoService.toPedidoResponse(pedido, usuarios.get(pedido.getUsuarioId())))
+                        .toList()));
+    }
+
+    /**
+     * Usuario autenticado; con {@code jwt.claims-de-confianza} el principal no trae el ID
+     * y se busca por nombre.
+     */
+    private Mono<UsuarioAutenticado> usuarioActual(UserDetails principal) {
+        if (principal instanceof UsuarioAutenticado usuario && usuario.getId() != null) {
+            return Mono.just(usuario);
+        }
+        String username = principal.getUsername();
+        return usuarioRepository.findByUsername(username)
+                .map(UsuarioAutenticado::de)
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("Usuario no encontrado: " + username)));
+    }
+
+    /**
+     * Carga en una única consulta los usuarios distintos de una lista de pedidos.
+     *
+     * @return usuarios encontrados indexados por ID
+     */
+    private Mono<Map<String, Usuario>> resolverUsuarios(List<Pedido> pedidos) {
+        List<String> usuarioIds = pedidos.stream()
+                .map(Pedido::getUsuarioId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        return usuarioRepository.findAllById(usuarioIds).collectMap(Usuario::getId);
+    }
+}
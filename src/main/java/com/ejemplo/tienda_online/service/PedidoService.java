@@ -1,5 +1,6 @@
 package com.ejemplo.tienda_online.service;
 
+import com.ejemplo.tienda_online.dto.PaginaResponse;
 import com.ejemplo.tienda_online.dto.PedidoResponse;
 import com.ejemplo.tienda_online.exception.BusinessException;
 import com.ejemplo.tienda_online.exception.ResourceNotFoundException;
@@ -9,15 +10,38 @@ import com.ejemplo.tienda_online.model.Usuario;
 import com.ejemplo.tienda_online.repository.PedidoRepository;
 import com.ejemplo.tienda_online.repository.ProductoRepository;
 import com.ejemplo.tienda_online.repository.UsuarioRepository;
+import com.ejemplo.tienda_online.security.UsuarioAutenticado;
+import com.ejemplo.tienda_online.util.CursorPaginacion;
+import com.ejemplo.tienda_online.util.ActualizacionParcial;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * Servicio para la gestión de pedidos.
@@ -34,11 +58,17 @@ public class PedidoService {
     private final PedidoRepository pedidoRepository;
     private final UsuarioRepository usuarioRepository;
     private final ProductoRepository productoRepository;
+    private final ReservaStockService reservaStockService;
+    private final TransaccionesPedido transacciones;
+    private final MongoTemplate mongoTemplate;
 
     // Constantes para validación de negocio
     private static final int MAX_CANTIDAD_POR_ITEM = 100;
     private static final int MAX_ITEMS_POR_PEDIDO = 50;
 
+    // Pedidos leídos del cursor antes de resolver sus usuarios en una sola consulta
+    private static final int LOTE_RECORRIDO = 500;
+
     /**
      * Obtiene todos los pedidos del sistema.
      * Solo disponible para administradores.
@@ -53,15 +83,15 @@ public class PedidoService {
     }
 
     /**
-     * Obtiene los pedidos del usuario autenticado actualmente.
+     * Obtiene los pedidos del usuario autenticado actualmente, los más recientes primero.
      *
      * @return Lista de pedidos del usuario actual
      * @throws ResourceNotFoundException si el usuario no existe
      */
     public List<Pedido> getPedidosUsuarioActual() {
         log.info("Obteniendo pedidos del usuario autenticado");
-        Usuario usuario = obtenerUsuarioActual();
-        List<Pedido> pedidos = pedidoRepository.findByUsuarioId(usuario.getId());
+        UsuarioAutenticado usuario = obtenerUsuarioActual();
+        List<Pedido> pedidos = pedidoRepository.findByUsuarioIdOrderByFechaDesc(usuario.getId());
         log.info("Usuario {} tiene {} pedidos", usuario.getUsername(), pedidos.size());
         return pedidos;
     }
@@ -74,36 +104,220 @@ public class PedidoService {
      * @throws BusinessException si hay problemas de validación
      * @throws ResourceNotFoundException si algún producto no existe
      */
-    @Transactional
     public Pedido crearPedido(Pedido pedido) {
+        return crearPedido(pedido, null);
+    }
+
+    /**
+     * Crea un nuevo pedido con un ID reservado de antemano, para las peticiones
+     * idempotentes. Si el usuario ya tiene un pedido con ese ID (un intento anterior que
+     * llegó a crearlo), lo devuelve sin volver a crearlo ni a descontar stock.
+     *
+     * @param pedido El pedido a crear
+     * @param idReservado ID que tendrá el pedido, o null para que lo genere MongoDB
+     * @return El pedido creado, o el que ya existía con ese ID
+     * @throws BusinessException si hay problemas de validación
+     * @throws ResourceNotFoundException si algún producto no existe
+     */
+    public Pedido crearPedido(Pedido pedido, String idReservado) {
         log.info("Iniciando creación de nuevo pedido");
 
         // Validaciones iniciales
         validarPedidoBasico(pedido);
 
-        pedido.setId(null); // Deja que MongoDB genere el ID
+        // Asignar usuario actual, fuera de la transacción: lee el contexto de seguridad
+        UsuarioAutenticado usuario = obtenerUsuarioActual();
+
+        Optional<Pedido> existente = buscarPropio(idReservado, usuario);
+        if (existente.isPresent()) {
+            log.info("El pedido {} ya estaba creado, se devuelve sin repetirlo", idReservado);
+            return existente.get();
+        }
+
+        Pedido pedidoGuardado = transacciones.ejecutar("crearPedido", () -> guardarPedidoNuevo(pedido, idReservado, usuario));
+        log.info("Pedido {} procesado completamente.", pedidoGuardado.getId());
+
+        return pedidoGuardado;
+    }
+
+    /**
+     * Reserva el stock y guarda el pedido. En modo transaccional puede repetirse entera.
+     */
+    private Pedido guardarPedidoNuevo(Pedido pedido, String idReservado, UsuarioAutenticado usuario) {
+        pedido.setId(idReservado); // Sin ID reservado, deja que MongoDB genere el ID
+        pedido.setVersion(null); // Sin versión, save() inserta; la del cliente se ignora
+
+        // Resolver todos los productos del pedido en una sola consulta
+        Map<String, Integer> cantidades = reservaStockService.agruparCantidades(pedido.getProductos());
+        Map<String, Producto> productos = resolverProductos(cantidades.keySet());
 
         // Validar stock y calcular total (solo para validación, no guardar el total)
-        validarStockYCalcularTotal(pedido);
+        validarStockYCalcularTotal(pedido, cantidades, productos);
 
-        // Asignar usuario actual
-        Usuario usuario = obtenerUsuarioActual();
         pedido.setUsuarioId(usuario.getId());
 
         // Establecer metadatos del pedido
         pedido.setFecha(Instant.now());
         pedido.setEstado(Pedido.EstadoPedido.PENDIENTE);
 
-        // Guardar el pedido
-        Pedido pedidoGuardado = pedidoRepository.save(pedido);
+        // Reservar stock de forma atómica antes de persistir el pedido
+        reservaStockService.reservar(cantidades);
+
+        // Guardar el pedido; sin transacción, devolviendo el stock si la escritura falla
+        Pedido pedidoGuardado;
+        try {
+            pedidoGuardado = pedidoRepository.save(pedido);
+        } catch (RuntimeException e) {
+            if (!transacciones.isTransaccional()) {
+                log.error("Error al guardar el pedido, liberando stock reservado", e);
+                reservaStockService.liberar(cantidades);
+            }
+            throw e;
+        }
         log.info("Pedido creado exitosamente con ID: {}", pedidoGuardado.getId());
+        return pedidoGuardado;
+    }
 
-        // Actualizar stock de productos
-        actualizarStockProductos(pedido);
+    /**
+     * Prepara un pedido para la recepción asíncrona: solo las validaciones que no
+     * consultan la base de datos. Le asigna ya su ID definitivo, que es el que recibe el
+     * cliente para consultar el estado.
+     *
+     * @param pedido El pedido recibido
+     * @return El mismo pedido, en estado {@code RECIBIDO}
+     * @throws BusinessException si el pedido no es válido
+     */
+    public Pedido prepararRecepcion(Pedido pedido) {
+        return prepararRecepcion(pedido, null);
+    }
 
-        log.info("Pedido {} procesado completamente.", pedidoGuardado.getId());
+    /**
+     * Prepara un pedido para la recepción asíncrona con un ID reservado de antemano.
+     *
+     * @param pedido El pedido recibido
+     * @param idReservado ID que tendrá el pedido, o null para generar uno nuevo
+     * @return El mismo pedido, en estado {@code RECIBIDO}
+     * @throws BusinessException si el pedido no es válido
+     */
+    public Pedido prepararRecepcion(Pedido pedido, String idReservado) {
+        validarPedidoBasico(pedido);
+        UsuarioAutenticado usuario = obtenerUsuarioActual();
 
-        return pedidoGuardado;
+        pedido.setId(idReservado != null ? idReservado : new ObjectId().toHexString());
+        pedido.setVersion(null);
+        pedido.setUsuarioId(usuario.getId());
+        pedido.setFecha(Instant.now());
+        pedido.setEstado(Pedido.EstadoPedido.RECIBIDO);
+        pedido.setMotivoCancelacion(null);
+        return pedido;
+    }
+
+    /**
+     * Guarda un lote de pedidos de la recepción asíncrona. El stock de todo el lote se
+     * reserva en una única escritura masiva y los pedidos se insertan juntos.
+     *
+     * <p>Cada pedido termina en {@code PENDIENTE} o, si no hay stock o algún producto no
+     * existe, en {@code RECHAZADO} con el motivo; los rechazados también se guardan para
+     * que el cliente pueda consultarlos.</p>
+     *
+     * @param pedidos pedidos preparados con {@link #prepararRecepcion(Pedido)}
+     */
+    public void guardarLote(List<Pedido> pedidos) {
+        log.debug("Guardando lote de {} pedidos", pedidos.size());
+        transacciones.ejecutar("guardarLote", () -> {
+            reservarYGuardarLote(pedidos);
+            return null;
+        });
+    }
+
+    /**
+     * Valida el lote contra el stock leído, reserva y guarda. En modo transaccional puede
+     * repetirse entero, así que parte siempre del estado {@code RECIBIDO}.
+     */
+    private void reservarYGuardarLote(List<Pedido> pedidos) {
+        Set<String> productoIds = new HashSet<>();
+        pedidos.forEach(pedido -> pedido.getProductos().forEach(item -> productoIds.add(item.getProductoId())));
+        Map<String, Producto> productos = resolverProductos(productoIds);
+
+        // Se valida en orden de llegada descontando del stock leído lo que ya piden los anteriores
+        List<PedidoAceptado> aceptados = new ArrayList<>();
+        for (Pedido pedido : pedidos) {
+            pedido.setEstado(Pedido.EstadoPedido.RECIBIDO);
+            pedido.setMotivoCancelacion(null);
+            Map<String, Integer> cantidades = reservaStockService.agruparCantidades(pedido.getProductos());
+            try {
+                validarStockYCalcularTotal(pedido, cantidades, productos);
+            } catch (BusinessException | ResourceNotFoundException e) {
+                rechazar(pedido, e.getMessage());
+                continue;
+            }
+            cantidades.forEach((productoId, cantidad) -> {
+                Producto producto = productos.get(productoId);
+                producto.setStock(producto.getStock() - cantidad);
+            });
+            aceptados.add(new PedidoAceptado(pedido, cantidades));
+        }
+
+        Map<String, Integer> reservado = reservarLote(aceptados);
+
+        Instant ahora = Instant.now();
+        aceptados.forEach(aceptado -> aceptado.pedido().setEstado(Pedido.EstadoPedido.PENDIENTE));
+        pedidos.forEach(pedido -> pedido.setFechaActualizacion(ahora));
+        try {
+            mongoTemplate.insertAll(pedidos);
+        } catch (RuntimeException e) {
+            if (!transacciones.isTransaccional()) {
+                log.error("Error al guardar el lote de pedidos, liberando stock reservado", e);
+                // La inserción es ordenada: se deshacen las que llegaron a escribirse
+                mongoTemplate.remove(Query.query(Criteria.where("id").in(pedidos.stream().map(Pedido::getId).toList())),
+                        Pedido.class);
+                reservaStockService.liberar(reservado);
+            }
+            throw e;
+        }
+        log.info("Lote de {} pedidos guardado: {} aceptados, {} rechazados",
+                 pedidos.size(), aceptados.size(), pedidos.size() - aceptados.size());
+    }
+
+    /**
+     * Reserva el stock de los pedidos aceptados. Lo normal es una sola escritura masiva
+     * con los totales del lote; si otra escritura concurrente ha dejado sin stock algún
+     * producto desde la lectura, se reserva pedido a pedido y se rechazan los que no caben.
+     *
+     * @return cantidades reservadas por producto
+     */
+    private Map<String, Integer> reservarLote(List<PedidoAceptado> aceptados) {
+        Map<String, Integer> totales = new HashMap<>();
+        aceptados.forEach(aceptado -> aceptado.cantidades().forEach((id, cantidad) -> totales.merge(id, cantidad, Integer::sum)));
+        try {
+            reservaStockService.reservar(totales);
+            return totales;
+        } catch (BusinessException | ResourceNotFoundException e) {
+            log.warn("No se pudo reservar el lote completo ({}), reservando pedido a pedido", e.getMessage());
+        }
+
+        Map<String, Integer> reservado = new HashMap<>();
+        Iterator<PedidoAceptado> iterador = aceptados.iterator();
+        while (iterador.hasNext()) {
+            PedidoAceptado aceptado = iterador.next();
+            try {
+                reservaStockService.reservar(aceptado.cantidades());
+                aceptado.cantidades().forEach((id, cantidad) -> reservado.merge(id, cantidad, Integer::sum));
+            } catch (BusinessException | ResourceNotFoundException e) {
+                rechazar(aceptado.pedido(), e.getMessage());
+                iterador.remove();
+            }
+        }
+        return reservado;
+    }
+
+    private record PedidoAceptado(Pedido pedido, Map<String, Integer> cantidades) {
+    }
+
+    private static void rechazar(Pedido pedido, String motivo) {
+        log.info("Pedido {} rechazado: {}", pedido.getId(), motivo);
+        pedido.setEstado(Pedido.EstadoPedido.RECHAZADO);
+        pedido.setMotivoCancelacion(motivo);
     }
 
     /**
@@ -115,7 +329,6 @@ public class PedidoService {
      * @throws ResourceNotFoundException si el pedido no existe
      * @throws BusinessException si el estado no es válido
      */
-    @Transactional
     public Pedido cambiarEstado(String id, String estado) {
         log.info("Cambiando estado del pedido {} a {}", id, estado);
 
@@ -123,24 +336,60 @@ public class PedidoService {
             throw new BusinessException("El ID del pedido es requerido");
         }
 
-        Pedido pedido = pedidoRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Pedido no encontrado con ID: " + id));
+        return transacciones.ejecutar("cambiarEstado", () -> aplicarCambioEstado(id, estado));
+    }
 
-        Pedido.EstadoPedido estadoAnterior = pedido.getEstado();
+    private Pedido aplicarCambioEstado(String id, String estado) {
         Pedido.EstadoPedido nuevoEstado = validarYConvertirEstado(estado);
+        if (nuevoEstado == Pedido.EstadoPedido.RECIBIDO || nuevoEstado == Pedido.EstadoPedido.RECHAZADO) {
+            throw new BusinessException("Los estados RECIBIDO y RECHAZADO solo los asigna la recepción de pedidos");
+        }
+        // Cancelar por esta vía también devuelve el stock
+        if (nuevoEstado == Pedido.EstadoPedido.CANCELADO) {
+            return aplicarCancelacion(id);
+        }
 
-        // Validar transición de estado
-        validarTransicionEstado(estadoAnterior, nuevoEstado);
-
-        pedido.setEstado(nuevoEstado);
-        Pedido pedidoActualizado = pedidoRepository.save(pedido);
+        Pedido pedidoActualizado = transicionar(id, nuevoEstado,
+                estadoActual -> motivoTransicionNoPermitida(estadoActual, nuevoEstado));
 
-        log.info("Estado del pedido {} cambiado de {} a {}",
-                 id, estadoAnterior, nuevoEstado);
+        log.info("Estado del pedido {} cambiado a {}", id, nuevoEstado);
 
         return pedidoActualizado;
     }
 
+    /**
+     * Cambia el estado con una única actualización condicional: solo se aplica si el estado
+     * guardado está entre los que admiten la transición ({@link Pedido.EstadoPedido#origenesDe}).
+     * De dos cambios simultáneos incompatibles solo uno encuentra el pedido en un estado
+     * de origen válido; el otro falla como si hubiera leído el estado nuevo.
+     *
+     * @param motivo mensaje de error según el estado actual, si la transición no se aplica
+     * @return el pedido ya actualizado
+     * @throws ResourceNotFoundException si el pedido no existe
+     * @throws BusinessException si el estado actual no admite la transición
+     */
+    private Pedido transicionar(String id, Pedido.EstadoPedido nuevoEstado,
+                                Function<Pedido.EstadoPedido, String> motivo) {
+        Update update = ActualizacionParcial.cambios().set("estado", nuevoEstado);
+        if (nuevoEstado == Pedido.EstadoPedido.ENTREGADO) {
+            update.currentDate("fechaEntrega");
+        }
+
+        Pedido actualizado = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("id").is(id)
+                        .and("estado").in(Pedido.EstadoPedido.origenesDe(nuevoEstado))),
+                update,
+                FindAndModifyOptions.options().returnNew(true),
+                Pedido.class);
+        if (actualizado != null) {
+            return actualizado;
+        }
+
+        // Solo en el caso de error se lee el pedido, para distinguir el motivo
+        Pedido actual = buscarPorId(id);
+        throw new BusinessException(motivo.apply(actual.getEstado()));
+    }
+
     /**
      * Busca un pedido por ID.
      *
@@ -159,6 +408,23 @@ public class PedidoService {
                 .orElseThrow(() -> new ResourceNotFoundException("Pedido no encontrado con ID: " + id));
     }
 
+    /**
+     * Busca un pedido del usuario actual ya guardado en MongoDB.
+     *
+     * @param id ID del pedido, o null
+     * @return el pedido, o vacío si no existe o es de otro usuario
+     */
+    public Optional<Pedido> buscarPropio(String id) {
+        return buscarPropio(id, obtenerUsuarioActual());
+    }
+
+    private Optional<Pedido> buscarPropio(String id, UsuarioAutenticado usuario) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        return pedidoRepository.findById(id).filter(pedido -> usuario.getId().equals(pedido.getUsuarioId()));
+    }
+
     /**
      * Cancela un pedido y restaura el stock.
      *
@@ -167,88 +433,154 @@ public class PedidoService {
      * @throws ResourceNotFoundException si el pedido no existe
      * @throws BusinessException si el pedido no se puede cancelar
      */
-    @Transactional
     public Pedido cancelarPedido(String id) {
         log.info("Cancelando pedido: {}", id);
+        return transacciones.ejecutar("cancelarPedido", () -> aplicarCancelacion(id));
+    }
 
-        Pedido pedido = buscarPorId(id);
+    private Pedido aplicarCancelacion(String id) {
+        Pedido pedidoCancelado = transicionar(id, Pedido.EstadoPedido.CANCELADO, PedidoService::motivoCancelacionNoPermitida);
 
-        if (pedido.getEstado() == Pedido.EstadoPedido.ENTREGADO) {
-            throw new BusinessException("No se puede cancelar un pedido ya entregado");
-        }
+        // Solo la petición que ha cancelado el pedido devuelve el stock: una cancelación
+        // repetida o simultánea falla en la actualización condicional
+        restaurarStockProductos(pedidoCancelado);
+
+        log.info("Pedido {} cancelado exitosamente", id);
+        return pedidoCancelado;
+    }
+
+    /**
+     * Obtiene una página de los pedidos del sistema con información del usuario.
+     * Los usuarios se resuelven en una única consulta sobre los IDs distintos.
+     *
+     * @param cursor cursor opaco de la página anterior, o null para la primera
+     * @param limite tamaño máximo de la página
+     * @return Página de pedidos con información de usuario
+     */
+    public PaginaResponse<PedidoResponse> getAllWithUserInfo(String cursor, Integer limite) {
+        String ultimoId = CursorPaginacion.decodificar(cursor);
+        Pageable pagina = CursorPaginacion.pagina(CursorPaginacion.normalizarLimite(limite));
+        log.info("Obteniendo pedidos del sistema (con info de usuario) después de {}", ultimoId);
+
+        Slice<Pedido> pedidos = ultimoId == null
+            ? pedidoRepository.findAllBy(pagina)
+            : pedidoRepository.findByIdGreaterThan(ultimoId, pagina);
+        Map<String, Usuario> usuarios = resolverUsuarios(pedidos.getContent());
+        return CursorPaginacion.desde(pedidos, Pedido::getId,
+            pedido -> toPedidoResponse(pedido, usuarios.get(pedido.getUsuarioId())));
+    }
+
+    /**
+     * Obtiene una página de los pedidos del usuario autenticado actualmente como
+     * PedidoResponse, con precios formateados.
+     *
+     * @param cursor cursor opaco de la página anterior, o null para la primera
+     * @param limite tamaño máximo de la página
+     * @return Página de pedidos del usuario actual con información formateada
+     */
+    public PaginaResponse<PedidoResponse> getPedidosUsuarioActualConFormato(String cursor, Integer limite) {
+        String ultimoId = CursorPaginacion.decodificar(cursor);
+        Pageable pagina = CursorPaginacion.pagina(CursorPaginacion.normalizarLimite(limite));
+        UsuarioAutenticado usuario = obtenerUsuarioActual();
+
+        Slice<Pedido> pedidos = ultimoId == null
+            ? pedidoRepository.findByUsuarioId(usuario.getId(), pagina)
+            : pedidoRepository.findByUsuarioIdAndIdGreaterThan(usuario.getId(), ultimoId, pagina);
+        return CursorPaginacion.desde(pedidos, Pedido::getId,
+            pedido -> toPedidoResponse(pedido, usuario.getUsername(), usuario.getEmail()));
+    }
 
-        if (pedido.getEstado() == Pedido.EstadoPedido.CANCELADO) {
-            throw new BusinessException("El pedido ya está cancelado");
+    /**
+     * Recorre todos los pedidos del sistema con información del usuario usando un
+     * cursor de MongoDB, sin cargar la colección completa en memoria.
+     * Los usuarios se resuelven por lotes de {@value #LOTE_RECORRIDO} pedidos.
+     *
+     * @param consumidor recibe cada pedido en orden de ID
+     * @return número de pedidos recorridos
+     */
+    public long recorrerPedidosConUsuario(Consumer<PedidoResponse> consumidor) {
+        log.info("Recorriendo todos los pedidos del sistema mediante cursor");
+        Query query = new Query().with(Sort.by(Sort.Direction.ASC, "id")).cursorBatchSize(LOTE_RECORRIDO);
+
+        long total = 0;
+        List<Pedido> lote = new ArrayList<>(LOTE_RECORRIDO);
+        try (Stream<Pedido> pedidos = mongoTemplate.stream(query, Pedido.class)) {
+            Iterator<Pedido> iterador = pedidos.iterator();
+            while (iterador.hasNext()) {
+                lote.add(iterador.next());
+                if (lote.size() == LOTE_RECORRIDO || !iterador.hasNext()) {
+                    Map<String, Usuario> usuarios = resolverUsuarios(lote);
+                    lote.forEach(pedido -> consumidor.accept(toPedidoResponse(pedido, usuarios.get(pedido.getUsuarioId()))));
+                    total += lote.size();
+                    lote.clear();
+                }
+            }
         }
+        log.info("Recorridos {} pedidos", total);
+        return total;
+    }
 
-        // Restaurar stock
-        restaurarStockProductos(pedido);
+    // MÉTODOS PRIVADOS DE APOYO
 
-        // Cambiar estado
-        pedido.setEstado(Pedido.EstadoPedido.CANCELADO);
-        Pedido pedidoCancelado = pedidoRepository.save(pedido);
+    /**
+     * Obtiene el usuario autenticado actual del contexto de seguridad, sin consultar
+     * la base de datos salvo que el principal no traiga el ID del usuario.
+     */
+    private UsuarioAutenticado obtenerUsuarioActual() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || auth.getName() == null) {
+            throw new BusinessException("No hay usuario autenticado");
+        }
+        if (auth.getPrincipal() instanceof UsuarioAutenticado usuario && usuario.getId() != null) {
+            return usuario;
+        }
 
-        log.info("Pedido {} cancelado exitosamente", id);
-        return pedidoCancelado;
+        // Con jwt.claims-de-confianza el principal solo lleva el nombre y el rol del token
+        String username = auth.getName();
+        return usuarioRepository.findByUsername(username)
+                .map(UsuarioAutenticado::de)
+                .orElseThrow(() -> new ResourceNotFoundException("Usuario no encontrado: " + username));
     }
 
     /**
-     * Obtiene todos los pedidos del sistema con información del usuario.
+     * Carga en una única consulta los usuarios distintos de una lista de pedidos.
      *
-     * @return Lista de pedidos con información de usuario
+     * @return usuarios encontrados indexados por ID
      */
-    public List<PedidoResponse> getAllWithUserInfo() {
-        log.info("Obteniendo todos los pedidos del sistema (con info de usuario)");
-        List<Pedido> pedidos = pedidoRepository.findAll();
-        return pedidos.stream().map(pedido -> {
-            Usuario usuario = usuarioRepository.findById(pedido.getUsuarioId()).orElse(null);
-            return PedidoResponse.builder()
-                .id(pedido.getId())
-                .usuarioId(pedido.getUsuarioId())
-                .nombreUsuario(usuario != null ? usuario.getUsername() : "-")
-                .emailUsuario(usuario != null ? usuario.getEmail() : "-")
-                .productos(pedido.getProductos().stream().map(item -> PedidoResponse.ItemPedidoResponse.builder()
-                    .productoId(item.getProductoId())
-                    .nombreProducto(item.getNombreProducto())
-                    .cantidad(item.getCantidad())
-                    .precioUnitario(item.getPrecioUnitario())
-                    .subtotal(item.getPrecioUnitario() != null && item.getCantidad() != null ? item.getPrecioUnitario() * item.getCantidad() : 0.0)
-                    // No es necesario calcular aquí el formateado, lo hace el DTO
-                    .build()).collect(java.util.stream.Collectors.toList()))
-                .fecha(pedido.getFecha())
-                .estado(pedido.getEstado().name())
-                .estadoDescripcion(pedido.getEstado().toString())
-                .fechaActualizacion(pedido.getFechaActualizacion())
-                .direccionEnvio(pedido.getDireccionEnvio())
-                .notas(pedido.getNotas())
-                .numeroSeguimiento(pedido.getNumeroSeguimiento())
-                .fechaEstimadaEntrega(pedido.getFechaEstimadaEntrega())
-                .fechaEntrega(pedido.getFechaEntrega())
-                .motivoCancelacion(pedido.getMotivoCancelacion())
-                .build();
-        }).collect(java.util.stream.Collectors.toList());
+    private Map<String, Usuario> resolverUsuarios(List<Pedido> pedidos) {
+        Set<String> usuarioIds = pedidos.stream()
+            .map(Pedido::getUsuarioId)
+            .filter(Objects::nonNull)
+            .collect(java.util.stream.Collectors.toSet());
+        Map<String, Usuario> usuarios = new HashMap<>();
+        usuarioRepository.findAllById(usuarioIds).forEach(u -> usuarios.put(u.getId(), u));
+        return usuarios;
     }
 
     /**
-     * Obtiene los pedidos del usuario autenticado actualmente como PedidoResponse,
-     * con precios formateados.
+     * Convierte un pedido en su DTO de respuesta con los datos del usuario.
      *
-     * @return Lista de pedidos del usuario actual con información formateada
+     * @param usuario usuario propietario, o null si ya no existe
      */
-    public List<PedidoResponse> getPedidosUsuarioActualConFormato() {
-        Usuario usuario = obtenerUsuarioActual();
-        List<Pedido> pedidos = pedidoRepository.findByUsuarioId(usuario.getId());
-        return pedidos.stream().map(pedido -> PedidoResponse.builder()
+    static PedidoResponse toPedidoResponse(Pedido pedido, Usuario usuario) {
+        return usuario != null
+            ? toPedidoResponse(pedido, usuario.getUsername(), usuario.getEmail())
+            : toPedidoResponse(pedido, "-", "-");
+    }
+
+    static PedidoResponse toPedidoResponse(Pedido pedido, String nombreUsuario, String emailUsuario) {
+        return PedidoResponse.builder()
             .id(pedido.getId())
             .usuarioId(pedido.getUsuarioId())
-            .nombreUsuario(usuario.getUsername())
-            .emailUsuario(usuario.getEmail())
+            .nombreUsuario(nombreUsuario)
+            .emailUsuario(emailUsuario)
             .productos(pedido.getProductos().stream().map(item -> PedidoResponse.ItemPedidoResponse.builder()
                 .productoId(item.getProductoId())
                 .nombreProducto(item.getNombreProducto())
                 .cantidad(item.getCantidad())
                 .precioUnitario(item.getPrecioUnitario())
                 .subtotal(item.getPrecioUnitario() != null && item.getCantidad() != null ? item.getPrecioUnitario() * item.getCantidad() : 0.0)
+                // No es necesario calcular aquí el formateado, lo hace el DTO
                 .build()).collect(java.util.stream.Collectors.toList()))
             .fecha(pedido.getFecha())
             .estado(pedido.getEstado().name())
@@ -260,24 +592,7 @@ public class PedidoService {
             .fechaEstimadaEntrega(pedido.getFechaEstimadaEntrega())
             .fechaEntrega(pedido.getFechaEntrega())
             .motivoCancelacion(pedido.getMotivoCancelacion())
-            .build()
-        ).collect(java.util.stream.Collectors.toList());
-    }
-
-    // MÉTODOS PRIVADOS DE APOYO
-
-    /**
-     * Obtiene el usuario autenticado actual.
-     */
-    private Usuario obtenerUsuarioActual() {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        if (auth == null || auth.getName() == null) {
-            throw new BusinessException("No hay usuario autenticado");
-        }
-
-        String username = auth.getName();
-        return usuarioRepository.findByUsername(username)
-                .orElseThrow(() -> new ResourceNotFoundException("Usuario no encontrado: " + username));
+            .build();
     }
 
     /**
@@ -322,19 +637,35 @@ public class PedidoService {
         }
     }
 
+    /**
+     * Carga en una única consulta {@code $in} todos los productos indicados.
+     *
+     * @return productos encontrados indexados por ID
+     */
+    private Map<String, Producto> resolverProductos(Collection<String> productoIds) {
+        Map<String, Producto> productos = new HashMap<>();
+        productoRepository.findAllById(productoIds).forEach(p -> productos.put(p.getId(), p));
+        log.debug("Resueltos {} de {} productos solicitados", productos.size(), productoIds.size());
+        return productos;
+    }
+
     /**
      * Valida el stock disponible y calcula el total del pedido.
      */
-    private void validarStockYCalcularTotal(Pedido pedido) {
+    private void validarStockYCalcularTotal(Pedido pedido, Map<String, Integer> cantidades,
+                                            Map<String, Producto> productos) {
         for (Pedido.ItemPedido item : pedido.getProductos()) {
-            Producto producto = productoRepository.findById(item.getProductoId())
-                    .orElseThrow(() -> new ResourceNotFoundException("Producto no encontrado: " + item.getProductoId()));
+            Producto producto = productos.get(item.getProductoId());
+            if (producto == null) {
+                throw new ResourceNotFoundException("Producto no encontrado: " + item.getProductoId());
+            }
 
-            // Validar stock disponible
-            if (producto.getStock() < item.getCantidad()) {
+            // Validar stock disponible para la cantidad total pedida de este producto
+            int solicitado = cantidades.get(item.getProductoId());
+            if (producto.getStock() == null || producto.getStock() < solicitado) {
                 throw new BusinessException(
                     String.format("Stock insuficiente para el producto '%s'. Disponible: %d, solicitado: %d",
-                        producto.getNombre(), producto.getStock(), item.getCantidad()));
+                        producto.getNombre(), producto.getStock(), solicitado));
             }
             // Establecer precio unitario y nombre del producto al momento de la compra
             Double precioUnitario = producto.getPrecio();
@@ -343,34 +674,14 @@ public class PedidoService {
         }
     }
 
-    /**
-     * Actualiza el stock de los productos después de crear un pedido.
-     */
-    private void actualizarStockProductos(Pedido pedido) {
-        for (Pedido.ItemPedido item : pedido.getProductos()) {
-            Producto producto = productoRepository.findById(item.getProductoId()).orElseThrow();
-            int nuevoStock = producto.getStock() - item.getCantidad();
-            producto.setStock(nuevoStock);
-            productoRepository.save(producto);
-
-            log.debug("Stock actualizado para producto {}: {} -> {}",
-                     producto.getNombre(), producto.getStock() + item.getCantidad(), nuevoStock);
-        }
-    }
-
     /**
      * Restaura el stock de los productos al cancelar un pedido.
+     * Los productos eliminados desde la compra los omite {@link ReservaStockService#liberar}.
      */
     private void restaurarStockProductos(Pedido pedido) {
-        for (Pedido.ItemPedido item : pedido.getProductos()) {
-            Producto producto = productoRepository.findById(item.getProductoId()).orElseThrow();
-            int stockRestaurado = producto.getStock() + item.getCantidad();
-            producto.setStock(stockRestaurado);
-            productoRepository.save(producto);
-
-            log.debug("Stock restaurado para producto {}: {} -> {}",
-                     producto.getNombre(), producto.getStock() - item.getCantidad(), stockRestaurado);
-        }
+        Map<String, Integer> cantidades = reservaStockService.agruparCantidades(pedido.getProductos());
+        reservaStockService.liberar(cantidades);
+        log.debug("Stock restaurado para {} productos del pedido {}", cantidades.size(), pedido.getId());
     }
 
     /**
@@ -389,28 +700,28 @@ public class PedidoService {
     }
 
     /**
-     * Valida que la transición de estado sea permitida.
+     * Explica por qué un pedido en el estado actual no puede pasar al nuevo.
      */
-    private void validarTransicionEstado(Pedido.EstadoPedido estadoActual, Pedido.EstadoPedido nuevoEstado) {        // Reglas de transición de estados
-        switch (estadoActual) {
-            case PENDIENTE:
-                // Desde PENDIENTE se puede ir a cualquier estado
-                break;
-            case CONFIRMADO:
-                // Desde CONFIRMADO se puede ir a cualquier estado excepto a PENDIENTE
-                if (nuevoEstado == Pedido.EstadoPedido.PENDIENTE) {
-                    throw new BusinessException("No se puede cambiar un pedido confirmado a pendiente");
-                }
-                break;
-            case ENVIADO:
-                if (nuevoEstado == Pedido.EstadoPedido.PENDIENTE) {
-                    throw new BusinessException("No se puede cambiar un pedido enviado a pendiente");
-                }
-                break;
-            case ENTREGADO:
-                throw new BusinessException("No se puede cambiar el estado de un pedido ya entregado");
-            case CANCELADO:
-                throw new BusinessException("No se puede cambiar el estado de un pedido cancelado");
-        }
+    private static String motivoTransicionNoPermitida(Pedido.EstadoPedido estadoActual, Pedido.EstadoPedido nuevoEstado) {
+        return switch (estadoActual) {
+            case ENTREGADO -> "No se puede cambiar el estado de un pedido ya entregado";
+            case CANCELADO -> "No se puede cambiar el estado de un pedido cancelado";
+            case RECHAZADO -> "No se puede cambiar el estado de un pedido rechazado";
+            default -> "No se puede cambiar un pedido " + estadoActual.name().toLowerCase()
+                    + " a " + nuevoEstado.name().toLowerCase();
+        };
+    }
+
+    /**
+     * Explica por qué un pedido en el estado actual no se puede cancelar.
+     */
+    private static String motivoCancelacionNoPermitida(Pedido.EstadoPedido estadoActual) {
+        return switch (estadoActual) {
+            case ENTREGADO -> "No se puede cancelar un pedido ya entregado";
+            case CANCELADO -> "El pedido ya está cancelado";
+            // Un pedido rechazado nunca llegó a reservar stock
+            case RECHAZADO -> "No se puede cancelar un pedido rechazado";
+            default -> "No se puede cancelar un pedido en estado " + estadoActual;
+        };
     }
 }
@@ -0,0 +1,74 @@
+package com.ejemplo.tienda_online.service;
+
+import com.ejemplo.tienda_online.dto.PaginaResponse;
+import com.ejemplo.tienda_online.dto.ProductoResponse;
+import com.ejemplo.tienda_online.exception.ResourceNotFoundException;
+import com.ejemplo.tienda_online.model.Producto;
+import com.ejemplo.tienda_online.repository.ProductoReactiveRepository;
+import com.ejemplo.tienda_online.util.CursorPaginacion;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Consultas del catálogo para la API reactiva (perfil {@code reactivo}).
+ *
+ * <p>Devuelve las mismas respuestas que {@link ProductoService}, pero lee directamente de
+ * MongoDB con el driver reactivo, sin la caché del catálogo.</p>
+ *
+ * @author Sistema Tienda Online
+ * @version 1.0
+ */
+@Slf4j
+@Service
+@Profile("reactivo")
+@RequiredArgsConstructor
+public class ProductoReactivoService {
+
+    private final ProductoReactiveRepository productoRepository;
+
+    /**
+     * Obtiene una página del catálogo.
+     *
+     * @param cursor cursor opaco de la página anterior, o null para la primera
+     * @param limite tamaño máximo de la página
+     */
+    public Mono<PaginaResponse<ProductoResponse>> getPagina(String cursor, Integer limite) {
+        return Mono.defer(() -> {
+            String ultimoId = CursorPaginacion.decodificar(cursor);
+            int tamanio = CursorPaginacion.normalizarLimite(limite);
+            // Un elemento de más indica si hay página siguiente
+            Pageable pagina = CursorPaginacion.pagina(tamanio + 1);
+            Flux<Producto> productos = ultimoId == null
+                    ? productoRepository.findByPrecioNotNullAndStockNotNull(pagina)
+                    : productoRepository.findByIdGreaterThanAndPrecioNotNullAndStockNotNull(ultimoId, pagina);
+            return productos.collectList()
+                    .map(lista -> CursorPaginacion.desde(lista, tamanio, Producto::getId, ProductoService::toResponse));
+        });
+    }
+
+    /**
+     * Recorre el catálogo completo en orden de ID. Los documentos se piden a MongoDB a
+     * medida que el cliente consume la respuesta.
+     */
+    public Flux<ProductoResponse> getCatalogo() {
+        log.info("Emitiendo el catálogo completo en streaming");
+        return productoRepository.findByPrecioNotNullAndStockNotNull(Sort.by(Sort.Direction.ASC, "id"))
+                .map(ProductoService::toResponse);
+    }
+
+    /**
+     * Obtiene un producto por ID.
+     *
+     * @throws ResourceNotFoundException (como error del Mono) si el producto no existe
+     */
+    public Mono<Producto> getById(String id) {
+        return productoRepository.findById(id)
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("Producto", "id", id)));
+    }
+}
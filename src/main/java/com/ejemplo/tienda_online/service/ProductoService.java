@@ -1,14 +1,32 @@
 package com.ejemplo.tienda_online.service;
 
+import com.ejemplo.tienda_online.dto.FiltroProductos;
+import com.ejemplo.tienda_online.dto.PaginaResponse;
+import com.ejemplo.tienda_online.dto.ProductoResponse;
 import com.ejemplo.tienda_online.exception.BusinessException;
+import com.ejemplo.tienda_online.exception.ConflictoEdicionException;
 import com.ejemplo.tienda_online.exception.ResourceNotFoundException;
 import com.ejemplo.tienda_online.model.Producto;
 import com.ejemplo.tienda_online.repository.ProductoRepository;
+import com.ejemplo.tienda_online.util.ActualizacionParcial;
+import com.ejemplo.tienda_online.util.CursorPaginacion;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Collation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,6 +40,12 @@ import java.util.Optional;
 public class ProductoService {
 
     private final ProductoRepository productoRepository;
+    private final CatalogoCache catalogoCache;
+    private final ObjectMapper objectMapper;
+    private final MongoTemplate mongoTemplate;
+    private final BusquedaProductosService busquedaProductosService;
+    private final StockFraccionadoService stockFraccionado;
+    private final ReintentosConcurrencia reintentos;
 
     private static final double MIN_PRICE = 0.01;
     private static final double MAX_PRICE = 999999.99;
@@ -29,38 +53,201 @@ public class ProductoService {
     private static final int MAX_STOCK = 999999;
 
     /**
-     * Obtiene todos los productos
+     * Colación del índice {@code nombre_ci}: compara nombres sin distinguir mayúsculas.
+     */
+    static final Collation COLACION_NOMBRE = Collation.of("es").strength(Collation.ComparisonLevel.secondary());
+
+    /**
+     * Obtiene todos los productos válidos (con precio y stock definidos).
+     * Los productos incompletos los corrige {@link IntegridadDatosService}
      * @return lista de productos
      */
     public List<Producto> getAll() {
         log.info("Obteniendo todos los productos");
-        List<Producto> productos = productoRepository.findAll();
-        boolean huboCorregidos = false;
-        for (Producto p : productos) {
-            boolean modificado = false;
-            // Corrige precio nulo o no numérico
-            if (p.getPrecio() == null) {
-                p.setPrecio(0.0);
-                modificado = true;
-            }
-            // Corrige stock nulo o no numérico
-            if (p.getStock() == null) {
-                p.setStock(0);
-                modificado = true;
+        return productoRepository.findByPrecioNotNullAndStockNotNull();
+    }
+
+    /**
+     * Obtiene una página del catálogo, ya serializada, mediante paginación por cursor
+     * @param cursor cursor opaco de la página anterior, o null para la primera
+     * @param limite tamaño máximo de la página
+     * @return página serializada, con su ETag y el cursor de la siguiente
+     */
+    public CatalogoSnapshot getPagina(String cursor, Integer limite) {
+        String ultimoId = CursorPaginacion.decodificar(cursor);
+        int tamanio = CursorPaginacion.normalizarLimite(limite);
+        return catalogoCache.getPagina(ultimoId, tamanio, () -> cargarPagina(ultimoId, tamanio));
+    }
+
+    private CatalogoSnapshot cargarPagina(String ultimoId, int limite) {
+        long version = catalogoCache.getGeneracion();
+        Pageable pagina = CursorPaginacion.pagina(limite);
+        log.info("Obteniendo página de productos después de {} (límite {})", ultimoId, limite);
+
+        Slice<Producto> productos = ultimoId == null
+            ? productoRepository.findByPrecioNotNullAndStockNotNull(pagina)
+            : productoRepository.findByIdGreaterThanAndPrecioNotNullAndStockNotNull(ultimoId, pagina);
+
+        PaginaResponse<ProductoResponse> respuesta = CursorPaginacion.desde(productos, Producto::getId, ProductoService::toResponse);
+        return CatalogoSnapshot.de(respuesta, version, objectMapper);
+    }
+
+    /**
+     * Consulta el catálogo combinando filtros, orden y paginación por cursor.
+     * Cada combinación de filtros se resuelve con alguno de los índices declarados en {@link Producto}
+     * @param filtro criterios de la consulta
+     * @param cursor cursor opaco de la página anterior, o null para la primera
+     * @param limite tamaño máximo de la página
+     * @return página de productos y cursor de la siguiente
+     * @throws BusinessException si los criterios o el cursor no son válidos
+     */
+    public PaginaResponse<ProductoResponse> consultar(FiltroProductos filtro, String cursor, Integer limite) {
+        int tamanio = CursorPaginacion.normalizarLimite(limite);
+        OrdenConsulta orden = OrdenConsulta.desde(filtro.getOrden());
+        log.info("Consultando productos con {} (límite {})", filtro, tamanio);
+
+        List<Producto> productos = mongoTemplate.find(construirConsulta(filtro, cursor, tamanio), Producto.class);
+        String siguiente = null;
+        if (productos.size() > tamanio) {
+            productos = productos.subList(0, tamanio);
+            siguiente = orden.cursor(productos.get(tamanio - 1));
+        }
+
+        return PaginaResponse.<ProductoResponse>builder()
+            .contenido(productos.stream().map(ProductoService::toResponse).toList())
+            .siguienteCursor(siguiente)
+            .limite(tamanio)
+            .build();
+    }
+
+    /**
+     * Construye la consulta de {@link #consultar}; pide un elemento más que el límite
+     * para saber si hay página siguiente
+     */
+    Query construirConsulta(FiltroProductos filtro, String cursor, int limite) {
+        validarFiltro(filtro);
+        OrdenConsulta orden = OrdenConsulta.desde(filtro.getOrden());
+
+        List<Criteria> criterios = new ArrayList<>();
+        criterios.add(Criteria.where("precio").ne(null));
+        criterios.add(Criteria.where("stock").ne(null));
+        if (StringUtils.hasText(filtro.getCategoria())) {
+            criterios.add(Criteria.where("categoria").is(filtro.getCategoria().trim()));
+        }
+        if (filtro.getPrecioMin() != null || filtro.getPrecioMax() != null) {
+            Criteria precio = Criteria.where("precio");
+            if (filtro.getPrecioMin() != null) precio.gte(filtro.getPrecioMin());
+            if (filtro.getPrecioMax() != null) precio.lte(filtro.getPrecioMax());
+            criterios.add(precio);
+        }
+        if (Boolean.TRUE.equals(filtro.getEnStock())) {
+            criterios.add(Criteria.where("stock").gt(0));
+        }
+        boolean porNombre = StringUtils.hasText(filtro.getNombre());
+        if (porNombre) {
+            // Rango sobre el índice con colación: U+FFFF ordena después de cualquier carácter
+            String prefijo = filtro.getNombre().trim();
+            criterios.add(Criteria.where("nombre").gte(prefijo).lt(prefijo + '\uffff'));
+        }
+        criterios.addAll(criteriosDeCursor(orden, cursor));
+
+        Query consulta = new Query(new Criteria().andOperator(criterios))
+            .with(orden.sort())
+            .limit(limite + 1);
+        if (porNombre || orden.campo.equals("nombre")) {
+            consulta.collation(COLACION_NOMBRE);
+        }
+        return consulta;
+    }
+
+    /**
+     * Condición de paginación por cursor: elementos posteriores al último recibido
+     * según el orden (campo, id)
+     */
+    private List<Criteria> criteriosDeCursor(OrdenConsulta orden, String cursor) {
+        boolean ascendente = orden.direccion.isAscending();
+        if (orden == OrdenConsulta.ID) {
+            String ultimoId = CursorPaginacion.decodificar(cursor);
+            return ultimoId == null ? List.of() : List.of(Criteria.where("id").gt(ultimoId));
+        }
+
+        String[] partes = CursorPaginacion.decodificar(cursor, orden.clave);
+        if (partes == null) {
+            return List.of();
+        }
+        Object valor;
+        try {
+            valor = orden.campo.equals("precio") ? Double.valueOf(partes[0]) : partes[0];
+        } catch (NumberFormatException e) {
+            throw new BusinessException("Cursor de paginación inválido");
+        }
+        String ultimoId = partes[1];
+
+        // campo >= valor (o <=) excluyendo los empates con ID ya devuelto
+        Criteria desde = ascendente
+            ? Criteria.where(orden.campo).gte(valor)
+            : Criteria.where(orden.campo).lte(valor);
+        Criteria empatesVistos = ascendente
+            ? Criteria.where(orden.campo).is(valor).and("id").lte(ultimoId)
+            : Criteria.where(orden.campo).is(valor).and("id").gte(ultimoId);
+        return List.of(desde, new Criteria().norOperator(empatesVistos));
+    }
+
+    private void validarFiltro(FiltroProductos filtro) {
+        Double min = filtro.getPrecioMin();
+        Double max = filtro.getPrecioMax();
+        if ((min != null && min < 0) || (max != null && max < 0)) {
+            throw new BusinessException("El precio del filtro no puede ser negativo");
+        }
+        if (min != null && max != null && min > max) {
+            throw new BusinessException("El precio mínimo no puede ser mayor que el máximo");
+        }
+    }
+
+    /**
+     * Órdenes admitidos por la consulta de productos; el ID desempata siempre.
+     */
+    private enum OrdenConsulta {
+        ID("id", "id", Sort.Direction.ASC),
+        PRECIO("precio", "precio", Sort.Direction.ASC),
+        PRECIO_DESC("-precio", "precio", Sort.Direction.DESC),
+        NOMBRE("nombre", "nombre", Sort.Direction.ASC),
+        NOMBRE_DESC("-nombre", "nombre", Sort.Direction.DESC);
+
+        private final String clave;
+        private final String campo;
+        private final Sort.Direction direccion;
+
+        OrdenConsulta(String clave, String campo, Sort.Direction direccion) {
+            this.clave = clave;
+            this.campo = campo;
+            this.direccion = direccion;
+        }
+
+        static OrdenConsulta desde(String valor) {
+            if (!StringUtils.hasText(valor)) {
+                return ID;
             }
-            if (modificado) {
-                productoRepository.save(p);
-                huboCorregidos = true;
-                log.warn("Producto corregido automáticamente: {} (precio: {}, stock: {})", p.getNombre(), p.getPrecio(), p.getStock());
+            for (OrdenConsulta orden : values()) {
+                if (orden.clave.equalsIgnoreCase(valor.trim())) {
+                    return orden;
+                }
             }
+            throw new BusinessException("Orden no válido. Valores permitidos: id, precio, -precio, nombre, -nombre");
         }
-        if (huboCorregidos) {
-            log.warn("Se corrigieron productos con datos nulos en precio o stock antes de enviar al frontend.");
+
+        Sort sort() {
+            Sort porId = Sort.by(direccion, "id");
+            return this == ID ? porId : Sort.by(direccion, campo).and(porId);
+        }
+
+        String cursor(Producto ultimo) {
+            if (this == ID) {
+                return CursorPaginacion.codificar(ultimo.getId());
+            }
+            Object valor = campo.equals("precio") ? ultimo.getPrecio() : ultimo.getNombre();
+            return CursorPaginacion.codificar(clave, String.valueOf(valor), ultimo.getId());
         }
-        // Devuelve solo productos válidos
-        return productos.stream()
-            .filter(p -> p.getPrecio() != null && p.getStock() != null)
-            .toList();
     }
 
     /**
@@ -70,22 +257,37 @@ public class ProductoService {
      * @throws ResourceNotFoundException si el producto no existe
      */
     public Producto getById(String id) {
-        log.info("Buscando producto con ID: {}", id);
+        Producto producto = catalogoCache.getProducto(id, () -> {
+            log.info("Buscando producto con ID: {}", id);
+            return productoRepository.findById(id).orElse(null);
+        });
+        if (producto == null) {
+            throw new ResourceNotFoundException("Producto", "id", id);
+        }
+        return producto;
+    }
+
+    /**
+     * Obtiene un producto directamente de la base de datos, sin pasar por la caché,
+     * para las operaciones que lo van a modificar
+     */
+    private Producto buscarProducto(String id) {
         return productoRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Producto", "id", id));
     }
 
     /**
-     * Busca productos por nombre
-     * @param nombre nombre o parte del nombre del producto
+     * Busca productos por texto en nombre, categoría y descripción, ordenados por relevancia
+     * @param texto texto de búsqueda
+     * @param limite número máximo de resultados (opcional)
      * @return lista de productos que coinciden
      */
-    public List<Producto> findByNombre(String nombre) {
-        if (!StringUtils.hasText(nombre)) {
+    public List<Producto> buscar(String texto, Integer limite) {
+        if (!StringUtils.hasText(texto)) {
             return getAll();
         }
-        log.info("Buscando productos por nombre: {}", nombre);
-        return productoRepository.findByNombreContainingIgnoreCase(nombre);
+        log.info("Buscando productos: {}", texto);
+        return busquedaProductosService.buscar(texto, limite);
     }
 
     /**
@@ -109,34 +311,128 @@ public class ProductoService {
         validateProducto(producto);
         checkDuplicateProduct(producto.getNombre(), null);
 
+        // Sin versión, save() inserta el documento
+        producto.setVersion(null);
         Producto savedProduct = productoRepository.save(producto);
+        catalogoCache.productoCreado();
+        busquedaProductosService.indexar(savedProduct);
         log.info("Producto creado con ID: {}", savedProduct.getId());
 
         return savedProduct;
     }
 
     /**
-     * Actualiza un producto existente
+     * Actualiza un producto existente combinando la edición con los cambios concurrentes.
+     * Los campos que no se envían conservan su valor. Con {@code stockLeido}, el stock
+     * enviado se aplica como diferencia respecto al leído, así que las compras y
+     * cancelaciones hechas mientras se editaba se conservan; sin él, el stock enviado
+     * sustituye al actual. Si la edición lleva la versión leída y otra edición ha
+     * cambiado el producto desde entonces, se rechaza
      * @param id identificador del producto
-     * @param producto nuevos datos del producto
+     * @param producto nuevos datos del producto, con la versión leída (opcional)
+     * @param stockLeido stock que tenía el producto al leerlo para editarlo (opcional)
      * @return producto actualizado
      * @throws ResourceNotFoundException si el producto no existe
      * @throws BusinessException si los datos son inválidos
-     */    public Producto update(String id, Producto producto) {
+     * @throws ConflictoEdicionException si la versión enviada no es la actual
+     */
+    public Producto update(String id, Producto producto, Integer stockLeido) {
         log.info("Actualizando producto con ID: {}", id);
 
-        // Verificar que el producto existe (lanza excepción si no existe)
-        getById(id);
-        validateProducto(producto);
-        checkDuplicateProduct(producto.getNombre(), id);
-
-        producto.setId(id);
-        Producto updatedProduct = productoRepository.save(producto);
+        Producto updatedProduct = reintentos.ejecutar("productos.editar",
+                () -> aplicarEdicion(id, producto, stockLeido));
+        catalogoCache.invalidarProducto(id);
+        busquedaProductosService.indexar(updatedProduct);
 
         log.info("Producto actualizado: {}", updatedProduct.getNombre());
         return updatedProduct;
     }
 
+    /**
+     * Un intento de edición: lee el producto, combina y escribe condicionado a la versión
+     * leída. Si otra edición se adelanta, {@link ReintentosConcurrencia} lo repite.
+     */
+    private Producto aplicarEdicion(String id, Producto producto, Integer stockLeido) {
+        // Verificar que el producto existe (lanza excepción si no existe)
+        Producto existente = buscarProducto(id);
+        if (producto.getVersion() != null && !producto.getVersion().equals(existente.getVersion())) {
+            throw new ConflictoEdicionException(
+                    "El producto ha sido modificado por otra edición; vuelva a cargarlo", existente.getVersion());
+        }
+        Producto fusionado = fusionar(existente, producto, stockLeido);
+        validateProducto(fusionado);
+        checkDuplicateProduct(fusionado.getNombre(), id);
+
+        // Solo los campos editables: el modo de stock (fraccionarStock/unificarStock) y la
+        // fecha de creación no los cambia una edición
+        Query query = ActualizacionParcial.porId(id);
+        query.addCriteria(Criteria.where(ActualizacionParcial.VERSION).is(existente.getVersion()));
+        Update update = ActualizacionParcial.cambios()
+                .set("nombre", fusionado.getNombre())
+                .set("descripcion", fusionado.getDescripcion())
+                .set("precio", fusionado.getPrecio())
+                .set("categoria", fusionado.getCategoria())
+                .set("imagenUrl", fusionado.getImagenUrl());
+        // Diferencia y no valor: se conservan las compras hechas desde la lectura
+        int diferencia = fusionado.getStock() - stockDe(existente);
+        boolean fraccionado = esFraccionado(existente);
+        if (diferencia != 0) {
+            update.inc("stock", diferencia);
+            if (!fraccionado) {
+                query.addCriteria(Criteria.where("stock").gte(-diferencia));
+            }
+        }
+        // Con el stock fraccionado las unidades que se retiran se reservan antes en las
+        // fracciones, y se devuelven si la edición no se aplica
+        if (fraccionado && diferencia < 0 && !stockFraccionado.reservar(id, -diferencia)) {
+            throw new BusinessException("Stock insuficiente para retirar " + -diferencia + " unidades");
+        }
+
+        Producto actualizado = mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), Producto.class);
+        if (actualizado == null) {
+            if (fraccionado && diferencia < 0) {
+                stockFraccionado.liberar(id, -diferencia);
+            }
+            throw new OptimisticLockingFailureException("El producto " + id + " ha cambiado durante la edición");
+        }
+        if (fraccionado && diferencia > 0) {
+            stockFraccionado.liberar(id, diferencia);
+        }
+        return actualizado;
+    }
+
+    /**
+     * Aplica sobre el producto guardado los campos enviados en la edición.
+     */
+    private static Producto fusionar(Producto existente, Producto cambios, Integer stockLeido) {
+        int stock = stockDe(existente);
+        if (cambios.getStock() != null) {
+            stock = stockLeido != null ? stock + (cambios.getStock() - stockLeido) : cambios.getStock();
+        }
+        return Producto.builder()
+                .id(existente.getId())
+                .version(existente.getVersion())
+                .nombre(valorOActual(cambios.getNombre(), existente.getNombre()))
+                .descripcion(valorOActual(cambios.getDescripcion(), existente.getDescripcion()))
+                .precio(valorOActual(cambios.getPrecio(), existente.getPrecio()))
+                .stock(stock)
+                .fraccionesStock(existente.getFraccionesStock())
+                .categoria(valorOActual(cambios.getCategoria(), existente.getCategoria()))
+                .fechaCreacion(existente.getFechaCreacion())
+                .fechaActualizacion(existente.getFechaActualizacion())
+                .imagenUrl(valorOActual(cambios.getImagenUrl(), existente.getImagenUrl()))
+                .build();
+    }
+
+    private static <T> T valorOActual(T nuevo, T actual) {
+        return nuevo != null ? nuevo : actual;
+    }
+
+    private static int stockDe(Producto producto) {
+        return producto.getStock() != null ? producto.getStock() : 0;
+    }
+
     /**
      * Elimina un producto
      * @param id identificador del producto
@@ -145,8 +441,13 @@ public class ProductoService {
     public void delete(String id) {
         log.info("Eliminando producto con ID: {}", id);
 
-        Producto producto = getById(id);
+        Producto producto = buscarProducto(id);
         productoRepository.deleteById(id);
+        if (producto.getFraccionesStock() != null) {
+            stockFraccionado.eliminar(id);
+        }
+        catalogoCache.invalidarProducto(id);
+        busquedaProductosService.eliminar(id);
 
         log.info("Producto eliminado: {}", producto.getNombre());
     }
@@ -160,15 +461,27 @@ public class ProductoService {
     public Producto updateStock(String id, Integer cantidad) {
         log.info("Actualizando stock del producto {} a {}", id, cantidad);
 
-        Producto producto = getById(id);
+        Producto producto = buscarProducto(id);
         validateStock(cantidad);
 
-        producto.setStock(cantidad);
-        return productoRepository.save(producto);
+        if (esFraccionado(producto)) {
+            stockFraccionado.fijarStock(id, cantidad);
+        }
+        Producto actualizado = actualizarCampos(producto,
+                ActualizacionParcial.porId(id, "stock", ActualizacionParcial.FECHA_ACTUALIZACION),
+                ActualizacionParcial.cambios().set("stock", cantidad));
+        catalogoCache.invalidarProducto(id);
+        return actualizado;
     }
 
     /**
-     * Reduce el stock de un producto
+     * Reduce el stock de un producto.
+     *
+     * <p>Con el stock fraccionado el descuento se hace en una fracción y el documento del
+     * producto no cambia hasta la reconciliación: el stock devuelto es aproximado (el
+     * leído menos la cantidad, sin las ventas simultáneas en otras fracciones) y
+     * {@code fechaActualizacion} y {@code version} son las de la lectura.</p>
+     *
      * @param id identificador del producto
      * @param cantidad cantidad a reducir
      * @return producto actualizado
@@ -177,15 +490,106 @@ public class ProductoService {
     public Producto reduceStock(String id, Integer cantidad) {
         log.info("Reduciendo stock del producto {} en {}", id, cantidad);
 
-        Producto producto = getById(id);
+        Producto producto = buscarProducto(id);
 
-        if (producto.getStock() < cantidad) {
-            throw new BusinessException("Stock insuficiente. Disponible: " + producto.getStock() +
+        if (esFraccionado(producto)) {
+            if (!stockFraccionado.reservar(id, cantidad)) {
+                throw new BusinessException("Stock insuficiente. Disponible: " + producto.getStock() +
+                                          ", Solicitado: " + cantidad);
+            }
+            // El stock del documento lo actualiza la reconciliación de las fracciones
+            catalogoCache.invalidarProducto(id);
+            producto.setStock(producto.getStock() - cantidad);
+            return producto;
+        }
+
+        // Descuento condicional: dos compras simultáneas no pueden dejar el stock en negativo
+        Query query = ActualizacionParcial.porId(id, "stock", ActualizacionParcial.FECHA_ACTUALIZACION);
+        query.addCriteria(Criteria.where("stock").gte(cantidad).and("fraccionesStock").exists(false));
+        Producto actualizado = actualizarCampos(producto, query, ActualizacionParcial.movimientoStock(-cantidad));
+        if (actualizado == null) {
+            Producto actual = buscarProducto(id);
+            if (esFraccionado(actual)) {
+                // Se ha fraccionado desde la lectura
+                return reduceStock(id, cantidad);
+            }
+            throw new BusinessException("Stock insuficiente. Disponible: " + actual.getStock() +
                                       ", Solicitado: " + cantidad);
         }
+        catalogoCache.invalidarProducto(id);
+        return actualizado;
+    }
+
+    /**
+     * Aplica una actualización parcial y copia en el producto leído los campos que
+     * devuelve, sin volver a leer el documento completo.
+     *
+     * @param consulta consulta por ID con los campos a devolver
+     * @return el producto actualizado, o null si la consulta no coincide
+     */
+    private Producto actualizarCampos(Producto producto, Query consulta, Update update) {
+        Producto cambios = mongoTemplate.findAndModify(consulta, update,
+                FindAndModifyOptions.options().returnNew(true), Producto.class);
+        if (cambios == null) {
+            return null;
+        }
+        producto.setStock(cambios.getStock());
+        producto.setFechaActualizacion(cambios.getFechaActualizacion());
+        return producto;
+    }
+
+    /**
+     * Reparte el stock de un producto en fracciones para ventas flash
+     * @param id identificador del producto
+     * @param fracciones número de fracciones
+     * @return producto actualizado
+     * @throws ResourceNotFoundException si el producto no existe
+     * @throws BusinessException si ya está fraccionado o el número no es válido
+     */
+    public Producto fraccionarStock(String id, Integer fracciones) {
+        log.info("Fraccionando el stock del producto {} en {} partes", id, fracciones);
+        if (fracciones == null) {
+            throw new BusinessException("El número de fracciones es obligatorio");
+        }
+        stockFraccionado.fraccionar(id, fracciones);
+        return buscarProducto(id);
+    }
+
+    /**
+     * Vuelve a guardar el stock de un producto fraccionado en un único documento
+     * @param id identificador del producto
+     * @return producto actualizado
+     * @throws ResourceNotFoundException si el producto no existe
+     * @throws BusinessException si no está fraccionado
+     */
+    public Producto unificarStock(String id) {
+        log.info("Unificando el stock del producto {}", id);
+        stockFraccionado.unificar(id);
+        return buscarProducto(id);
+    }
+
+    private boolean esFraccionado(Producto producto) {
+        if (producto.getFraccionesStock() == null || producto.getFraccionesStock() <= 0) {
+            return false;
+        }
+        stockFraccionado.registrar(producto.getId(), producto.getFraccionesStock());
+        return true;
+    }
 
-        producto.setStock(producto.getStock() - cantidad);
-        return productoRepository.save(producto);
+    static ProductoResponse toResponse(Producto p) {
+        return ProductoResponse.builder()
+            .id(p.getId())
+            .version(p.getVersion())
+            .nombre(p.getNombre())
+            .descripcion(p.getDescripcion())
+            .precio(java.math.BigDecimal.valueOf(p.getPrecio()))
+            .stock(p.getStock())
+            .categoria(p.getCategoria())
+            .imagenUrl(p.getImagenUrl())
+            .fechaCreacion(p.getFechaCreacion())
+            .fechaActualizacion(p.getFechaActualizacion())
+            .disponible(p.estaDisponible())
+            .build();
     }
 
     private void validateProducto(Producto producto) {
@@ -0,0 +1,271 @@
+package com.ejemplo.tienda_online.service;
+
+import com.ejemplo.tienda_online.exception.ServicioSaturadoException;
+import com.ejemplo.tienda_online.model.Pedido;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Recepción asíncrona de pedidos ({@code pedidos.recepcion.asincrona=true}).
+ *
+ * <p>En lugar de reservar stock y guardar el pedido en el hilo de la petición, el pedido
+ * se valida sin consultar la base de datos, recibe su ID y entra en una cola acotada; la
+ * petición responde 202 de inmediato. Unos pocos hilos trabajadores vacían la cola por
+ * lotes y guardan cada lote con {@link PedidoService#guardarLote(List)}: una escritura
+ * masiva de stock y una inserción de todos los pedidos, en lugar de varias operaciones
+ * por pedido.</p>
+ *
+ * <p>Mientras el pedido está en cola, {@link #buscarEnCurso(String)} lo devuelve en estado
+ * {@code RECIBIDO}; después se consulta en MongoDB como cualquier otro. Con la cola llena
+ * se responde 429. Los pedidos en cola solo existen en memoria: al parar la aplicación se
+ * guardan los pendientes, pero se pierden si el proceso cae.</p>
+ *
+ * <p>Métricas: {@code pedidos.recepcion.cola} (pedidos en cola),
+ * {@code pedidos.recepcion.lote} (tamaño de los lotes), {@code pedidos.recepcion.guardado}
+ * (tiempo por lote) y {@code pedidos.recepcion.pedidos} con la etiqueta {@code resultado}
+ * (aceptado, rechazado, fallido, saturado).</p>
+ *
+ * @author Sistema Tienda Online
+ * @version 1.0
+ */
+@Slf4j
+@Service
+public class RecepcionPedidosService {
+
+    private static final Duration REINTENTAR_EN = Duration.ofSeconds(1);
+    private static final long ESPERA_COLA_MS = 100;
+    private static final Duration ESPERA_CIERRE = Duration.ofSeconds(30);
+    private static final Duration RETENCION_FALLIDOS = Duration.ofMinutes(10);
+
+    private final PedidoService pedidoService;
+    private final boolean habilitada;
+    private final int tamanioLote;
+    private final BlockingQueue<Pedido> cola;
+    private final Map<String, Pedido> enCurso = new ConcurrentHashMap<>();
+    private final Cache<String, Pedido> fallidos;
+    private final ExecutorService trabajadores;
+    private volatile boolean activa = true;
+
+    private final MeterRegistry meterRegistry;
+    private final DistributionSummary lotes;
+    private final Timer guardado;
+
+    public RecepcionPedidosService(PedidoService pedidoService,
+                                   @Value("${pedidos.recepcion.asincrona:false}") boolean habilitada,
+                                   @Value("${pedidos.recepcion.capacidad-cola:10000}") int capacidadCola,
+                                   @Value("${pedidos.recepcion.hilos:2}") int hilos,
+                                   @Value("${pedidos.recepcion.tamanio-lote:100}") int tamanioLote,
+                                   MeterRegistry meterRegistry) {
+        this.pedidoService = pedidoService;
+        this.habilitada = habilitada;
+        this.tamanioLote = tamanioLote;
+        this.cola = new ArrayBlockingQueue<>(capacidadCola);
+        this.fallidos = Caffeine.newBuilder().expireAfterWrite(RETENCION_FALLIDOS).build();
+        this.meterRegistry = meterRegistry;
+        this.lotes = DistributionSummary.builder("pedidos.recepcion.lote")
+                .description("Pedidos guardados por lote")
+                .register(meterRegistry);
+        this.guardado = Timer.builder("pedidos.recepcion.guardado")
+                .description("Tiempo de guardado de un lote de pedidos")
+                .register(meterRegistry);
+        Gauge.builder("pedidos.recepcion.cola", cola, BlockingQueue::size)
+                .description("Pedidos recibidos pendientes de guardar")
+                .register(meterRegistry);
+
+        if (habilitada) {
+            this.trabajadores = Executors.newFixedThreadPool(hilos, hilosConNombre());
+            for (int i = 0; i < hilos; i++) {
+                trabajadores.execute(this::procesarCola);
+            }
+            log.info("Recepción asíncrona de pedidos con {} hilos, cola de {} y lotes de hasta {}",
+                     hilos, capacidadCola, tamanioLote);
+        } else {
+            this.trabajadores = null;
+        }
+    }
+
+    /**
+     * Indica si la recepción asíncrona está activa en este despliegue.
+     */
+    public boolean isHabilitada() {
+        return habilitada;
+    }
+
+    /**
+     * Valida el pedido y lo pone en cola.
+     *
+     * @param pedido El pedido recibido
+     * @return Copia del pedido en estado {@code RECIBIDO}, con su ID definitivo
+     * @throws com.ejemplo.tienda_online.exception.BusinessException si el pedido no es válido
+     * @throws ServicioSaturadoException si la cola está llena
+     */
+    public Pedido encolar(Pedido pedido) {
+        return encolar(pedido, null);
+    }
+
+    /**
+     * Valida el pedido y lo pone en cola con un ID reservado de antemano, para las
+     * peticiones idempotentes. Si ese pedido ya está en cola o guardado, lo devuelve sin
+     * volver a encolarlo.
+     *
+     * @param pedido El pedido recibido
+     * @param idReservado ID que tendrá el pedido, o null para generar uno nuevo
+     * @return Copia del pedido en estado {@code RECIBIDO}, o el pedido que ya existía con ese ID
+     * @throws com.ejemplo.tienda_online.exception.BusinessException si el pedido no es válido
+     * @throws ServicioSaturadoException si la cola está llena
+     */
+    public Pedido encolar(Pedido pedido, String idReservado) {
+        if (!habilitada) {
+            throw new IllegalStateException("La recepción asíncrona de pedidos no está habilitada");
+        }
+        if (idReservado != null) {
+            Pedido existente = enCurso.get(idReservado);
+            Optional<Pedido> guardado = existente != null ? Optional.of(existente) : pedidoService.buscarPropio(idReservado);
+            if (guardado.isPresent()) {
+                log.debug("Pedido {} ya recibido, no se vuelve a encolar", idReservado);
+                return guardado.get();
+            }
+        }
+        Pedido preparado = pedidoService.prepararRecepcion(pedido, idReservado);
+        // Los trabajadores modifican el pedido encolado; las consultas ven esta copia
+        Pedido recibido = copiaRecibida(preparado);
+        enCurso.put(recibido.getId(), recibido);
+        if (!activa || !cola.offer(preparado)) {
+            enCurso.remove(recibido.getId());
+            contar("saturado");
+            throw new ServicioSaturadoException(
+                    "Hay demasiados pedidos en cola, inténtalo de nuevo en unos segundos", REINTENTAR_EN);
+        }
+        log.debug("Pedido {} recibido, {} en cola", recibido.getId(), cola.size());
+        return recibido;
+    }
+
+    /**
+     * Busca un pedido que todavía no se ha guardado: en cola, o que no se pudo guardar.
+     *
+     * @param id ID del pedido
+     * @return el pedido, o vacío si no está en memoria (ya está en MongoDB o no existe)
+     */
+    public Optional<Pedido> buscarEnCurso(String id) {
+        if (!habilitada || id == null) {
+            return Optional.empty();
+        }
+        Pedido pedido = enCurso.get(id);
+        return Optional.ofNullable(pedido != null ? pedido : fallidos.getIfPresent(id));
+    }
+
+    /**
+     * Guarda los pedidos que quedan en cola antes de parar la aplicación.
+     */
+    @PreDestroy
+    public void cerrar() {
+        if (trabajadores == null) {
+            return;
+        }
+        activa = false;
+        trabajadores.shutdown();
+        try {
+            if (!trabajadores.awaitTermination(ESPERA_CIERRE.toMillis(), TimeUnit.MILLISECONDS)) {
+                log.error("Quedan {} pedidos recibidos sin guardar al parar la aplicación", cola.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void procesarCola() {
+        List<Pedido> lote = new ArrayList<>(tamanioLote);
+        while (activa || !cola.isEmpty()) {
+            Pedido primero;
+            try {
+                primero = cola.poll(ESPERA_COLA_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (primero == null) {
+                continue;
+            }
+            // Se agrupa lo que se haya acumulado mientras se guardaba el lote anterior
+            lote.add(primero);
+            cola.drainTo(lote, tamanioLote - 1);
+            guardar(lote);
+            lote.clear();
+        }
+    }
+
+    private void guardar(List<Pedido> lote) {
+        lotes.record(lote.size());
+        try {
+            guardado.record(() -> pedidoService.guardarLote(lote));
+            lote.forEach(pedido -> contar(pedido.getEstado() == Pedido.EstadoPedido.RECHAZADO ? "rechazado" : "aceptado"));
+        } catch (RuntimeException e) {
+            log.error("No se pudo guardar un lote de {} pedidos", lote.size(), e);
+            for (Pedido pedido : lote) {
+                pedido.setEstado(Pedido.EstadoPedido.RECHAZADO);
+                pedido.setMotivoCancelacion("No se pudo registrar el pedido, inténtelo de nuevo");
+                fallidos.put(pedido.getId(), pedido);
+                contar("fallido");
+            }
+        } finally {
+            lote.forEach(pedido -> enCurso.remove(pedido.getId()));
+        }
+    }
+
+    private static Pedido copiaRecibida(Pedido pedido) {
+        return Pedido.builder()
+                .id(pedido.getId())
+                .usuarioId(pedido.getUsuarioId())
+                .productos(pedido.getProductos().stream()
+                        .map(item -> Pedido.ItemPedido.builder()
+                                .productoId(item.getProductoId())
+                                .cantidad(item.getCantidad())
+                                .build())
+                        .toList())
+                .fecha(pedido.getFecha())
+                .fechaActualizacion(pedido.getFecha())
+                .estado(pedido.getEstado())
+                .direccionEnvio(pedido.getDireccionEnvio())
+                .notas(pedido.getNotas())
+                .build();
+    }
+
+    private void contar(String resultado) {
+        Counter.builder("pedidos.recepcion.pedidos")
+                .tag("resultado", resultado)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private static ThreadFactory hilosConNombre() {
+        AtomicInteger contador = new AtomicInteger();
+        return tarea -> {
+            Thread hilo = new Thread(tarea, "recepcion-pedidos-" + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        };
+    }
+}
@@ -0,0 +1,90 @@
+package com.ejemplo.tienda_online.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Repite las operaciones de lectura, cálculo y escritura condicionada a la versión
+ * ({@code @Version}) cuando otra escritura se adelanta entre la lectura y la escritura.
+ *
+ * <p>Cada intento debe volver a leer el documento. El número de intentos está acotado y
+ * la espera entre ellos es aleatoria entre cero y un máximo que se duplica en cada
+ * intento, para que las operaciones que chocan no vuelvan a coincidir. Si se agotan los
+ * intentos, la {@link OptimisticLockingFailureException} llega al cliente como 409.</p>
+ *
+ * <p>Métricas, con la etiqueta {@code operacion}: {@code concurrencia.operaciones}
+ * (etiqueta {@code resultado}: sin_conflicto, reintentada, agotada) y
+ * {@code concurrencia.conflictos}, una por cada intento fallido. El cociente entre ambas
+ * es la tasa de conflictos de cada endpoint.</p>
+ *
+ * @author Sistema Tienda Online
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class ReintentosConcurrencia {
+
+    private final int intentosMaximos;
+    private final long esperaBaseMs;
+    private final MeterRegistry meterRegistry;
+
+    public ReintentosConcurrencia(@Value("${concurrencia.reintentos.intentos-maximos:5}") int intentosMaximos,
+                                  @Value("${concurrencia.reintentos.espera-base:10ms}") Duration esperaBase,
+                                  MeterRegistry meterRegistry) {
+        this.intentosMaximos = intentosMaximos;
+        this.esperaBaseMs = Math.max(1, esperaBase.toMillis());
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Ejecuta la operación y la repite si falla por un conflicto de versión.
+     *
+     * @param operacion nombre de la operación (endpoint), para las métricas y el log
+     * @param cuerpo operación completa, incluida la lectura; puede ejecutarse más de una vez
+     */
+    public <T> T ejecutar(String operacion, Supplier<T> cuerpo) {
+        for (int intento = 1; ; intento++) {
+            try {
+                T resultado = cuerpo.get();
+                contarOperacion(operacion, intento == 1 ? "sin_conflicto" : "reintentada");
+                return resultado;
+            } catch (OptimisticLockingFailureException e) {
+                meterRegistry.counter("concurrencia.conflictos", "operacion", operacion).increment();
+                if (intento >= intentosMaximos) {
+                    contarOperacion(operacion, "agotada");
+                    log.warn("Operación '{}' abandonada tras {} conflictos de versión", operacion, intento);
+                    throw e;
+                }
+                log.debug("Conflicto de versión en '{}' (intento {} de {})", operacion, intento, intentosMaximos);
+                esperar(intento);
+            }
+        }
+    }
+
+    private void contarOperacion(String operacion, String resultado) {
+        Counter.builder("concurrencia.operaciones")
+                .description("Operaciones con control de concurrencia optimista")
+                .tag("operacion", operacion)
+                .tag("resultado", resultado)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private void esperar(int intento) {
+        long maximo = esperaBaseMs << Math.min(intento - 1, 10);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(maximo + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrumpido mientras se reintentaba la operación", e);
+        }
+    }
+}
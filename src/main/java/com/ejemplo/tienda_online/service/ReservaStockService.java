@@ -0,0 +1,287 @@
+package com.ejemplo.tienda_online.service;
+
+import com.ejemplo.tienda_online.exception.BusinessException;
+import com.ejemplo.tienda_online.exception.ResourceNotFoundException;
+import com.ejemplo.tienda_online.model.Pedido;
+import com.ejemplo.tienda_online.model.Producto;
+import com.ejemplo.tienda_online.util.ActualizacionParcial;
+import com.mongodb.bulk.BulkWriteResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Motor de reserva de stock basado en actualizaciones condicionales de MongoDB.
+ *
+ * <p>Cada item se descuenta con un {@code $inc} protegido por {@code stock >= cantidad},
+ * por lo que dos compras concurrentes nunca pueden dejar el stock en negativo.
+ * Todas las actualizaciones de un pedido viajan en una única escritura masiva y, si
+ * alguna no se aplica, se compensan los items ya reservados.</p>
+ *
+ * <p>El número de viajes a la base de datos es constante: dos si la reserva tiene
+ * éxito y tres si hay que compensar, independientemente del número de items.</p>
+ *
+ * <p>Los productos con el stock fraccionado no se descuentan en su documento sino en
+ * sus fracciones, a través de {@link StockFraccionadoService}.</p>
+ *
+ * @author Sistema Tienda Online
+ * @version 1.0
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReservaStockService {
+
+    /**
+     * Campo auxiliar donde se marcan los documentos afectados por una reserva en curso.
+     */
+    static final String CAMPO_RESERVAS = "reservasPendientes";
+
+    private static final String CAMPO_FRACCIONES = "fraccionesStock";
+
+    private final MongoTemplate mongoTemplate;
+    private final CatalogoCache catalogoCache;
+    private final StockFraccionadoService stockFraccionado;
+
+    /**
+     * Agrupa los items de un pedido por producto sumando sus cantidades.
+     *
+     * @param items items del pedido
+     * @return cantidades por ID de producto, en el orden original
+     */
+    public Map<String, Integer> agruparCantidades(List<Pedido.ItemPedido> items) {
+        Map<String, Integer> cantidades = new LinkedHashMap<>();
+        for (Pedido.ItemPedido item : items) {
+            cantidades.merge(item.getProductoId(), item.getCantidad(), Integer::sum);
+        }
+        return cantidades;
+    }
+
+    /**
+     * Reserva (descuenta) de forma atómica el stock de todos los productos indicados.
+     *
+     * @param cantidades cantidades a descontar por ID de producto
+     * @throws BusinessException si algún producto no tiene stock suficiente
+     * @throws ResourceNotFoundException si algún producto no existe
+     */
+    public void reservar(Map<String, Integer> cantidades) {
+        reservar(cantidades, true);
+    }
+
+    private void reservar(Map<String, Integer> cantidades, boolean reintentar) {
+        if (cantidades.isEmpty()) {
+            return;
+        }
+
+        Map<String, Integer> enDocumento = new LinkedHashMap<>(cantidades);
+        Map<String, Integer> fraccionadas = new LinkedHashMap<>();
+        cantidades.forEach((productoId, cantidad) -> {
+            if (stockFraccionado.estaFraccionado(productoId)) {
+                fraccionadas.put(productoId, enDocumento.remove(productoId));
+            }
+        });
+        reservarFraccionadas(fraccionadas);
+
+        try {
+            if (!reservarEnDocumentos(enDocumento, reintentar)) {
+                // Había productos fraccionados que aún no se conocían: ya están registrados
+                liberarFraccionadas(fraccionadas);
+                reservar(cantidades, false);
+            }
+        } catch (RuntimeException e) {
+            liberarFraccionadas(fraccionadas);
+            throw e;
+        }
+    }
+
+    /**
+     * Reserva en los documentos de los productos.
+     *
+     * @return false si algún producto resultó estar fraccionado y hay que repetir la reserva
+     */
+    private boolean reservarEnDocumentos(Map<String, Integer> cantidades, boolean reintentar) {
+        if (cantidades.isEmpty()) {
+            return true;
+        }
+
+        String reservaId = new ObjectId().toHexString();
+        BulkOperations descuentos = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Producto.class);
+        cantidades.forEach((productoId, cantidad) -> descuentos.updateOne(
+                Query.query(Criteria.where("id").is(productoId).and("stock").gte(cantidad)
+                        .and(CAMPO_FRACCIONES).exists(false)),
+                ActualizacionParcial.movimientoStock(-cantidad)
+                        .addToSet(CAMPO_RESERVAS, reservaId)));
+
+        BulkWriteResult resultado = descuentos.execute();
+
+        if (resultado.getModifiedCount() == cantidades.size()) {
+            mongoTemplate.updateMulti(
+                    Query.query(Criteria.where("id").in(cantidades.keySet())),
+                    ActualizacionParcial.sinCambioDeVersion(new Update().pull(CAMPO_RESERVAS, reservaId)),
+                    Producto.class);
+            catalogoCache.invalidarProductos(cantidades.keySet());
+            log.debug("Reserva {} completada para {} productos", reservaId, cantidades.size());
+            return true;
+        }
+
+        log.warn("Reserva {} incompleta ({} de {} productos), compensando",
+                 reservaId, resultado.getModifiedCount(), cantidades.size());
+
+        // Estado de los productos antes de compensar: los que no llevan la marca fueron rechazados
+        Query consulta = Query.query(Criteria.where("id").in(cantidades.keySet()));
+        consulta.fields().include("nombre", "stock", CAMPO_RESERVAS, CAMPO_FRACCIONES);
+        List<Document> estados = mongoTemplate.query(Producto.class).as(Document.class).matching(consulta).all();
+
+        compensar(reservaId, cantidades);
+        catalogoCache.invalidarProductos(cantidades.keySet());
+
+        if (reintentar && registrarFraccionados(estados)) {
+            return false;
+        }
+
+        throw construirErrorReserva(reservaId, cantidades, estados);
+    }
+
+    /**
+     * Devuelve al stock las cantidades indicadas en una única escritura masiva.
+     * Los productos que ya no existen se ignoran.
+     *
+     * @param cantidades cantidades a reponer por ID de producto
+     */
+    public void liberar(Map<String, Integer> cantidades) {
+        if (cantidades.isEmpty()) {
+            return;
+        }
+
+        Map<String, Integer> enDocumento = new LinkedHashMap<>(cantidades);
+        Map<String, Integer> fraccionadas = new LinkedHashMap<>();
+        cantidades.forEach((productoId, cantidad) -> {
+            if (stockFraccionado.estaFraccionado(productoId)) {
+                fraccionadas.put(productoId, enDocumento.remove(productoId));
+            }
+        });
+        liberarFraccionadas(fraccionadas);
+        if (enDocumento.isEmpty()) {
+            return;
+        }
+
+        BulkOperations reposiciones = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Producto.class);
+        enDocumento.forEach((productoId, cantidad) -> reposiciones.updateOne(
+                Query.query(Criteria.where("id").is(productoId).and(CAMPO_FRACCIONES).exists(false)),
+                ActualizacionParcial.movimientoStock(cantidad)));
+        BulkWriteResult resultado = reposiciones.execute();
+        catalogoCache.invalidarProductos(enDocumento.keySet());
+
+        if (resultado.getMatchedCount() < enDocumento.size()) {
+            // Los que no coinciden se han borrado (se ignoran), tienen el stock fraccionado o
+            // se están unificando (fraccionesStock = 0): estos vuelven a su documento, que
+            // la unificación suma a lo que recoge de las fracciones
+            Query consulta = Query.query(Criteria.where("id").in(enDocumento.keySet()).and(CAMPO_FRACCIONES).exists(true));
+            consulta.fields().include(CAMPO_FRACCIONES);
+            mongoTemplate.find(consulta, Producto.class).forEach(producto -> {
+                int cantidad = enDocumento.get(producto.getId());
+                if (producto.getFraccionesStock() > 0) {
+                    stockFraccionado.registrar(producto.getId(), producto.getFraccionesStock());
+                    stockFraccionado.liberar(producto.getId(), cantidad);
+                } else {
+                    mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(producto.getId())),
+                            ActualizacionParcial.movimientoStock(cantidad), Producto.class);
+                }
+            });
+        }
+    }
+
+    /**
+     * Reserva en las fracciones de los productos fraccionados, devolviendo lo tomado si
+     * alguno no tiene stock suficiente.
+     */
+    private void reservarFraccionadas(Map<String, Integer> cantidades) {
+        Map<String, Integer> reservadas = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entrada : cantidades.entrySet()) {
+            if (!stockFraccionado.reservar(entrada.getKey(), entrada.getValue())) {
+                liberarFraccionadas(reservadas);
+                throw errorFraccionada(entrada.getKey(), entrada.getValue());
+            }
+            reservadas.put(entrada.getKey(), entrada.getValue());
+        }
+    }
+
+    private void liberarFraccionadas(Map<String, Integer> cantidades) {
+        cantidades.forEach(stockFraccionado::liberar);
+    }
+
+    private RuntimeException errorFraccionada(String productoId, int solicitado) {
+        Query consulta = Query.query(Criteria.where("id").is(productoId));
+        consulta.fields().include("nombre", "stock");
+        Producto producto = mongoTemplate.findOne(consulta, Producto.class);
+        if (producto == null) {
+            return new ResourceNotFoundException("Producto no encontrado: " + productoId);
+        }
+        // El stock del producto es la suma de la última reconciliación
+        return new BusinessException(
+            String.format("Stock insuficiente para el producto '%s'. Disponible: %d, solicitado: %d",
+                producto.getNombre(), producto.getStock(), solicitado));
+    }
+
+    /**
+     * Registra los productos fraccionados que la reserva no conocía.
+     *
+     * @return true si había alguno
+     */
+    private boolean registrarFraccionados(List<Document> estados) {
+        boolean encontrados = false;
+        for (Document estado : estados) {
+            Integer fracciones = estado.getInteger(CAMPO_FRACCIONES);
+            if (fracciones != null && fracciones > 0) {
+                stockFraccionado.registrar(String.valueOf(estado.get("_id")), fracciones);
+                encontrados = true;
+            }
+        }
+        return encontrados;
+    }
+
+    /**
+     * Revierte los descuentos de los documentos que llevan la marca de la reserva.
+     */
+    private void compensar(String reservaId, Map<String, Integer> cantidades) {
+        BulkOperations compensaciones = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Producto.class);
+        cantidades.forEach((productoId, cantidad) -> compensaciones.updateOne(
+                Query.query(Criteria.where("id").is(productoId).and(CAMPO_RESERVAS).is(reservaId)),
+                ActualizacionParcial.movimientoStock(cantidad)
+                        .pull(CAMPO_RESERVAS, reservaId)));
+        compensaciones.execute();
+    }
+
+    private RuntimeException construirErrorReserva(String reservaId, Map<String, Integer> cantidades,
+                                                   List<Document> estados) {
+        Map<String, Document> porId = new LinkedHashMap<>();
+        estados.forEach(doc -> porId.put(String.valueOf(doc.get("_id")), doc));
+
+        for (Map.Entry<String, Integer> entrada : cantidades.entrySet()) {
+            Document producto = porId.get(entrada.getKey());
+            if (producto == null) {
+                return new ResourceNotFoundException("Producto no encontrado: " + entrada.getKey());
+            }
+            List<?> reservas = producto.getList(CAMPO_RESERVAS, Object.class);
+            if (reservas == null || !reservas.contains(reservaId)) {
+                return new BusinessException(
+                    String.format("Stock insuficiente para el producto '%s'. Disponible: %d, solicitado: %d",
+                        producto.getString("nombre"), producto.getInteger("stock", 0), entrada.getValue()));
+            }
+        }
+
+        // Todos los documentos llevaban la marca: se perdió una actualización concurrente
+        return new BusinessException("No se pudo reservar el stock del pedido, inténtelo de nuevo");
+    }
+}
@@ -0,0 +1,366 @@
+package com.ejemplo.tienda_online.service;
+
+import com.ejemplo.tienda_online.exception.BusinessException;
+import com.ejemplo.tienda_online.exception.ResourceNotFoundException;
+import com.ejemplo.tienda_online.model.FraccionStock;
+import com.ejemplo.tienda_online.model.Producto;
+import com.ejemplo.tienda_online.util.ActualizacionParcial;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Stock fraccionado para productos muy demandados (ventas flash).
+ *
+ * <p>Con miles de compras simultáneas del mismo producto, todas las reservas compiten
+ * por el campo {@code stock} de un único documento. Al fraccionar un producto su stock
+ * se reparte en N documentos de {@code stock_fracciones}: cada reserva descuenta de una
+ * fracción elegida al azar y, si no le quedan unidades suficientes, prueba con las
+ * demás y en último caso reparte la cantidad entre varias.</p>
+ *
+ * <p>El campo {@code stock} del producto deja de descontarse en cada compra: lo
+ * recalcula {@link #reconciliar()} periódicamente con la suma de las fracciones, por lo
+ * que el stock que muestra el catálogo puede ir hasta un intervalo por detrás. Las
+ * reservas nunca venden de más: la condición {@code stock >= cantidad} se comprueba en
+ * cada fracción.</p>
+ *
+ * <p>Métrica: {@code stock.fracciones.reservas} con la etiqueta {@code resultado}
+ * (directa, repartida, insuficiente).</p>
+ *
+ * @author Sistema Tienda Online
+ * @version 1.0
+ */
+@Slf4j
+@Service
+public class StockFraccionadoService {
+
+    static final int MIN_FRACCIONES = 2;
+    static final int MAX_FRACCIONES = 64;
+    private static final int INTENTOS_FRACCIONAR = 5;
+
+    private final MongoTemplate mongoTemplate;
+    private final CatalogoCache catalogoCache;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Productos fraccionados y su número de fracciones, según la última reconciliación.
+     * Si está desactualizado, las reservas en el documento del producto fallan por su
+     * condición sobre {@code fraccionesStock} y {@link ReservaStockService} lo corrige.
+     */
+    private final Map<String, Integer> fraccionados = new ConcurrentHashMap<>();
+
+    public StockFraccionadoService(MongoTemplate mongoTemplate, CatalogoCache catalogoCache,
+                                   MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.catalogoCache = catalogoCache;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Indica si el producto tiene el stock fraccionado.
+     */
+    public boolean estaFraccionado(String productoId) {
+        return fraccionados.containsKey(productoId);
+    }
+
+    /**
+     * Registra un producto fraccionado detectado al fallar una reserva en su documento.
+     */
+    void registrar(String productoId, int fracciones) {
+        if (fracciones > 0) {
+            fraccionados.put(productoId, fracciones);
+        }
+    }
+
+    /**
+     * Reparte el stock actual del producto en el número de fracciones indicado. Si el
+     * producto tiene reservas en curso se reintenta; si siguen llegando compras, falla.
+     *
+     * @param productoId ID del producto
+     * @param fracciones número de fracciones
+     * @throws ResourceNotFoundException si el producto no existe
+     * @throws BusinessException si ya está fraccionado o el número no es válido
+     */
+    public void fraccionar(String productoId, int fracciones) {
+        if (fracciones < MIN_FRACCIONES || fracciones > MAX_FRACCIONES) {
+            throw new BusinessException("El número de fracciones debe estar entre "
+                    + MIN_FRACCIONES + " y " + MAX_FRACCIONES);
+        }
+
+        for (int intento = 1; intento <= INTENTOS_FRACCIONAR; intento++) {
+            Query lectura = Query.query(Criteria.where("id").is(productoId));
+            lectura.fields().include("stock", "fraccionesStock");
+            Producto actual = mongoTemplate.findOne(lectura, Producto.class);
+            if (actual == null) {
+                throw new ResourceNotFoundException("Producto no encontrado con ID: " + productoId);
+            }
+            if (actual.getFraccionesStock() != null) {
+                throw new BusinessException("El stock del producto ya está fraccionado");
+            }
+            int stock = actual.getStock() != null ? actual.getStock() : 0;
+
+            // Las fracciones se crean antes de marcar el producto: mientras no lleva la marca
+            // las reservas siguen en su documento, y en cuanto la lleva ya tienen su stock
+            List<FraccionStock> nuevas = new ArrayList<>(fracciones);
+            for (int i = 0; i < fracciones; i++) {
+                nuevas.add(FraccionStock.builder()
+                        .id(FraccionStock.idDe(productoId, i))
+                        .productoId(productoId)
+                        .indice(i)
+                        .stock(reparto(stock, fracciones, i))
+                        .build());
+            }
+            try {
+                mongoTemplate.insertAll(nuevas);
+            } catch (DuplicateKeyException e) {
+                throw new BusinessException("El stock del producto ya se está fraccionando");
+            }
+
+            // Solo se marca si el stock no ha cambiado desde la lectura y no hay reservas a
+            // medias: una compensación posterior no llegaría a las fracciones
+            Query marca = Query.query(Criteria.where("id").is(productoId)
+                    .and("fraccionesStock").exists(false)
+                    .and("stock").is(actual.getStock())
+                    .orOperator(Criteria.where(ReservaStockService.CAMPO_RESERVAS).exists(false),
+                                Criteria.where(ReservaStockService.CAMPO_RESERVAS).size(0)));
+            if (mongoTemplate.updateFirst(marca, ActualizacionParcial.cambios().set("fraccionesStock", fracciones),
+                    Producto.class).getModifiedCount() == 1) {
+                fraccionados.put(productoId, fracciones);
+                catalogoCache.invalidarProducto(productoId);
+                log.info("Stock del producto {} ({} unidades) repartido en {} fracciones", productoId, stock, fracciones);
+                return;
+            }
+            mongoTemplate.remove(Query.query(Criteria.where("productoId").is(productoId)), FraccionStock.class);
+            log.debug("El stock del producto {} ha cambiado al fraccionarlo (intento {})", productoId, intento);
+        }
+        throw new BusinessException("El producto está recibiendo compras; vuelva a intentar fraccionarlo");
+    }
+
+    /**
+     * Vuelve a guardar todo el stock del producto en su documento.
+     *
+     * @param productoId ID del producto
+     * @throws ResourceNotFoundException si el producto no existe
+     * @throws BusinessException si no está fraccionado
+     */
+    public void unificar(String productoId) {
+        // fraccionesStock = 0 marca la transición: la reconciliación ya no toca el producto
+        Producto anterior = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("id").is(productoId).and("fraccionesStock").gt(0)),
+                new Update().set("fraccionesStock", 0).set("stock", 0),
+                Producto.class);
+        if (anterior == null) {
+            if (!mongoTemplate.exists(Query.query(Criteria.where("id").is(productoId)), Producto.class)) {
+                throw new ResourceNotFoundException("Producto no encontrado con ID: " + productoId);
+            }
+            throw new BusinessException("El stock del producto no está fraccionado");
+        }
+        fraccionados.remove(productoId);
+
+        int total = vaciarFracciones(productoId);
+        mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(productoId)),
+                ActualizacionParcial.cambios().inc("stock", total).unset("fraccionesStock"),
+                Producto.class);
+        // Unidades devueltas a una fracción por otra instancia mientras se vaciaban
+        int resto = vaciarFracciones(productoId);
+        if (resto > 0) {
+            mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(productoId)),
+                    new Update().inc("stock", resto), Producto.class);
+        }
+        catalogoCache.invalidarProducto(productoId);
+        log.info("Stock del producto {} unificado: {} unidades", productoId, total + resto);
+    }
+
+    /**
+     * Fija el stock total de un producto fraccionado, repartido a partes iguales.
+     */
+    public void fijarStock(String productoId, int stock) {
+        int fracciones = numeroFracciones(productoId);
+        BulkOperations actualizaciones = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, FraccionStock.class);
+        for (int i = 0; i < fracciones; i++) {
+            actualizaciones.updateOne(Query.query(Criteria.where("id").is(FraccionStock.idDe(productoId, i))),
+                    new Update().set("stock", reparto(stock, fracciones, i)));
+        }
+        actualizaciones.execute();
+    }
+
+    /**
+     * Descuenta la cantidad de las fracciones del producto.
+     *
+     * @return true si se ha reservado; false si no hay stock suficiente entre todas
+     */
+    public boolean reservar(String productoId, int cantidad) {
+        int fracciones = numeroFracciones(productoId);
+        int inicio = ThreadLocalRandom.current().nextInt(fracciones);
+        for (int i = 0; i < fracciones; i++) {
+            String id = FraccionStock.idDe(productoId, (inicio + i) % fracciones);
+            if (descontar(id, cantidad)) {
+                contar("directa");
+                return true;
+            }
+        }
+        // Ninguna fracción tiene la cantidad completa: se reparte entre varias
+        if (reservarRepartido(productoId, cantidad)) {
+            contar("repartida");
+            return true;
+        }
+        contar("insuficiente");
+        return false;
+    }
+
+    /**
+     * Devuelve unidades a una fracción del producto. Si ya no tiene fracciones (se ha
+     * unificado mientras tanto), se devuelven a su documento.
+     */
+    public void liberar(String productoId, int cantidad) {
+        Integer fracciones = fraccionados.get(productoId);
+        if (fracciones != null) {
+            String id = FraccionStock.idDe(productoId, ThreadLocalRandom.current().nextInt(fracciones));
+            if (mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(id)),
+                    new Update().inc("stock", cantidad), FraccionStock.class).getModifiedCount() == 1) {
+                return;
+            }
+        }
+        mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(productoId)),
+                ActualizacionParcial.movimientoStock(cantidad),
+                Producto.class);
+    }
+
+    /**
+     * Borra las fracciones de un producto eliminado.
+     */
+    public void eliminar(String productoId) {
+        fraccionados.remove(productoId);
+        mongoTemplate.remove(Query.query(Criteria.where("productoId").is(productoId)), FraccionStock.class);
+    }
+
+    /**
+     * Copia en cada producto fraccionado la suma de sus fracciones y actualiza la lista
+     * de productos fraccionados.
+     *
+     * @return número de productos cuyo stock ha cambiado
+     */
+    @Scheduled(initialDelayString = "PT0S", fixedDelayString = "${stock.fracciones.reconciliacion:PT1S}")
+    public long reconciliar() {
+        Query consulta = Query.query(Criteria.where("fraccionesStock").gt(0));
+        consulta.fields().include("fraccionesStock");
+        Map<String, Integer> actuales = new HashMap<>();
+        mongoTemplate.find(consulta, Producto.class).forEach(p -> actuales.put(p.getId(), p.getFraccionesStock()));
+        fraccionados.keySet().retainAll(actuales.keySet());
+        fraccionados.putAll(actuales);
+        if (actuales.isEmpty()) {
+            return 0;
+        }
+
+        Aggregation suma = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("productoId").in(actuales.keySet())),
+                Aggregation.group("productoId").sum("stock").as("stock"));
+        List<Document> totales = mongoTemplate.aggregate(suma, FraccionStock.class, Document.class).getMappedResults();
+        if (totales.isEmpty()) {
+            return 0;
+        }
+
+        BulkOperations actualizaciones = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Producto.class);
+        for (Document total : totales) {
+            int stock = ((Number) total.get("stock")).intValue();
+            actualizaciones.updateOne(
+                    Query.query(Criteria.where("id").is(total.get("_id"))
+                            .and("fraccionesStock").gt(0)
+                            .and("stock").ne(stock)),
+                    ActualizacionParcial.cambios().set("stock", stock));
+        }
+        long cambiados = actualizaciones.execute().getModifiedCount();
+        if (cambiados > 0) {
+            catalogoCache.invalidarProductos(actuales.keySet());
+            log.debug("Reconciliado el stock de {} productos fraccionados", cambiados);
+        }
+        return cambiados;
+    }
+
+    private int numeroFracciones(String productoId) {
+        Integer fracciones = fraccionados.get(productoId);
+        if (fracciones == null) {
+            throw new IllegalStateException("El producto " + productoId + " no tiene el stock fraccionado");
+        }
+        return fracciones;
+    }
+
+    private boolean descontar(String fraccionId, int cantidad) {
+        return mongoTemplate.updateFirst(
+                Query.query(Criteria.where("id").is(fraccionId).and("stock").gte(cantidad)),
+                new Update().inc("stock", -cantidad),
+                FraccionStock.class).getModifiedCount() == 1;
+    }
+
+    /**
+     * Toma la cantidad de varias fracciones, empezando por las que más stock tienen.
+     * Si a mitad otra reserva se lleva las unidades, se devuelve lo tomado.
+     */
+    private boolean reservarRepartido(String productoId, int cantidad) {
+        Query consulta = Query.query(Criteria.where("productoId").is(productoId).and("stock").gt(0))
+                .with(Sort.by(Sort.Direction.DESC, "stock"));
+        List<FraccionStock> disponibles = mongoTemplate.find(consulta, FraccionStock.class);
+        if (disponibles.stream().mapToInt(FraccionStock::getStock).sum() < cantidad) {
+            return false;
+        }
+
+        Map<String, Integer> tomado = new HashMap<>();
+        int restante = cantidad;
+        for (FraccionStock fraccion : disponibles) {
+            int parte = Math.min(fraccion.getStock(), restante);
+            if (descontar(fraccion.getId(), parte)) {
+                tomado.put(fraccion.getId(), parte);
+                restante -= parte;
+            }
+            if (restante == 0) {
+                return true;
+            }
+        }
+
+        BulkOperations devoluciones = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, FraccionStock.class);
+        tomado.forEach((id, parte) -> devoluciones.updateOne(Query.query(Criteria.where("id").is(id)),
+                new Update().inc("stock", parte)));
+        if (!tomado.isEmpty()) {
+            devoluciones.execute();
+        }
+        return false;
+    }
+
+    /**
+     * Borra las fracciones del producto una a una y devuelve la suma de su stock.
+     */
+    private int vaciarFracciones(String productoId) {
+        int total = 0;
+        FraccionStock fraccion;
+        while ((fraccion = mongoTemplate.findAndRemove(
+                Query.query(Criteria.where("productoId").is(productoId)), FraccionStock.class)) != null) {
+            total += fraccion.getStock() != null ? fraccion.getStock() : 0;
+        }
+        return total;
+    }
+
+    private static int reparto(int stock, int fracciones, int indice) {
+        return stock / fracciones + (indice < stock % fracciones ? 1 : 0);
+    }
+
+    private void contar(String resultado) {
+        meterRegistry.counter("stock.fracciones.reservas", "resultado", resultado).increment();
+    }
+}
@@ -0,0 +1,120 @@
+package com.ejemplo.tienda_online.service;
+
+import com.mongodb.MongoException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Ejecuta las operaciones de pedidos que modifican varios documentos (crear, cancelar,
+ * cambiar estado) en el modo configurado para el despliegue.
+ *
+ * <ul>
+ *   <li><b>Rápido</b> (por defecto): sin transacción. La reserva de stock es atómica por
+ *   producto y se compensa si falla algún paso; es más barato y funciona con un MongoDB
+ *   standalone, pero una caída del proceso entre pasos puede dejar stock descontado sin
+ *   pedido.</li>
+ *   <li><b>Transaccional</b> ({@code pedidos.transacciones.habilitadas=true}): cada
+ *   operación es una transacción multi-documento y se reintenta completa si MongoDB la
+ *   aborta con {@code TransientTransactionError} (conflicto de escritura, elección de
+ *   primario). Requiere un replica set.</li>
+ * </ul>
+ *
+ * <p>Métrica: contador {@code pedidos.transacciones.reintentos}.</p>
+ *
+ * @author Sistema Tienda Online
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class TransaccionesPedido {
+
+    private static final long ESPERA_BASE_MS = 10;
+
+    private final TransactionTemplate transacciones;
+    private final int intentosMaximos;
+    private final Counter reintentos;
+
+    /**
+     * @param transactionManager gestor de transacciones, o null para el modo rápido
+     */
+    public TransaccionesPedido(@Nullable PlatformTransactionManager transactionManager,
+                               @Value("${pedidos.transacciones.intentos-maximos:3}") int intentosMaximos,
+                               MeterRegistry meterRegistry) {
+        this.transacciones = transactionManager != null ? new TransactionTemplate(transactionManager) : null;
+        this.intentosMaximos = intentosMaximos;
+        this.reintentos = Counter.builder("pedidos.transacciones.reintentos")
+                .description("Transacciones de pedidos repetidas por un error transitorio")
+                .register(meterRegistry);
+        log.info("Operaciones de pedidos en modo {}", transacciones != null ? "transaccional" : "rápido");
+    }
+
+    /**
+     * Indica si las operaciones se ejecutan dentro de una transacción.
+     */
+    public boolean isTransaccional() {
+        return transacciones != null;
+    }
+
+    /**
+     * Ejecuta la operación, dentro de una transacción si el modo transaccional está activo.
+     *
+     * Dentro de una transacción ya iniciada se une a ella, y los reintentos son los de
+     * la transacción exterior: una transacción abortada no se puede reintentar por partes.
+     *
+     * @param operacion nombre de la operación, para el log
+     * @param cuerpo operación; en modo transaccional puede ejecutarse más de una vez
+     */
+    public <T> T ejecutar(String operacion, Supplier<T> cuerpo) {
+        if (transacciones == null || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return cuerpo.get();
+        }
+        for (int intento = 1; ; intento++) {
+            try {
+                return transacciones.execute(estado -> cuerpo.get());
+            } catch (RuntimeException e) {
+                if (!esTransitorio(e) || intento >= intentosMaximos) {
+                    throw e;
+                }
+                reintentos.increment();
+                log.warn("Transacción '{}' abortada por un error transitorio (intento {} de {}): {}",
+                         operacion, intento, intentosMaximos, e.getMessage());
+                esperar(intento);
+            }
+        }
+    }
+
+    /**
+     * Busca en la cadena de causas un error de MongoDB con la etiqueta
+     * {@code TransientTransactionError}; Spring lo envuelve en sus propias excepciones.
+     */
+    static boolean esTransitorio(Throwable error) {
+        for (Throwable causa = error; causa != null; causa = causa.getCause()) {
+            if (causa instanceof MongoException mongo
+                    && mongo.hasErrorLabel(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void esperar(int intento) {
+        // Espera creciente con variación aleatoria para que los reintentos no vuelvan a coincidir
+        long espera = ESPERA_BASE_MS * intento + ThreadLocalRandom.current().nextLong(ESPERA_BASE_MS);
+        try {
+            Thread.sleep(espera);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrumpido mientras se reintentaba la transacción", e);
+        }
+    }
+}
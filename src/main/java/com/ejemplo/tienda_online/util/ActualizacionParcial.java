@@ -0,0 +1,77 @@
+package com.ejemplo.tienda_online.util;
+
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+/**
+ * Utilidades para modificar documentos campo a campo ({@code $set}, {@code $inc}) en
+ * lugar de guardarlos enteros con {@code save}.
+ *
+ * <p>Un {@code save} reemplaza el documento completo: envía de nuevo la descripción, la
+ * imagen o la lista de productos de un pedido aunque solo cambie el stock o el estado, y
+ * sobrescribe lo que otra petición haya cambiado desde la lectura. Con una actualización
+ * parcial solo viajan los campos modificados, y {@code fechaActualizacion} la pone el
+ * servidor con {@code $currentDate}, sin depender del reloj de cada instancia.</p>
+ *
+ * <p>En las entidades con {@code @Version}, {@code MongoTemplate} añade un {@code $inc} de
+ * la versión a cada actualización. Los movimientos de stock de compras y cancelaciones no
+ * son ediciones (son {@code $inc} condicionales que se combinan solos) y usan
+ * {@link #movimientoStock(int)} para no invalidar las ediciones en curso.</p>
+ */
+public final class ActualizacionParcial {
+
+    /**
+     * Campo con la fecha de la última modificación, común a productos y pedidos.
+     */
+    public static final String FECHA_ACTUALIZACION = "fechaActualizacion";
+
+    /**
+     * Campo {@code @Version} de productos y pedidos.
+     */
+    public static final String VERSION = "version";
+
+    private ActualizacionParcial() {
+    }
+
+    /**
+     * Crea una actualización que solo marca {@code fechaActualizacion} con la hora del
+     * servidor; se le añaden los {@code $set} e {@code $inc} de los campos que cambian.
+     */
+    public static Update cambios() {
+        return new Update().currentDate(FECHA_ACTUALIZACION);
+    }
+
+    /**
+     * Crea un movimiento de stock ({@code $inc}) que no cambia la versión del documento.
+     *
+     * @param cantidad unidades a sumar (negativas para descontar)
+     */
+    public static Update movimientoStock(int cantidad) {
+        return sinCambioDeVersion(cambios().inc("stock", cantidad));
+    }
+
+    /**
+     * Evita que {@code MongoTemplate} incremente la versión: solo lo hace si la
+     * actualización no modifica ya ese campo, y un {@code $inc} de 0 lo modifica sin
+     * cambiar su valor (en un documento sin versión, la crea con 0).
+     */
+    public static Update sinCambioDeVersion(Update update) {
+        return update.inc(VERSION, 0);
+    }
+
+    /**
+     * Consulta por identificador, que solo devuelve los campos indicados (además del
+     * {@code _id}) cuando se usa con {@code findAndModify}.
+     *
+     * @param id identificador del documento
+     * @param campos campos a devolver; sin campos, el documento completo
+     */
+    public static Query porId(String id, String... campos) {
+        Query query = Query.query(Criteria.where("id").is(id));
+        if (campos.length > 0) {
+            query.fields().include(campos);
+        }
+        return query;
+    }
+}
@@ -0,0 +1,165 @@
+package com.ejemplo.tienda_online.util;
+
+import com.ejemplo.tienda_online.dto.PaginaResponse;
+import com.ejemplo.tienda_online.exception.BusinessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Utilidades para la paginación por cursor (keyset) sobre el campo {@code _id}.
+ *
+ * <p>Cada página se obtiene con un rango {@code _id > ultimoId} ordenado por
+ * {@code _id}, de modo que MongoDB usa siempre el índice del identificador y
+ * nunca tiene que saltar documentos con {@code skip}.</p>
+ */
+public final class CursorPaginacion {
+
+    /**
+     * Cabecera HTTP en la que se devuelve el cursor de la página siguiente.
+     */
+    public static final String CABECERA_SIGUIENTE = "X-Next-Cursor";
+
+    public static final int LIMITE_POR_DEFECTO = 100;
+    public static final int LIMITE_MAXIMO = 500;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    private static final char SEPARADOR = '\n';
+
+    private CursorPaginacion() {
+    }
+
+    /**
+     * Ajusta el límite solicitado al rango permitido.
+     */
+    public static int normalizarLimite(Integer limite) {
+        if (limite == null) {
+            return LIMITE_POR_DEFECTO;
+        }
+        if (limite < 1) {
+            throw new BusinessException("El límite de paginación debe ser mayor a cero");
+        }
+        return Math.min(limite, LIMITE_MAXIMO);
+    }
+
+    /**
+     * Primera página ordenada por {@code _id}; nunca usa desplazamiento.
+     */
+    public static Pageable pagina(int limite) {
+        return PageRequest.of(0, limite, Sort.by(Sort.Direction.ASC, "id"));
+    }
+
+    public static String codificar(String ultimoId) {
+        return ENCODER.encodeToString(ultimoId.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Obtiene el último ID visto a partir de un cursor opaco.
+     *
+     * @return el ID, o null si no se recibió cursor
+     * @throws BusinessException si el cursor no es válido
+     */
+    public static String decodificar(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String id = new String(DECODER.decode(cursor), StandardCharsets.UTF_8);
+            if (!id.matches("^[0-9a-fA-F]{24}$")) {
+                throw new IllegalArgumentException(id);
+            }
+            return id;
+        } catch (IllegalArgumentException e) {
+            throw new BusinessException("Cursor de paginación inválido");
+        }
+    }
+
+    /**
+     * Cursor para listados ordenados por un campo distinto del ID: incluye el orden
+     * aplicado, el valor del campo y el ID del último elemento como desempate.
+     */
+    public static String codificar(String orden, String valor, String ultimoId) {
+        return codificar(orden + SEPARADOR + valor + SEPARADOR + ultimoId);
+    }
+
+    /**
+     * Obtiene el valor del campo de orden y el último ID a partir de un cursor compuesto.
+     *
+     * @param orden orden de la petición actual; debe coincidir con el del cursor
+     * @return {valor, ultimoId}, o null si no se recibió cursor
+     * @throws BusinessException si el cursor no es válido o es de otro orden
+     */
+    public static String[] decodificar(String cursor, String orden) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String texto = new String(DECODER.decode(cursor), StandardCharsets.UTF_8);
+            int inicio = texto.indexOf(SEPARADOR);
+            int fin = texto.lastIndexOf(SEPARADOR);
+            if (inicio < 0 || inicio == fin || !texto.substring(0, inicio).equals(orden)) {
+                throw new IllegalArgumentException(texto);
+            }
+            String id = texto.substring(fin + 1);
+            if (!id.matches("^[0-9a-fA-F]{24}$")) {
+                throw new IllegalArgumentException(id);
+            }
+            return new String[] {texto.substring(inicio + 1, fin), id};
+        } catch (IllegalArgumentException e) {
+            throw new BusinessException("Cursor de paginación inválido");
+        }
+    }
+
+    /**
+     * Construye la respuesta de una página a partir del {@link Slice} consultado.
+     */
+    public static <S, T> PaginaResponse<T> desde(Slice<S> slice, Function<S, String> id, Function<S, T> mapper) {
+        List<S> elementos = slice.getContent();
+        String siguiente = slice.hasNext() && !elementos.isEmpty()
+                ? codificar(id.apply(elementos.get(elementos.size() - 1)))
+                : null;
+        return PaginaResponse.<T>builder()
+                .contenido(elementos.stream().map(mapper).toList())
+                .siguienteCursor(siguiente)
+                .limite(slice.getSize())
+                .build();
+    }
+
+    /**
+     * Construye la respuesta de una página a partir de una consulta que pidió
+     * {@code limite + 1} elementos; el sobrante solo indica que hay página siguiente.
+     * Es la variante para las consultas reactivas, que no devuelven {@link Slice}.
+     */
+    public static <S, T> PaginaResponse<T> desde(List<S> consultados, int limite,
+                                                 Function<S, String> id, Function<S, T> mapper) {
+        boolean haySiguiente = consultados.size() > limite;
+        List<S> elementos = haySiguiente ? consultados.subList(0, limite) : consultados;
+        String siguiente = haySiguiente && !elementos.isEmpty()
+                ? codificar(id.apply(elementos.get(elementos.size() - 1)))
+                : null;
+        return PaginaResponse.<T>builder()
+                .contenido(elementos.stream().map(mapper).toList())
+                .siguienteCursor(siguiente)
+                .limite(limite)
+                .build();
+    }
+
+    /**
+     * Respuesta HTTP con el contenido de la página y el cursor siguiente en cabecera.
+     */
+    public static <T> ResponseEntity<List<T>> respuesta(PaginaResponse<T> pagina) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (pagina.getSiguienteCursor() != null) {
+            builder.header(CABECERA_SIGUIENTE, pagina.getSiguienteCursor());
+        }
+        return builder.body(pagina.getContenido());
+    }
+}
@@ -0,0 +1,303 @@
+package com.ejemplo.tienda_online.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Índice invertido en memoria para la búsqueda de texto del catálogo.
+ *
+ * <p>Cada término normalizado (minúsculas y sin tildes) apunta a la lista de documentos
+ * que lo contienen, con un peso según el campo: el nombre pesa más que la categoría y
+ * esta más que la descripción. La puntuación de un documento es la suma, para cada
+ * término de la búsqueda, de su peso por la rareza del término (idf). Todos los términos
+ * deben aparecer, y el último se trata como prefijo para autocompletar.</p>
+ *
+ * <p>Los documentos eliminados o actualizados se marcan como borrados y sus entradas
+ * antiguas se descartan al reconstruir el índice. Admite lecturas concurrentes con un
+ * único escritor.</p>
+ */
+public class IndiceInvertido {
+
+    public static final float PESO_NOMBRE = 10f;
+    public static final float PESO_CATEGORIA = 5f;
+    public static final float PESO_DESCRIPCION = 1f;
+
+    /**
+     * Los términos que solo coinciden por prefijo puntúan algo menos que la palabra exacta.
+     */
+    private static final float FACTOR_PREFIJO = 0.8f;
+    private static final int MAX_EXPANSIONES = 64;
+    /**
+     * Un prefijo de una sola letra abarcaría casi todo el catálogo: se busca como palabra exacta.
+     */
+    private static final int MIN_LONGITUD_PREFIJO = 2;
+    private static final int MAX_TERMINOS_BUSQUEDA = 16;
+
+    private static final Locale ES = Locale.forLanguageTag("es");
+    private static final Pattern SEPARADORES = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+    private static final Set<String> PALABRAS_VACIAS = Set.of(
+            "a", "al", "con", "de", "del", "e", "el", "en", "la", "las", "lo", "los",
+            "o", "para", "por", "sin", "su", "un", "una", "y");
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<String, Postings> terminos = new TreeMap<>();
+    private final List<String> ids = new ArrayList<>();
+    private final List<String> nombres = new ArrayList<>();
+    private final Map<String, Integer> ordinales = new HashMap<>();
+    private final BitSet eliminados = new BitSet();
+
+    /**
+     * Documento encontrado y su puntuación.
+     */
+    public record Resultado(String id, String nombre, float puntuacion) {
+    }
+
+    /**
+     * Añade o sustituye un documento.
+     */
+    public void indexar(String id, String nombre, String descripcion, String categoria) {
+        Map<String, Float> pesos = new HashMap<>();
+        acumular(pesos, nombre, PESO_NOMBRE);
+        acumular(pesos, categoria, PESO_CATEGORIA);
+        acumular(pesos, descripcion, PESO_DESCRIPCION);
+
+        lock.writeLock().lock();
+        try {
+            eliminarSinBloqueo(id);
+            int ordinal = ids.size();
+            ids.add(id);
+            nombres.add(nombre);
+            ordinales.put(id, ordinal);
+            pesos.forEach((termino, peso) -> terminos.computeIfAbsent(termino, t -> new Postings()).agregar(ordinal, peso));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Elimina un documento del índice; no hace nada si no existe.
+     */
+    public void eliminar(String id) {
+        lock.writeLock().lock();
+        try {
+            eliminarSinBloqueo(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Número de documentos vivos en el índice.
+     */
+    public int tamanio() {
+        lock.readLock().lock();
+        try {
+            return ordinales.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Busca los documentos que contienen todos los términos del texto, ordenados por relevancia.
+     *
+     * @param texto texto de búsqueda; el último término se trata como prefijo
+     * @param limite número máximo de resultados
+     */
+    public List<Resultado> buscar(String texto, int limite) {
+        List<String> tokens = tokenizar(texto);
+        if (tokens.isEmpty() || limite < 1) {
+            return List.of();
+        }
+        // Las palabras vacías se ignoran, salvo la última si se está escribiendo
+        String ultimo = tokens.get(tokens.size() - 1);
+        tokens = new ArrayList<>(tokens.stream().filter(t -> !PALABRAS_VACIAS.contains(t)).toList());
+        if (tokens.isEmpty() || !tokens.get(tokens.size() - 1).equals(ultimo)) {
+            tokens.add(ultimo);
+        }
+        if (tokens.size() > MAX_TERMINOS_BUSQUEDA) {
+            tokens = tokens.subList(tokens.size() - MAX_TERMINOS_BUSQUEDA, tokens.size());
+        }
+
+        lock.readLock().lock();
+        try {
+            List<List<Map.Entry<String, Postings>>> expansiones = new ArrayList<>(tokens.size());
+            int masCorto = 0;
+            long menorTamanio = Long.MAX_VALUE;
+            for (int i = 0; i < tokens.size(); i++) {
+                List<Map.Entry<String, Postings>> delTermino = expandir(tokens.get(i), i == tokens.size() - 1);
+                if (delTermino.isEmpty()) {
+                    return List.of();
+                }
+                expansiones.add(delTermino);
+                long tamanio = delTermino.stream().mapToLong(e -> e.getValue().tamanio).sum();
+                if (tamanio < menorTamanio) {
+                    menorTamanio = tamanio;
+                    masCorto = i;
+                }
+            }
+
+            // Como todos los términos deben aparecer, los candidatos salen del término con menos
+            // documentos y las puntuaciones se acumulan solo para ellos, no para todo el índice
+            int[] candidatos = new int[(int) menorTamanio];
+            int numCandidatos = 0;
+            for (Map.Entry<String, Postings> expansion : expansiones.get(masCorto)) {
+                Postings postings = expansion.getValue();
+                for (int k = 0; k < postings.tamanio; k++) {
+                    if (!eliminados.get(postings.docs[k])) {
+                        candidatos[numCandidatos++] = postings.docs[k];
+                    }
+                }
+            }
+            Arrays.sort(candidatos, 0, numCandidatos);
+            int unicos = 0;
+            for (int c = 0; c < numCandidatos; c++) {
+                if (unicos == 0 || candidatos[unicos - 1] != candidatos[c]) {
+                    candidatos[unicos++] = candidatos[c];
+                }
+            }
+            numCandidatos = unicos;
+            if (numCandidatos == 0) {
+                return List.of();
+            }
+
+            int total = ids.size();
+            float[] puntuaciones = new float[numCandidatos];
+            byte[] coincidencias = new byte[numCandidatos];
+            for (int i = 0; i < tokens.size(); i++) {
+                for (Map.Entry<String, Postings> expansion : expansiones.get(i)) {
+                    Postings postings = expansion.getValue();
+                    float factor = expansion.getKey().equals(tokens.get(i)) ? 1f : FACTOR_PREFIJO;
+                    float idf = (float) Math.log(1.0 + (double) total / postings.tamanio);
+                    for (int k = 0; k < postings.tamanio; k++) {
+                        int posicion = Arrays.binarySearch(candidatos, 0, numCandidatos, postings.docs[k]);
+                        // Solo cuentan los candidatos que ya coincidían con los términos anteriores,
+                        // y cada término una sola vez aunque coincidan varias expansiones
+                        if (posicion < 0 || coincidencias[posicion] != i) {
+                            continue;
+                        }
+                        coincidencias[posicion] = (byte) (i + 1);
+                        puntuaciones[posicion] += postings.pesos[k] * idf * factor;
+                    }
+                }
+            }
+
+            // Los candidatos están ordenados por ordinal: a igual puntuación gana el más antiguo
+            Comparator<Integer> porPuntuacion = Comparator.<Integer>comparingDouble(c -> puntuaciones[c])
+                    .thenComparing(Comparator.reverseOrder());
+            PriorityQueue<Integer> mejores = new PriorityQueue<>(limite + 1, porPuntuacion);
+            for (int c = 0; c < numCandidatos; c++) {
+                if (coincidencias[c] != tokens.size()) {
+                    continue;
+                }
+                if (mejores.size() == limite && porPuntuacion.compare(c, mejores.peek()) <= 0) {
+                    continue;
+                }
+                mejores.offer(c);
+                if (mejores.size() > limite) {
+                    mejores.poll();
+                }
+            }
+
+            Resultado[] resultados = new Resultado[mejores.size()];
+            for (int r = resultados.length - 1; r >= 0; r--) {
+                int c = mejores.poll();
+                int doc = candidatos[c];
+                resultados[r] = new Resultado(ids.get(doc), nombres.get(doc), puntuaciones[c]);
+            }
+            return List.of(resultados);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Normaliza un texto en términos: minúsculas, sin tildes ni diéresis y sin signos.
+     */
+    public static List<String> tokenizar(String texto) {
+        if (texto == null || texto.isBlank()) {
+            return List.of();
+        }
+        String normalizado = MARCAS.matcher(Normalizer.normalize(texto.toLowerCase(ES), Normalizer.Form.NFD))
+                .replaceAll("");
+        Set<String> tokens = new LinkedHashSet<>();
+        for (String token : SEPARADORES.split(normalizado)) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return List.copyOf(tokens);
+    }
+
+    /**
+     * Términos del diccionario que corresponden a un término de la búsqueda: la palabra
+     * exacta primero y, si es prefijo, las más frecuentes que empiezan por ella.
+     */
+    private List<Map.Entry<String, Postings>> expandir(String token, boolean prefijo) {
+        if (!prefijo || token.length() < MIN_LONGITUD_PREFIJO) {
+            Postings exacto = terminos.get(token);
+            return exacto == null ? List.of() : List.of(Map.entry(token, exacto));
+        }
+        List<Map.Entry<String, Postings>> expansiones =
+                new ArrayList<>(terminos.subMap(token, true, token + Character.MAX_VALUE, false).entrySet());
+        if (expansiones.size() > MAX_EXPANSIONES) {
+            Postings exacto = terminos.get(token);
+            expansiones.sort(Comparator.comparingInt((Map.Entry<String, Postings> e) -> e.getValue().tamanio).reversed());
+            expansiones = new ArrayList<>(expansiones.subList(0, MAX_EXPANSIONES));
+            if (exacto != null) {
+                expansiones.removeIf(e -> e.getKey().equals(token));
+                expansiones.add(0, Map.entry(token, exacto));
+            }
+        }
+        return expansiones;
+    }
+
+    private void acumular(Map<String, Float> pesos, String texto, float peso) {
+        for (String token : tokenizar(texto)) {
+            if (!PALABRAS_VACIAS.contains(token)) {
+                pesos.merge(token, peso, Float::sum);
+            }
+        }
+    }
+
+    private void eliminarSinBloqueo(String id) {
+        Integer ordinal = ordinales.remove(id);
+        if (ordinal != null) {
+            eliminados.set(ordinal);
+            nombres.set(ordinal, null);
+        }
+    }
+
+    /**
+     * Lista de documentos de un término, ordenada por ordinal.
+     */
+    private static final class Postings {
+        private int[] docs = new int[4];
+        private float[] pesos = new float[4];
+        private int tamanio;
+
+        void agregar(int doc, float peso) {
+            if (tamanio == docs.length) {
+                docs = Arrays.copyOf(docs, tamanio * 2);
+                pesos = Arrays.copyOf(pesos, tamanio * 2);
+            }
+            docs[tamanio] = doc;
+            pesos[tamanio] = peso;
+            tamanio++;
+        }
+    }
+}
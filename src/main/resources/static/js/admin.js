@@ -81,14 +81,14 @@ async function loadDashboard() {
         const headers = { 'Authorization': 'Bearer ' + jwt };
 
         // Cargar productos
-        const productosRes = await fetch('/api/productos', { headers });
+        const productosRes = await fetchTodasLasPaginas('/api/productos', { headers });
         if (productosRes.ok) {
             productos = await productosRes.json();
             document.getElementById('total-productos').textContent = productos.length;
         }
 
         // Cargar pedidos
-        const pedidosRes = await fetch('/api/pedidos', { headers });
+        const pedidosRes = await fetchTodasLasPaginas('/api/pedidos', { headers });
         if (pedidosRes.ok) {
             pedidos = await pedidosRes.json();
             document.getElementById('total-pedidos').textContent = pedidos.length;
@@ -135,7 +135,7 @@ async function loadPedidos() {
         const jwt = localStorage.getItem('jwt');
         const estadoFilter = document.getElementById('estado-filter')?.value || '';
 
-        const res = await fetch('/api/pedidos', {
+        const res = await fetchTodasLasPaginas('/api/pedidos', {
             headers: { 'Authorization': 'Bearer ' + jwt }
         });
 
@@ -230,7 +230,7 @@ async function loadProductosInfo() {
     if (productos.length === 0) {
         try {
             const jwt = localStorage.getItem('jwt');
-            const res = await fetch('/api/productos', {
+            const res = await fetchTodasLasPaginas('/api/productos', {
                 headers: {
                     'Authorization': 'Bearer ' + jwt,
                     'Accept': 'application/json'
@@ -274,7 +274,7 @@ async function loadUsuarios() {
     } else {
         try {
             const jwt = localStorage.getItem('jwt');
-            const response = await fetch('/api/admin/users', {
+            const response = await fetchTodasLasPaginas('/api/admin/users', {
                 headers: { 'Authorization': 'Bearer ' + jwt }
             });
 
@@ -246,3 +246,19 @@ function formatearPrecio(precio) {
     resultado = miles + resultado + ',' + partes[1];
     return resultado;
 }
+
+// Recorre todas las páginas de un listado paginado por cursor (cabecera X-Next-Cursor).
+// Devuelve un objeto compatible con Response: ok, status y json() con todos los elementos.
+async function fetchTodasLasPaginas(url, options = {}) {
+    let elementos = [];
+    let cursor = null;
+    do {
+        const separador = url.includes('?') ? '&' : '?';
+        const pagina = cursor ? `${url}${separador}cursor=${encodeURIComponent(cursor)}` : url;
+        const res = await fetch(pagina, options);
+        if (!res.ok) return res;
+        elementos = elementos.concat(await res.json());
+        cursor = res.headers.get('X-Next-Cursor');
+    } while (cursor);
+    return { ok: true, status: 200, json: async () => elementos };
+}
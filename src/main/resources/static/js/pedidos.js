@@ -29,7 +29,7 @@ async function cargarProductos() {
     const jwt = localStorage.getItem('jwt');
 
     try {
-        const res = await fetch('/api/productos', {
+        const res = await fetchTodasLasPaginas('/api/productos', {
             headers: {
                 'Authorization': 'Bearer ' + jwt,
                 'Accept': 'application/json'
@@ -48,7 +48,7 @@ async function cargarMisPedidos() {
     const jwt = localStorage.getItem('jwt');
 
     try {
-        const res = await fetch('/api/pedidos/mios', {
+        const res = await fetchTodasLasPaginas('/api/pedidos/mios', {
             headers: {
                 'Authorization': 'Bearer ' + jwt,
                 'Accept': 'application/json'
@@ -71,7 +71,7 @@ async function cargarTodosLosPedidos() {
     const jwt = localStorage.getItem('jwt');
 
     try {
-        const res = await fetch('/api/pedidos', {
+        const res = await fetchTodasLasPaginas('/api/pedidos', {
             headers: {
                 'Authorization': 'Bearer ' + jwt,
                 'Accept': 'application/json'
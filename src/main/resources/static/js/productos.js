@@ -39,7 +39,7 @@ async function cargarProductos(soloDatos = false) {
     if (jwt) headers['Authorization'] = 'Bearer ' + jwt;
 
     try {
-        const res = await fetch('/api/productos', { headers });
+        const res = await fetchTodasLasPaginas('/api/productos', { headers });
         if (res.ok) {
             productos = await res.json();
             if (!soloDatos) mostrarProductos();
@@ -347,9 +347,17 @@ async function guardarProducto() {
         precio: parseFloat(document.getElementById('producto-precio').value),
         stock: parseInt(document.getElementById('producto-stock').value)
     };
+    // Al editar se envía la versión y el stock leídos: el servidor rechaza la edición si otro
+    // administrador ha cambiado el producto y conserva las compras hechas mientras tanto
+    const leido = id ? productos.find(p => p.id === id) : null;
+    if (leido) {
+        producto.version = leido.version;
+    }
 
     try {
-        const url = id ? `/api/productos/${id}` : '/api/productos';
+        const url = id
+            ? `/api/productos/${id}` + (leido ? `?stockLeido=${leido.stock}` : '')
+            : '/api/productos';
         const method = id ? 'PUT' : 'POST';
 
         const res = await fetch(url, {
@@ -368,6 +376,10 @@ async function guardarProducto() {
             await cargarProductos();
         } else {
             const error = await res.json();
+            if (res.status === 409) {
+                // Otra edición se ha adelantado: se recarga para editar sobre la versión actual
+                await cargarProductos();
+            }
             mostrarMensaje(error.message || 'Error al guardar el producto', 'error');
         }
     } catch (error) {
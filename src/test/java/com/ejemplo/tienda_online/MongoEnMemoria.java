@@ -0,0 +1,77 @@
+package com.ejemplo.tienda_online;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.event.CommandListener;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.springframework.data.mongodb.repository.support.ReactiveMongoRepositoryFactory;
+
+/**
+ * Servidor MongoDB en memoria para tests que no necesitan el contexto completo de Spring.
+ */
+public class MongoEnMemoria implements AutoCloseable {
+
+    private static final String BASE_DE_DATOS = "tiendadb-test";
+
+    private final MongoServer server;
+    private final String connectionString;
+    private final MongoClient client;
+    private final MongoTemplate mongoTemplate;
+    private com.mongodb.reactivestreams.client.MongoClient clienteReactivo;
+
+    public MongoEnMemoria() {
+        this(null);
+    }
+
+    /**
+     * @param escucha recibe los comandos que envía el cliente, o null
+     */
+    public MongoEnMemoria(CommandListener escucha) {
+        server = new MongoServer(new MemoryBackend());
+        connectionString = server.bindAndGetConnectionString();
+        MongoClientSettings.Builder ajustes = MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(connectionString));
+        if (escucha != null) {
+            ajustes.addCommandListener(escucha);
+        }
+        client = MongoClients.create(ajustes.build());
+        mongoTemplate = new MongoTemplate(client, BASE_DE_DATOS);
+    }
+
+    public MongoTemplate getMongoTemplate() {
+        return mongoTemplate;
+    }
+
+    /**
+     * Crea una implementación de un repositorio de Spring Data sobre este servidor.
+     */
+    public <T> T repositorio(Class<T> tipoRepositorio) {
+        return new MongoRepositoryFactory(mongoTemplate).getRepository(tipoRepositorio);
+    }
+
+    /**
+     * Crea una implementación de un repositorio reactivo de Spring Data sobre este servidor.
+     */
+    public synchronized <T> T repositorioReactivo(Class<T> tipoRepositorio) {
+        if (clienteReactivo == null) {
+            clienteReactivo = com.mongodb.reactivestreams.client.MongoClients.create(connectionString);
+        }
+        return new ReactiveMongoRepositoryFactory(new ReactiveMongoTemplate(clienteReactivo, BASE_DE_DATOS))
+                .getRepository(tipoRepositorio);
+    }
+
+    @Override
+    public void close() {
+        if (clienteReactivo != null) {
+            clienteReactivo.close();
+        }
+        client.close();
+        server.shutdownNow();
+    }
+}
@@ -0,0 +1,111 @@
+package com.ejemplo.tienda_online;
+
+import com.ejemplo.tienda_online.config.PlanIndices;
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.event.CommandListener;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.springframework.data.mongodb.repository.support.ReactiveMongoRepositoryFactory;
+
+/**
+ * Base de datos temporal en un servidor MongoDB real, para los tests de planes de
+ * ejecución ({@code explain}) que el servidor en memoria no soporta.
+ *
+ * <p>Se conecta a la URI de la variable de entorno {@code MONGODB_URI}; los tests que
+ * la usan se desactivan si no está definida.</p>
+ */
+public class MongoReal implements AutoCloseable {
+
+    public static final String VARIABLE_URI = "MONGODB_URI";
+
+    private final MongoClientSettings ajustes;
+    private final String baseDeDatos = "tiendadb-explain-" + System.nanoTime();
+    private final MongoClient client;
+    private final MongoTemplate mongoTemplate;
+    private final QueryMapper queryMapper;
+    private com.mongodb.reactivestreams.client.MongoClient clienteReactivo;
+
+    public MongoReal() {
+        this(null);
+    }
+
+    /**
+     * @param escucha recibe los comandos que envían los clientes, o null
+     */
+    public MongoReal(CommandListener escucha) {
+        MongoClientSettings.Builder builder = MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(System.getenv(VARIABLE_URI)));
+        if (escucha != null) {
+            builder.addCommandListener(escucha);
+        }
+        ajustes = builder.build();
+        client = MongoClients.create(ajustes);
+        mongoTemplate = new MongoTemplate(client, baseDeDatos);
+        queryMapper = new QueryMapper(mongoTemplate.getConverter());
+    }
+
+    public MongoTemplate getMongoTemplate() {
+        return mongoTemplate;
+    }
+
+    /**
+     * Crea los índices que declara {@link PlanIndices} para la entidad indicada.
+     */
+    public void crearIndices(Class<?> entidad) {
+        IndexOperations indices = mongoTemplate.indexOps(entidad);
+        PlanIndices.de(entidad).forEach(indice -> indices.createIndex(indice.definicion()));
+    }
+
+    /**
+     * Crea una implementación de un repositorio de Spring Data sobre esta base de datos.
+     */
+    public <T> T repositorio(Class<T> tipoRepositorio) {
+        return new MongoRepositoryFactory(mongoTemplate).getRepository(tipoRepositorio);
+    }
+
+    /**
+     * Crea una implementación de un repositorio reactivo de Spring Data sobre esta base de datos.
+     */
+    public synchronized <T> T repositorioReactivo(Class<T> tipoRepositorio) {
+        if (clienteReactivo == null) {
+            clienteReactivo = com.mongodb.reactivestreams.client.MongoClients.create(ajustes);
+        }
+        return new ReactiveMongoRepositoryFactory(new ReactiveMongoTemplate(clienteReactivo, baseDeDatos))
+                .getRepository(tipoRepositorio);
+    }
+
+    /**
+     * Plan ganador que elige el servidor para la consulta indicada.
+     */
+    public Document planGanador(Query consulta, Class<?> entidad) {
+        MongoPersistentEntity<?> persistente = mongoTemplate.getConverter().getMappingContext()
+                .getRequiredPersistentEntity(entidad);
+        FindIterable<Document> find = mongoTemplate.getCollection(mongoTemplate.getCollectionName(entidad))
+                .find(queryMapper.getMappedObject(consulta.getQueryObject(), persistente))
+                .sort(queryMapper.getMappedSort(consulta.getSortObject(), persistente));
+        if (consulta.isLimited()) {
+            find.limit(consulta.getLimit());
+        }
+        consulta.getCollation().ifPresent(colacion -> find.collation(colacion.toMongoCollation()));
+        return find.explain().get("queryPlanner", Document.class).get("winningPlan", Document.class);
+    }
+
+    @Override
+    public void close() {
+        mongoTemplate.getDb().drop();
+        if (clienteReactivo != null) {
+            clienteReactivo.close();
+        }
+        client.close();
+    }
+}
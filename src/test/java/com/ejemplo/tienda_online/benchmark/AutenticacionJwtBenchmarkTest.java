@@ -0,0 +1,148 @@
+package com.ejemplo.tienda_online.benchmark;
+
+import com.ejemplo.tienda_online.MongoEnMemoria;
+import com.ejemplo.tienda_online.model.Usuario;
+import com.ejemplo.tienda_online.repository.UsuarioRepository;
+import com.ejemplo.tienda_online.security.JwtAuthFilter;
+import com.ejemplo.tienda_online.security.JwtUtil;
+import com.ejemplo.tienda_online.security.PrincipalCache;
+import com.ejemplo.tienda_online.security.UserDetailsServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Throughput de peticiones autenticadas a través de {@link JwtAuthFilter}: carga del
+ * usuario en cada petición, caché de usuarios y claims de confianza.
+ *
+ * <p>La base de datos es el servidor en memoria, por lo que el coste de la consulta
+ * es menor que contra un MongoDB en red. Ejecutar con {@code mvn test -Pbenchmark}.</p>
+ */
+@Tag("benchmark")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class AutenticacionJwtBenchmarkTest {
+
+    private static final int HILOS = 8;
+    private static final int PETICIONES = 20_000;
+    private static final int CALENTAMIENTO = 2_000;
+
+    private MongoEnMemoria mongo;
+    private UserDetailsServiceImpl userDetailsService;
+    private JwtUtil jwtUtil;
+    private String token;
+
+    @BeforeAll
+    void setUp() {
+        mongo = new MongoEnMemoria();
+        UsuarioRepository usuarioRepository = mongo.repositorio(UsuarioRepository.class);
+        usuarioRepository.save(Usuario.builder()
+                .username("cliente")
+                .email("cliente@ejemplo.com")
+                .password("x")
+                .roles(List.of(Usuario.RolUsuario.CLIENTE))
+                .build());
+        userDetailsService = new UserDetailsServiceImpl(usuarioRepository);
+
+        jwtUtil = new JwtUtil("SuperClaveJwtSegura12345678901234567890", 3_600_000L, 10_000,
+                new SimpleMeterRegistry());
+        token = jwtUtil.generateToken("cliente", "CLIENTE");
+    }
+
+    @AfterAll
+    void tearDown() {
+        mongo.close();
+    }
+
+    @Test
+    void throughputDePeticionesAutenticadas() throws Exception {
+        // UserDetailsServiceImpl escribe en consola cada carga; se descarta durante la medición
+        PrintStream salida = System.out;
+        double sinCache;
+        double conCache;
+        double claims;
+        try {
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            sinCache = medir(filtro(Duration.ZERO, false));
+            conCache = medir(filtro(Duration.ofMinutes(1), false));
+            claims = medir(filtro(Duration.ofMinutes(1), true));
+        } finally {
+            System.setOut(salida);
+        }
+
+        System.out.printf("Peticiones autenticadas por segundo (%d hilos):%n", HILOS);
+        System.out.printf("  Carga por petición:  %,10.0f%n", sinCache);
+        System.out.printf("  Caché de usuarios:   %,10.0f%n", conCache);
+        System.out.printf("  Claims de confianza: %,10.0f%n", claims);
+        assertThat(conCache).isGreaterThan(sinCache);
+    }
+
+    private JwtAuthFilter filtro(Duration ttl, boolean claimsDeConfianza) {
+        JwtAuthFilter filtro = new JwtAuthFilter(jwtUtil, userDetailsService,
+                new PrincipalCache(10_000, ttl, new SimpleMeterRegistry()), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(filtro, "claimsDeConfianza", claimsDeConfianza);
+        return filtro;
+    }
+
+    private double medir(JwtAuthFilter filtro) throws Exception {
+        ejecutar(filtro, CALENTAMIENTO);
+        long inicio = System.nanoTime();
+        ejecutar(filtro, PETICIONES);
+        return PETICIONES / ((System.nanoTime() - inicio) / 1e9);
+    }
+
+    private void ejecutar(JwtAuthFilter filtro, int peticiones) throws Exception {
+        AtomicInteger restantes = new AtomicInteger(peticiones);
+        AtomicInteger autenticadas = new AtomicInteger();
+        FilterChain cadena = (request, response) -> {
+            if (SecurityContextHolder.getContext().getAuthentication() != null) {
+                autenticadas.incrementAndGet();
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(HILOS);
+        try {
+            List<Future<?>> tareas = new ArrayList<>();
+            for (int h = 0; h < HILOS; h++) {
+                tareas.add(executor.submit(() -> {
+                    while (restantes.getAndDecrement() > 0) {
+                        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/pedidos/mios");
+                        request.setServletPath("/api/pedidos/mios");
+                        request.addHeader("Authorization", "Bearer " + token);
+                        try {
+                            filtro.doFilter(request, new MockHttpServletResponse(), cadena);
+                        } finally {
+                            SecurityContextHolder.clearContext();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> tarea : tareas) {
+                tarea.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(autenticadas.get()).isEqualTo(peticiones);
+    }
+}
@@ -0,0 +1,76 @@
+package com.ejemplo.tienda_online.benchmark;
+
+import com.ejemplo.tienda_online.util.IndiceInvertido;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Latencia de la búsqueda de texto sobre un catálogo de 500.000 productos.
+ * Mide solo el índice en memoria; la carga posterior de los productos de la página
+ * de resultados es una única consulta por ID.
+ *
+ * <p>Ejecutar con {@code mvn test -Pbenchmark}.</p>
+ */
+@Tag("benchmark")
+class BusquedaProductosBenchmarkTest {
+
+    private static final int PRODUCTOS = 500_000;
+    private static final int BUSQUEDAS = 5_000;
+    private static final int CALENTAMIENTO = 1_000;
+
+    private static final String[] TIPOS = {"Teclado", "Ratón", "Monitor", "Portátil", "Auriculares", "Altavoz",
+            "Cámara", "Impresora", "Router", "Disco", "Memoria", "Tarjeta", "Cable", "Cargador", "Funda"};
+    private static final String[] ADJETIVOS = {"inalámbrico", "mecánico", "gaming", "ergonómico", "compacto",
+            "profesional", "portátil", "óptico", "curvo", "silencioso", "rápido", "básico"};
+    private static final String[] MARCAS = {"Acme", "Nimbus", "Orion", "Vértice", "Zenit", "Boreal", "Cénit",
+            "Delta", "Estrella", "Faro"};
+    private static final String[] CATEGORIAS = {"Periféricos", "Pantallas", "Audio", "Almacenamiento",
+            "Redes", "Accesorios", "Informática"};
+    private static final List<String> CONSULTAS = List.of(
+            "teclado", "raton inalambrico", "monitor curvo", "auriculares gaming orion", "tecl", "port",
+            "impresora profesional", "cable", "almacenamiento disco rapido", "zenit", "camara opt", "al");
+
+    @Test
+    void latenciaDeBusquedaSobreQuinientosMilProductos() {
+        Random random = new Random(42);
+        IndiceInvertido indice = new IndiceInvertido();
+        long inicioCarga = System.nanoTime();
+        for (int i = 0; i < PRODUCTOS; i++) {
+            String tipo = TIPOS[random.nextInt(TIPOS.length)];
+            String adjetivo = ADJETIVOS[random.nextInt(ADJETIVOS.length)];
+            String marca = MARCAS[random.nextInt(MARCAS.length)];
+            indice.indexar(Integer.toHexString(i),
+                    tipo + " " + adjetivo + " " + marca + " " + i,
+                    tipo + " " + adjetivo + " de la marca " + marca + " con garantía de " + (1 + i % 3) + " años",
+                    CATEGORIAS[random.nextInt(CATEGORIAS.length)]);
+        }
+        System.out.printf("Índice de %d productos construido en %d ms%n",
+                PRODUCTOS, (System.nanoTime() - inicioCarga) / 1_000_000);
+
+        for (int i = 0; i < CALENTAMIENTO; i++) {
+            indice.buscar(CONSULTAS.get(i % CONSULTAS.size()), 20);
+        }
+
+        long[] tiempos = new long[BUSQUEDAS];
+        for (int i = 0; i < BUSQUEDAS; i++) {
+            String consulta = CONSULTAS.get(random.nextInt(CONSULTAS.size()));
+            long inicio = System.nanoTime();
+            List<IndiceInvertido.Resultado> resultados = indice.buscar(consulta, 20);
+            tiempos[i] = System.nanoTime() - inicio;
+            assertThat(resultados).isNotEmpty();
+        }
+        Arrays.sort(tiempos);
+
+        double p50 = tiempos[BUSQUEDAS / 2] / 1e6;
+        double p99 = tiempos[BUSQUEDAS * 99 / 100] / 1e6;
+        System.out.printf("Búsquedas: p50 = %.2f ms, p99 = %.2f ms, máximo = %.2f ms%n",
+                p50, p99, tiempos[BUSQUEDAS - 1] / 1e6);
+        assertThat(p99).isLessThan(10.0);
+    }
+}
@@ -0,0 +1,205 @@
+package com.ejemplo.tienda_online.benchmark;
+
+import com.ejemplo.tienda_online.MongoEnMemoria;
+import com.ejemplo.tienda_online.model.Pedido;
+import com.ejemplo.tienda_online.model.Producto;
+import com.ejemplo.tienda_online.model.Usuario;
+import com.ejemplo.tienda_online.repository.PedidoRepository;
+import com.ejemplo.tienda_online.repository.ProductoRepository;
+import com.ejemplo.tienda_online.repository.UsuarioRepository;
+import com.ejemplo.tienda_online.security.UsuarioAutenticado;
+import com.ejemplo.tienda_online.service.CatalogoCache;
+import com.ejemplo.tienda_online.service.PedidoService;
+import com.ejemplo.tienda_online.service.ProductoService;
+import com.ejemplo.tienda_online.service.ReintentosConcurrencia;
+import com.ejemplo.tienda_online.service.ReservaStockService;
+import com.ejemplo.tienda_online.service.StockFraccionadoService;
+import com.ejemplo.tienda_online.service.TransaccionesPedido;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Bytes intercambiados con MongoDB en el ciclo de una compra (crear el pedido de tres
+ * productos, enviarlo y entregarlo) y en un cambio de stock desde la administración:
+ * guardando documentos completos con {@code save} (antes) frente a las actualizaciones
+ * parciales de los servicios (después).
+ *
+ * <p>Se mide el tamaño BSON de los comandos enviados y de las respuestas; el resultado
+ * no depende del servidor, así que basta el servidor en memoria.</p>
+ *
+ * <p>Ejecutar con {@code mvn test -Pbenchmark}.</p>
+ */
+@Tag("benchmark")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class BytesPorCompraBenchmarkTest {
+
+    private static final int COMPRAS = 50;
+    private static final int PRODUCTOS_POR_PEDIDO = 3;
+
+    private final AtomicLong enviados = new AtomicLong();
+    private final AtomicLong recibidos = new AtomicLong();
+    private volatile boolean midiendo;
+
+    private MongoEnMemoria mongo;
+    private ProductoRepository productoRepository;
+    private PedidoRepository pedidoRepository;
+    private ProductoService productoService;
+    private PedidoService pedidoService;
+    private List<Producto> productos;
+
+    @BeforeAll
+    void setUp() {
+        mongo = new MongoEnMemoria(new CommandListener() {
+            @Override
+            public void commandStarted(CommandStartedEvent event) {
+                if (midiendo) {
+                    enviados.addAndGet(tamanio(event.getCommand()));
+                }
+            }
+
+            @Override
+            public void commandSucceeded(CommandSucceededEvent event) {
+                if (midiendo) {
+                    recibidos.addAndGet(tamanio(event.getResponse()));
+                }
+            }
+        });
+        productoRepository = mongo.repositorio(ProductoRepository.class);
+        pedidoRepository = mongo.repositorio(PedidoRepository.class);
+        CatalogoCache catalogoCache = new CatalogoCache(100, Duration.ofMinutes(1), new SimpleMeterRegistry());
+        StockFraccionadoService stockFraccionado =
+                new StockFraccionadoService(mongo.getMongoTemplate(), catalogoCache, new SimpleMeterRegistry());
+        productoService = new ProductoService(productoRepository, catalogoCache, new ObjectMapper(),
+                mongo.getMongoTemplate(), null, stockFraccionado,
+                new ReintentosConcurrencia(5, Duration.ofMillis(1), new SimpleMeterRegistry()));
+        pedidoService = new PedidoService(pedidoRepository, mongo.repositorio(UsuarioRepository.class),
+                productoRepository, new ReservaStockService(mongo.getMongoTemplate(), catalogoCache, stockFraccionado),
+                new TransaccionesPedido(null, 3, new SimpleMeterRegistry()), mongo.getMongoTemplate());
+
+        productos = new ArrayList<>();
+        for (int i = 0; i < PRODUCTOS_POR_PEDIDO; i++) {
+            productos.add(productoRepository.save(Producto.builder()
+                    .nombre("Portátil " + i)
+                    .descripcion("Portátil de 14 pulgadas con pantalla de alta resolución, teclado retroiluminado, "
+                            .repeat(8))
+                    .precio(899.0)
+                    .stock(1_000_000)
+                    .categoria("Informática")
+                    .imagenUrl("https://cdn.ejemplo.com/img/productos/portatil-" + i + "-principal.webp")
+                    .build()));
+        }
+
+        UsuarioAutenticado principal = UsuarioAutenticado.de(Usuario.builder()
+                .id("u-1").username("ana").email("ana@ejemplo.com").password("x")
+                .roles(List.of(Usuario.RolUsuario.CLIENTE)).build());
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+
+    @AfterAll
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        mongo.close();
+    }
+
+    @Test
+    void bytesPorCompra() {
+        long[] compraAntes = medir(this::comprarGuardandoDocumentos);
+        long[] compraDespues = medir(this::comprar);
+        long[] stockAntes = medir(this::cambiarStockGuardandoDocumento);
+        long[] stockDespues = medir(() -> productoService.updateStock(productos.get(0).getId(), 500_000));
+
+        System.out.println();
+        System.out.println("operación             | antes: enviados / recibidos (bytes) | después: enviados / recibidos (bytes)");
+        imprimir("compra completa", compraAntes, compraDespues);
+        imprimir("cambio de stock", stockAntes, stockDespues);
+
+        assertThat(compraDespues[0]).isLessThan(compraAntes[0]);
+        assertThat(stockDespues[0]).isLessThan(stockAntes[0]);
+    }
+
+    /**
+     * Implementación previa: cada cambio lee el documento y lo guarda entero.
+     */
+    private void comprarGuardandoDocumentos() {
+        List<Pedido.ItemPedido> items = new ArrayList<>();
+        for (Producto leido : productos) {
+            Producto producto = productoRepository.findById(leido.getId()).orElseThrow();
+            producto.setStock(producto.getStock() - 1);
+            productoRepository.save(producto);
+            items.add(Pedido.ItemPedido.builder().productoId(producto.getId()).nombreProducto(producto.getNombre())
+                    .cantidad(1).precioUnitario(producto.getPrecio()).build());
+        }
+        Pedido pedido = pedidoRepository.save(Pedido.builder().usuarioId("u-1").productos(items).build());
+        for (Pedido.EstadoPedido estado : List.of(Pedido.EstadoPedido.ENVIADO, Pedido.EstadoPedido.ENTREGADO)) {
+            Pedido leido = pedidoRepository.findById(pedido.getId()).orElseThrow();
+            leido.setEstado(estado);
+            pedidoRepository.save(leido);
+        }
+    }
+
+    /**
+     * Implementación actual: reserva con {@code $inc}, inserción y transiciones con {@code $set}.
+     */
+    private void comprar() {
+        Pedido pedido = new Pedido();
+        pedido.setProductos(new ArrayList<>(productos.stream()
+                .map(producto -> Pedido.ItemPedido.builder().productoId(producto.getId()).cantidad(1).build())
+                .toList()));
+        Pedido creado = pedidoService.crearPedido(pedido);
+        pedidoService.cambiarEstado(creado.getId(), "ENVIADO");
+        pedidoService.cambiarEstado(creado.getId(), "ENTREGADO");
+    }
+
+    private void cambiarStockGuardandoDocumento() {
+        Producto producto = productoRepository.findById(productos.get(0).getId()).orElseThrow();
+        producto.setStock(500_000);
+        productoRepository.save(producto);
+    }
+
+    /**
+     * @return bytes enviados y recibidos por operación, de media
+     */
+    private long[] medir(Runnable operacion) {
+        operacion.run();
+        enviados.set(0);
+        recibidos.set(0);
+        midiendo = true;
+        try {
+            for (int i = 0; i < COMPRAS; i++) {
+                operacion.run();
+            }
+        } finally {
+            midiendo = false;
+        }
+        return new long[] {enviados.get() / COMPRAS, recibidos.get() / COMPRAS};
+    }
+
+    private static void imprimir(String operacion, long[] antes, long[] despues) {
+        System.out.printf("%-21s | %15d / %17d | %17d / %19d%n", operacion, antes[0], antes[1], despues[0], despues[1]);
+    }
+
+    private static long tamanio(BsonDocument documento) {
+        return new RawBsonDocument(documento, new BsonDocumentCodec()).getByteBuffer().remaining();
+    }
+}
@@ -0,0 +1,160 @@
+package com.ejemplo.tienda_online.benchmark;
+
+import com.ejemplo.tienda_online.MongoReal;
+import com.ejemplo.tienda_online.config.MonitorHilosVirtuales;
+import com.ejemplo.tienda_online.model.Producto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Comparación de carga entre hilos de plataforma y virtuales para peticiones que hacen
+ * varias llamadas secuenciales a MongoDB, como {@code PedidoService.crearPedido}.
+ *
+ * <p>Cada petición simulada hace {@value #LLAMADAS_POR_PETICION} llamadas bloqueantes de
+ * {@value #LATENCIA_RED_MS} ms, la latencia de red de un MongoDB remoto. Si está definida
+ * {@code MONGODB_URI}, cada llamada incluye además una lectura real; el servidor en memoria
+ * no sirve aquí porque su coste por operación es de CPU y no de espera. Los hilos de
+ * plataforma se limitan a {@value #HILOS_TOMCAT}, el máximo por defecto de Tomcat.</p>
+ *
+ * <p>El tercer escenario bloquea dentro de un {@code synchronized}, lo que fija cada hilo
+ * virtual a su portador: sirve para comprobar que {@link MonitorHilosVirtuales} lo detecta
+ * y para ver cuánto cuesta.</p>
+ *
+ * <p>Ejecutar con {@code mvn test -Pbenchmark}.</p>
+ */
+@Tag("benchmark")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class HilosVirtualesBenchmarkTest {
+
+    private static final int HILOS_TOMCAT = 200;
+    private static final int PETICIONES = 10_000;
+    private static final int LLAMADAS_POR_PETICION = 3;
+    private static final int LATENCIA_RED_MS = 5;
+
+    private MongoReal mongo;
+    private List<String> ids = List.of();
+
+    @BeforeAll
+    void setUp() {
+        if (System.getenv(MongoReal.VARIABLE_URI) == null) {
+            return;
+        }
+        mongo = new MongoReal();
+        List<Producto> productos = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            productos.add(Producto.builder().nombre("Producto " + i).precio(10.0 + i).stock(100).build());
+        }
+        ids = mongo.getMongoTemplate().insertAll(productos).stream().map(Producto::getId).toList();
+    }
+
+    @AfterAll
+    void tearDown() {
+        if (mongo != null) {
+            mongo.close();
+        }
+    }
+
+    @Test
+    void hilosDePlataformaFrenteAHilosVirtuales() throws Exception {
+        // El monitor se arranca antes del calentamiento: iniciar JFR tiene un coste inicial
+        // que no debe caer dentro de ninguna medición
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MonitorHilosVirtuales monitor = new MonitorHilosVirtuales(Duration.ofMillis(1), registry);
+        Resultado plataforma;
+        Resultado virtuales;
+        Resultado fijados;
+        double fijadosVirtuales;
+        double fijadosSynchronized;
+        try {
+            for (int i = 0; i < 3; i++) {
+                medir(Executors.newFixedThreadPool(HILOS_TOMCAT), PETICIONES / 5, false);
+                medir(Executors.newVirtualThreadPerTaskExecutor(), PETICIONES / 5, false);
+            }
+            double fijadosInicio = contarFijados(registry);
+
+            plataforma = medir(Executors.newFixedThreadPool(HILOS_TOMCAT), PETICIONES, false);
+            virtuales = medir(Executors.newVirtualThreadPerTaskExecutor(), PETICIONES, false);
+            fijadosVirtuales = contarFijados(registry) - fijadosInicio;
+            fijados = medir(Executors.newVirtualThreadPerTaskExecutor(), PETICIONES / 10, true);
+            fijadosSynchronized = contarFijados(registry) - fijadosVirtuales - fijadosInicio;
+        } finally {
+            monitor.cerrar();
+        }
+
+        System.out.printf("%d peticiones simultáneas, %d llamadas bloqueantes de %d ms (MongoDB real: %s):%n",
+                PETICIONES, LLAMADAS_POR_PETICION, LATENCIA_RED_MS, mongo != null ? "sí" : "no");
+        imprimir("Plataforma (" + HILOS_TOMCAT + " hilos)", plataforma, 0);
+        imprimir("Virtuales", virtuales, fijadosVirtuales);
+        imprimir("Virtuales + synchronized", fijados, fijadosSynchronized);
+        assertThat(virtuales.porSegundo()).isGreaterThan(plataforma.porSegundo());
+        assertThat(fijadosSynchronized).isPositive();
+    }
+
+    private static void imprimir(String modo, Resultado resultado, double fijados) {
+        System.out.printf("  %-26s %,8.0f pet/s, p50 %,7.0f ms, p99 %,7.0f ms, pinning: %.0f%n",
+                modo, resultado.porSegundo(), resultado.p50(), resultado.p99(), fijados);
+    }
+
+    private static double contarFijados(SimpleMeterRegistry registry) throws InterruptedException {
+        // JFR entrega los eventos en bloques de aproximadamente un segundo
+        Thread.sleep(2_000);
+        return registry.counter("hilos.virtuales.fijados").count();
+    }
+
+    private record Resultado(double porSegundo, double p50, double p99) {
+    }
+
+    private Resultado medir(ExecutorService executor, int peticiones, boolean fijarPortador) throws Exception {
+        long[] latencias = new long[peticiones];
+        long inicio = System.nanoTime();
+        try (executor) {
+            List<Future<?>> tareas = new ArrayList<>(peticiones);
+            for (int i = 0; i < peticiones; i++) {
+                int peticion = i;
+                long llegada = System.nanoTime();
+                tareas.add(executor.submit(() -> {
+                    if (fijarPortador) {
+                        synchronized (new Object()) {
+                            atender(peticion);
+                        }
+                    } else {
+                        atender(peticion);
+                    }
+                    latencias[peticion] = System.nanoTime() - llegada;
+                    return null;
+                }));
+            }
+            for (Future<?> tarea : tareas) {
+                tarea.get();
+            }
+        }
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        Arrays.sort(latencias);
+        return new Resultado(peticiones / segundos,
+                latencias[peticiones / 2] / 1e6, latencias[peticiones * 99 / 100] / 1e6);
+    }
+
+    private void atender(int peticion) throws InterruptedException {
+        for (int llamada = 0; llamada < LLAMADAS_POR_PETICION; llamada++) {
+            Thread.sleep(LATENCIA_RED_MS);
+            if (mongo != null) {
+                assertThat(mongo.getMongoTemplate().findById(ids.get((peticion + llamada) % ids.size()), Producto.class))
+                        .isNotNull();
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.ejemplo.tienda_online.benchmark;
+
+import com.ejemplo.tienda_online.security.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Coste de verificar un JWT por petición: la implementación anterior (clave y parser
+ * nuevos en cada llamada, dos verificaciones por petición en el filtro), un parser
+ * construido una vez y la caché de tokens verificados.
+ *
+ * <p>Ejecutar con {@code mvn test -Pbenchmark}.</p>
+ */
+@Tag("benchmark")
+class JwtUtilBenchmarkTest {
+
+    private static final String SECRETO = "SuperClaveJwtSegura12345678901234567890";
+    private static final int TOKENS = 1_000;
+    private static final int VERIFICACIONES = 200_000;
+    private static final int CALENTAMIENTO = 50_000;
+
+    @Test
+    void costeDeVerificacionPorPeticion() {
+        JwtUtil sinCache = new JwtUtil(SECRETO, 3_600_000L, 0, new SimpleMeterRegistry());
+        JwtUtil conCache = new JwtUtil(SECRETO, 3_600_000L, 10_000, new SimpleMeterRegistry());
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < TOKENS; i++) {
+            tokens.add(conCache.generateToken("usuario" + i, "CLIENTE"));
+        }
+
+        double anterior = medir(tokens, token -> {
+            // Como hacía el filtro antes: getUsernameFromToken y después validateToken
+            parsearComoAntes(token);
+            return parsearComoAntes(token).getSubject();
+        });
+        double parserUnico = medir(tokens, token -> sinCache.verificar(token).username());
+        double cache = medir(tokens, token -> conCache.verificar(token).username());
+
+        System.out.printf("Verificación de JWT por petición (%d tokens distintos):%n", TOKENS);
+        System.out.printf("  Anterior (clave y parser por llamada, 2 verificaciones): %8.2f µs%n", anterior);
+        System.out.printf("  Parser único, 1 verificación:                           %8.2f µs%n", parserUnico);
+        System.out.printf("  Caché de tokens verificados:                            %8.2f µs%n", cache);
+        assertThat(cache).isLessThan(parserUnico);
+        assertThat(parserUnico).isLessThan(anterior);
+    }
+
+    private static Claims parsearComoAntes(String token) {
+        return Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(SECRETO.getBytes(StandardCharsets.UTF_8)))
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+
+    /**
+     * Microsegundos por petición.
+     */
+    private static double medir(List<String> tokens, Function<String, String> verificar) {
+        long acumulado = 0;
+        for (int i = 0; i < CALENTAMIENTO; i++) {
+            acumulado += verificar.apply(tokens.get(i % TOKENS)).length();
+        }
+        long inicio = System.nanoTime();
+        for (int i = 0; i < VERIFICACIONES; i++) {
+            acumulado += verificar.apply(tokens.get(i % TOKENS)).length();
+        }
+        double micros = (System.nanoTime() - inicio) / 1e3 / VERIFICACIONES;
+        assertThat(acumulado).isPositive();
+        return micros;
+    }
+}
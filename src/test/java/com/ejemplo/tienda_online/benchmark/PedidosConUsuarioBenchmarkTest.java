@@ -0,0 +1,161 @@
+package com.ejemplo.tienda_online.benchmark;
+
+import com.ejemplo.tienda_online.MongoEnMemoria;
+import com.ejemplo.tienda_online.dto.PaginaResponse;
+import com.ejemplo.tienda_online.dto.PedidoResponse;
+import com.ejemplo.tienda_online.model.Pedido;
+import com.ejemplo.tienda_online.model.Usuario;
+import com.ejemplo.tienda_online.repository.PedidoRepository;
+import com.ejemplo.tienda_online.repository.ProductoRepository;
+import com.ejemplo.tienda_online.repository.UsuarioRepository;
+import com.ejemplo.tienda_online.service.CatalogoCache;
+import com.ejemplo.tienda_online.service.PedidoService;
+import com.ejemplo.tienda_online.service.ReservaStockService;
+import com.ejemplo.tienda_online.service.StockFraccionadoService;
+import com.ejemplo.tienda_online.service.TransaccionesPedido;
+import com.ejemplo.tienda_online.util.CursorPaginacion;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Curva de latencia del listado de pedidos con información de usuario:
+ * una consulta por pedido (antes) frente a una única consulta por página (después).
+ *
+ * <p>Ejecutar con {@code mvn test -Pbenchmark}.</p>
+ */
+@Tag("benchmark")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class PedidosConUsuarioBenchmarkTest {
+
+    private static final int[] TAMANIOS = {1_000, 2_500, 5_000, 10_000};
+    private static final int USUARIOS = 200;
+    private static final int REPETICIONES = 5;
+    /** Pasadas previas de cada implementación para que el JIT y el driver lleguen a régimen antes de medir. */
+    private static final int CALENTAMIENTO = 40;
+
+    private MongoEnMemoria mongo;
+    private PedidoRepository pedidoRepository;
+    private UsuarioRepository usuarioRepository;
+    private PedidoService pedidoService;
+    private List<Usuario> usuarios;
+
+    @BeforeAll
+    void setUp() {
+        mongo = new MongoEnMemoria();
+        pedidoRepository = mongo.repositorio(PedidoRepository.class);
+        usuarioRepository = mongo.repositorio(UsuarioRepository.class);
+        CatalogoCache catalogoCache = new CatalogoCache(100, Duration.ofMinutes(1), new SimpleMeterRegistry());
+        pedidoService = new PedidoService(pedidoRepository, usuarioRepository,
+                mongo.repositorio(ProductoRepository.class), new ReservaStockService(mongo.getMongoTemplate(), catalogoCache,
+                        new StockFraccionadoService(mongo.getMongoTemplate(), catalogoCache, new SimpleMeterRegistry())),
+                new TransaccionesPedido(null, 3, new SimpleMeterRegistry()), mongo.getMongoTemplate());
+
+        List<Usuario> nuevos = new ArrayList<>();
+        for (int i = 0; i < USUARIOS; i++) {
+            nuevos.add(Usuario.builder()
+                    .username("usuario" + i)
+                    .email("usuario" + i + "@ejemplo.com")
+                    .password("x")
+                    .roles(List.of(Usuario.RolUsuario.CLIENTE))
+                    .build());
+        }
+        usuarios = usuarioRepository.saveAll(nuevos);
+    }
+
+    @AfterAll
+    void tearDown() {
+        mongo.close();
+    }
+
+    @Test
+    void curvaDeLatencia() {
+        int existentes = TAMANIOS[0];
+        poblarPedidos(existentes);
+        calentar();
+
+        System.out.println();
+        System.out.println("pedidos | antes (ms) | después (ms)");
+        for (int tamanio : TAMANIOS) {
+            poblarPedidos(tamanio - existentes);
+            existentes = tamanio;
+
+            long antes = mejorTiempo(this::listarConConsultaPorPedido);
+            long despues = mejorTiempo(this::listarPorPaginas);
+            System.out.printf("%7d | %10d | %12d%n", tamanio, antes, despues);
+        }
+
+        assertThat(listarPorPaginas()).isEqualTo(existentes);
+    }
+
+    /**
+     * Implementación previa: un findById de usuario por cada pedido.
+     */
+    private int listarConConsultaPorPedido() {
+        int encontrados = 0;
+        for (Pedido pedido : pedidoRepository.findAll()) {
+            if (usuarioRepository.findById(pedido.getUsuarioId()).isPresent()) {
+                encontrados++;
+            }
+        }
+        return encontrados;
+    }
+
+    /**
+     * Implementación actual: páginas por cursor con un único findAllById de usuarios por página.
+     */
+    private int listarPorPaginas() {
+        int total = 0;
+        String cursor = null;
+        do {
+            PaginaResponse<PedidoResponse> pagina =
+                    pedidoService.getAllWithUserInfo(cursor, CursorPaginacion.LIMITE_MAXIMO);
+            total += pagina.getContenido().size();
+            cursor = pagina.getSiguienteCursor();
+        } while (cursor != null);
+        return total;
+    }
+
+    private void calentar() {
+        for (int i = 0; i < CALENTAMIENTO; i++) {
+            listarConConsultaPorPedido();
+            listarPorPaginas();
+        }
+    }
+
+    private long mejorTiempo(IntSupplier operacion) {
+        long mejor = Long.MAX_VALUE;
+        for (int i = 0; i < REPETICIONES; i++) {
+            long inicio = System.nanoTime();
+            operacion.getAsInt();
+            mejor = Math.min(mejor, (System.nanoTime() - inicio) / 1_000_000);
+        }
+        return mejor;
+    }
+
+    private void poblarPedidos(int cantidad) {
+        List<Pedido> pedidos = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            pedidos.add(Pedido.builder()
+                    .usuarioId(usuarios.get(i % USUARIOS).getId())
+                    .productos(List.of(Pedido.ItemPedido.builder()
+                            .productoId("p" + i)
+                            .nombreProducto("Producto " + i)
+                            .cantidad(1)
+                            .precioUnitario(9.99)
+                            .build()))
+                    .build());
+        }
+        mongo.getMongoTemplate().insertAll(pedidos);
+    }
+}
@@ -0,0 +1,172 @@
+package com.ejemplo.tienda_online.benchmark;
+
+import com.ejemplo.tienda_online.MongoEnMemoria;
+import com.ejemplo.tienda_online.MongoReal;
+import com.ejemplo.tienda_online.exception.BusinessException;
+import com.ejemplo.tienda_online.model.FraccionStock;
+import com.ejemplo.tienda_online.model.Producto;
+import com.ejemplo.tienda_online.repository.ProductoRepository;
+import com.ejemplo.tienda_online.service.CatalogoCache;
+import com.ejemplo.tienda_online.service.ProductoService;
+import com.ejemplo.tienda_online.service.ReintentosConcurrencia;
+import com.ejemplo.tienda_online.service.ReservaStockService;
+import com.ejemplo.tienda_online.service.StockFraccionadoService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compras simultáneas de un único producto: {@code reduceStock} (leer y descontar con
+ * {@code $inc}; antes guardaba el documento leído y perdía compras), la reserva condicional
+ * sobre el documento del producto y la reserva sobre el stock fraccionado.
+ *
+ * <p>La contención por documento es propia de un servidor MongoDB real: con
+ * {@code MONGODB_URI} definida se usa ese servidor; si no, el servidor en memoria, que
+ * solo sirve para comprobar que el benchmark funciona.</p>
+ *
+ * <p>Ejecutar con {@code mvn test -Pbenchmark}.</p>
+ */
+@Tag("benchmark")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class StockFraccionadoBenchmarkTest {
+
+    private static final int[] HILOS = {1, 8, 32, 64};
+    private static final int COMPRAS_POR_HILO = 200;
+    private static final int FRACCIONES = 16;
+    private static final int STOCK_INICIAL = 1_000_000;
+
+    private AutoCloseable servidor;
+    private MongoTemplate mongoTemplate;
+    private ProductoService productoService;
+    private ReservaStockService reservaStockService;
+    private StockFraccionadoService stockFraccionado;
+
+    @BeforeAll
+    void setUp() {
+        if (System.getenv(MongoReal.VARIABLE_URI) != null) {
+            MongoReal mongo = new MongoReal();
+            servidor = mongo;
+            mongoTemplate = mongo.getMongoTemplate();
+        } else {
+            MongoEnMemoria mongo = new MongoEnMemoria();
+            servidor = mongo;
+            mongoTemplate = mongo.getMongoTemplate();
+        }
+        CatalogoCache catalogoCache = new CatalogoCache(100, Duration.ofMinutes(1), new SimpleMeterRegistry());
+        stockFraccionado = new StockFraccionadoService(mongoTemplate, catalogoCache, new SimpleMeterRegistry());
+        reservaStockService = new ReservaStockService(mongoTemplate, catalogoCache, stockFraccionado);
+        productoService = new ProductoService(
+                new MongoRepositoryFactory(mongoTemplate).getRepository(ProductoRepository.class),
+                catalogoCache, new ObjectMapper(), mongoTemplate, null, stockFraccionado,
+                new ReintentosConcurrencia(5, Duration.ofMillis(1), new SimpleMeterRegistry()));
+    }
+
+    @AfterAll
+    void tearDown() throws Exception {
+        servidor.close();
+    }
+
+    @Test
+    void rendimientoConContencion() throws Exception {
+        System.out.println();
+        System.out.println(System.getenv(MongoReal.VARIABLE_URI) != null ? "MongoDB real" : "MongoDB en memoria");
+        System.out.println("hilos | reduceStock (compras/s, perdidas) | documento (compras/s) | fraccionado (compras/s)");
+        for (int hilos : HILOS) {
+            int compras = hilos * COMPRAS_POR_HILO;
+
+            Producto leerYGuardar = nuevoProducto("leer-y-guardar-" + hilos);
+            double tasaLeerYGuardar = medir(hilos, id -> productoService.reduceStock(id, 1), leerYGuardar.getId());
+            // Las actualizaciones perdidas: compras confirmadas que no se descontaron
+            int perdidas = stockDe(leerYGuardar) - (STOCK_INICIAL - compras);
+
+            Producto documento = nuevoProducto("documento-" + hilos);
+            double tasaDocumento = medir(hilos, id -> reservaStockService.reservar(Map.of(id, 1)), documento.getId());
+
+            Producto fraccionado = nuevoProducto("fraccionado-" + hilos);
+            stockFraccionado.fraccionar(fraccionado.getId(), FRACCIONES);
+            double tasaFraccionado = medir(hilos, id -> reservaStockService.reservar(Map.of(id, 1)), fraccionado.getId());
+            stockFraccionado.reconciliar();
+
+            System.out.printf("%5d | %14.0f, %6d perdidas | %21.0f | %23.0f%n",
+                    hilos, tasaLeerYGuardar, perdidas, tasaDocumento, tasaFraccionado);
+
+            assertThat(stockDe(documento)).isEqualTo(STOCK_INICIAL - compras);
+            assertThat(stockDe(fraccionado)).isEqualTo(STOCK_INICIAL - compras);
+        }
+    }
+
+    /**
+     * @return compras por segundo
+     */
+    private double medir(int hilos, Consumer<String> comprar, String productoId) throws Exception {
+        CountDownLatch salida = new CountDownLatch(1);
+        AtomicInteger rechazadas = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        try {
+            List<Future<?>> tareas = new ArrayList<>();
+            for (int h = 0; h < hilos; h++) {
+                tareas.add(executor.submit(() -> {
+                    salida.await();
+                    for (int i = 0; i < COMPRAS_POR_HILO; i++) {
+                        try {
+                            comprar.accept(productoId);
+                        } catch (BusinessException e) {
+                            rechazadas.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            long inicio = System.nanoTime();
+            salida.countDown();
+            for (Future<?> tarea : tareas) {
+                tarea.get(5, TimeUnit.MINUTES);
+            }
+            double segundos = (System.nanoTime() - inicio) / 1e9;
+            assertThat(rechazadas).hasValue(0);
+            return hilos * COMPRAS_POR_HILO / segundos;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Producto nuevoProducto(String nombre) {
+        return mongoTemplate.save(Producto.builder()
+                .nombre(nombre)
+                .descripcion("Producto de venta flash")
+                .precio(10.0)
+                .stock(STOCK_INICIAL)
+                .build());
+    }
+
+    private int stockDe(Producto producto) {
+        Producto actual = mongoTemplate.findById(producto.getId(), Producto.class);
+        if (actual.getFraccionesStock() == null) {
+            return actual.getStock();
+        }
+        return mongoTemplate.findAll(FraccionStock.class).stream()
+                .filter(fraccion -> fraccion.getProductoId().equals(producto.getId()))
+                .mapToInt(FraccionStock::getStock)
+                .sum();
+    }
+}
@@ -0,0 +1,80 @@
+package com.ejemplo.tienda_online.controller;
+
+import com.ejemplo.tienda_online.repository.PedidoRepository;
+import com.ejemplo.tienda_online.security.JwtUtil;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Exportación de pedidos en streaming contra el servidor embebido: el cuerpo se escribe
+ * en un despacho asíncrono, que también debe pasar la cadena de seguridad.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ExportacionPedidosIntegracionTest {
+
+    private static final MongoServer MONGO = new MongoServer(new MemoryBackend());
+    private static final String URI_MONGO = MONGO.bindAndGetConnectionString();
+
+    @LocalServerPort
+    private int puerto;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private PedidoRepository pedidoRepository;
+
+    @DynamicPropertySource
+    static void mongo(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", () -> URI_MONGO + "/tiendadb-exportacion");
+        registry.add("spring.data.mongodb.database", () -> "tiendadb-exportacion");
+    }
+
+    @AfterAll
+    static void pararMongo() {
+        MONGO.shutdownNow();
+    }
+
+    @Test
+    void elAdministradorDescargaLaExportacionCompleta() throws Exception {
+        HttpResponse<String> respuesta = exportar(jwtUtil.generateToken("admin", "ADMIN"));
+
+        assertThat(respuesta.statusCode()).isEqualTo(200);
+        assertThat(respuesta.headers().firstValue("Content-Type")).hasValueSatisfying(
+                tipo -> assertThat(tipo).startsWith("application/x-ndjson"));
+        List<String> lineas = respuesta.body().lines().toList();
+        assertThat(lineas).hasSize((int) pedidoRepository.count())
+                .allSatisfy(linea -> assertThat(linea).startsWith("{").endsWith("}"));
+    }
+
+    @Test
+    void unClienteNoPuedeExportar() throws Exception {
+        assertThat(exportar(jwtUtil.generateToken("cliente", "CLIENTE")).statusCode()).isEqualTo(403);
+    }
+
+    private HttpResponse<String> exportar(String token) throws Exception {
+        HttpRequest peticion = HttpRequest.newBuilder(URI.create("http://localhost:" + puerto + "/api/pedidos/exportar"))
+                .header("Authorization", "Bearer " + token)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+        try (HttpClient cliente = HttpClient.newHttpClient()) {
+            return cliente.send(peticion, HttpResponse.BodyHandlers.ofString());
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.ejemplo.tienda_online.repository;
+
+import com.ejemplo.tienda_online.MongoReal;
+import com.ejemplo.tienda_online.config.PlanIndices;
+import com.ejemplo.tienda_online.config.PlanIndices.IndiceDeclarado;
+import com.ejemplo.tienda_online.util.CursorPaginacion;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Named;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.filter.AssignableTypeFilter;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.data.repository.Repository;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Ejecuta cada método de consulta de los repositorios (también los reactivos) y comprueba
+ * con {@code explain} que ninguno recorre la colección completa (COLLSCAN) con los índices
+ * de {@link PlanIndices}. Los repositorios y sus métodos se descubren solos: un método
+ * nuevo sin índice hace fallar el test.
+ *
+ * <p>Requiere un MongoDB real en {@code MONGODB_URI}.</p>
+ */
+@EnabledIfEnvironmentVariable(named = MongoReal.VARIABLE_URI, matches = ".+")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ConsultasRepositoriosPlanTest {
+
+    private static final Set<String> COMANDOS_DE_CONSULTA = Set.of("find", "aggregate", "count", "distinct");
+
+    private final List<BsonDocument> comandos = new ArrayList<>();
+    private MongoReal mongo;
+
+    @BeforeAll
+    void setUp() {
+        mongo = new MongoReal(new CommandListener() {
+            @Override
+            public void commandStarted(CommandStartedEvent event) {
+                if (COMANDOS_DE_CONSULTA.contains(event.getCommandName())) {
+                    synchronized (comandos) {
+                        comandos.add(event.getCommand().clone());
+                    }
+                }
+            }
+        });
+        PlanIndices.INDICES.stream()
+                .map(IndiceDeclarado::entidad)
+                .distinct()
+                .forEach(mongo::crearIndices);
+    }
+
+    @AfterAll
+    void tearDown() {
+        mongo.close();
+    }
+
+    static Stream<Arguments> metodosDeConsulta() {
+        // Sin evaluar @Profile: se incluyen los repositorios de todos los perfiles
+        AssignableTypeFilter esRepositorio = new AssignableTypeFilter(Repository.class);
+        ClassPathScanningCandidateComponentProvider escaner = new ClassPathScanningCandidateComponentProvider(false) {
+            @Override
+            protected boolean isCandidateComponent(MetadataReader lector) throws IOException {
+                return esRepositorio.match(lector, getMetadataReaderFactory());
+            }
+
+            @Override
+            protected boolean isCandidateComponent(AnnotatedBeanDefinition definicion) {
+                return definicion.getMetadata().isInterface();
+            }
+        };
+        return escaner.findCandidateComponents(ConsultasRepositoriosPlanTest.class.getPackageName()).stream()
+                .map(definicion -> cargar(definicion.getBeanClassName()))
+                .sorted(Comparator.comparing(Class::getSimpleName))
+                .flatMap(repositorio -> Arrays.stream(repositorio.getDeclaredMethods())
+                        .filter(metodo -> !metodo.isDefault() && !Modifier.isStatic(metodo.getModifiers()))
+                        .sorted(Comparator.comparing(Method::toGenericString))
+                        .map(metodo -> Arguments.of(
+                                Named.of(repositorio.getSimpleName() + "." + metodo.getName()
+                                        + Arrays.toString(metodo.getParameterTypes()), metodo))));
+    }
+
+    @ParameterizedTest
+    @MethodSource("metodosDeConsulta")
+    void ningunaConsultaRecorreLaColeccion(Method metodo) throws Exception {
+        Class<?> tipo = metodo.getDeclaringClass();
+        Object repositorio = ReactiveMongoRepository.class.isAssignableFrom(tipo)
+                ? mongo.repositorioReactivo(tipo)
+                : mongo.repositorio(tipo);
+        synchronized (comandos) {
+            comandos.clear();
+        }
+
+        Object resultado = metodo.invoke(repositorio, argumentosDeEjemplo(metodo));
+        if (resultado instanceof Publisher<?> publicador) {
+            Flux.from(publicador).collectList().block();
+        }
+
+        List<BsonDocument> ejecutados;
+        synchronized (comandos) {
+            ejecutados = List.copyOf(comandos);
+        }
+        assertThat(ejecutados).as("Consultas de %s", metodo).isNotEmpty();
+        for (BsonDocument comando : ejecutados) {
+            Document plan = explicar(comando);
+            assertThat(plan.toJson()).as("Plan de %s para %s", metodo, comando.toJson()).doesNotContain("COLLSCAN");
+        }
+    }
+
+    /**
+     * Valores de ejemplo para los parámetros; la paginación es la de los servicios.
+     */
+    private static Object[] argumentosDeEjemplo(Method metodo) {
+        return Arrays.stream(metodo.getParameterTypes()).map(tipo -> {
+            if (tipo == String.class) {
+                return new ObjectId().toHexString();
+            } else if (tipo == Integer.class) {
+                return 1;
+            } else if (tipo == Double.class) {
+                return 1.0;
+            } else if (tipo == Pageable.class) {
+                return CursorPaginacion.pagina(20);
+            } else if (tipo == Sort.class) {
+                return Sort.by(Sort.Direction.ASC, "id");
+            } else if (tipo.isEnum()) {
+                return tipo.getEnumConstants()[0];
+            }
+            return fail("Sin valor de ejemplo para parámetros de tipo %s en %s", tipo, metodo);
+        }).toArray();
+    }
+
+    /**
+     * Pide al servidor el plan del comando tal como lo envió el repositorio, sin los
+     * campos de sesión y de protocolo que añade el driver.
+     */
+    private Document explicar(BsonDocument comando) {
+        Document consulta = new Document();
+        comando.forEach((campo, valor) -> {
+            if (!campo.startsWith("$") && !campo.equals("lsid") && !campo.equals("txnNumber")) {
+                consulta.put(campo, valor);
+            }
+        });
+        return mongo.getMongoTemplate().getDb()
+                .runCommand(new Document("explain", consulta).append("verbosity", "queryPlanner"));
+    }
+
+    private static Class<?> cargar(String nombre) {
+        try {
+            return Class.forName(nombre);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.ejemplo.tienda_online.security;
+
+import com.ejemplo.tienda_online.MongoEnMemoria;
+import com.ejemplo.tienda_online.config.PasswordConfig;
+import com.ejemplo.tienda_online.exception.ServicioSaturadoException;
+import com.ejemplo.tienda_online.model.Usuario;
+import com.ejemplo.tienda_online.repository.UsuarioRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HashContrasenasTest {
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void elLoginActualizaLosHashesAntiguosAlAlgoritmoConfigurado() {
+        try (MongoEnMemoria mongo = new MongoEnMemoria()) {
+            UsuarioRepository usuarioRepository = mongo.repositorio(UsuarioRepository.class);
+            // Hash bcrypt sin prefijo, como los guardados antes del codificador delegado
+            usuarioRepository.save(Usuario.builder()
+                    .username("ana")
+                    .email("ana@ejemplo.com")
+                    .password(new BCryptPasswordEncoder(4).encode("secreto"))
+                    .roles(List.of(Usuario.RolUsuario.CLIENTE))
+                    .build());
+
+            PasswordEncoder encoder = new PasswordConfig().passwordEncoder("argon2", 4, 1024, 1);
+            UserDetailsServiceImpl userDetailsService = new UserDetailsServiceImpl(usuarioRepository);
+            DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
+            provider.setUserDetailsService(userDetailsService);
+            provider.setPasswordEncoder(encoder);
+            provider.setUserDetailsPasswordService(userDetailsService);
+
+            provider.authenticate(new UsernamePasswordAuthenticationToken("ana", "secreto"));
+
+            String hash = usuarioRepository.findByUsername("ana").orElseThrow().getPassword();
+            assertThat(hash).startsWith("{argon2}");
+            assertThat(encoder.matches("secreto", hash)).isTrue();
+            assertThat(encoder.upgradeEncoding(hash)).isFalse();
+        }
+    }
+
+    @Test
+    void rechazaLasOperacionesCuandoElEjecutorEstaSaturado() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        EjecutorContrasenas ejecutor = new EjecutorContrasenas(1, 1, registry);
+        CountDownLatch liberar = new CountDownLatch(1);
+        try {
+            CompletableFuture<Boolean> enCurso = ejecutor.ejecutar(() -> esperar(liberar));
+            CompletableFuture<Boolean> enCola = ejecutor.ejecutar(() -> true);
+
+            assertThatThrownBy(() -> ejecutor.ejecutar(() -> true))
+                    .isInstanceOf(ServicioSaturadoException.class);
+            assertThat(registry.counter("seguridad.hashing.rechazadas").count()).isEqualTo(1.0);
+
+            liberar.countDown();
+            assertThat(enCurso.get(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(enCola.get(5, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            liberar.countDown();
+            ejecutor.cerrar();
+        }
+    }
+
+    private static boolean esperar(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.ejemplo.tienda_online.security;
+
+import com.ejemplo.tienda_online.MongoEnMemoria;
+import com.ejemplo.tienda_online.model.Usuario;
+import com.ejemplo.tienda_online.repository.UsuarioRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JwtAuthFilterTest {
+
+    private MongoEnMemoria mongo;
+    private JwtUtil jwtUtil;
+    private SimpleMeterRegistry registry;
+    private JwtAuthFilter filtro;
+    private final AtomicInteger cargasDeUsuario = new AtomicInteger();
+
+    /** Usuario autenticado visto por cada ejecución de la cadena (null si anónimo). */
+    private final List<String> ejecuciones = new ArrayList<>();
+
+    private final FilterChain cadena = (request, response) -> {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        ejecuciones.add(auth != null ? auth.getName() : null);
+    };
+
+    @BeforeEach
+    void setUp() {
+        mongo = new MongoEnMemoria();
+        UsuarioRepository usuarioRepository = mongo.repositorio(UsuarioRepository.class);
+        usuarioRepository.save(Usuario.builder().username("ana").email("ana@ejemplo.com").password("x")
+                .roles(List.of(Usuario.RolUsuario.CLIENTE)).build());
+        jwtUtil = new JwtUtil("SuperClaveJwtSegura12345678901234567890", 3_600_000L, 100, new SimpleMeterRegistry());
+        registry = new SimpleMeterRegistry();
+        UserDetailsServiceImpl userDetailsService = new UserDetailsServiceImpl(usuarioRepository) {
+            @Override
+            public org.springframework.security.core.userdetails.UserDetails loadUserByUsername(String username) {
+                cargasDeUsuario.incrementAndGet();
+                return super.loadUserByUsername(username);
+            }
+        };
+        // Sin caché de usuarios (TTL 0): cada verificación carga el usuario
+        filtro = new JwtAuthFilter(jwtUtil, userDetailsService,
+                new PrincipalCache(100, Duration.ZERO, new SimpleMeterRegistry()), registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        mongo.close();
+    }
+
+    @Test
+    void lasRutasPublicasNoVerificanElTokenAunqueLlegueLaCookie() throws Exception {
+        String token = jwtUtil.generateToken("ana", "CLIENTE");
+
+        for (String ruta : List.of("/css/style.css", "/js/app.js", "/favicon.ico", "/", "/api/auth/login",
+                "/api/productos", "/api/productos/123")) {
+            filtrar("GET", ruta, token);
+        }
+        filtrar("POST", "/api/auth/login", token);
+
+        assertThat(cargasDeUsuario).hasValue(0);
+        assertThat(ejecuciones).hasSize(8).containsOnlyNulls();
+        assertThat(contador("estatico", "omitida")).isEqualTo(4.0);
+        assertThat(contador("autenticacion", "omitida")).isEqualTo(2.0);
+        assertThat(contador("publico", "omitida")).isEqualTo(2.0);
+    }
+
+    @Test
+    void lasRutasProtegidasSiguenAutenticando() throws Exception {
+        String token = jwtUtil.generateToken("ana", "CLIENTE");
+
+        filtrar("GET", "/api/pedidos/mios", token);
+        // El catálogo solo es público para GET
+        filtrar("PUT", "/api/productos/123/stock", token);
+        // Un prefijo parecido no es una ruta pública
+        filtrar("GET", "/api/productos-internos", token);
+        filtrar("GET", "/api/pedidos/mios", null);
+
+        assertThat(cargasDeUsuario).hasValue(3);
+        assertThat(ejecuciones).containsExactly("ana", "ana", "ana", null);
+        assertThat(contador("protegido", "verificada")).isEqualTo(3.0);
+        assertThat(contador("protegido", "sin_token")).isEqualTo(1.0);
+    }
+
+    private void filtrar(String metodo, String ruta, String token) throws Exception {
+        SecurityContextHolder.clearContext();
+        MockHttpServletRequest request = new MockHttpServletRequest(metodo, ruta);
+        request.setServletPath(ruta);
+        if (token != null) {
+            request.setCookies(new Cookie("jwt", token));
+        }
+        filtro.doFilter(request, new MockHttpServletResponse(), cadena);
+    }
+
+    private double contador(String tipo, String autenticacion) {
+        return registry.get("seguridad.jwt.peticiones")
+                .tag("tipo", tipo)
+                .tag("autenticacion", autenticacion)
+                .counter()
+                .count();
+    }
+}
@@ -0,0 +1,92 @@
+package com.ejemplo.tienda_online.security;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JwtUtilTest {
+
+    private static final String SECRETO = "SuperClaveJwtSegura12345678901234567890";
+
+    private RelojManual reloj;
+    private JwtUtil jwtUtil;
+
+    @BeforeEach
+    void setUp() {
+        reloj = new RelojManual(Instant.parse("2025-01-01T10:00:00Z"));
+        jwtUtil = new JwtUtil(SECRETO, Duration.ofHours(1).toMillis(), 100, new SimpleMeterRegistry(), reloj);
+    }
+
+    @Test
+    void verificaUnaVezYReutilizaElResultado() {
+        String token = jwtUtil.generateToken("ana", "CLIENTE");
+
+        TokenVerificado verificado = jwtUtil.verificar(token);
+
+        assertThat(verificado.username()).isEqualTo("ana");
+        assertThat(verificado.role()).isEqualTo("CLIENTE");
+        assertThat(verificado.expiraEn()).isEqualTo(Instant.parse("2025-01-01T11:00:00Z"));
+        assertThat(jwtUtil.verificar(token)).isSameAs(verificado);
+    }
+
+    @Test
+    void unTokenCacheadoCaducaIgualQueUnoNuevo() {
+        String token = jwtUtil.generateToken("ana", "CLIENTE");
+        jwtUtil.verificar(token);
+
+        reloj.avanzar(Duration.ofHours(1).plusSeconds(1));
+
+        assertThatThrownBy(() -> jwtUtil.verificar(token)).isInstanceOf(ExpiredJwtException.class);
+        assertThat(jwtUtil.validateToken(token)).isFalse();
+    }
+
+    @Test
+    void rechazaTokensManipuladosOFirmadosConOtraClave() {
+        String token = jwtUtil.generateToken("ana", "CLIENTE");
+        jwtUtil.verificar(token);
+        String ajeno = new JwtUtil("OtraClaveJwtDistinta123456789012345678", 3_600_000L, 100,
+                new SimpleMeterRegistry(), reloj).generateToken("ana", "ADMIN");
+
+        assertThatThrownBy(() -> jwtUtil.verificar(token + "x")).isInstanceOf(JwtException.class);
+        assertThatThrownBy(() -> jwtUtil.verificar(ajeno)).isInstanceOf(JwtException.class);
+        assertThat(jwtUtil.validateToken("")).isFalse();
+    }
+
+    private static final class RelojManual extends Clock {
+        private Instant ahora;
+
+        RelojManual(Instant ahora) {
+            this.ahora = ahora;
+        }
+
+        void avanzar(Duration duracion) {
+            ahora = ahora.plus(duracion);
+        }
+
+        @Override
+        public Instant instant() {
+            return ahora;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.ejemplo.tienda_online.security;
+
+import com.ejemplo.tienda_online.MongoEnMemoria;
+import com.ejemplo.tienda_online.model.Usuario;
+import com.ejemplo.tienda_online.repository.UsuarioRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JwtWebFilterTest {
+
+    private MongoEnMemoria mongo;
+    private JwtUtil jwtUtil;
+    private JwtWebFilter filtro;
+
+    /** Usuario autenticado visto por cada ejecución de la cadena (null si anónimo). */
+    private final List<String> ejecuciones = new ArrayList<>();
+
+    private final WebFilterChain cadena = exchange -> ReactiveSecurityContextHolder.getContext()
+            .map(SecurityContext::getAuthentication)
+            .map(Authentication::getName)
+            .defaultIfEmpty("anónimo")
+            .doOnNext(ejecuciones::add)
+            .then();
+
+    @BeforeEach
+    void setUp() {
+        mongo = new MongoEnMemoria();
+        UsuarioRepository usuarioRepository = mongo.repositorio(UsuarioRepository.class);
+        usuarioRepository.save(Usuario.builder().username("ana").email("ana@ejemplo.com").password("x")
+                .roles(List.of(Usuario.RolUsuario.CLIENTE)).build());
+        jwtUtil = new JwtUtil("SuperClaveJwtSegura12345678901234567890", 3_600_000L, 100, new SimpleMeterRegistry());
+        filtro = new JwtWebFilter(jwtUtil, new UserDetailsServiceImpl(usuarioRepository),
+                new PrincipalCache(100, Duration.ofMinutes(1), new SimpleMeterRegistry()), false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        mongo.close();
+    }
+
+    @Test
+    void autenticaConElUsuarioDelTokenYEjecutaLaCadenaUnaVez() {
+        String token = jwtUtil.generateToken("ana", "CLIENTE");
+
+        filtro.filter(peticion("Bearer " + token), cadena).block();
+        // La segunda petición se resuelve desde la caché de usuarios
+        filtro.filter(peticion("Bearer " + token), cadena).block();
+
+        assertThat(ejecuciones).containsExactly("ana", "ana");
+    }
+
+    @Test
+    void sinUsuarioValidoLaPeticionSigueComoAnonima() {
+        String tokenDeUsuarioBorrado = jwtUtil.generateToken("luis", "CLIENTE");
+
+        filtro.filter(peticion("Bearer no-es-un-jwt"), cadena).block();
+        filtro.filter(peticion("Bearer " + tokenDeUsuarioBorrado), cadena).block();
+        filtro.filter(peticion(null), cadena).block();
+
+        assertThat(ejecuciones).containsExactly("anónimo", "anónimo", "anónimo");
+    }
+
+    private static MockServerWebExchange peticion(String authorization) {
+        MockServerHttpRequest.BaseBuilder<?> request = MockServerHttpRequest.get("/api/pedidos/mios");
+        if (authorization != null) {
+            request.header(HttpHeaders.AUTHORIZATION, authorization);
+        }
+        return MockServerWebExchange.from(request);
+    }
+}
@@ -0,0 +1,168 @@
+package com.ejemplo.tienda_online.service;
+
+import com.ejemplo.tienda_online.dto.PaginaResponse;
+import com.ejemplo.tienda_online.dto.ProductoResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CatalogoCacheTest {
+
+    private SimpleMeterRegistry registry;
+    private CatalogoCache cache;
+    private AtomicInteger cargas;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        cache = new CatalogoCache(100, Duration.ofMinutes(1), registry);
+        cargas = new AtomicInteger();
+    }
+
+    @Test
+    void laSegundaLecturaSeSirveDesdeLaCache() {
+        cache.getPagina(null, 2, () -> cargar("cursor", "a", "b"));
+        cache.getPagina(null, 2, () -> cargar("cursor", "a", "b"));
+
+        assertThat(cargas.get()).isEqualTo(1);
+        assertThat(registry.get("cache.gets").tag("cache", "catalogo.paginas").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void modificarUnProductoSoloInvalidaSuPagina() {
+        cache.getPagina(null, 2, () -> cargar("c1", "a", "b"));
+        cache.getPagina("b", 2, () -> cargar(null, "c", "d"));
+
+        cache.invalidarProducto("c");
+        cache.getPagina(null, 2, () -> cargar("c1", "a", "b"));
+        cache.getPagina("b", 2, () -> cargar(null, "c", "d"));
+
+        assertThat(cargas.get()).isEqualTo(3);
+    }
+
+    @Test
+    void crearUnProductoSoloInvalidaLaUltimaPagina() {
+        cache.getPagina(null, 2, () -> cargar("c1", "a", "b"));
+        cache.getPagina("b", 2, () -> cargar(null, "c"));
+
+        cache.productoCreado();
+        cache.getPagina(null, 2, () -> cargar("c1", "a", "b"));
+        cache.getPagina("b", 2, () -> cargar(null, "c", "d"));
+
+        assertThat(cargas.get()).isEqualTo(3);
+    }
+
+    @Test
+    void unaCargaConcurrenteConUnaInvalidacionNoSeGuarda() {
+        cache.getPagina(null, 2, () -> {
+            cache.invalidarProducto("a");
+            return cargar(null, "a");
+        });
+        cache.getPagina(null, 2, () -> cargar(null, "a"));
+
+        assertThat(cargas.get()).isEqualTo(2);
+    }
+
+    @Test
+    void unaInvalidacionDeOtroProductoNoImpideGuardarLaPagina() {
+        cache.getPagina(null, 2, () -> {
+            cache.invalidarProducto("z");
+            return cargar("b", "a", "b");
+        });
+        cache.getPagina(null, 2, () -> cargar("b", "a", "b"));
+
+        assertThat(cargas.get()).isEqualTo(1);
+    }
+
+    @Test
+    void lasPeticionesSimultaneasCompartenUnaSolaCarga() throws Exception {
+        CountDownLatch cargando = new CountDownLatch(1);
+        CountDownLatch continuar = new CountDownLatch(1);
+        ExecutorService hilos = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<CatalogoSnapshot>> lecturas = new ArrayList<>();
+            lecturas.add(hilos.submit(() -> cache.getPagina(null, 2, () -> {
+                cargando.countDown();
+                esperar(continuar);
+                return cargar(null, "a");
+            })));
+            cargando.await();
+            for (int i = 0; i < 3; i++) {
+                lecturas.add(hilos.submit(() -> cache.getPagina(null, 2, () -> cargar(null, "a"))));
+            }
+            continuar.countDown();
+
+            for (Future<CatalogoSnapshot> lectura : lecturas) {
+                assertThat(lectura.get(5, TimeUnit.SECONDS).getPagina().getContenido()).hasSize(1);
+            }
+            assertThat(cargas.get()).isEqualTo(1);
+        } finally {
+            hilos.shutdownNow();
+        }
+    }
+
+    @Test
+    void elEtagDependeSoloDelContenido() {
+        CatalogoSnapshot original = cargar(null, "a", "b");
+        CatalogoSnapshot regenerada = cargar(null, "a", "b");
+        CatalogoSnapshot modificada = cargar(null, "a", "c");
+
+        assertThat(regenerada.getEtag()).isEqualTo(original.getEtag());
+        assertThat(modificada.getEtag()).isNotEqualTo(original.getEtag());
+        assertThat(original.coincideCon("W/\"x\", " + original.getEtag())).isTrue();
+        assertThat(modificada.coincideCon(original.getEtag())).isFalse();
+    }
+
+    @Test
+    void laVersionComprimidaTieneSuPropioEtag() {
+        CatalogoSnapshot pagina = cargar(null, "a", "b");
+
+        assertThat(pagina.getEtag(true)).isNotEqualTo(pagina.getEtag(false));
+        assertThat(pagina.coincideCon(pagina.getEtag(true))).isTrue();
+        assertThat(pagina.coincideCon(pagina.getEtag(false))).isTrue();
+    }
+
+    @Test
+    void gzipSoloSeAceptaConPesoPositivo() {
+        assertThat(CatalogoSnapshot.aceptaGzip("gzip, deflate, br")).isTrue();
+        assertThat(CatalogoSnapshot.aceptaGzip("br;q=1.0, gzip;q=0.5")).isTrue();
+        assertThat(CatalogoSnapshot.aceptaGzip("*")).isTrue();
+        assertThat(CatalogoSnapshot.aceptaGzip("gzip;q=0")).isFalse();
+        assertThat(CatalogoSnapshot.aceptaGzip("*, gzip;q=0.0")).isFalse();
+        assertThat(CatalogoSnapshot.aceptaGzip("identity")).isFalse();
+        assertThat(CatalogoSnapshot.aceptaGzip(null)).isFalse();
+    }
+
+    private static void esperar(CountDownLatch senal) {
+        try {
+            senal.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private CatalogoSnapshot cargar(String siguienteCursor, String... ids) {
+        cargas.incrementAndGet();
+        PaginaResponse<ProductoResponse> pagina = PaginaResponse.<ProductoResponse>builder()
+                .contenido(Arrays.stream(ids).map(id -> ProductoResponse.builder().id(id).build()).toList())
+                .siguienteCursor(siguienteCursor)
+                .limite(2)
+                .build();
+        return CatalogoSnapshot.de(pagina, cache.getGeneracion(), new ObjectMapper());
+    }
+}
@@ -0,0 +1,112 @@
+package com.ejemplo.tienda_online.service;
+
+import com.ejemplo.tienda_online.MongoEnMemoria;
+import com.ejemplo.tienda_online.config.PlanIndices;
+import com.ejemplo.tienda_online.model.Pedido;
+import com.ejemplo.tienda_online.model.Producto;
+import com.ejemplo.tienda_online.model.Usuario;
+import com.ejemplo.tienda_online.service.GestionIndicesService.Estado;
+import com.ejemplo.tienda_online.service.GestionIndicesService.EstadoIndice;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.index.Index;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class GestionIndicesServiceTest {
+
+    private MongoEnMemoria mongo;
+    private SimpleMeterRegistry registry;
+    private GestionIndicesService gestionIndicesService;
+    private final List<Object> eventos = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        mongo = new MongoEnMemoria();
+        registry = new SimpleMeterRegistry();
+        gestionIndicesService = new GestionIndicesService(mongo.getMongoTemplate(), true, registry, eventos::add);
+    }
+
+    @AfterEach
+    void tearDown() {
+        mongo.close();
+    }
+
+    @Test
+    void creaTodosLosIndicesDelPlan() {
+        List<EstadoIndice> informe = gestionIndicesService.crearIndices();
+
+        assertThat(informe).hasSize(PlanIndices.INDICES.size())
+                .allSatisfy(indice -> assertThat(indice.estado()).as(indice.nombre()).isEqualTo(Estado.CREADO));
+        assertThat(registry.get("mongo.indices.pendientes").gauge().value()).isZero();
+        // Repetir la creación no hace nada
+        assertThat(gestionIndicesService.crearIndices()).allMatch(indice -> indice.estado() == Estado.CREADO);
+    }
+
+    @Test
+    void informaDeLosIndicesQueFaltanONoCoinciden() {
+        gestionIndicesService.crearIndices();
+        mongo.getMongoTemplate().indexOps(Pedido.class).dropIndex("usuarioId_fecha");
+        mongo.getMongoTemplate().indexOps(Pedido.class).dropIndex("estado_fecha");
+        mongo.getMongoTemplate().indexOps(Pedido.class)
+                .createIndex(new Index().named("estado_fecha").on("estado", Sort.Direction.ASC));
+
+        List<EstadoIndice> informe = gestionIndicesService.informe();
+
+        assertThat(informe).filteredOn(indice -> indice.estado() != Estado.CREADO)
+                .extracting(EstadoIndice::coleccion, EstadoIndice::nombre, EstadoIndice::estado)
+                .containsExactlyInAnyOrder(
+                        tuple("pedidos", "usuarioId_fecha", Estado.FALTA),
+                        tuple("pedidos", "estado_fecha", Estado.DISTINTO));
+        assertThat(registry.get("mongo.indices.pendientes").gauge().value()).isEqualTo(2.0);
+    }
+
+    @Test
+    void alArrancarCreaLosUnicosYUnIndiceSinSusOpcionesNoCuentaComoCreado() {
+        // username existe con las mismas claves pero sin unique, y sin la collation en nombre_ci
+        mongo.getMongoTemplate().indexOps(Usuario.class)
+                .createIndex(new Index().named("username").on("username", Sort.Direction.ASC));
+        mongo.getMongoTemplate().indexOps(Producto.class).createIndex(new Index().named("nombre_ci")
+                .on("nombre", Sort.Direction.ASC).on("_id", Sort.Direction.ASC));
+
+        gestionIndicesService.afterSingletonsInstantiated();
+
+        assertThat(gestionIndicesService.informe()).filteredOn(indice -> indice.estado() == Estado.DISTINTO)
+                .extracting(EstadoIndice::nombre)
+                .containsExactlyInAnyOrder("username", "nombre_ci");
+        // Los demás únicos ya están creados; los que no son únicos quedan para después
+        assertThat(gestionIndicesService.informe()).filteredOn(indice -> indice.estado() == Estado.CREADO)
+                .extracting(EstadoIndice::nombre)
+                .containsExactlyInAnyOrder("nombre", "email");
+        assertThat(eventos).singleElement().isInstanceOfSatisfying(AvailabilityChangeEvent.class,
+                evento -> assertThat(evento.getState()).isEqualTo(ReadinessState.REFUSING_TRAFFIC));
+
+        mongo.getMongoTemplate().indexOps(Usuario.class).dropIndex("username");
+        gestionIndicesService.crearIndices();
+
+        assertThat(eventos).last().isInstanceOfSatisfying(AvailabilityChangeEvent.class,
+                evento -> assertThat(evento.getState()).isEqualTo(ReadinessState.ACCEPTING_TRAFFIC));
+    }
+
+    @Test
+    void comparaLasClavesEnOrdenYConLaMismaDireccion() {
+        Document declaradas = new Document("usuarioId", 1).append("fecha", -1);
+
+        assertThat(GestionIndicesService.mismasClaves(declaradas, new Document("usuarioId", 1.0).append("fecha", -1.0)))
+                .isTrue();
+        assertThat(GestionIndicesService.mismasClaves(declaradas, new Document("fecha", -1).append("usuarioId", 1)))
+                .isFalse();
+        assertThat(GestionIndicesService.mismasClaves(declaradas, new Document("usuarioId", 1).append("fecha", 1)))
+                .isFalse();
+    }
+}
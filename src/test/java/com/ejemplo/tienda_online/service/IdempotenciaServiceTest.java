@@ -0,0 +1,207 @@
+package com.ejemplo.tienda_online.service;
+
+import com.ejemplo.tienda_online.MongoEnMemoria;
+import com.ejemplo.tienda_online.exception.BusinessException;
+import com.ejemplo.tienda_online.exception.ConflictoIdempotenciaException;
+import com.ejemplo.tienda_online.model.ClaveIdempotencia;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IdempotenciaServiceTest {
+
+    private static final String HUELLA = IdempotenciaService.huella("{\"productos\":[]}".getBytes(StandardCharsets.UTF_8));
+
+    private MongoEnMemoria mongo;
+    private IdempotenciaService idempotencia;
+    private final AtomicInteger ejecuciones = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        mongo = new MongoEnMemoria();
+        idempotencia = nuevoServicio();
+    }
+
+    @AfterEach
+    void tearDown() {
+        mongo.close();
+    }
+
+    @Test
+    void unaRepeticionDevuelveLaRespuestaGuardadaSinEjecutarDeNuevo() {
+        IdempotenciaService.Respuesta primera = idempotencia.ejecutar("ana", "clave-1", HUELLA, this::crearPedido);
+        IdempotenciaService.Respuesta repetida = idempotencia.ejecutar("ana", "clave-1", HUELLA, this::crearPedido);
+        // Otra instancia, sin la caché en memoria: la respuesta sale de MongoDB
+        IdempotenciaService.Respuesta otraInstancia = nuevoServicio().ejecutar("ana", "clave-1", HUELLA, this::crearPedido);
+
+        assertThat(ejecuciones).hasValue(1);
+        assertThat(primera.repetida()).isFalse();
+        assertThat(repetida.repetida()).isTrue();
+        assertThat(List.of(repetida.cuerpo(), otraInstancia.cuerpo())).containsOnly(primera.cuerpo());
+        assertThat(otraInstancia.estadoHttp()).isEqualTo(201);
+        assertThat(mongo.getMongoTemplate().findById("ana:clave-1", ClaveIdempotencia.class).getEstado())
+                .isEqualTo(ClaveIdempotencia.EstadoClave.COMPLETADA);
+
+        // La misma clave de otro usuario es otra petición
+        idempotencia.ejecutar("luis", "clave-1", HUELLA, this::crearPedido);
+        assertThat(ejecuciones).hasValue(2);
+    }
+
+    @Test
+    void lasPeticionesDuplicadasSimultaneasSeEjecutanUnaSolaVez() throws Exception {
+        CountDownLatch dentro = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        int duplicadas = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(duplicadas);
+        try {
+            List<Future<IdempotenciaService.Respuesta>> respuestas = new ArrayList<>();
+            respuestas.add(executor.submit(() -> idempotencia.ejecutar("ana", "clave-2", HUELLA, idPedido -> {
+                dentro.countDown();
+                esperar(liberar);
+                return crearPedido(idPedido);
+            })));
+            dentro.await(5, TimeUnit.SECONDS);
+            for (int i = 1; i < duplicadas; i++) {
+                respuestas.add(executor.submit(() -> idempotencia.ejecutar("ana", "clave-2", HUELLA, this::crearPedido)));
+            }
+            Thread.sleep(100);
+            liberar.countDown();
+
+            List<String> cuerpos = new ArrayList<>();
+            for (Future<IdempotenciaService.Respuesta> respuesta : respuestas) {
+                cuerpos.add(respuesta.get(5, TimeUnit.SECONDS).cuerpo());
+            }
+            assertThat(ejecuciones).hasValue(1);
+            assertThat(cuerpos).hasSize(duplicadas).containsOnly(cuerpos.get(0));
+        } finally {
+            liberar.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void rechazaLaClaveReutilizadaConOtroCuerpo() {
+        idempotencia.ejecutar("ana", "clave-3", HUELLA, this::crearPedido);
+
+        String otraHuella = IdempotenciaService.huella("{\"productos\":[1]}".getBytes(StandardCharsets.UTF_8));
+        assertThatThrownBy(() -> idempotencia.ejecutar("ana", "clave-3", otraHuella, this::crearPedido))
+                .isInstanceOfSatisfying(ConflictoIdempotenciaException.class,
+                        e -> assertThat(e.getEstado()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY));
+        assertThat(ejecuciones).hasValue(1);
+    }
+
+    @Test
+    void unFalloLiberaLaClaveParaReintentar() {
+        assertThatThrownBy(() -> idempotencia.ejecutar("ana", "clave-4", HUELLA, idPedido -> {
+            throw new BusinessException("Stock insuficiente");
+        })).isInstanceOf(BusinessException.class);
+        assertThat(mongo.getMongoTemplate().findById("ana:clave-4", ClaveIdempotencia.class)).isNull();
+
+        IdempotenciaService.Respuesta reintento = idempotencia.ejecutar("ana", "clave-4", HUELLA, this::crearPedido);
+
+        assertThat(reintento.repetida()).isFalse();
+        assertThat(ejecuciones).hasValue(1);
+    }
+
+    @Test
+    void otraInstanciaConLaClaveEnCursoRespondeConflicto() {
+        mongo.getMongoTemplate().insert(ClaveIdempotencia.builder()
+                .id("ana:clave-5")
+                .huella(HUELLA)
+                .estado(ClaveIdempotencia.EstadoClave.EN_CURSO)
+                .caducaEn(Instant.now().plusSeconds(30))
+                .build());
+
+        assertThatThrownBy(() -> idempotencia.ejecutar("ana", "clave-5", HUELLA, this::crearPedido))
+                .isInstanceOfSatisfying(ConflictoIdempotenciaException.class,
+                        e -> assertThat(e.getEstado()).isEqualTo(HttpStatus.CONFLICT));
+        assertThat(ejecuciones).hasValue(0);
+    }
+
+    @Test
+    void unaReservaCaducadaSeRetomaConElMismoIdDePedido() {
+        mongo.getMongoTemplate().insert(ClaveIdempotencia.builder()
+                .id("ana:clave-6")
+                .huella(HUELLA)
+                .estado(ClaveIdempotencia.EstadoClave.EN_CURSO)
+                .propietario("instancia-caida")
+                .recursoId("pedido-reservado")
+                .caducaEn(Instant.now().minusSeconds(1))
+                .build());
+        List<String> ids = new ArrayList<>();
+
+        IdempotenciaService.Respuesta respuesta = idempotencia.ejecutar("ana", "clave-6", HUELLA, idPedido -> {
+            ids.add(idPedido);
+            return crearPedido(idPedido);
+        });
+
+        assertThat(ids).containsExactly("pedido-reservado");
+        assertThat(respuesta.repetida()).isFalse();
+        assertThat(mongo.getMongoTemplate().findById("ana:clave-6", ClaveIdempotencia.class).getEstado())
+                .isEqualTo(ClaveIdempotencia.EstadoClave.COMPLETADA);
+    }
+
+    @Test
+    void laReservaSeRenuevaMientrasDuraLaOperacion() {
+        Duration bloqueo = Duration.ofMillis(300);
+        IdempotenciaService lenta = nuevoServicio(bloqueo);
+
+        lenta.ejecutar("ana", "clave-7", HUELLA, idPedido -> {
+            esperarMs(bloqueo.toMillis() * 2);
+            // La reserva habría caducado sin renovarla: otra instancia no debe retomarla
+            assertThatThrownBy(() -> nuevoServicio(bloqueo).ejecutar("ana", "clave-7", HUELLA, this::crearPedido))
+                    .isInstanceOfSatisfying(ConflictoIdempotenciaException.class,
+                            e -> assertThat(e.getEstado()).isEqualTo(HttpStatus.CONFLICT));
+            return crearPedido(idPedido);
+        });
+
+        assertThat(ejecuciones).hasValue(1);
+    }
+
+    private IdempotenciaService nuevoServicio() {
+        return nuevoServicio(Duration.ofSeconds(30));
+    }
+
+    private IdempotenciaService nuevoServicio(Duration bloqueo) {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        return new IdempotenciaService(mongo.getMongoTemplate(), new TransaccionesPedido(null, 3, registry),
+                Duration.ofHours(24), bloqueo, 100, registry);
+    }
+
+    private static void esperarMs(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private IdempotenciaService.Respuesta crearPedido(String idPedido) {
+        return new IdempotenciaService.Respuesta(201, "{\"id\":\"pedido-" + ejecuciones.incrementAndGet() + "\"}", false);
+    }
+
+    private static void esperar(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
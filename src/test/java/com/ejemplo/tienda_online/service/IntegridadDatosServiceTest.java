@@ -0,0 +1,71 @@
+package com.ejemplo.tienda_online.service;
+
+import com.ejemplo.tienda_online.MongoEnMemoria;
+import com.ejemplo.tienda_online.model.Producto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IntegridadDatosServiceTest {
+
+    private MongoEnMemoria mongo;
+    private MongoTemplate mongoTemplate;
+    private SimpleMeterRegistry registry;
+    private IntegridadDatosService integridadDatosService;
+
+    @BeforeEach
+    void setUp() {
+        mongo = new MongoEnMemoria();
+        mongoTemplate = mongo.getMongoTemplate();
+        registry = new SimpleMeterRegistry();
+        integridadDatosService = new IntegridadDatosService(mongoTemplate,
+                new CatalogoCache(100, Duration.ofMinutes(1), registry), registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        mongo.close();
+    }
+
+    @Test
+    void corrigeLosCamposNulosYCuentaLasReparaciones() {
+        insertar(new Document("nombre", "Sin precio").append("stock", 4));
+        insertar(new Document("nombre", "Sin stock").append("precio", 12.5).append("stock", null));
+        insertar(new Document("nombre", "Correcto").append("precio", 3.0).append("stock", 1));
+
+        assertThat(integridadDatosService.repararProductos()).isEqualTo(2);
+
+        assertThat(mongoTemplate.findAll(Producto.class))
+                .allSatisfy(p -> {
+                    assertThat(p.getPrecio()).isNotNull();
+                    assertThat(p.getStock()).isNotNull();
+                });
+        assertThat(registry.get("integridad.productos.reparados").tag("campo", "precio").counter().count())
+                .isEqualTo(1.0);
+        assertThat(integridadDatosService.repararProductos()).isZero();
+    }
+
+    @Test
+    void asignaVersionALosDocumentosAnterioresAlControlDeConcurrencia() {
+        insertar(new Document("nombre", "Antiguo").append("precio", 3.0).append("stock", 1));
+        insertar(new Document("nombre", "Versionado").append("precio", 3.0).append("stock", 1).append("version", 7L));
+
+        assertThat(integridadDatosService.asignarVersiones()).isEqualTo(1);
+
+        assertThat(mongoTemplate.findAll(Producto.class))
+                .extracting(Producto::getVersion)
+                .containsExactlyInAnyOrder(0L, 7L);
+        assertThat(integridadDatosService.asignarVersiones()).isZero();
+    }
+
+    private void insertar(Document producto) {
+        mongoTemplate.getCollection("productos").insertOne(producto);
+    }
+}
@@ -0,0 +1,88 @@
+package com.ejemplo.tienda_online.service;
+
+import com.ejemplo.tienda_online.MongoEnMemoria;
+import com.ejemplo.tienda_online.dto.PaginaResponse;
+import com.ejemplo.tienda_online.dto.PedidoResponse;
+import com.ejemplo.tienda_online.model.Pedido;
+import com.ejemplo.tienda_online.model.Usuario;
+import com.ejemplo.tienda_online.repository.PedidoReactiveRepository;
+import com.ejemplo.tienda_online.repository.PedidoRepository;
+import com.ejemplo.tienda_online.repository.UsuarioReactiveRepository;
+import com.ejemplo.tienda_online.repository.UsuarioRepository;
+import com.ejemplo.tienda_online.util.CursorPaginacion;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PedidoReactivoServiceTest {
+
+    private MongoEnMemoria mongo;
+    private PedidoReactivoService pedidoService;
+    private Usuario ana;
+
+    @BeforeEach
+    void setUp() {
+        mongo = new MongoEnMemoria();
+        UsuarioRepository usuarioRepository = mongo.repositorio(UsuarioRepository.class);
+        PedidoRepository pedidoRepository = mongo.repositorio(PedidoRepository.class);
+        ana = usuarioRepository.save(Usuario.builder().username("ana").email("ana@ejemplo.com").password("x").build());
+        Usuario luis = usuarioRepository.save(Usuario.builder().username("luis").email("luis@ejemplo.com").password("x").build());
+        List<Pedido> pedidos = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Pedido pedido = new Pedido();
+            pedido.setUsuarioId(i % 2 == 0 ? ana.getId() : luis.getId());
+            pedido.setProductos(new ArrayList<>());
+            pedidos.add(pedido);
+        }
+        pedidoRepository.saveAll(pedidos);
+
+        pedidoService = new PedidoReactivoService(mongo.repositorioReactivo(PedidoReactiveRepository.class),
+                mongo.repositorioReactivo(UsuarioReactiveRepository.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        mongo.close();
+    }
+
+    @Test
+    void paginaPorCursorConLosDatosDelUsuario() {
+        PaginaResponse<PedidoResponse> primera = pedidoService.getAllWithUserInfo(null, 3).block();
+        PaginaResponse<PedidoResponse> segunda = pedidoService.getAllWithUserInfo(primera.getSiguienteCursor(), 3).block();
+
+        assertThat(primera.getContenido()).hasSize(3);
+        assertThat(primera.getSiguienteCursor()).isNotNull();
+        assertThat(segunda.getContenido()).hasSize(2);
+        assertThat(segunda.getSiguienteCursor()).isNull();
+        assertThat(primera.getContenido()).extracting(PedidoResponse::getNombreUsuario)
+                .containsExactly("ana", "luis", "ana");
+        assertThat(CursorPaginacion.decodificar(primera.getSiguienteCursor()))
+                .isEqualTo(primera.getContenido().get(2).getId());
+    }
+
+    @Test
+    void losPedidosDelUsuarioSeBuscanPorNombreSiElPrincipalNoTraeElId() {
+        // Principal construido solo con los claims del token (jwt.claims-de-confianza)
+        var principal = User.withUsername("ana").password("").roles("CLIENTE").build();
+
+        PaginaResponse<PedidoResponse> pagina = pedidoService.getPedidosUsuario(principal, null, 10).block();
+
+        assertThat(pagina.getContenido()).hasSize(3)
+                .allSatisfy(pedido -> assertThat(pedido.getUsuarioId()).isEqualTo(ana.getId()));
+    }
+
+    @Test
+    void elFlujoEmiteTodosLosPedidosEnOrdenDeId() {
+        List<PedidoResponse> pedidos = pedidoService.getAllWithUserInfo().collectList().block();
+
+        assertThat(pedidos).hasSize(5);
+        assertThat(pedidos).extracting(PedidoResponse::getId).isSorted();
+        assertThat(pedidos).extracting(PedidoResponse::getEmailUsuario).doesNotContain("-");
+    }
+}
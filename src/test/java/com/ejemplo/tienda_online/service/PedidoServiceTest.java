@@ -0,0 +1,212 @@
+package com.ejemplo.tienda_online.service;
+
+import com.ejemplo.tienda_online.MongoEnMemoria;
+import com.ejemplo.tienda_online.dto.PedidoResponse;
+import com.ejemplo.tienda_online.exception.BusinessException;
+import com.ejemplo.tienda_online.exception.ResourceNotFoundException;
+import com.ejemplo.tienda_online.model.Pedido;
+import com.ejemplo.tienda_online.model.Producto;
+import com.ejemplo.tienda_online.model.Usuario;
+import com.ejemplo.tienda_online.repository.PedidoRepository;
+import com.ejemplo.tienda_online.repository.ProductoRepository;
+import com.ejemplo.tienda_online.repository.UsuarioRepository;
+import com.ejemplo.tienda_online.security.UsuarioAutenticado;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PedidoServiceTest {
+
+    private MongoEnMemoria mongo;
+    private ProductoRepository productoRepository;
+    private PedidoService pedidoService;
+
+    @BeforeEach
+    void setUp() {
+        mongo = new MongoEnMemoria();
+        productoRepository = mongo.repositorio(ProductoRepository.class);
+        CatalogoCache catalogoCache = new CatalogoCache(100, Duration.ofMinutes(1), new SimpleMeterRegistry());
+        pedidoService = new PedidoService(mongo.repositorio(PedidoRepository.class),
+                mongo.repositorio(UsuarioRepository.class), productoRepository,
+                new ReservaStockService(mongo.getMongoTemplate(), catalogoCache,
+                        new StockFraccionadoService(mongo.getMongoTemplate(), catalogoCache, new SimpleMeterRegistry())),
+                new TransaccionesPedido(null, 3, new SimpleMeterRegistry()), mongo.getMongoTemplate());
+
+        // El usuario no existe en la base de datos: si el servicio lo buscara, fallaría
+        UsuarioAutenticado principal = UsuarioAutenticado.de(Usuario.builder()
+                .id("u-1")
+                .username("ana")
+                .email("ana@ejemplo.com")
+                .password("x")
+                .roles(List.of(Usuario.RolUsuario.CLIENTE))
+                .build());
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        mongo.close();
+    }
+
+    @Test
+    void creaYListaPedidosConElUsuarioDelContextoDeSeguridad() {
+        Producto teclado = productoRepository.save(Producto.builder()
+                .nombre("Teclado").precio(50.0).stock(10).categoria("Periféricos").build());
+        Pedido.ItemPedido item = new Pedido.ItemPedido();
+        item.setProductoId(teclado.getId());
+        item.setCantidad(2);
+        Pedido pedido = new Pedido();
+        pedido.setProductos(new ArrayList<>(List.of(item)));
+
+        Pedido creado = pedidoService.crearPedido(pedido);
+
+        assertThat(creado.getUsuarioId()).isEqualTo("u-1");
+        assertThat(pedidoService.getPedidosUsuarioActual()).extracting(Pedido::getId).containsExactly(creado.getId());
+        List<PedidoResponse> pagina = pedidoService.getPedidosUsuarioActualConFormato(null, 10).getContenido();
+        assertThat(pagina).singleElement().satisfies(respuesta -> {
+            assertThat(respuesta.getNombreUsuario()).isEqualTo("ana");
+            assertThat(respuesta.getEmailUsuario()).isEqualTo("ana@ejemplo.com");
+        });
+    }
+
+    @Test
+    void ignoraLaVersionQueEnviaElClienteAlCrearUnPedido() {
+        Producto teclado = productoRepository.save(Producto.builder()
+                .nombre("Teclado").precio(50.0).stock(10).categoria("Periféricos").build());
+        Pedido.ItemPedido item = new Pedido.ItemPedido();
+        item.setProductoId(teclado.getId());
+        item.setCantidad(1);
+        Pedido pedido = new Pedido();
+        pedido.setProductos(new ArrayList<>(List.of(item)));
+        pedido.setVersion(3L);
+
+        Pedido creado = pedidoService.crearPedido(pedido);
+
+        assertThat(creado.getVersion()).isZero();
+        assertThat(pedidoService.getPedidosUsuarioActual()).extracting(Pedido::getId).containsExactly(creado.getId());
+    }
+
+    @Test
+    void conUnIdReservadoUnSegundoIntentoDevuelveElMismoPedido() {
+        Producto teclado = nuevoProducto(10);
+        String idReservado = new ObjectId().toHexString();
+
+        Pedido primero = pedidoService.crearPedido(nuevoPedido(teclado, 2), idReservado);
+        Pedido segundo = pedidoService.crearPedido(nuevoPedido(teclado, 2), idReservado);
+
+        assertThat(primero.getId()).isEqualTo(idReservado);
+        assertThat(segundo.getId()).isEqualTo(idReservado);
+        assertThat(pedidoService.getPedidosUsuarioActual()).hasSize(1);
+        assertThat(stockDe(teclado)).isEqualTo(8);
+    }
+
+    @Test
+    void laTablaDeTransicionesSigueLasReglasDelPedido() {
+        assertThat(Pedido.EstadoPedido.origenesDe(Pedido.EstadoPedido.CANCELADO)).containsExactlyInAnyOrder(
+                Pedido.EstadoPedido.PENDIENTE, Pedido.EstadoPedido.CONFIRMADO, Pedido.EstadoPedido.ENVIADO);
+        assertThat(Pedido.EstadoPedido.origenesDe(Pedido.EstadoPedido.PENDIENTE))
+                .containsExactly(Pedido.EstadoPedido.PENDIENTE);
+        assertThat(Pedido.EstadoPedido.origenesDe(Pedido.EstadoPedido.RECHAZADO)).isEmpty();
+        assertThat(Pedido.EstadoPedido.ENTREGADO.puedeCambiarA(Pedido.EstadoPedido.ENVIADO)).isFalse();
+    }
+
+    @Test
+    void cambiaElEstadoConUnaActualizacionCondicional() {
+        Producto teclado = nuevoProducto(10);
+        Pedido pedido = pedidoService.crearPedido(nuevoPedido(teclado, 2));
+
+        Pedido enviado = pedidoService.cambiarEstado(pedido.getId(), "enviado");
+        Pedido entregado = pedidoService.cambiarEstado(pedido.getId(), "ENTREGADO");
+
+        assertThat(enviado.getEstado()).isEqualTo(Pedido.EstadoPedido.ENVIADO);
+        assertThat(enviado.getFechaActualizacion()).isAfterOrEqualTo(pedido.getFechaActualizacion());
+        assertThat(entregado.getFechaEntrega()).isNotNull();
+        assertThat(entregado.getProductos()).hasSize(1);
+        assertThatThrownBy(() -> pedidoService.cambiarEstado(pedido.getId(), "PENDIENTE"))
+                .isInstanceOf(BusinessException.class)
+                .hasMessage("No se puede cambiar el estado de un pedido ya entregado");
+        assertThatThrownBy(() -> pedidoService.cancelarPedido(pedido.getId()))
+                .hasMessage("No se puede cancelar un pedido ya entregado");
+        assertThatThrownBy(() -> pedidoService.cambiarEstado("no-existe", "ENVIADO"))
+                .isInstanceOf(ResourceNotFoundException.class);
+        assertThat(stockDe(teclado)).isEqualTo(8);
+    }
+
+    @Test
+    void lasCancelacionesSimultaneasDevuelvenElStockUnaSolaVez() throws Exception {
+        Producto teclado = nuevoProducto(10);
+        Pedido pedido = pedidoService.crearPedido(nuevoPedido(teclado, 3));
+        assertThat(stockDe(teclado)).isEqualTo(7);
+
+        int intentos = 8;
+        CountDownLatch salida = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(intentos);
+        try {
+            List<Future<Boolean>> resultados = new ArrayList<>();
+            for (int i = 0; i < intentos; i++) {
+                // Mitad cancelaciones del cliente, mitad cambios de estado del administrador
+                String via = i % 2 == 0 ? null : "CANCELADO";
+                resultados.add(executor.submit(() -> {
+                    salida.await();
+                    try {
+                        if (via == null) {
+                            pedidoService.cancelarPedido(pedido.getId());
+                        } else {
+                            pedidoService.cambiarEstado(pedido.getId(), via);
+                        }
+                        return true;
+                    } catch (BusinessException e) {
+                        return false;
+                    }
+                }));
+            }
+            salida.countDown();
+            int canceladas = 0;
+            for (Future<Boolean> resultado : resultados) {
+                canceladas += resultado.get(5, TimeUnit.SECONDS) ? 1 : 0;
+            }
+
+            assertThat(canceladas).isEqualTo(1);
+            assertThat(stockDe(teclado)).isEqualTo(10);
+            assertThat(pedidoService.buscarPorId(pedido.getId()).getEstado()).isEqualTo(Pedido.EstadoPedido.CANCELADO);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Producto nuevoProducto(int stock) {
+        return productoRepository.save(Producto.builder()
+                .nombre("Teclado").precio(50.0).stock(stock).categoria("Periféricos").build());
+    }
+
+    private static Pedido nuevoPedido(Producto producto, int cantidad) {
+        Pedido.ItemPedido item = new Pedido.ItemPedido();
+        item.setProductoId(producto.getId());
+        item.setCantidad(cantidad);
+        Pedido pedido = new Pedido();
+        pedido.setProductos(new ArrayList<>(List.of(item)));
+        return pedido;
+    }
+
+    private int stockDe(Producto producto) {
+        return productoRepository.findById(producto.getId()).orElseThrow().getStock();
+    }
+}
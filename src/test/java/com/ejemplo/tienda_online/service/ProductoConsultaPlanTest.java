@@ -0,0 +1,80 @@
+package com.ejemplo.tienda_online.service;
+
+import com.ejemplo.tienda_online.MongoReal;
+import com.ejemplo.tienda_online.dto.FiltroProductos;
+import com.ejemplo.tienda_online.model.Producto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Verifica que cada forma de la consulta de productos usa un índice (sin COLLSCAN).
+ * Requiere un MongoDB real en {@code MONGODB_URI}.
+ */
+@EnabledIfEnvironmentVariable(named = MongoReal.VARIABLE_URI, matches = ".+")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ProductoConsultaPlanTest {
+
+    private MongoReal mongo;
+    private ProductoService productoService;
+
+    @BeforeAll
+    void setUp() {
+        mongo = new MongoReal();
+        mongo.crearIndices(Producto.class);
+        productoService = new ProductoService(null,
+                new CatalogoCache(100, Duration.ofMinutes(1), new SimpleMeterRegistry()),
+                new ObjectMapper(), mongo.getMongoTemplate(), null, null,
+                new ReintentosConcurrencia(5, Duration.ofMillis(1), new SimpleMeterRegistry()));
+
+        List<Producto> productos = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            productos.add(Producto.builder()
+                    .nombre("Producto " + i)
+                    .descripcion("Producto de prueba")
+                    .categoria("categoria" + (i % 20))
+                    .precio(1.0 + (i % 500))
+                    .stock(i % 7)
+                    .build());
+        }
+        mongo.getMongoTemplate().insertAll(productos);
+    }
+
+    @AfterAll
+    void tearDown() {
+        mongo.close();
+    }
+
+    static Stream<FiltroProductos> formasDeConsulta() {
+        return Stream.of(
+                FiltroProductos.builder().categoria("categoria3").build(),
+                FiltroProductos.builder().categoria("categoria3").precioMin(10.0).precioMax(90.0).orden("precio").build(),
+                FiltroProductos.builder().precioMin(10.0).precioMax(90.0).build(),
+                FiltroProductos.builder().orden("-precio").build(),
+                FiltroProductos.builder().enStock(true).build(),
+                FiltroProductos.builder().nombre("producto 1").build(),
+                FiltroProductos.builder().nombre("producto 1").categoria("categoria3").orden("nombre").build(),
+                FiltroProductos.builder().orden("nombre").build());
+    }
+
+    @ParameterizedTest
+    @MethodSource("formasDeConsulta")
+    void ningunaFormaDeConsultaRecorreLaColeccion(FiltroProductos filtro) {
+        Document plan = mongo.planGanador(productoService.construirConsulta(filtro, null, 50), Producto.class);
+
+        assertThat(plan.toJson()).as("Plan para %s", filtro).doesNotContain("COLLSCAN");
+    }
+}
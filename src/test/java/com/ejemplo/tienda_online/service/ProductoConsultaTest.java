@@ -0,0 +1,117 @@
+package com.ejemplo.tienda_online.service;
+
+import com.ejemplo.tienda_online.MongoEnMemoria;
+import com.ejemplo.tienda_online.dto.FiltroProductos;
+import com.ejemplo.tienda_online.dto.PaginaResponse;
+import com.ejemplo.tienda_online.dto.ProductoResponse;
+import com.ejemplo.tienda_online.exception.BusinessException;
+import com.ejemplo.tienda_online.model.Producto;
+import com.ejemplo.tienda_online.repository.ProductoRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProductoConsultaTest {
+
+    private MongoEnMemoria mongo;
+    private ProductoService productoService;
+
+    @BeforeEach
+    void setUp() {
+        mongo = new MongoEnMemoria();
+        productoService = new ProductoService(mongo.repositorio(ProductoRepository.class),
+                new CatalogoCache(100, Duration.ofMinutes(1), new SimpleMeterRegistry()),
+                new ObjectMapper(), mongo.getMongoTemplate(), null, null,
+                new ReintentosConcurrencia(5, Duration.ofMillis(1), new SimpleMeterRegistry()));
+
+        List<Producto> productos = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            productos.add(Producto.builder()
+                    .nombre((i % 2 == 0 ? "Teclado " : "Ratón ") + i)
+                    .descripcion("Producto de prueba")
+                    .categoria(i % 3 == 0 ? "perifericos" : "otros")
+                    // Precios repetidos para comprobar el desempate por ID
+                    .precio(10.0 + (i % 5))
+                    .stock(i % 4)
+                    .build());
+        }
+        mongo.getMongoTemplate().insertAll(productos);
+    }
+
+    @AfterEach
+    void tearDown() {
+        mongo.close();
+    }
+
+    @Test
+    void recorreTodasLasPaginasPorPrecioSinRepetirNiSaltarse() {
+        FiltroProductos filtro = FiltroProductos.builder().orden("-precio").build();
+
+        List<ProductoResponse> todos = recorrer(filtro, 7);
+
+        assertThat(todos).hasSize(60);
+        assertThat(todos).extracting(ProductoResponse::getId).doesNotHaveDuplicates();
+        assertThat(todos).isSortedAccordingTo(
+                Comparator.comparing(ProductoResponse::getPrecio).reversed());
+    }
+
+    @Test
+    void combinaCategoriaPrecioStockYPrefijoDeNombre() {
+        FiltroProductos filtro = FiltroProductos.builder()
+                .categoria("perifericos")
+                .precioMin(11.0)
+                .precioMax(13.0)
+                .enStock(true)
+                .nombre("Teclado")
+                .orden("nombre")
+                .build();
+
+        List<ProductoResponse> resultado = recorrer(filtro, 2);
+
+        assertThat(resultado).isNotEmpty().allSatisfy(p -> {
+            assertThat(p.getCategoria()).isEqualTo("perifericos");
+            assertThat(p.getPrecio().doubleValue()).isBetween(11.0, 13.0);
+            assertThat(p.getStock()).isPositive();
+            assertThat(p.getNombre()).startsWith("Teclado");
+        });
+        long esperados = mongo.getMongoTemplate().findAll(Producto.class).stream()
+                .filter(p -> p.getCategoria().equals("perifericos") && p.getPrecio() >= 11.0
+                        && p.getPrecio() <= 13.0 && p.getStock() > 0 && p.getNombre().startsWith("Teclado"))
+                .count();
+        assertThat(resultado).hasSize((int) esperados);
+    }
+
+    @Test
+    void rechazaCursorDeOtroOrdenYRangoDePrecioInvertido() {
+        PaginaResponse<ProductoResponse> pagina = productoService.consultar(
+                FiltroProductos.builder().orden("precio").build(), null, 5);
+
+        assertThatThrownBy(() -> productoService.consultar(
+                FiltroProductos.builder().orden("nombre").build(), pagina.getSiguienteCursor(), 5))
+                .isInstanceOf(BusinessException.class);
+        assertThatThrownBy(() -> productoService.consultar(
+                FiltroProductos.builder().precioMin(20.0).precioMax(10.0).build(), null, 5))
+                .isInstanceOf(BusinessException.class);
+    }
+
+    private List<ProductoResponse> recorrer(FiltroProductos filtro, int limite) {
+        List<ProductoResponse> todos = new ArrayList<>();
+        String cursor = null;
+        do {
+            PaginaResponse<ProductoResponse> pagina = productoService.consultar(filtro, cursor, limite);
+            todos.addAll(pagina.getContenido());
+            cursor = pagina.getSiguienteCursor();
+        } while (cursor != null);
+        return todos;
+    }
+}
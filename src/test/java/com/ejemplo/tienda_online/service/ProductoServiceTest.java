@@ -0,0 +1,159 @@
+package com.ejemplo.tienda_online.service;
+
+import com.ejemplo.tienda_online.MongoEnMemoria;
+import com.ejemplo.tienda_online.exception.BusinessException;
+import com.ejemplo.tienda_online.exception.ConflictoEdicionException;
+import com.ejemplo.tienda_online.model.FraccionStock;
+import com.ejemplo.tienda_online.model.Producto;
+import com.ejemplo.tienda_online.repository.ProductoRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProductoServiceTest {
+
+    private static final Instant HACE_UN_DIA = Instant.parse("2024-01-01T00:00:00Z");
+
+    private MongoEnMemoria mongo;
+    private ProductoRepository productoRepository;
+    private ProductoService productoService;
+
+    @BeforeEach
+    void setUp() {
+        mongo = new MongoEnMemoria();
+        productoRepository = mongo.repositorio(ProductoRepository.class);
+        CatalogoCache catalogoCache = new CatalogoCache(100, Duration.ofMinutes(1), new SimpleMeterRegistry());
+        productoService = new ProductoService(productoRepository, catalogoCache, new ObjectMapper(),
+                mongo.getMongoTemplate(), new BusquedaProductosService(mongo.getMongoTemplate(), productoRepository),
+                new StockFraccionadoService(mongo.getMongoTemplate(), catalogoCache, new SimpleMeterRegistry()),
+                new ReintentosConcurrencia(5, Duration.ofMillis(1), new SimpleMeterRegistry()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        mongo.close();
+    }
+
+    @Test
+    void losCambiosDeStockSoloTocanElStockYLaFecha() {
+        Producto producto = nuevoProducto(10);
+
+        Producto fijado = productoService.updateStock(producto.getId(), 7);
+        Producto reducido = productoService.reduceStock(producto.getId(), 3);
+
+        assertThat(fijado.getDescripcion()).isEqualTo("Teclado mecánico");
+        assertThat(reducido.getStock()).isEqualTo(4);
+        Producto guardado = productoRepository.findById(producto.getId()).orElseThrow();
+        assertThat(guardado.getStock()).isEqualTo(4);
+        assertThat(guardado.getDescripcion()).isEqualTo("Teclado mecánico");
+        assertThat(guardado.getFechaCreacion()).isEqualTo(HACE_UN_DIA);
+        // La fecha la pone el servidor
+        assertThat(guardado.getFechaActualizacion()).isAfter(HACE_UN_DIA).isEqualTo(reducido.getFechaActualizacion());
+    }
+
+    @Test
+    void reduceStockNoDejaElStockEnNegativo() {
+        Producto producto = nuevoProducto(2);
+
+        assertThatThrownBy(() -> productoService.reduceStock(producto.getId(), 3))
+                .isInstanceOf(BusinessException.class)
+                .hasMessageContaining("Disponible: 2");
+        assertThat(productoRepository.findById(producto.getId()).orElseThrow().getStock()).isEqualTo(2);
+    }
+
+    @Test
+    void laEdicionNoCambiaLaFechaDeCreacionNiElModoDeStock() {
+        Producto producto = nuevoProducto(10);
+        productoService.fraccionarStock(producto.getId(), 2);
+
+        Producto editado = productoService.update(producto.getId(), Producto.builder()
+                .nombre("Teclado mecánico TKL")
+                .descripcion("Sin teclado numérico")
+                .precio(59.0)
+                .stock(10)
+                .categoria("Periféricos")
+                .fechaCreacion(Instant.now())
+                .build(), null);
+
+        assertThat(editado.getNombre()).isEqualTo("Teclado mecánico TKL");
+        assertThat(editado.getFechaCreacion()).isEqualTo(HACE_UN_DIA);
+        assertThat(editado.getFraccionesStock()).isEqualTo(2);
+        assertThat(editado.getFechaActualizacion()).isAfter(HACE_UN_DIA);
+    }
+
+    @Test
+    void laEdicionConUnaVersionAntiguaSeRechaza() {
+        Producto producto = nuevoProducto(10);
+        productoService.update(producto.getId(), Producto.builder().precio(55.0).build(), null);
+
+        // El cliente editó la versión leída antes del cambio de precio
+        assertThatThrownBy(() -> productoService.update(producto.getId(),
+                Producto.builder().nombre("Teclado TKL").version(producto.getVersion()).build(), null))
+                .isInstanceOf(ConflictoEdicionException.class)
+                .extracting(e -> ((ConflictoEdicionException) e).getVersionActual())
+                .isEqualTo(producto.getVersion() + 1);
+        assertThat(productoRepository.findById(producto.getId()).orElseThrow().getNombre()).isEqualTo("Teclado");
+    }
+
+    @Test
+    void lasVentasNoInvalidanLaEdicionYSuStockSeConserva() {
+        Producto producto = nuevoProducto(10);
+        // Tres ventas mientras el administrador tiene abierto el formulario con stock 10
+        productoService.reduceStock(producto.getId(), 3);
+
+        Producto editado = productoService.update(producto.getId(), Producto.builder()
+                .precio(45.0)
+                .stock(15)
+                .version(producto.getVersion())
+                .build(), 10);
+
+        // Se aplican las cinco unidades añadidas sin deshacer las ventas
+        assertThat(editado.getStock()).isEqualTo(12);
+        assertThat(editado.getPrecio()).isEqualTo(45.0);
+        assertThat(editado.getNombre()).isEqualTo("Teclado");
+        assertThat(editado.getVersion()).isEqualTo(producto.getVersion() + 1);
+    }
+
+    @Test
+    void laEdicionDeUnProductoFraccionadoSoloAplicaLaDiferencia() {
+        Producto producto = nuevoProducto(10);
+        productoService.fraccionarStock(producto.getId(), 2);
+        // Venta en las fracciones que la reconciliación aún no ha copiado al documento
+        productoService.reduceStock(producto.getId(), 3);
+
+        productoService.update(producto.getId(), Producto.builder().precio(49.0).stock(15).build(), 10);
+
+        assertThat(stockEnFracciones(producto)).isEqualTo(12);
+        assertThatThrownBy(() -> productoService.update(producto.getId(),
+                Producto.builder().precio(49.0).stock(0).version(producto.getVersion()).build(), null))
+                .isInstanceOf(ConflictoEdicionException.class);
+        assertThat(stockEnFracciones(producto)).isEqualTo(12);
+    }
+
+    private int stockEnFracciones(Producto producto) {
+        return mongo.getMongoTemplate().find(Query.query(Criteria.where("productoId").is(producto.getId())),
+                FraccionStock.class).stream().mapToInt(FraccionStock::getStock).sum();
+    }
+
+    private Producto nuevoProducto(int stock) {
+        return productoRepository.save(Producto.builder()
+                .nombre("Teclado")
+                .descripcion("Teclado mecánico")
+                .precio(49.0)
+                .stock(stock)
+                .categoria("Periféricos")
+                .fechaCreacion(HACE_UN_DIA)
+                .fechaActualizacion(HACE_UN_DIA)
+                .build());
+    }
+}
@@ -0,0 +1,119 @@
+package com.ejemplo.tienda_online.service;
+
+import com.ejemplo.tienda_online.MongoEnMemoria;
+import com.ejemplo.tienda_online.model.Pedido;
+import com.ejemplo.tienda_online.model.Producto;
+import com.ejemplo.tienda_online.model.Usuario;
+import com.ejemplo.tienda_online.repository.PedidoRepository;
+import com.ejemplo.tienda_online.repository.ProductoRepository;
+import com.ejemplo.tienda_online.repository.UsuarioRepository;
+import com.ejemplo.tienda_online.security.UsuarioAutenticado;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecepcionPedidosServiceTest {
+
+    private MongoEnMemoria mongo;
+    private ProductoRepository productoRepository;
+    private PedidoRepository pedidoRepository;
+    private PedidoService pedidoService;
+    private RecepcionPedidosService recepcion;
+
+    @BeforeEach
+    void setUp() {
+        mongo = new MongoEnMemoria();
+        productoRepository = mongo.repositorio(ProductoRepository.class);
+        pedidoRepository = mongo.repositorio(PedidoRepository.class);
+        CatalogoCache catalogoCache = new CatalogoCache(100, Duration.ofMinutes(1), new SimpleMeterRegistry());
+        pedidoService = new PedidoService(pedidoRepository,
+                mongo.repositorio(UsuarioRepository.class), productoRepository,
+                new ReservaStockService(mongo.getMongoTemplate(), catalogoCache,
+                        new StockFraccionadoService(mongo.getMongoTemplate(), catalogoCache, new SimpleMeterRegistry())),
+                new TransaccionesPedido(null, 3, new SimpleMeterRegistry()), mongo.getMongoTemplate());
+        recepcion = new RecepcionPedidosService(pedidoService, true, 100, 1, 50, new SimpleMeterRegistry());
+
+        UsuarioAutenticado principal = UsuarioAutenticado.de(Usuario.builder()
+                .id("u-1")
+                .username("ana")
+                .email("ana@ejemplo.com")
+                .password("x")
+                .roles(List.of(Usuario.RolUsuario.CLIENTE))
+                .build());
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        recepcion.cerrar();
+        SecurityContextHolder.clearContext();
+        mongo.close();
+    }
+
+    @Test
+    void guardaLosPedidosEnColaYRechazaLosQueNoTienenStock() throws InterruptedException {
+        Producto teclado = productoRepository.save(Producto.builder()
+                .nombre("Teclado").precio(50.0).stock(5).build());
+
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Pedido recibido = recepcion.encolar(pedido(teclado.getId(), 2));
+            assertThat(recibido.getEstado()).isEqualTo(Pedido.EstadoPedido.RECIBIDO);
+            assertThat(recibido.getUsuarioId()).isEqualTo("u-1");
+            ids.add(recibido.getId());
+        }
+        esperarColaVacia(ids);
+
+        List<Pedido> guardados = ids.stream().map(id -> pedidoRepository.findById(id).orElseThrow()).toList();
+        // Se aceptan en orden de llegada mientras queda stock
+        assertThat(guardados).extracting(Pedido::getEstado).containsExactly(
+                Pedido.EstadoPedido.PENDIENTE, Pedido.EstadoPedido.PENDIENTE,
+                Pedido.EstadoPedido.RECHAZADO, Pedido.EstadoPedido.RECHAZADO);
+        assertThat(guardados.get(0).getProductos().get(0).getPrecioUnitario()).isEqualTo(50.0);
+        assertThat(guardados.get(3).getMotivoCancelacion()).contains("Stock insuficiente");
+        assertThat(productoRepository.findById(teclado.getId()).orElseThrow().getStock()).isEqualTo(1);
+    }
+
+    @Test
+    void unLoteGuardaTambienLosPedidosRechazados() {
+        Producto raton = productoRepository.save(Producto.builder()
+                .nombre("Ratón").precio(20.0).stock(4).build());
+        List<Pedido> lote = List.of(
+                pedidoService.prepararRecepcion(pedido(raton.getId(), 3)),
+                pedidoService.prepararRecepcion(pedido(raton.getId(), 1)),
+                pedidoService.prepararRecepcion(pedido("no-existe", 1)));
+
+        pedidoService.guardarLote(lote);
+
+        assertThat(lote).extracting(Pedido::getEstado).containsExactly(
+                Pedido.EstadoPedido.PENDIENTE, Pedido.EstadoPedido.PENDIENTE, Pedido.EstadoPedido.RECHAZADO);
+        assertThat(pedidoRepository.count()).isEqualTo(3);
+        assertThat(productoRepository.findById(raton.getId()).orElseThrow().getStock()).isZero();
+    }
+
+    private void esperarColaVacia(List<String> ids) throws InterruptedException {
+        long limite = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (ids.stream().anyMatch(id -> recepcion.buscarEnCurso(id).isPresent()) && System.nanoTime() < limite) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static Pedido pedido(String productoId, int cantidad) {
+        Pedido.ItemPedido item = new Pedido.ItemPedido();
+        item.setProductoId(productoId);
+        item.setCantidad(cantidad);
+        Pedido pedido = new Pedido();
+        pedido.setProductos(new ArrayList<>(List.of(item)));
+        return pedido;
+    }
+}
@@ -0,0 +1,55 @@
+package com.ejemplo.tienda_online.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReintentosConcurrenciaTest {
+
+    private SimpleMeterRegistry registry;
+    private ReintentosConcurrencia reintentos;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        reintentos = new ReintentosConcurrencia(3, Duration.ofMillis(1), registry);
+    }
+
+    @Test
+    void repiteLaOperacionHastaQueNoHayConflicto() {
+        AtomicInteger intentos = new AtomicInteger();
+
+        String resultado = reintentos.ejecutar("productos.editar", () -> {
+            if (intentos.incrementAndGet() < 3) {
+                throw new OptimisticLockingFailureException("versión cambiada");
+            }
+            return "ok";
+        });
+
+        assertThat(resultado).isEqualTo("ok");
+        assertThat(registry.get("concurrencia.conflictos").counter().count()).isEqualTo(2.0);
+        assertThat(registry.get("concurrencia.operaciones").tag("resultado", "reintentada").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void abandonaAlAgotarLosIntentos() {
+        AtomicInteger intentos = new AtomicInteger();
+
+        assertThatThrownBy(() -> reintentos.ejecutar("productos.editar", () -> {
+            intentos.incrementAndGet();
+            throw new OptimisticLockingFailureException("versión cambiada");
+        })).isInstanceOf(OptimisticLockingFailureException.class);
+
+        assertThat(intentos).hasValue(3);
+        assertThat(registry.get("concurrencia.operaciones").tag("resultado", "agotada").counter().count())
+                .isEqualTo(1.0);
+    }
+}
@@ -0,0 +1,251 @@
+package com.ejemplo.tienda_online.service;
+
+import com.ejemplo.tienda_online.MongoEnMemoria;
+import com.ejemplo.tienda_online.exception.BusinessException;
+import com.ejemplo.tienda_online.exception.ResourceNotFoundException;
+import com.ejemplo.tienda_online.model.FraccionStock;
+import com.ejemplo.tienda_online.model.Producto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReservaStockServiceTest {
+
+    private MongoEnMemoria mongo;
+    private MongoTemplate mongoTemplate;
+    private StockFraccionadoService stockFraccionado;
+    private ReservaStockService reservaStockService;
+
+    @BeforeEach
+    void setUp() {
+        mongo = new MongoEnMemoria();
+        mongoTemplate = mongo.getMongoTemplate();
+        CatalogoCache catalogoCache = new CatalogoCache(100, Duration.ofMinutes(1), new SimpleMeterRegistry());
+        stockFraccionado = new StockFraccionadoService(mongoTemplate, catalogoCache, new SimpleMeterRegistry());
+        reservaStockService = new ReservaStockService(mongoTemplate, catalogoCache, stockFraccionado);
+    }
+
+    @AfterEach
+    void tearDown() {
+        mongo.close();
+    }
+
+    @Test
+    void reservaDescuentaTodosLosProductosYLimpiaLasMarcas() {
+        Producto teclado = guardar("Teclado", 5);
+        Producto raton = guardar("Ratón", 3);
+
+        reservaStockService.reservar(cantidades(teclado.getId(), 2, raton.getId(), 3));
+
+        assertThat(stockDe(teclado)).isEqualTo(3);
+        assertThat(stockDe(raton)).isZero();
+        assertThat(mongoTemplate.getCollection("productos")
+                .countDocuments(new Document(ReservaStockService.CAMPO_RESERVAS,
+                        new Document("$exists", true).append("$ne", List.of()))))
+                .isZero();
+    }
+
+    @Test
+    void reservaFallidaCompensaLosItemsYaDescontados() {
+        Producto teclado = guardar("Teclado", 5);
+        Producto raton = guardar("Ratón", 1);
+
+        assertThatThrownBy(() -> reservaStockService.reservar(cantidades(teclado.getId(), 2, raton.getId(), 3)))
+                .isInstanceOf(BusinessException.class)
+                .hasMessageContaining("Ratón");
+
+        assertThat(stockDe(teclado)).isEqualTo(5);
+        assertThat(stockDe(raton)).isEqualTo(1);
+    }
+
+    @Test
+    void reservaDeProductoInexistenteLanzaNoEncontrado() {
+        Producto teclado = guardar("Teclado", 5);
+        String inexistente = new ObjectId().toHexString();
+
+        assertThatThrownBy(() -> reservaStockService.reservar(cantidades(teclado.getId(), 1, inexistente, 1)))
+                .isInstanceOf(ResourceNotFoundException.class);
+
+        assertThat(stockDe(teclado)).isEqualTo(5);
+    }
+
+    @Test
+    void compradoresConcurrentesNoSobrevendenLasUltimasUnidades() throws Exception {
+        Producto producto = guardar("Consola", 10);
+        int compradores = 200;
+        AtomicInteger exitos = new AtomicInteger();
+        AtomicInteger rechazos = new AtomicInteger();
+        CountDownLatch salida = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        try {
+            List<Future<?>> tareas = new ArrayList<>();
+            for (int i = 0; i < compradores; i++) {
+                tareas.add(executor.submit(() -> {
+                    salida.await();
+                    try {
+                        reservaStockService.reservar(Map.of(producto.getId(), 1));
+                        exitos.incrementAndGet();
+                    } catch (BusinessException e) {
+                        rechazos.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            salida.countDown();
+            for (Future<?> tarea : tareas) {
+                tarea.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(exitos.get()).isEqualTo(10);
+        assertThat(rechazos.get()).isEqualTo(compradores - 10);
+        assertThat(stockDe(producto)).isZero();
+    }
+
+    @Test
+    void compradoresConcurrentesDeUnProductoFraccionadoNoSobrevenden() throws Exception {
+        Producto producto = guardar("Consola", 25);
+        stockFraccionado.fraccionar(producto.getId(), 4);
+        int compradores = 200;
+        AtomicInteger exitos = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        try {
+            List<Future<?>> tareas = new ArrayList<>();
+            for (int i = 0; i < compradores; i++) {
+                // Compras de 1 a 3 unidades: al final hay que repartir entre fracciones
+                int cantidad = 1 + i % 3;
+                tareas.add(executor.submit(() -> {
+                    try {
+                        reservaStockService.reservar(Map.of(producto.getId(), cantidad));
+                        exitos.addAndGet(cantidad);
+                    } catch (BusinessException e) {
+                        // Sin stock
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> tarea : tareas) {
+                tarea.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        stockFraccionado.reconciliar();
+        assertThat(exitos.get()).isEqualTo(25);
+        assertThat(stockDe(producto)).isZero();
+        assertThat(mongoTemplate.findAll(FraccionStock.class)).extracting(FraccionStock::getStock)
+                .containsOnly(0);
+    }
+
+    @Test
+    void otraInstanciaQueNoSabeQueElProductoEstaFraccionadoReservaEnLasFracciones() {
+        Producto teclado = guardar("Teclado", 5);
+        Producto raton = guardar("Ratón", 8);
+        stockFraccionado.fraccionar(raton.getId(), 2);
+
+        CatalogoCache catalogoCache = new CatalogoCache(100, Duration.ofMinutes(1), new SimpleMeterRegistry());
+        StockFraccionadoService sinActualizar = new StockFraccionadoService(mongoTemplate, catalogoCache,
+                new SimpleMeterRegistry());
+        ReservaStockService otraInstancia = new ReservaStockService(mongoTemplate, catalogoCache, sinActualizar);
+
+        otraInstancia.reservar(cantidades(teclado.getId(), 2, raton.getId(), 3));
+        otraInstancia.liberar(Map.of(raton.getId(), 1));
+
+        stockFraccionado.reconciliar();
+        assertThat(stockDe(teclado)).isEqualTo(3);
+        assertThat(stockDe(raton)).isEqualTo(6);
+        assertThat(sinActualizar.estaFraccionado(raton.getId())).isTrue();
+    }
+
+    @Test
+    void unificarDevuelveElStockDeLasFraccionesAlProducto() {
+        Producto producto = guardar("Consola", 10);
+        stockFraccionado.fraccionar(producto.getId(), 3);
+        reservaStockService.reservar(Map.of(producto.getId(), 4));
+
+        stockFraccionado.unificar(producto.getId());
+
+        Producto unificado = mongoTemplate.findById(producto.getId(), Producto.class);
+        assertThat(unificado.getStock()).isEqualTo(6);
+        assertThat(unificado.getFraccionesStock()).isNull();
+        assertThat(mongoTemplate.count(new Query(), FraccionStock.class)).isZero();
+        // Vuelve a reservar en el documento del producto
+        reservaStockService.reservar(Map.of(producto.getId(), 6));
+        assertThat(stockDe(producto)).isZero();
+    }
+
+    @Test
+    void liberarDuranteUnaUnificacionDevuelveElStockAlDocumento() {
+        Producto producto = guardar("Consola", 10);
+        // Marca de transición que deja unificar antes de recoger las fracciones
+        mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(producto.getId())),
+                new Update().set("fraccionesStock", 0), Producto.class);
+
+        reservaStockService.liberar(Map.of(producto.getId(), 2));
+
+        assertThat(stockDe(producto)).isEqualTo(12);
+        assertThat(stockFraccionado.estaFraccionado(producto.getId())).isFalse();
+    }
+
+    @Test
+    void noSeFraccionaConUnaReservaAMedias() {
+        Producto producto = guardar("Consola", 10);
+        // Reserva de otra instancia que ya descontó pero aún no ha terminado
+        mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(producto.getId())),
+                new Update().inc("stock", -2).push(ReservaStockService.CAMPO_RESERVAS, "reserva-1"), Producto.class);
+
+        assertThatThrownBy(() -> stockFraccionado.fraccionar(producto.getId(), 2))
+                .isInstanceOf(BusinessException.class);
+
+        assertThat(mongoTemplate.findById(producto.getId(), Producto.class).getFraccionesStock()).isNull();
+        assertThat(mongoTemplate.count(new Query(), FraccionStock.class)).isZero();
+        assertThat(stockFraccionado.estaFraccionado(producto.getId())).isFalse();
+    }
+
+    private Producto guardar(String nombre, int stock) {
+        return mongoTemplate.save(Producto.builder()
+                .nombre(nombre)
+                .descripcion("Producto de prueba")
+                .precio(10.0)
+                .stock(stock)
+                .build());
+    }
+
+    private int stockDe(Producto producto) {
+        return mongoTemplate.findById(producto.getId(), Producto.class).getStock();
+    }
+
+    private Map<String, Integer> cantidades(String id1, int cantidad1, String id2, int cantidad2) {
+        Map<String, Integer> cantidades = new LinkedHashMap<>();
+        cantidades.put(id1, cantidad1);
+        cantidades.put(id2, cantidad2);
+        return cantidades;
+    }
+}
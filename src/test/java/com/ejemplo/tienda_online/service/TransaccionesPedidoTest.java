@@ -0,0 +1,159 @@
+package com.ejemplo.tienda_online.service;
+
+import com.ejemplo.tienda_online.MongoReal;
+import com.ejemplo.tienda_online.model.Producto;
+import com.mongodb.MongoCommandException;
+import com.mongodb.ServerAddress;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TransaccionesPedidoTest {
+
+    @Test
+    void repiteLaTransaccionCompletaAnteUnErrorTransitorio() {
+        GestorDePrueba gestor = new GestorDePrueba();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        TransaccionesPedido transacciones = new TransaccionesPedido(gestor, 3, registry);
+        AtomicInteger ejecuciones = new AtomicInteger();
+
+        String resultado = transacciones.ejecutar("prueba", () -> {
+            if (ejecuciones.incrementAndGet() == 1) {
+                // Así llega un conflicto de escritura dentro de una transacción, envuelto por Spring
+                throw new DataIntegrityViolationException("conflicto", errorTransitorio());
+            }
+            return "ok";
+        });
+
+        assertThat(resultado).isEqualTo("ok");
+        assertThat(ejecuciones).hasValue(2);
+        assertThat(gestor.eventos).containsExactly("begin", "rollback", "begin", "commit");
+        assertThat(registry.counter("pedidos.transacciones.reintentos").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void noRepiteLosErroresDeNegocioNiSuperaElMaximoDeIntentos() {
+        GestorDePrueba gestor = new GestorDePrueba();
+        TransaccionesPedido transacciones = new TransaccionesPedido(gestor, 2, new SimpleMeterRegistry());
+        AtomicInteger ejecuciones = new AtomicInteger();
+
+        assertThatThrownBy(() -> transacciones.ejecutar("prueba", () -> {
+            ejecuciones.incrementAndGet();
+            throw new IllegalStateException("sin stock");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThat(ejecuciones).hasValue(1);
+
+        assertThatThrownBy(() -> transacciones.ejecutar("prueba", () -> {
+            ejecuciones.incrementAndGet();
+            throw new DataIntegrityViolationException("conflicto", errorTransitorio());
+        })).isInstanceOf(DataIntegrityViolationException.class);
+        assertThat(ejecuciones).hasValue(3);
+    }
+
+    @Test
+    void unaOperacionAnidadaSeUneALaTransaccionYLaRepiteLaExterior() {
+        GestorDePrueba gestor = new GestorDePrueba();
+        TransaccionesPedido transacciones = new TransaccionesPedido(gestor, 3, new SimpleMeterRegistry());
+        AtomicInteger ejecuciones = new AtomicInteger();
+
+        String resultado = transacciones.ejecutar("exterior", () -> transacciones.ejecutar("interior", () -> {
+            if (ejecuciones.incrementAndGet() == 1) {
+                throw new DataIntegrityViolationException("conflicto", errorTransitorio());
+            }
+            return "ok";
+        }));
+
+        assertThat(resultado).isEqualTo("ok");
+        assertThat(ejecuciones).hasValue(2);
+        assertThat(gestor.eventos).containsExactly("begin", "rollback", "begin", "commit");
+    }
+
+    @Test
+    void enModoRapidoEjecutaSinTransaccion() {
+        TransaccionesPedido transacciones = new TransaccionesPedido(null, 3, new SimpleMeterRegistry());
+
+        assertThat(transacciones.isTransaccional()).isFalse();
+        assertThat(transacciones.ejecutar("prueba", () -> "ok")).isEqualTo("ok");
+    }
+
+    /**
+     * Un fallo después de reservar el stock deshace también la reserva. Requiere que
+     * {@code MONGODB_URI} apunte a un replica set (basta uno de un solo nodo).
+     */
+    @Test
+    @EnabledIfEnvironmentVariable(named = MongoReal.VARIABLE_URI, matches = ".+")
+    void unFalloTrasReservarDeshaceLaReservaEnUnReplicaSet() {
+        try (MongoReal mongo = new MongoReal()) {
+            // Las transacciones no pueden crear colecciones en versiones anteriores a 4.4
+            Producto producto = mongo.getMongoTemplate().save(
+                    Producto.builder().nombre("Teclado").precio(50.0).stock(10).build());
+            CatalogoCache catalogoCache = new CatalogoCache(100, Duration.ofMinutes(1), new SimpleMeterRegistry());
+            ReservaStockService reservaStockService = new ReservaStockService(mongo.getMongoTemplate(), catalogoCache,
+                    new StockFraccionadoService(mongo.getMongoTemplate(), catalogoCache, new SimpleMeterRegistry()));
+            TransaccionesPedido transacciones = new TransaccionesPedido(
+                    new MongoTransactionManager(mongo.getMongoTemplate().getMongoDatabaseFactory()), 3,
+                    new SimpleMeterRegistry());
+
+            assertThatThrownBy(() -> transacciones.ejecutar("prueba", () -> {
+                reservaStockService.reservar(Map.of(producto.getId(), 3));
+                throw new IllegalStateException("fallo al guardar el pedido");
+            })).isInstanceOf(IllegalStateException.class);
+
+            assertThat(mongo.getMongoTemplate().findById(producto.getId(), Producto.class).getStock()).isEqualTo(10);
+        }
+    }
+
+    private static MongoCommandException errorTransitorio() {
+        BsonDocument respuesta = new BsonDocument("ok", new BsonInt32(0))
+                .append("code", new BsonInt32(112))
+                .append("codeName", new BsonString("WriteConflict"))
+                .append("errmsg", new BsonString("Write conflict during plan execution"))
+                .append("errorLabels", new BsonArray(List.of(new BsonString("TransientTransactionError"))));
+        return new MongoCommandException(respuesta, new ServerAddress());
+    }
+
+    /**
+     * Gestor de transacciones que solo registra las llamadas.
+     */
+    private static class GestorDePrueba extends AbstractPlatformTransactionManager {
+        final List<String> eventos = new ArrayList<>();
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+            eventos.add("begin");
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+            eventos.add("commit");
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+            eventos.add("rollback");
+        }
+    }
+}
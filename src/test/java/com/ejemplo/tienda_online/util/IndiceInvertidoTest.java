@@ -0,0 +1,59 @@
+package com.ejemplo.tienda_online.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IndiceInvertidoTest {
+
+    private IndiceInvertido indice;
+
+    @BeforeEach
+    void setUp() {
+        indice = new IndiceInvertido();
+        indice.indexar("1", "Ratón Inalámbrico", "Ratón ergonómico con sensor óptico", "Periféricos");
+        indice.indexar("2", "Alfombrilla", "Alfombrilla grande para ratón", "Periféricos");
+        indice.indexar("3", "Teclado Mecánico", "Teclado con retroiluminación RGB", "Periféricos");
+        indice.indexar("4", "Monitor 4K", "Monitor de 27 pulgadas", "Pantallas");
+    }
+
+    @Test
+    void ignoraTildesYMayusculas() {
+        assertThat(indice.buscar("RATON", 10)).extracting(IndiceInvertido.Resultado::id)
+                .containsExactly("1", "2");
+        assertThat(indice.buscar("mecanico", 10)).extracting(IndiceInvertido.Resultado::id)
+                .containsExactly("3");
+    }
+
+    @Test
+    void elNombrePuntuaMasQueLaDescripcion() {
+        assertThat(indice.buscar("ratón", 10).get(0).id()).isEqualTo("1");
+    }
+
+    @Test
+    void elUltimoTerminoSeCompletaComoPrefijo() {
+        assertThat(indice.buscar("tecl", 10)).extracting(IndiceInvertido.Resultado::nombre)
+                .containsExactly("Teclado Mecánico");
+        assertThat(indice.buscar("perifericos inal", 10)).extracting(IndiceInvertido.Resultado::id)
+                .containsExactly("1");
+    }
+
+    @Test
+    void exigeTodosLosTerminosEIgnoraPalabrasVacias() {
+        assertThat(indice.buscar("monitor de teclado", 10)).isEmpty();
+        assertThat(indice.buscar("monitor de 27", 10)).extracting(IndiceInvertido.Resultado::id)
+                .containsExactly("4");
+    }
+
+    @Test
+    void lasActualizacionesYBorradosSeReflejanAlMomento() {
+        indice.indexar("4", "Monitor curvo", "Monitor ultrapanorámico", "Pantallas");
+        indice.eliminar("1");
+
+        assertThat(indice.buscar("4k", 10)).isEmpty();
+        assertThat(indice.buscar("curvo", 10)).extracting(IndiceInvertido.Resultado::id).containsExactly("4");
+        assertThat(indice.buscar("raton", 10)).extracting(IndiceInvertido.Resultado::id).containsExactly("2");
+        assertThat(indice.tamanio()).isEqualTo(3);
+    }
+}